@@ -0,0 +1,103 @@
+/**
+ * ベンチマークで使うToDo項目とデータファイルを生成するクラスです。
+ * 同じ件数と乱数の種からは常に同じデータを作るので、実行ごとの結果を比較できます。
+ */
+package com.example.todolist.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import com.example.todolist.TodoItem;
+
+public class BenchmarkData {
+
+	/** 乱数の種 */
+	public static final long SEED = 20251107L;
+
+	/** 内容の元になる語句（日本語・英語・カンマを含むものを混ぜる） */
+	private static final String[] WORDS = {
+		"報告書作成", "javaの学習", "部屋の掃除", "会議の準備", "請求書の確認", "検証",
+		"review PR", "deploy to staging", "write tests", "fix login bug",
+		"買い物: 牛乳, 卵, パン", "見積もり（A社, B社）の比較",
+	};
+
+	/** 期限の基準日 */
+	private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 1);
+
+	/** 期限を散らばらせる日数（約3年） */
+	private static final int DEADLINE_SPREAD_DAYS = 3 * 365;
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private BenchmarkData() {
+	}
+
+	/**
+	 * 指定した件数のToDo項目を生成します（約3割が完了済み）。
+	 * @param count 件数
+	 * @return 生成したTodoItemのリスト
+	 */
+	public static List<TodoItem> generate(int count) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		List<TodoItem> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			TodoItem item = new TodoItem(content(random, i), deadline(random));
+			item.setCompleted(random.nextInt(10) < 3);
+			items.add(item);
+		}
+		return items;
+	}
+
+	/**
+	 * generate()と同じ内容のデータファイル（テキスト形式）を、項目を保持せずに1行ずつ書き出します。
+	 * @param path 書き出し先
+	 * @param count 件数
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public static void writeTextFile(Path path, int count) throws IOException {
+		SplittableRandom random = new SplittableRandom(SEED);
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < count; i++) {
+				String content = content(random, i);
+				LocalDate deadline = deadline(random);
+				boolean completed = random.nextInt(10) < 3;
+				writer.write(content + "," + deadline + "," + completed);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * ディレクトリを中身ごと削除します。
+	 * @param directory 削除するディレクトリ（nullの場合は何もしません）
+	 * @throws IOException 削除に失敗した場合
+	 */
+	public static void deleteRecursively(Path directory) throws IOException {
+		if (directory == null || !Files.exists(directory)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static String content(SplittableRandom random, int i) {
+		return WORDS[random.nextInt(WORDS.length)] + " #" + i;
+	}
+
+	private static LocalDate deadline(SplittableRandom random) {
+		return BASE_DATE.plusDays(random.nextInt(DEADLINE_SPREAD_DAYS));
+	}
+}
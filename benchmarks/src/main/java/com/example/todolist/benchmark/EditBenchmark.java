@@ -0,0 +1,143 @@
+/**
+ * TodoListManagerの完了・内容の編集・期限の編集の所要時間を計測するベンチマークです。
+ * 索引（期限・全文検索）の更新を含めた、1回の操作あたりの時間を計測します。
+ */
+package com.example.todolist.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.todolist.TodoItem;
+import com.example.todolist.TodoListManager;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dfile.encoding=UTF-8"})
+public class EditBenchmark {
+
+	/** completeItemの1回の呼び出しで完了にする項目の件数 */
+	private static final int COMPLETE_BATCH = 10_000;
+
+	/** 編集に使う値の種類数（2のべき乗） */
+	private static final int VALUES = 1024;
+
+	@Param({"100000", "1000000"})
+	public int size;
+
+	@Param({"OBJECT", "COLUMNAR"})
+	public TodoListManager.StorageMode mode;
+
+	private TodoListManager manager;
+
+	private final String[] contents = new String[VALUES];
+	private final LocalDate[] deadlines = new LocalDate[VALUES];
+
+	/** 次に編集する項目の番号を決めるカウンタ */
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void createList() {
+		for (int i = 0; i < VALUES; i++) {
+			contents[i] = "編集後の内容 edited " + i;
+			deadlines[i] = LocalDate.of(2026, 1, 1).plusDays(i);
+		}
+		manager = newManager(mode, size);
+	}
+
+	/**
+	 * completeItem用の状態です。完了にした項目は元に戻せないので、
+	 * 未完了の項目が足りなくなったらリストを作り直します（作り直しは計測に含まれません）。
+	 * 呼び出しごとのSetupは編集の計測に影響するので、編集用の状態とは分けています。
+	 */
+	@State(Scope.Benchmark)
+	public static class CompleteState {
+
+		@Param({"100000", "1000000"})
+		public int size;
+
+		@Param({"OBJECT", "COLUMNAR"})
+		public TodoListManager.StorageMode mode;
+
+		TodoListManager manager;
+
+		/** 次に完了にする範囲の先頭（1始まり） */
+		int nextOpen;
+
+		@Setup(Level.Invocation)
+		public void ensureOpenItems() {
+			if (manager == null || nextOpen + COMPLETE_BATCH - 1 > size) {
+				manager = newManager(mode, size);
+				nextOpen = 1;
+			}
+		}
+	}
+
+	/**
+	 * すべて未完了の項目を持つTodoListManagerを作ります。
+	 */
+	static TodoListManager newManager(TodoListManager.StorageMode mode, int size) {
+		// TodoListRendererは生成時の標準出力を使うので、生成の間だけ差し替える
+		PrintStream original = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+		TodoListManager manager;
+		try {
+			manager = new TodoListManager(mode);
+		} finally {
+			System.setOut(original);
+		}
+		List<TodoItem> items = BenchmarkData.generate(size);
+		for (TodoItem item : items) {
+			item.setCompleted(false);
+		}
+		manager.setTodoItems(items);
+		return manager;
+	}
+
+	private int nextIndex() {
+		cursor = cursor + 7919 < size ? cursor + 7919 : cursor + 7919 - size;
+		return cursor + 1;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COMPLETE_BATCH)
+	public void completeItem(CompleteState state) {
+		int end = state.nextOpen + COMPLETE_BATCH;
+		for (int index = state.nextOpen; index < end; index++) {
+			state.manager.completeItem(index);
+		}
+		state.nextOpen = end;
+	}
+
+	@Benchmark
+	public void editContent() {
+		int index = nextIndex();
+		manager.editContent(index, contents[index & (VALUES - 1)]);
+	}
+
+	@Benchmark
+	public void editDeadline() {
+		int index = nextIndex();
+		manager.editDeadline(index, deadlines[index & (VALUES - 1)]);
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * FileHandlerの読み込み（loadList）と保存（saveList）の所要時間を、件数とファイル形式ごとに計測するベンチマークです。
+ * 1000万件の場合は項目の保持に数GBのヒープを使うため、フォークしたJVMのヒープを大きめにしています。
+ */
+package com.example.todolist.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.todolist.BinaryTodoFormat;
+import com.example.todolist.FileHandler;
+import com.example.todolist.TodoItem;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Dfile.encoding=UTF-8"})
+public class FileHandlerBenchmark {
+
+	/**
+	 * 読み込み対象のデータファイルを用意する状態です。
+	 */
+	@State(Scope.Benchmark)
+	public static class LoadState {
+
+		@Param({"1000", "100000", "1000000", "10000000"})
+		public int rows;
+
+		@Param({"txt", "todb"})
+		public String format;
+
+		Path directory;
+		String filename;
+
+		@Setup(Level.Trial)
+		public void createFile() throws IOException {
+			directory = Files.createTempDirectory("todo-bench-load");
+			filename = prepareFile(directory, rows, format);
+		}
+
+		@TearDown(Level.Trial)
+		public void deleteFile() throws IOException {
+			BenchmarkData.deleteRecursively(directory);
+		}
+	}
+
+	/**
+	 * 保存する項目と保存先を用意する状態です。
+	 */
+	@State(Scope.Benchmark)
+	public static class SaveState {
+
+		@Param({"1000", "100000", "1000000", "10000000"})
+		public int rows;
+
+		@Param({"txt", "todb"})
+		public String format;
+
+		Path directory;
+		List<TodoItem> items;
+		FileHandler fileHandler;
+
+		@Setup(Level.Trial)
+		public void createItems() throws IOException {
+			directory = Files.createTempDirectory("todo-bench-save");
+			items = BenchmarkData.generate(rows);
+			fileHandler = new FileHandler(directory.resolve("todo_list." + format).toString());
+		}
+
+		@TearDown(Level.Trial)
+		public void deleteFile() throws IOException {
+			BenchmarkData.deleteRecursively(directory);
+		}
+	}
+
+	/**
+	 * データファイルを生成し、そのファイル名を返します。バイナリ形式はテキスト形式から変換して作ります。
+	 */
+	static String prepareFile(Path directory, int rows, String format) throws IOException {
+		Path text = directory.resolve("todo_list.txt");
+		BenchmarkData.writeTextFile(text, rows);
+		if (format.equals("txt")) {
+			return text.toString();
+		}
+		String binary = directory.resolve("todo_list" + BinaryTodoFormat.EXTENSION).toString();
+		FileHandler.convert(text.toString(), binary);
+		Files.delete(text);
+		return binary;
+	}
+
+	/**
+	 * 起動時と同じく、新しいFileHandlerでファイル全体を読み込みます。
+	 */
+	@Benchmark
+	public List<TodoItem> loadList(LoadState state) {
+		return new FileHandler(state.filename).loadList();
+	}
+
+	/**
+	 * ジャーナルを使わない場合の保存（一時ファイルへの書き込み、fsync、置き換え）を行います。
+	 */
+	@Benchmark
+	public void saveList(SaveState state) {
+		state.fileHandler.saveList(state.items);
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * TodoListManager.displayListによる一覧表示の所要時間を計測するベンチマークです。
+ * 出力先は捨てるだけのストリームに差し替え、文字列の組み立てと文字コードの変換までを計測します。
+ */
+package com.example.todolist.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.todolist.TodoListManager;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dfile.encoding=UTF-8"})
+public class RenderBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int size;
+
+	@Param({"OBJECT", "COLUMNAR"})
+	public TodoListManager.StorageMode mode;
+
+	private TodoListManager manager;
+
+	private int lastPage;
+
+	@Setup(Level.Trial)
+	public void createList() {
+		// TodoListRendererは生成時の標準出力を使うので、生成の間だけ差し替える
+		PrintStream original = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+		try {
+			manager = new TodoListManager(mode);
+		} finally {
+			System.setOut(original);
+		}
+		manager.setTodoItems(BenchmarkData.generate(size));
+		lastPage = manager.displayList(1);
+	}
+
+	@Benchmark
+	public int firstPage() {
+		return manager.displayList(1);
+	}
+
+	@Benchmark
+	public int lastPage() {
+		return manager.displayList(lastPage);
+	}
+}
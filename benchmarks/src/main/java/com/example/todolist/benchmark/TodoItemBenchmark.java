@@ -0,0 +1,60 @@
+/**
+ * TodoItemの文字列化（保存用のtoFileStringと表示用のappendTo）の所要時間を計測するベンチマークです。
+ */
+package com.example.todolist.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.todolist.TodoItem;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TodoItemBenchmark {
+
+	/** 繰り返し使う項目の件数（2のべき乗） */
+	private static final int ITEMS = 1024;
+
+	private List<TodoItem> items;
+
+	private final StringBuilder buffer = new StringBuilder(256);
+
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void createItems() {
+		items = BenchmarkData.generate(ITEMS);
+	}
+
+	private TodoItem next() {
+		cursor = (cursor + 1) & (ITEMS - 1);
+		return items.get(cursor);
+	}
+
+	@Benchmark
+	public String toFileString() {
+		return next().toFileString();
+	}
+
+	@Benchmark
+	public StringBuilder appendTo() {
+		buffer.setLength(0);
+		return next().appendTo(buffer);
+	}
+}
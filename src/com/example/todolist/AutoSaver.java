@@ -0,0 +1,230 @@
+/**
+ * TodoListManagerの変更を監視し、バックグラウンドのスレッドで自動的に保存するクラスです。
+ * 変更があると「未保存」として記録し、続けて行われた変更はまとめて1回の保存にします。
+ * 保存は最後の変更から保存間隔だけ経過した時点で行い、変更が続いている場合でも
+ * 最初の未保存の変更から最大遅延時間が経過した時点で行います。
+ *
+ * 保存中はTodoListManagerのインスタンスで同期するので、別スレッドから項目を変更する側も
+ * 同じインスタンスで同期してください（対話中の入力待ちは同期の外で行えば、保存の完了を待つことはありません）。
+ */
+package com.example.todolist;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class AutoSaver implements TodoListListener, Closeable {
+
+	//フィールド
+	/** 既定の保存間隔（ミリ秒） */
+	public static final long DEFAULT_INTERVAL_MILLIS = 2000;
+
+	/** 既定の最大遅延時間（ミリ秒） */
+	public static final long DEFAULT_MAX_LATENCY_MILLIS = 10000;
+
+	/** 保存に使うFileHandler */
+	private final FileHandler fileHandler;
+
+	/** 監視するTodoListManager */
+	private final TodoListManager manager;
+
+	/** 最後の変更から保存までの時間（ナノ秒） */
+	private final long intervalNanos;
+
+	/** 最初の未保存の変更から保存までの最大の時間（ナノ秒） */
+	private final long maxLatencyNanos;
+
+	/** 保存を行うスレッド */
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	/** 未保存の変更がある場合はtrue */
+	private boolean dirty;
+
+	/** 最初の未保存の変更の時刻（System.nanoTime） */
+	private long firstChangeNanos;
+
+	/** 最後の変更の時刻（System.nanoTime） */
+	private long lastChangeNanos;
+
+	/** 保存の確認が予約済みの場合はtrue */
+	private boolean scheduled;
+
+	/** closeが呼ばれた場合はtrue */
+	private boolean closed;
+
+	/** 保存した回数 */
+	private long saveCount;
+
+	/**
+	 * AutoSaverを初期化するコンストラクタです。startを呼び出すまで監視は始まりません。
+	 * @param fileHandler 保存に使うFileHandler（attachJournal済みの場合はジャーナルのfsyncとコンパクションを行います）
+	 * @param manager 監視するTodoListManager
+	 * @param intervalMillis 最後の変更から保存までの時間（ミリ秒）
+	 * @param maxLatencyMillis 最初の未保存の変更から保存までの最大の時間（ミリ秒、保存間隔以上）
+	 * @throws IllegalArgumentException 時間が正でない場合、または最大遅延時間が保存間隔より短い場合
+	 */
+	public AutoSaver(FileHandler fileHandler, TodoListManager manager, long intervalMillis, long maxLatencyMillis) {
+		if (intervalMillis <= 0 || maxLatencyMillis < intervalMillis) {
+			throw new IllegalArgumentException("保存間隔は正の値、最大遅延時間は保存間隔以上の値を指定してください: "
+					+ intervalMillis + ", " + maxLatencyMillis);
+		}
+		this.fileHandler = fileHandler;
+		this.manager = manager;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+
+		this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "todo-autosave");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// closeの後に予約済みの確認が残っていても実行しない（最後の保存はcloseが行う）
+		scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	/**
+	 * 変更の監視を始めます。
+	 * 以降、ジャーナルのfsyncとスナップショットの書き直しは変更を行ったスレッドではなく、保存のスレッドで行います。
+	 */
+	public void start() {
+		fileHandler.setDeferredSync(true);
+		manager.addListener(this);
+	}
+
+	/**
+	 * 未保存の変更があれば、呼び出したスレッドですぐに保存します。
+	 * @return 保存に失敗した場合はfalse（未保存の変更が無かった場合はtrue）
+	 */
+	public boolean flush() {
+		synchronized (manager) {
+			synchronized (this) {
+				if (!dirty) {
+					return true;
+				}
+				dirty = false;
+			}
+			if (!fileHandler.saveList(manager.getTodoItems())) {
+				// 失敗した場合は未保存のまま残し、次の確認で再度保存する
+				markDirty();
+				return false;
+			}
+			synchronized (this) {
+				saveCount++;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 監視を止め、実行中の保存の完了を待ってから、未保存の変更を保存します。
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		manager.removeListener(this);
+		flush();
+		fileHandler.setDeferredSync(false);
+	}
+
+	/**
+	 * 未保存の変更があるかを判定します。
+	 * @return 未保存の変更がある場合はtrue
+	 */
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * これまでに保存した回数を取得します。
+	 * @return 保存した回数
+	 */
+	public synchronized long getSaveCount() {
+		return saveCount;
+	}
+
+	// ----------------------------------------------------
+	// 変更の監視
+	// ----------------------------------------------------
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		markDirty();
+	}
+
+	@Override
+	public void itemCompleted(int index, TodoItem item) {
+		markDirty();
+	}
+
+	@Override
+	public void itemReopened(int index, TodoItem item) {
+		markDirty();
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		markDirty();
+	}
+
+	@Override
+	public void contentEdited(int index, TodoItem item, String oldContent) {
+		markDirty();
+	}
+
+	@Override
+	public void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		markDirty();
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		markDirty();
+	}
+
+	/**
+	 * 未保存の変更があることを記録し、保存の確認がまだ予約されていなければ予約します。
+	 * 変更のたびに予約し直すことはせず、確認の時点で次の保存時刻を計算し直します。
+	 */
+	private synchronized void markDirty() {
+		long now = System.nanoTime();
+		if (!dirty) {
+			dirty = true;
+			firstChangeNanos = now;
+		}
+		lastChangeNanos = now;
+
+		if (!scheduled && !closed) {
+			scheduled = true;
+			scheduler.schedule(this::check, intervalNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * 保存時刻になっていれば保存し、まだであれば保存時刻に確認を予約し直します。
+	 */
+	private void check() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			long due = Math.min(lastChangeNanos + intervalNanos, firstChangeNanos + maxLatencyNanos);
+			long delay = due - System.nanoTime();
+			if (dirty && delay > 0) {
+				scheduler.schedule(this::check, delay, TimeUnit.NANOSECONDS);
+				return;
+			}
+			scheduled = false;
+		}
+		flush();
+	}
+}
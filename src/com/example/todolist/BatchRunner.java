@@ -0,0 +1,412 @@
+/**
+ * メニューを表示せずに、スクリプトのコマンドをまとめてTodoListManagerに適用するクラスです。
+ * 読み込みと解析は別スレッドで行い、解析済みのコマンドをまとまりごとにキューで受け渡して適用します。
+ *
+ * スクリプトの書式（1行に1コマンド、空行と#で始まる行は無視）:
+ * <pre>
+ * add 内容 YYYY-MM-DD          （最後の空白より後ろを期限とみなします）
+ * edit-content 番号 内容
+ * edit-deadline 番号 YYYY-MM-DD
+ * complete 番号
+ * list [ページ番号]
+ * stats [週数]                  （件数の集計と、今週から週ごとの未完了の件数を表示）
+ * bulk-complete 対象
+ * bulk-shift 日数 対象
+ * bulk-replace 置換前 置換後 対象  （置換前・置換後には空白を含められません）
+ * </pre>
+ * 番号の代わりに「#ID」と書くと、タスクのIDで項目を指定できます（適用時に現在の番号へ変換します）。
+ * bulk-で始まるコマンドの対象は、TodoSelectorの書式（3-500、1,4,7、before:2025-11-07、match:キーワード など）で指定します。
+ */
+package com.example.todolist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class BatchRunner {
+
+	//フィールド
+	/** 1回の受け渡しでまとめるコマンドの件数 */
+	private static final int BATCH_SIZE = 1024;
+
+	/** 解析スレッドが先行できるまとまりの数 */
+	private static final int QUEUE_CAPACITY = 16;
+
+	/** コマンドを適用するTodoListManager */
+	private final TodoListManager todoListManager;
+
+	/**
+	 * BatchRunnerを初期化するコンストラクタです。
+	 * @param todoListManager コマンドを適用するTodoListManager
+	 */
+	public BatchRunner(TodoListManager todoListManager) {
+		this.todoListManager = todoListManager;
+	}
+
+	/**
+	 * 処理結果（件数と所要時間）を保持するクラスです。
+	 */
+	public static class Result {
+
+		/** 適用に成功したコマンドの件数 */
+		private final long applied;
+
+		/** エラーでスキップしたコマンドの件数 */
+		private final long failed;
+
+		/** 所要時間（ナノ秒） */
+		private final long elapsedNanos;
+
+		Result(long applied, long failed, long elapsedNanos) {
+			this.applied = applied;
+			this.failed = failed;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * 適用に成功したコマンドの件数を取得します。
+		 * @return 件数
+		 */
+		public long getApplied() {
+			return applied;
+		}
+
+		/**
+		 * エラーでスキップしたコマンドの件数を取得します。
+		 * @return 件数
+		 */
+		public long getFailed() {
+			return failed;
+		}
+
+		/**
+		 * 所要時間を取得します。
+		 * @return 所要時間（ナノ秒）
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * 1秒あたりに処理したコマンドの件数を返します。
+		 * @return スループット（件/秒）
+		 */
+		public double getCommandsPerSecond() {
+			return elapsedNanos == 0 ? 0 : (applied + failed) * 1_000_000_000.0 / elapsedNanos;
+		}
+	}
+
+	/**
+	 * スクリプトを最後まで読み込み、各コマンドを順番に適用します。
+	 * 不正なコマンドは行番号付きの警告を表示してスキップし、残りのコマンドの処理を続けます。
+	 * @param script コマンドを読み込むReader
+	 * @return 処理結果
+	 * @throws IOException スクリプトの読み込みに失敗した場合
+	 */
+	public Result execute(BufferedReader script) throws IOException {
+		long start = System.nanoTime();
+		BlockingQueue<Command[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		IOException[] readError = new IOException[1];
+
+		// 読み込みと解析を行うスレッド
+		Thread parser = new Thread(() -> {
+			try {
+				parseAll(script, queue);
+			} catch (IOException e) {
+				readError[0] = e;
+			} finally {
+				putQuietly(queue, new Command[0]);
+			}
+		}, "batch-parser");
+		parser.setDaemon(true);
+		parser.start();
+
+		// 解析済みのまとまりを受け取って適用する
+		long applied = 0;
+		long failed = 0;
+		try {
+			while (true) {
+				Command[] batch = queue.take();
+				if (batch.length == 0) {
+					break;
+				}
+				for (Command command : batch) {
+					if (command == null) {
+						break;
+					}
+					long commandStart = System.nanoTime();
+					if (apply(command)) {
+						applied++;
+					} else {
+						failed++;
+					}
+					TodoMetrics.get().record(TodoMetrics.Operation.BATCH_COMMAND, commandStart);
+				}
+			}
+			parser.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("バッチ処理が中断されました。", e);
+		}
+
+		if (readError[0] != null) {
+			throw readError[0];
+		}
+		return new Result(applied, failed, System.nanoTime() - start);
+	}
+
+	/**
+	 * スクリプトを1行ずつ解析し、BATCH_SIZE件ごとにキューへ渡します。
+	 */
+	private static void parseAll(BufferedReader script, BlockingQueue<Command[]> queue) throws IOException {
+		Command[] batch = new Command[BATCH_SIZE];
+		int count = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = script.readLine()) != null) {
+			lineNumber++;
+			Command command = parse(line, lineNumber);
+			if (command == null) {
+				continue;
+			}
+			batch[count++] = command;
+			if (count == BATCH_SIZE) {
+				putQuietly(queue, batch);
+				batch = new Command[BATCH_SIZE];
+				count = 0;
+			}
+		}
+		if (count > 0) {
+			// 末尾の空き（null）は適用側で終端として扱う
+			putQuietly(queue, batch);
+		}
+	}
+
+	private static void putQuietly(BlockingQueue<Command[]> queue, Command[] batch) {
+		try {
+			queue.put(batch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// ----------------------------------------------------
+	// コマンドの解析と適用
+	// ----------------------------------------------------
+
+	/**
+	 * コマンドの種類です。
+	 */
+	private enum Type {
+		ADD, EDIT_CONTENT, EDIT_DEADLINE, COMPLETE, LIST, STATS, BULK_COMPLETE, BULK_SHIFT, BULK_REPLACE, INVALID
+	}
+
+	/**
+	 * 解析済みのコマンド1件です。
+	 */
+	private static class Command {
+
+		final Type type;
+		final int lineNumber;
+		final int index;
+		final long id;
+		final String text;
+		final LocalDate date;
+		final TodoSelector selector;
+		final String replacement;
+		final long days;
+
+		Command(Type type, int lineNumber, int index, String text, LocalDate date) {
+			this(type, lineNumber, index, 0, text, date);
+		}
+
+		Command(Type type, int lineNumber, int index, long id, String text, LocalDate date) {
+			this(type, lineNumber, index, id, text, date, null, null, 0);
+		}
+
+		private Command(Type type, int lineNumber, int index, long id, String text, LocalDate date,
+				TodoSelector selector, String replacement, long days) {
+			this.type = type;
+			this.lineNumber = lineNumber;
+			this.index = index;
+			this.id = id;
+			this.text = text;
+			this.date = date;
+			this.selector = selector;
+			this.replacement = replacement;
+			this.days = days;
+		}
+
+		/**
+		 * 一括操作のコマンドを作ります。
+		 */
+		static Command bulk(Type type, int lineNumber, String spec, String text, String replacement, long days)
+				throws InputFormatException {
+			return new Command(type, lineNumber, 0, 0, text, null, TodoSelector.parse(spec), replacement, days);
+		}
+
+		/**
+		 * 項目番号、または「#ID」で指定された項目を対象にするコマンドを作ります。
+		 */
+		static Command target(Type type, int lineNumber, String target, String text, LocalDate date) {
+			if (target.startsWith("#")) {
+				return new Command(type, lineNumber, 0, Long.parseLong(target.substring(1)), text, date);
+			}
+			return new Command(type, lineNumber, Integer.parseInt(target), 0, text, date);
+		}
+
+		static Command invalid(int lineNumber, String message) {
+			return new Command(Type.INVALID, lineNumber, 0, message, null);
+		}
+	}
+
+	/**
+	 * 1行を解析してコマンドにします。文字列の分割は行わず、区切りの空白の位置だけを探します。
+	 * @return 解析したコマンド（空行やコメントの場合はnull）
+	 */
+	private static Command parse(String line, int lineNumber) {
+		String trimmed = line.trim();
+		if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+			return null;
+		}
+
+		int space = trimmed.indexOf(' ');
+		String name = space < 0 ? trimmed : trimmed.substring(0, space);
+		String rest = space < 0 ? "" : trimmed.substring(space + 1).trim();
+
+		try {
+			switch (name) {
+				case "add": {
+					int last = rest.lastIndexOf(' ');
+					if (last < 0) {
+						return Command.invalid(lineNumber, "[add 内容 日付(YYYY-MM-DD)] の形式で入力してください: " + line);
+					}
+					return new Command(Type.ADD, lineNumber, 0, rest.substring(0, last).trim(),
+							LocalDate.parse(rest.substring(last + 1)));
+				}
+				case "edit-content": {
+					int split = rest.indexOf(' ');
+					if (split < 0) {
+						return Command.invalid(lineNumber, "[edit-content 項目番号 内容] の形式で入力してください: " + line);
+					}
+					return Command.target(Type.EDIT_CONTENT, lineNumber, rest.substring(0, split),
+							rest.substring(split + 1).trim(), null);
+				}
+				case "edit-deadline": {
+					int split = rest.indexOf(' ');
+					if (split < 0) {
+						return Command.invalid(lineNumber, "[edit-deadline 項目番号 日付] の形式で入力してください: " + line);
+					}
+					return Command.target(Type.EDIT_DEADLINE, lineNumber, rest.substring(0, split),
+							null, LocalDate.parse(rest.substring(split + 1).trim()));
+				}
+				case "complete":
+					return Command.target(Type.COMPLETE, lineNumber, rest, null, null);
+
+				case "list":
+					return new Command(Type.LIST, lineNumber, rest.isEmpty() ? 1 : Integer.parseInt(rest), null, null);
+
+				case "stats": {
+					int weeks = rest.isEmpty() ? TodoStats.DEFAULT_WEEKS : Integer.parseInt(rest);
+					if (weeks < 0) {
+						return Command.invalid(lineNumber, "週数には0以上の整数を指定してください: " + line);
+					}
+					return new Command(Type.STATS, lineNumber, weeks, null, null);
+				}
+
+				case "bulk-complete":
+					return Command.bulk(Type.BULK_COMPLETE, lineNumber, rest, null, null, 0);
+
+				case "bulk-shift": {
+					int split = rest.indexOf(' ');
+					if (split < 0) {
+						return Command.invalid(lineNumber, "[bulk-shift 日数 対象] の形式で入力してください: " + line);
+					}
+					return Command.bulk(Type.BULK_SHIFT, lineNumber, rest.substring(split + 1), null, null,
+							Long.parseLong(rest.substring(0, split)));
+				}
+				case "bulk-replace": {
+					String[] fields = rest.split(" +", 3);
+					if (fields.length < 3) {
+						return Command.invalid(lineNumber, "[bulk-replace 置換前 置換後 対象] の形式で入力してください: " + line);
+					}
+					return Command.bulk(Type.BULK_REPLACE, lineNumber, fields[2], fields[0], fields[1], 0);
+				}
+
+				default:
+					return Command.invalid(lineNumber, "未知のコマンドです: " + line);
+			}
+		} catch (NumberFormatException e) {
+			return Command.invalid(lineNumber, "項目番号が不正です: " + line);
+		} catch (DateTimeParseException e) {
+			return Command.invalid(lineNumber, "日付の形式が不正です。YYYY-MM-DD 形式で入力してください: " + line);
+		} catch (InputFormatException e) {
+			return Command.invalid(lineNumber, e.getMessage() + ": " + line);
+		}
+	}
+
+	/**
+	 * コマンドを1件適用します。
+	 * @return 成功した場合はtrue
+	 */
+	private boolean apply(Command command) {
+		try {
+			switch (command.type) {
+				case ADD:
+					todoListManager.addItem(new TodoItem(command.text, command.date));
+					return true;
+
+				case EDIT_CONTENT:
+					todoListManager.editContent(indexOf(command), command.text);
+					return true;
+
+				case EDIT_DEADLINE:
+					todoListManager.editDeadline(indexOf(command), command.date);
+					return true;
+
+				case COMPLETE:
+					todoListManager.completeItem(indexOf(command));
+					return true;
+
+				case LIST:
+					todoListManager.displayList(command.index);
+					return true;
+
+				case STATS:
+					todoListManager.displayStats(LocalDate.now(), command.index);
+					return true;
+
+				case BULK_COMPLETE:
+					todoListManager.completeItems(command.selector.resolve(todoListManager));
+					return true;
+
+				case BULK_SHIFT:
+					todoListManager.shiftDeadlines(command.selector.resolve(todoListManager), command.days);
+					return true;
+
+				case BULK_REPLACE:
+					todoListManager.replaceContent(command.selector.resolve(todoListManager), command.text,
+							command.replacement);
+					return true;
+
+				default:
+					System.err.println("警告: コマンドをスキップしました (" + command.lineNumber + "行目): " + command.text);
+					return false;
+			}
+		} catch (IndexOutOfBoundsException | DateTimeException e) {
+			System.err.println("警告: コマンドをスキップしました (" + command.lineNumber + "行目): " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * コマンドの対象の項目番号を取得します。IDで指定されている場合は現在の番号に変換します。
+	 */
+	private int indexOf(Command command) {
+		return command.id > 0 ? todoListManager.indexOf(command.id) : command.index;
+	}
+}
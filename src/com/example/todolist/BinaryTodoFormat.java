@@ -0,0 +1,270 @@
+/**
+ * ToDoリストをコンパクトなバイナリ形式で読み書きするクラスです。
+ * テキスト形式（内容,期限,完了状態）と違い、日付や真偽値を文字列から解析し直す必要がありません。
+ *
+ * ファイルの構成（数値はすべてビッグエンディアン）:
+ * <pre>
+ * ヘッダー (32バイト)
+ *   マジック "TODB" (4) / バージョン (2) / 予約 (2) / 項目数 (4)
+ *   文字列ブロックのバイト数 (8) / 本体のCRC32 (4) / ヘッダーのCRC32 (4) / 予約 (4)
+ * 期限ブロック     : 項目数 × int（1970-01-01からの日数）
+ * 完了状態ブロック : (項目数+63)/64 × long（1ビット＝1項目）
+ * IDブロック       : 項目数 × long（バージョン2以降）
+ * 文字列ブロック   : 項目ごとに 可変長のバイト数 + UTF-8の内容
+ * </pre>
+ * IDの無いバージョン1のファイルも読み込めます（IDは未割り当ての0になります）。
+ */
+package com.example.todolist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class BinaryTodoFormat {
+
+	//フィールド
+	/** バイナリ形式のファイルの拡張子 */
+	public static final String EXTENSION = ".todb";
+
+	/** ファイル先頭のマジックナンバー（"TODB"） */
+	private static final int MAGIC = 0x544F4442;
+
+	/** 現在の形式のバージョン */
+	private static final short VERSION = 2;
+
+	/** IDブロックの無い最初の形式のバージョン */
+	private static final short VERSION_WITHOUT_IDS = 1;
+
+	/** ヘッダーのバイト数 */
+	private static final int HEADER_BYTES = 32;
+
+	/** ヘッダーのうちCRC32の計算対象になる部分のバイト数 */
+	private static final int HEADER_CRC_OFFSET = 24;
+
+	/** 期限が設定されていない項目を表す値 */
+	private static final int NO_DEADLINE = Integer.MIN_VALUE;
+
+	/** 書き込み用バッファのサイズ */
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private BinaryTodoFormat() {
+	}
+
+	/**
+	 * リストをバイナリ形式でファイルに書き込みます。
+	 * @param list 保存対象のTodoItemリスト
+	 * @param path 書き込み先のファイルパス
+	 * @return ヘッダーのCRC32（本体のCRC32を含むので、ファイルの内容を識別する値として使えます）
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public static long write(List<TodoItem> list, Path path) throws IOException {
+		int count = list.size();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+			CRC32 payloadCrc = new CRC32();
+
+			// ヘッダーは本体を書き終えてから埋めるので、先に場所だけ確保する
+			channel.position(HEADER_BYTES);
+
+			// 期限ブロック
+			for (TodoItem item : list) {
+				ensureRoom(channel, buffer, payloadCrc, Integer.BYTES);
+				LocalDate deadline = item.getDeadline();
+				buffer.putInt(deadline == null ? NO_DEADLINE : (int) deadline.toEpochDay());
+			}
+
+			// 完了状態ブロック
+			long bits = 0;
+			for (int i = 0; i < count; i++) {
+				if (list.get(i).isCompleted()) {
+					bits |= 1L << (i & 63);
+				}
+				if ((i & 63) == 63 || i == count - 1) {
+					ensureRoom(channel, buffer, payloadCrc, Long.BYTES);
+					buffer.putLong(bits);
+					bits = 0;
+				}
+			}
+
+			// IDブロック
+			for (TodoItem item : list) {
+				ensureRoom(channel, buffer, payloadCrc, Long.BYTES);
+				buffer.putLong(item.getId());
+			}
+
+			// 文字列ブロック
+			long stringBytes = 0;
+			for (TodoItem item : list) {
+				String content = item.getContent();
+				byte[] utf8 = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+				ensureRoom(channel, buffer, payloadCrc, 5);
+				stringBytes += putVarInt(buffer, utf8.length);
+				for (int offset = 0; offset < utf8.length;) {
+					ensureRoom(channel, buffer, payloadCrc, 1);
+					int length = Math.min(buffer.remaining(), utf8.length - offset);
+					buffer.put(utf8, offset, length);
+					offset += length;
+				}
+				stringBytes += utf8.length;
+			}
+			flush(channel, buffer, payloadCrc);
+
+			// ヘッダー
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(count)
+					.putLong(stringBytes).putInt((int) payloadCrc.getValue());
+			CRC32 headerCrc = new CRC32();
+			headerCrc.update(header.array(), 0, HEADER_CRC_OFFSET);
+			header.putInt((int) headerCrc.getValue()).putInt(0);
+			header.flip();
+			channel.position(0);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.force(true);
+
+			return headerCrc.getValue();
+		}
+	}
+
+	/**
+	 * バイナリ形式のファイルを読み込みます。
+	 * @param path 読み込むファイルのパス
+	 * @return 読み込み結果（項目のリストとヘッダーのCRC32）
+	 * @throws IOException ファイルが無い、形式やチェックサムが不正、または読み込みに失敗した場合
+	 */
+	public static MappedTodoLoader.Result read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES) {
+				throw new IOException("バイナリ形式のヘッダーが不完全です: " + path);
+			}
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("バイナリ形式のファイルが大きすぎます: " + path);
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			// ヘッダーの検証
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("バイナリ形式のファイルではありません: " + path);
+			}
+			short version = buffer.getShort(4);
+			if (version != VERSION && version != VERSION_WITHOUT_IDS) {
+				throw new IOException("未対応のバージョンです (" + version + "): " + path);
+			}
+			CRC32 headerCrc = new CRC32();
+			headerCrc.update(buffer.duplicate().limit(HEADER_CRC_OFFSET));
+			if ((int) headerCrc.getValue() != buffer.getInt(HEADER_CRC_OFFSET)) {
+				throw new IOException("ヘッダーのチェックサムが一致しません: " + path);
+			}
+
+			int count = buffer.getInt(8);
+			long stringBytes = buffer.getLong(12);
+			int expectedPayloadCrc = buffer.getInt(20);
+
+			long deadlineBytes = (long) count * Integer.BYTES;
+			long bitsetBytes = ((count + 63L) / 64) * Long.BYTES;
+			long idBytes = version == VERSION_WITHOUT_IDS ? 0 : (long) count * Long.BYTES;
+			if (count < 0 || HEADER_BYTES + deadlineBytes + bitsetBytes + idBytes + stringBytes != size) {
+				throw new IOException("ファイルの長さがヘッダーと一致しません: " + path);
+			}
+
+			// 本体の検証
+			CRC32 payloadCrc = new CRC32();
+			payloadCrc.update(buffer.duplicate().position(HEADER_BYTES));
+			if ((int) payloadCrc.getValue() != expectedPayloadCrc) {
+				throw new IOException("本体のチェックサムが一致しません: " + path);
+			}
+
+			// 本体の読み込み
+			int deadlinePos = HEADER_BYTES;
+			int bitsetPos = (int) (deadlinePos + deadlineBytes);
+			int idPos = (int) (bitsetPos + bitsetBytes);
+			ByteBuffer strings = buffer.duplicate().position((int) (idPos + idBytes));
+			byte[] utf8 = new byte[256];
+
+			List<TodoItem> items = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int length = getVarInt(strings);
+				if (utf8.length < length) {
+					utf8 = new byte[Math.max(length, utf8.length * 2)];
+				}
+				strings.get(utf8, 0, length);
+
+				int epochDay = buffer.getInt(deadlinePos + i * Integer.BYTES);
+				LocalDate deadline = epochDay == NO_DEADLINE ? null : LocalDate.ofEpochDay(epochDay);
+				TodoItem item = new TodoItem(new String(utf8, 0, length, StandardCharsets.UTF_8), deadline);
+
+				long bits = buffer.getLong(bitsetPos + (i >>> 6) * Long.BYTES);
+				item.setCompleted((bits & (1L << (i & 63))) != 0);
+				if (idBytes > 0) {
+					item.setId(buffer.getLong(idPos + i * Long.BYTES));
+				}
+				items.add(item);
+			}
+			return new MappedTodoLoader.Result(items, headerCrc.getValue(), 0, size);
+		}
+	}
+
+	// ----------------------------------------------------
+	// 補助メソッド
+	// ----------------------------------------------------
+
+	/**
+	 * バッファに指定したバイト数の空きが無ければ、内容をファイルに書き出します。
+	 */
+	private static void ensureRoom(FileChannel channel, ByteBuffer buffer, CRC32 crc, int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flush(channel, buffer, crc);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		buffer.flip();
+		crc.update(buffer.array(), 0, buffer.limit());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * 0以上の整数を7ビットずつの可変長形式で書き込みます。
+	 * @return 書き込んだバイト数
+	 */
+	private static int putVarInt(ByteBuffer buffer, int value) {
+		int written = 1;
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+			written++;
+		}
+		buffer.put((byte) value);
+		return written;
+	}
+
+	private static int getVarInt(ByteBuffer buffer) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("文字列の長さが不正です。");
+	}
+}
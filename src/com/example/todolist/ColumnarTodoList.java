@@ -0,0 +1,387 @@
+/**
+ * ToDo項目を列ごとのプリミティブ配列に格納するリストクラスです。
+ * 期限はint配列（1970-01-01からの日数）、完了状態はBitSet、IDはlong配列、内容は重複を除いた文字列プールで保持し、
+ * 項目ごとのTodoItemやLocalDateのオブジェクトを持たないことでメモリ使用量を抑えます。
+ * get()で返すTodoItemは、列の値を読み書きする軽量なビュー（フライウェイト）です。
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+public class ColumnarTodoList extends AbstractList<TodoItem> implements RandomAccess {
+
+	//フィールド
+	/** 期限が設定されていない項目を表す値 */
+	private static final int NO_DEADLINE = Integer.MIN_VALUE;
+
+	/** 内容が設定されていない項目を表す値 */
+	private static final int NO_CONTENT = -1;
+
+	/** 期限の列（1970-01-01からの日数） */
+	private int[] deadlines;
+
+	/** 内容の列（文字列プールのID） */
+	private int[] contentIds;
+
+	/** タスクのIDの列 */
+	private long[] ids;
+
+	/** 完了状態の列 */
+	private final BitSet completed = new BitSet();
+
+	/** 内容の文字列プール */
+	private final StringPool pool = new StringPool();
+
+	/** 項目の件数 */
+	private int size;
+
+	/**
+	 * 空のColumnarTodoListを初期化するコンストラクタです。
+	 */
+	public ColumnarTodoList() {
+		deadlines = new int[16];
+		contentIds = new int[16];
+		ids = new long[16];
+	}
+
+	/**
+	 * 既存のリストの内容をコピーしてColumnarTodoListを初期化するコンストラクタです。
+	 * @param items コピー元のTodoItemのリスト
+	 */
+	public ColumnarTodoList(Collection<? extends TodoItem> items) {
+		deadlines = new int[Math.max(16, items.size())];
+		contentIds = new int[Math.max(16, items.size())];
+		ids = new long[Math.max(16, items.size())];
+		addAll(items);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 指定位置の項目のビューを返します。ビューへの変更は列に直接反映されます。
+	 */
+	@Override
+	public TodoItem get(int index) {
+		checkIndex(index);
+		return new ItemView(index);
+	}
+
+	/**
+	 * 指定位置の項目を、引数の項目の値で上書きします。
+	 * @return 上書き前の値を持つ（ビューではない）TodoItem
+	 */
+	@Override
+	public TodoItem set(int index, TodoItem item) {
+		checkIndex(index);
+		TodoItem old = copyOf(index);
+		write(index, item);
+		return old;
+	}
+
+	/**
+	 * 項目の値を末尾の列に追加します（末尾以外への挿入には対応していません）。
+	 */
+	@Override
+	public void add(int index, TodoItem item) {
+		if (index != size) {
+			throw new UnsupportedOperationException("ColumnarTodoListは末尾への追加のみに対応しています。");
+		}
+		if (size == deadlines.length) {
+			int capacity = size + (size >> 1) + 1;
+			deadlines = Arrays.copyOf(deadlines, capacity);
+			contentIds = Arrays.copyOf(contentIds, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+		}
+		contentIds[size] = NO_CONTENT;
+		size++;
+		write(size - 1, item);
+		modCount++;
+	}
+
+	/**
+	 * 末尾の項目を削除します（末尾以外の削除には対応していません）。
+	 * @return 削除した値を持つ（ビューではない）TodoItem
+	 */
+	@Override
+	public TodoItem remove(int index) {
+		if (index != size - 1) {
+			throw new UnsupportedOperationException("ColumnarTodoListは末尾の削除のみに対応しています。");
+		}
+		TodoItem old = copyOf(index);
+		pool.release(contentIds[index]);
+		contentIds[index] = NO_CONTENT;
+		completed.clear(index);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			pool.release(contentIds[i]);
+		}
+		completed.clear();
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * 1項目あたりの列の使用バイト数の概算を返します（内容の文字列自体は除きます）。
+	 * @return 1項目あたりのバイト数
+	 */
+	public double columnBytesPerItem() {
+		if (size == 0) {
+			return 0;
+		}
+		long bytes = (long) deadlines.length * Integer.BYTES + (long) contentIds.length * Integer.BYTES
+				+ (long) ids.length * Long.BYTES + completed.size() / Byte.SIZE + pool.overheadBytes();
+		return (double) bytes / size;
+	}
+
+	private void write(int index, TodoItem item) {
+		setDeadline(index, item.getDeadline());
+		setContent(index, item.getContent());
+		completed.set(index, item.isCompleted());
+		ids[index] = item.getId();
+	}
+
+	private TodoItem copyOf(int index) {
+		TodoItem copy = new TodoItem(getContent(index), getDeadline(index));
+		copy.setCompleted(completed.get(index));
+		copy.setId(ids[index]);
+		return copy;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	// ----------------------------------------------------
+	// 列へのアクセス
+	// ----------------------------------------------------
+
+	private String getContent(int index) {
+		return pool.get(contentIds[index]);
+	}
+
+	private void setContent(int index, String content) {
+		int oldId = contentIds[index];
+		contentIds[index] = pool.intern(content);
+		pool.release(oldId);
+	}
+
+	private LocalDate getDeadline(int index) {
+		int epochDay = deadlines[index];
+		return epochDay == NO_DEADLINE ? null : LocalDate.ofEpochDay(epochDay);
+	}
+
+	private void setDeadline(int index, LocalDate deadline) {
+		deadlines[index] = deadline == null ? NO_DEADLINE : Math.toIntExact(deadline.toEpochDay());
+	}
+
+	/**
+	 * 列の値を読み書きする項目のビューです。
+	 * 保持するのはリスト内の位置だけなので、同じ位置に対するビューはどれも同じ項目を指します。
+	 */
+	private class ItemView extends TodoItem {
+
+		private final int index;
+
+		ItemView(int index) {
+			super(null, null);
+			this.index = index;
+		}
+
+		@Override
+		public String getContent() {
+			return ColumnarTodoList.this.getContent(index);
+		}
+
+		@Override
+		public void setContent(String content) {
+			ColumnarTodoList.this.setContent(index, content);
+		}
+
+		@Override
+		public LocalDate getDeadline() {
+			return ColumnarTodoList.this.getDeadline(index);
+		}
+
+		@Override
+		public void setDeadline(LocalDate deadline) {
+			ColumnarTodoList.this.setDeadline(index, deadline);
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return completed.get(index);
+		}
+
+		@Override
+		public void setCompleted(boolean isCompleted) {
+			completed.set(index, isCompleted);
+		}
+
+		@Override
+		public long getId() {
+			return ids[index];
+		}
+
+		@Override
+		public void setId(long id) {
+			ids[index] = id;
+		}
+	}
+
+	// ----------------------------------------------------
+	// 文字列プール
+	// ----------------------------------------------------
+
+	/**
+	 * 同じ内容の文字列を1つにまとめて保持するプールです。
+	 * 参照数を数え、どの項目からも使われなくなった文字列は解放してIDを再利用します。
+	 * 検索用のハッシュ表はIDだけを格納するオープンアドレス法で、項目ごとのオブジェクトを作りません。
+	 */
+	private static class StringPool {
+
+		/** 空きを表すハッシュ表の値 */
+		private static final int EMPTY = -1;
+
+		/** IDから文字列への対応 */
+		private final List<String> strings = new ArrayList<>();
+
+		/** IDごとの参照数 */
+		private int[] refCounts = new int[16];
+
+		/** 再利用できるIDの一覧 */
+		private int[] freeIds = new int[16];
+
+		/** 再利用できるIDの件数 */
+		private int freeCount;
+
+		/** 文字列のハッシュ値からIDを探すハッシュ表（線形探索） */
+		private int[] table = newTable(32);
+
+		/** ハッシュ表に登録されている件数 */
+		private int tableCount;
+
+		String get(int id) {
+			return id == NO_CONTENT ? null : strings.get(id);
+		}
+
+		/**
+		 * 文字列をプールに登録し、参照数を1増やします。
+		 * @return 文字列のID（nullの場合はNO_CONTENT）
+		 */
+		int intern(String value) {
+			if (value == null) {
+				return NO_CONTENT;
+			}
+			int slot = find(value);
+			int id = table[slot];
+			if (id == EMPTY) {
+				id = freeCount > 0 ? freeIds[--freeCount] : strings.size();
+				if (id == strings.size()) {
+					strings.add(value);
+				} else {
+					strings.set(id, value);
+				}
+				if (id >= refCounts.length) {
+					refCounts = Arrays.copyOf(refCounts, Math.max(id + 1, refCounts.length * 2));
+				}
+				table[slot] = id;
+				if (++tableCount * 2 > table.length) {
+					rehash(table.length * 2);
+				}
+			}
+			refCounts[id]++;
+			return id;
+		}
+
+		/**
+		 * 参照数を1減らし、0になった文字列を解放します。
+		 */
+		void release(int id) {
+			if (id == NO_CONTENT || --refCounts[id] > 0) {
+				return;
+			}
+			removeFromTable(strings.get(id));
+			strings.set(id, null);
+			if (freeCount == freeIds.length) {
+				freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+			}
+			freeIds[freeCount++] = id;
+		}
+
+		/**
+		 * プール自体の管理に使っているバイト数の概算を返します（文字列自体は除きます）。
+		 */
+		long overheadBytes() {
+			return (long) table.length * Integer.BYTES + (long) refCounts.length * Integer.BYTES
+					+ (long) freeIds.length * Integer.BYTES + (long) strings.size() * Integer.BYTES;
+		}
+
+		/**
+		 * 文字列が格納されている、または格納すべきハッシュ表の位置を返します。
+		 */
+		private int find(String value) {
+			int mask = table.length - 1;
+			int slot = mix(value.hashCode()) & mask;
+			while (table[slot] != EMPTY && !strings.get(table[slot]).equals(value)) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * ハッシュ表から文字列を取り除き、後続の要素を詰め直します（墓標を使わない削除）。
+		 */
+		private void removeFromTable(String value) {
+			int mask = table.length - 1;
+			int slot = find(value);
+			if (table[slot] == EMPTY) {
+				return;
+			}
+			table[slot] = EMPTY;
+			tableCount--;
+			for (int next = (slot + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+				int id = table[next];
+				table[next] = EMPTY;
+				table[find(strings.get(id))] = id;
+			}
+		}
+
+		private void rehash(int capacity) {
+			int[] old = table;
+			table = newTable(capacity);
+			for (int id : old) {
+				if (id != EMPTY) {
+					table[find(strings.get(id))] = id;
+				}
+			}
+		}
+
+		private static int[] newTable(int capacity) {
+			int[] table = new int[capacity];
+			Arrays.fill(table, EMPTY);
+			return table;
+		}
+
+		private static int mix(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+	}
+}
@@ -0,0 +1,673 @@
+/**
+ * 複数のスレッドから同時に使えるTodoListManagerです。
+ *
+ * <ul>
+ * <li>項目は「追加専用のセグメント配列」に格納し、読み取りはロックなしで行います。</li>
+ * <li>格納した項目は書き換えず、完了・編集のたびに新しいTodoItemに差し替えます（コピーオンライト）。
+ *     そのため読み取り側が受け取った項目が途中で変わることはありません。</li>
+ * <li>完了・編集は項目の番号ごとに分けたロック（ロックストライピング）で排他し、
+ *     別の項目への変更は並行して進みます。追加は追加専用のロックで順番を決めます。</li>
+ * <li>索引やジャーナルへの通知は、記録の順番を保つために通知用のロック1つで直列化します。</li>
+ * <li>getTodoItems()は変更のない間は同じ不変のスナップショットを返し、変更があった時だけ作り直します。</li>
+ * <li>元に戻す・やり直すの履歴はすべてのスレッドで共有し、undo・redoの実行中は他の変更をすべて止めます。</li>
+ * </ul>
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentTodoListManager extends TodoListManager {
+
+	//フィールド
+	/** 完了・編集用のロックの数（2のべき乗） */
+	private static final int STRIPES = 64;
+
+	/** 完了・編集用のロック（項目の番号で振り分ける） */
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+	/** 追加用のロック */
+	private final ReentrantLock appendLock = new ReentrantLock();
+
+	/** リスナーへの通知と索引の参照を直列化するロック */
+	private final ReentrantLock notifyLock = new ReentrantLock();
+
+	/** 項目を格納するセグメント配列 */
+	private volatile SegmentedStore store;
+
+	/** 変更のたびに増える版番号（スナップショットの再利用判定に使用） */
+	private final AtomicLong version = new AtomicLong();
+
+	/** 直近に作ったスナップショット */
+	private volatile Snapshot snapshot = new Snapshot(-1, Collections.emptyList());
+
+	/**
+	 * ConcurrentTodoListManagerを初期化するコンストラクタです。
+	 */
+	public ConcurrentTodoListManager() {
+		super(StorageMode.OBJECT);
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		store = new SegmentedStore();
+		super.setTodoItems(store);
+	}
+
+	// ----------------------------------------------------
+	// 変更操作
+	// ----------------------------------------------------
+
+	/**
+	 * ToDo項目をリストに追加します。渡された項目のコピーを格納します。
+	 * @param item 追加するTodoItemオブジェクト
+	 */
+	@Override
+	public void addItem(TodoItem item) {
+		addItemAndGetIndex(item);
+	}
+
+	/**
+	 * 他のファイルから読み込んだ項目を追加します。IDを使うかの判断と追加の間に他の追加が割り込まないように、
+	 * 追加用のロックの下で行います。
+	 * @param item 追加するTodoItemオブジェクト
+	 */
+	@Override
+	public void addImportedItem(TodoItem item) {
+		appendLock.lock();
+		try {
+			super.addImportedItem(item);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * ToDo項目をリストに追加し、追加した位置を返します。渡された項目のコピーを格納します。
+	 * @param item 追加するTodoItemオブジェクト
+	 * @return 追加した項目の番号（1始まり）
+	 */
+	public int addItemAndGetIndex(TodoItem item) {
+		TodoItem stored = copyOf(item);
+		appendLock.lock();
+		try {
+			// IDの索引は追加中にしか変わらないので、追加用のロックの下で重複を確認できる
+			assignId(stored);
+			int index = store.append(stored);
+
+			notifyLock.lock();
+			try {
+				// 通知と同じロックの下で公開するので、スナップショットには通知済みの項目だけが入る
+				store.commit(index);
+				version.incrementAndGet();
+				fireItemAdded(index, stored);
+			} finally {
+				notifyLock.unlock();
+			}
+			return index;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * ユーザーが指定した番号のToDo項目を「完了」状態にします。
+	 * @param index 完了にしたい項目の番号（1始まり）
+	 */
+	@Override
+	public void completeItem(int index) {
+		ReentrantLock lock = stripeFor(index);
+		lock.lock();
+		try {
+			TodoItem current = itemAt(index);
+			if (current.isCompleted()) {
+				return;
+			}
+			TodoItem updated = copyOf(current);
+			updated.setCompleted(true);
+			replace(index, updated);
+
+			notifyLock.lock();
+			try {
+				fireItemCompleted(index, updated);
+			} finally {
+				notifyLock.unlock();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * ユーザーが指定した番号の完了済みのToDo項目を、未完了に戻します。
+	 * @param index 未完了に戻したい項目の番号（1始まり）
+	 */
+	@Override
+	public void reopenItem(int index) {
+		ReentrantLock lock = stripeFor(index);
+		lock.lock();
+		try {
+			TodoItem current = itemAt(index);
+			if (!current.isCompleted()) {
+				return;
+			}
+			TodoItem updated = copyOf(current);
+			updated.setCompleted(false);
+			replace(index, updated);
+
+			notifyLock.lock();
+			try {
+				fireItemReopened(index, updated);
+			} finally {
+				notifyLock.unlock();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * リストの末尾の項目を削除します（追加を元に戻す操作で使用）。
+	 * 追加と末尾の項目の変更を止めてから削除するので、削除中に末尾が入れ替わることはありません。
+	 * @return 削除した項目
+	 * @throws IndexOutOfBoundsException リストが空の場合
+	 */
+	@Override
+	public TodoItem removeLastItem() {
+		appendLock.lock();
+		try {
+			int index = store.size();
+			if (index == 0) {
+				throw new IndexOutOfBoundsException("削除できる項目がありません。");
+			}
+			ReentrantLock lock = stripeFor(index);
+			lock.lock();
+			try {
+				notifyLock.lock();
+				try {
+					TodoItem removed = store.removeLast();
+					version.incrementAndGet();
+					fireItemRemoved(index, removed);
+					return removed;
+				} finally {
+					notifyLock.unlock();
+				}
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * 元に戻す・やり直すための履歴の記録を始めます。通知の途中で記録が始まらないように、通知用のロックの下で登録します。
+	 * @param maxDepth 保持する手順の数
+	 * @param maxBytes 記録の大きさの上限（バイト数の概算）
+	 */
+	@Override
+	public void enableHistory(int maxDepth, long maxBytes) {
+		notifyLock.lock();
+		try {
+			super.enableHistory(maxDepth, maxBytes);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	/**
+	 * 直前の操作を元に戻します。戻す変更は複数になることがあるので、実行中は他の変更をすべて止めます。
+	 * @return 元に戻した変更の件数（元に戻せる操作が無い場合は-1）
+	 */
+	@Override
+	public int undo() {
+		lockAll();
+		try {
+			return super.undo();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * 直前に元に戻した操作をやり直します。実行中は他の変更をすべて止めます。
+	 * @return やり直した変更の件数（やり直せる操作が無い場合は-1）
+	 */
+	@Override
+	public int redo() {
+		lockAll();
+		try {
+			return super.redo();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * ユーザーが指定した番号のToDo項目の内容を編集します。
+	 * @param index 編集したい項目の番号（1始まり）
+	 * @param newContent 新しい内容
+	 */
+	@Override
+	public void editContent(int index, String newContent) {
+		ReentrantLock lock = stripeFor(index);
+		lock.lock();
+		try {
+			TodoItem current = itemAt(index);
+			TodoItem updated = copyOf(current);
+			updated.setContent(newContent);
+			replace(index, updated);
+
+			notifyLock.lock();
+			try {
+				fireContentEdited(index, updated, current.getContent());
+			} finally {
+				notifyLock.unlock();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * ユーザーが指定した番号のToDo項目の期限を編集します。
+	 * @param index 編集したい項目の番号（1始まり）
+	 * @param newDeadline 新しい期限
+	 */
+	@Override
+	public void editDeadline(int index, LocalDate newDeadline) {
+		ReentrantLock lock = stripeFor(index);
+		lock.lock();
+		try {
+			TodoItem current = itemAt(index);
+			TodoItem updated = copyOf(current);
+			updated.setDeadline(newDeadline);
+			replace(index, updated);
+
+			notifyLock.lock();
+			try {
+				fireDeadlineEdited(index, updated, current.getDeadline());
+			} finally {
+				notifyLock.unlock();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * リスト全体を置き換えます。実行中は他の変更をすべて止めます。
+	 * @param todoItems 新しいリスト
+	 */
+	@Override
+	public void setTodoItems(List<TodoItem> todoItems) {
+		lockAll();
+		try {
+			SegmentedStore replacement = new SegmentedStore();
+			for (TodoItem item : todoItems) {
+				replacement.commit(replacement.append(copyOf(item)));
+			}
+			store = replacement;
+			version.incrementAndGet();
+			super.setTodoItems(replacement);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	// ----------------------------------------------------
+	// 読み取り操作
+	// ----------------------------------------------------
+
+	/**
+	 * 現在のリストの不変なスナップショットを取得します。
+	 * 前回から変更が無ければ同じスナップショットを返すので、繰り返しの呼び出しは安価です。
+	 * 変更があった場合も項目への参照をコピーするだけで、項目自体はコピーしません。
+	 * @return 変更できないTodoItemのリスト
+	 */
+	@Override
+	public List<TodoItem> getTodoItems() {
+		Snapshot current = snapshot;
+		long currentVersion = version.get();
+		if (current.version == currentVersion) {
+			return current.items;
+		}
+
+		// 通知が終わった項目の件数を、通知と同じロックの下で読む
+		int size;
+		SegmentedStore source;
+		notifyLock.lock();
+		try {
+			source = store;
+			size = source.size();
+		} finally {
+			notifyLock.unlock();
+		}
+
+		TodoItem[] copy = new TodoItem[size];
+		for (int i = 0; i < size; i++) {
+			copy[i] = source.get(i);
+		}
+		List<TodoItem> items = Collections.unmodifiableList(Arrays.asList(copy));
+		snapshot = new Snapshot(currentVersion, items);
+		return items;
+	}
+
+	/**
+	 * 指定した番号の項目をロックなしで取得します。
+	 * @param index 項目の番号（1始まり）
+	 * @return 項目（変更されることはありません）
+	 */
+	public TodoItem getItem(int index) {
+		return itemAt(index);
+	}
+
+	/**
+	 * 現在の項目の件数をロックなしで取得します。
+	 * @return 項目の件数
+	 */
+	public int size() {
+		return store.size();
+	}
+
+	/**
+	 * 指定した範囲の項目をロックなしで取得します。
+	 * getTodoItems()と違いリスト全体のスナップショットを作らないので、変更が続いている間のページ単位の読み取りに使います。
+	 * @param fromIndex 先頭の項目の番号（1始まり）
+	 * @param limit 取得する最大件数
+	 * @return 変更できないTodoItemのリスト（範囲外の部分は含みません）
+	 */
+	public List<TodoItem> getItems(int fromIndex, int limit) {
+		SegmentedStore current = store;
+		int from = Math.max(0, fromIndex - 1);
+		int to = (int) Math.min(current.size(), (long) from + Math.max(0, limit));
+		if (from >= to) {
+			return Collections.emptyList();
+		}
+		TodoItem[] copy = new TodoItem[to - from];
+		for (int i = from; i < to; i++) {
+			copy[i - from] = current.get(i);
+		}
+		return Collections.unmodifiableList(Arrays.asList(copy));
+	}
+
+	@Override
+	public int indexOf(long id) {
+		notifyLock.lock();
+		try {
+			return super.indexOf(id);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public TodoItem getItemById(long id) {
+		return itemAt(indexOf(id));
+	}
+
+	@Override
+	public List<Integer> findOverdue(LocalDate today) {
+		notifyLock.lock();
+		try {
+			return super.findOverdue(today);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public List<Integer> findDueBefore(LocalDate date) {
+		notifyLock.lock();
+		try {
+			return super.findDueBefore(date);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public List<Integer> findDueBetween(LocalDate from, LocalDate to) {
+		notifyLock.lock();
+		try {
+			return super.findDueBetween(from, to);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public int displayView(TodoViews.View view, LocalDate today, int page) {
+		notifyLock.lock();
+		try {
+			return super.displayView(view, today, page);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public int countView(TodoViews.View view, LocalDate today) {
+		notifyLock.lock();
+		try {
+			return super.countView(view, today);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public TodoStats.Summary getStats(LocalDate today) {
+		notifyLock.lock();
+		try {
+			return super.getStats(today);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public int[] weeklyLoad(LocalDate from, int weeks) {
+		notifyLock.lock();
+		try {
+			return super.weeklyLoad(from, weeks);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public void displayStats(LocalDate today, int weeks) {
+		notifyLock.lock();
+		try {
+			super.displayStats(today, weeks);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	public List<Integer> search(String query, int limit) {
+		notifyLock.lock();
+		try {
+			return super.search(query, limit);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	/**
+	 * 一括操作の開始を、他の変更の通知と同じロックの下で通知します。
+	 * 一括操作の全体ではロックを保持しないので（項目ごとのロックとの順番が逆になるため）、
+	 * 同時に行われた別のスレッドの変更もジャーナルでは同じまとまりに入ることがあります。
+	 */
+	@Override
+	protected void fireBulkStarted(int count) {
+		notifyLock.lock();
+		try {
+			super.fireBulkStarted(count);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	@Override
+	protected void fireBulkFinished(int count) {
+		notifyLock.lock();
+		try {
+			super.fireBulkFinished(count);
+		} finally {
+			notifyLock.unlock();
+		}
+	}
+
+	// ----------------------------------------------------
+	// 補助メソッド
+	// ----------------------------------------------------
+
+	private ReentrantLock stripeFor(int index) {
+		return stripes[index & (STRIPES - 1)];
+	}
+
+	/**
+	 * 追加・完了・編集・通知のロックをすべて取得し、他の変更を止めます（他のロックと同じ順番で取得します）。
+	 */
+	private void lockAll() {
+		appendLock.lock();
+		for (ReentrantLock stripe : stripes) {
+			stripe.lock();
+		}
+		notifyLock.lock();
+	}
+
+	private void unlockAll() {
+		notifyLock.unlock();
+		for (int i = STRIPES - 1; i >= 0; i--) {
+			stripes[i].unlock();
+		}
+		appendLock.unlock();
+	}
+
+	/**
+	 * 番号の範囲を確認して項目を取得します。
+	 */
+	private TodoItem itemAt(int index) {
+		SegmentedStore current = store;
+		if (index < 1 || index > current.size()) {
+			throw new IndexOutOfBoundsException("項目番号 " + index + " は存在しません。");
+		}
+		return current.get(index - 1);
+	}
+
+	private void replace(int index, TodoItem updated) {
+		store.set(index - 1, updated);
+		version.incrementAndGet();
+	}
+
+	private static TodoItem copyOf(TodoItem item) {
+		TodoItem copy = new TodoItem(item.getContent(), item.getDeadline());
+		copy.setCompleted(item.isCompleted());
+		copy.setId(item.getId());
+		return copy;
+	}
+
+	/**
+	 * 版番号とその時点のリストの組です。
+	 */
+	private static class Snapshot {
+
+		final long version;
+		final List<TodoItem> items;
+
+		Snapshot(long version, List<TodoItem> items) {
+			this.version = version;
+			this.items = items;
+		}
+	}
+
+	/**
+	 * 一定の大きさのセグメントを継ぎ足していく、追加専用のリストです（元に戻すための末尾の削除だけは行えます）。
+	 * 既存のセグメントは移動しないので、追加中でもロックなしで読み取れます。
+	 * 追加と末尾の削除はappendLockの下、差し替えは番号ごとのロックの下で行う前提です。
+	 */
+	private static class SegmentedStore extends AbstractList<TodoItem> implements RandomAccess {
+
+		/** 1セグメントの要素数のビット数 */
+		private static final int SEGMENT_BITS = 14;
+
+		/** 1セグメントの要素数 */
+		private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+		/** セグメントの一覧（追加時に作り直して公開する） */
+		private volatile List<AtomicReferenceArray<TodoItem>> segments = new ArrayList<>();
+
+		/** 格納済みの件数 */
+		private int appended;
+
+		/** 公開済み（通知済み）の件数 */
+		private volatile int committed;
+
+		/**
+		 * 末尾に項目を格納します（まだ公開しません）。
+		 * @return 格納した項目の番号（1始まり）
+		 */
+		int append(TodoItem item) {
+			int position = appended;
+			int segment = position >>> SEGMENT_BITS;
+			if (segment == segments.size()) {
+				List<AtomicReferenceArray<TodoItem>> grown = new ArrayList<>(segments);
+				grown.add(new AtomicReferenceArray<>(SEGMENT_SIZE));
+				segments = grown;
+			}
+			segments.get(segment).set(position & (SEGMENT_SIZE - 1), item);
+			appended = position + 1;
+			return appended;
+		}
+
+		/**
+		 * 末尾の項目を取り除きます（公開済みの項目がすべてである前提です）。
+		 * 要素は次の追加で上書きされるまで残すので、直前に件数を読んだ読み取り側は削除前の項目を受け取ります。
+		 * @return 取り除いた項目
+		 */
+		TodoItem removeLast() {
+			int position = appended - 1;
+			TodoItem item = segments.get(position >>> SEGMENT_BITS).get(position & (SEGMENT_SIZE - 1));
+			appended = position;
+			committed = position;
+			return item;
+		}
+
+		/**
+		 * 指定した番号までの項目を公開します。
+		 * @param index 公開する最後の項目の番号（1始まり）
+		 */
+		void commit(int index) {
+			committed = index;
+		}
+
+		@Override
+		public int size() {
+			return committed;
+		}
+
+		@Override
+		public TodoItem get(int position) {
+			if (position < 0 || position >= committed) {
+				throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + committed);
+			}
+			return segments.get(position >>> SEGMENT_BITS).get(position & (SEGMENT_SIZE - 1));
+		}
+
+		@Override
+		public TodoItem set(int position, TodoItem item) {
+			return segments.get(position >>> SEGMENT_BITS).getAndSet(position & (SEGMENT_SIZE - 1), item);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+/**
+ * ToDo項目の内容を全文検索するための転置索引クラスです。
+ * 日本語などのCJK文字は1文字と隣り合う2文字（bigram）、英数字は単語（小文字化）を索引語にします。
+ * TodoListListenerとしてTodoListManagerに登録し、追加と内容の編集に合わせて差分だけ更新します。
+ */
+package com.example.todolist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+public class ContentSearchIndex implements TodoListListener {
+
+	//フィールド
+	/** BM25の語の出現頻度に関するパラメータ */
+	private static final double K1 = 1.2;
+
+	/** BM25の文書長による補正の強さ */
+	private static final double B = 0.75;
+
+	/** 索引語から、その語を含む項目の番号（1始まり、昇順）への対応 */
+	private final Map<String, PostingList> postings = new HashMap<>();
+
+	/** 項目ごとの索引語の数（添字は番号-1） */
+	private int[] documentLengths = new int[16];
+
+	/** 索引に登録した項目の件数 */
+	private int documentCount;
+
+	/** 全項目の索引語の数の合計（平均文書長の計算に使用） */
+	private long totalLength;
+
+	/** 検索結果の絞り込みで内容を確認するためのリスト */
+	private List<TodoItem> items = new ArrayList<>();
+
+	// ----------------------------------------------------
+	// TodoListManagerの変更への追従
+	// ----------------------------------------------------
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		List<String> tokens = tokenize(item.getContent());
+		ensureCapacity(index);
+		documentLengths[index - 1] = tokens.size();
+		documentCount = Math.max(documentCount, index);
+		totalLength += tokens.size();
+
+		// 新しい項目の番号は常に最大なので、各索引語の末尾に追加するだけでよい
+		for (String token : new LinkedHashSet<>(tokens)) {
+			postings.computeIfAbsent(token, t -> new PostingList()).append(index);
+		}
+	}
+
+	@Override
+	public void contentEdited(int index, TodoItem item, String oldContent) {
+		List<String> oldTokens = tokenize(oldContent);
+		List<String> newTokens = tokenize(item.getContent());
+		Set<String> oldSet = new LinkedHashSet<>(oldTokens);
+		Set<String> newSet = new LinkedHashSet<>(newTokens);
+
+		// 変わった索引語だけを差し替える
+		for (String token : oldSet) {
+			if (!newSet.contains(token)) {
+				PostingList list = postings.get(token);
+				if (list != null && list.remove(index) && list.size == 0) {
+					postings.remove(token);
+				}
+			}
+		}
+		for (String token : newSet) {
+			if (!oldSet.contains(token)) {
+				postings.computeIfAbsent(token, t -> new PostingList()).insert(index);
+			}
+		}
+
+		totalLength += newTokens.size() - documentLengths[index - 1];
+		documentLengths[index - 1] = newTokens.size();
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		// 削除されるのは常に末尾の項目なので、各索引語の末尾から取り除くことになる
+		for (String token : new LinkedHashSet<>(tokenize(item.getContent()))) {
+			PostingList list = postings.get(token);
+			if (list != null && list.remove(index) && list.size == 0) {
+				postings.remove(token);
+			}
+		}
+		totalLength -= documentLengths[index - 1];
+		documentLengths[index - 1] = 0;
+		documentCount = index - 1;
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		postings.clear();
+		documentLengths = new int[Math.max(16, items.size())];
+		documentCount = 0;
+		totalLength = 0;
+		this.items = items;
+		for (int i = 0; i < items.size(); i++) {
+			itemAdded(i + 1, items.get(i));
+		}
+	}
+
+	private void ensureCapacity(int index) {
+		if (documentLengths.length < index) {
+			documentLengths = Arrays.copyOf(documentLengths, Math.max(index, documentLengths.length * 2));
+		}
+	}
+
+	// ----------------------------------------------------
+	// 検索
+	// ----------------------------------------------------
+
+	/**
+	 * キーワードを含む項目を検索し、関連度の高い順に番号を取得します。
+	 * 空白で区切った複数のキーワードはすべてを含む項目（AND検索）を対象にします。
+	 * @param query 検索キーワード
+	 * @param limit 取得する最大件数
+	 * @return 項目の番号（1始まり）のリスト（関連度の高い順）
+	 */
+	public List<Integer> search(String query, int limit) {
+		List<Integer> results = new ArrayList<>();
+		Set<String> tokens = new LinkedHashSet<>(tokenize(query));
+		if (tokens.isEmpty() || limit <= 0) {
+			return results;
+		}
+
+		// 索引語ごとの項目リストを短い順に並べ、短いものから積集合をとる
+		List<PostingList> lists = new ArrayList<>();
+		for (String token : tokens) {
+			PostingList list = postings.get(token);
+			if (list == null) {
+				return results;
+			}
+			lists.add(list);
+		}
+		lists.sort((a, b) -> Integer.compare(a.size, b.size));
+		int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+		int candidateCount = candidates.length;
+		for (int i = 1; i < lists.size() && candidateCount > 0; i++) {
+			candidateCount = lists.get(i).retainAll(candidates, candidateCount);
+		}
+
+		// BM25（各索引語の出現回数は1回とみなす）で採点する
+		double idfSum = 0;
+		for (PostingList list : lists) {
+			idfSum += Math.log(1 + (documentCount - list.size + 0.5) / (list.size + 0.5));
+		}
+		double averageLength = documentCount == 0 ? 1 : Math.max(1, (double) totalLength / documentCount);
+		List<ScoredIndex> scored = new ArrayList<>(candidateCount);
+		for (int i = 0; i < candidateCount; i++) {
+			int index = candidates[i];
+			double norm = 1 - B + B * documentLengths[index - 1] / averageLength;
+			scored.add(new ScoredIndex(index, idfSum * (K1 + 1) / (1 + K1 * norm)));
+		}
+
+		// スコアの高い順に取り出し、キーワードがそのままの並びで含まれる項目だけを採用する
+		String[] keywords = query.toLowerCase(Locale.ROOT).trim().split("\\s+");
+		PriorityQueue<ScoredIndex> queue = new PriorityQueue<>(scored);
+		while (!queue.isEmpty() && results.size() < limit) {
+			int index = queue.poll().index;
+			if (containsAll(items.get(index - 1).getContent(), keywords)) {
+				results.add(index);
+			}
+		}
+		return results;
+	}
+
+	private static boolean containsAll(String content, String[] keywords) {
+		String lower = content.toLowerCase(Locale.ROOT);
+		for (String keyword : keywords) {
+			if (!lower.contains(keyword)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 採点済みの項目番号です（スコアの高い順、同点なら番号の小さい順に並びます）。
+	 */
+	private static class ScoredIndex implements Comparable<ScoredIndex> {
+
+		final int index;
+		final double score;
+
+		ScoredIndex(int index, double score) {
+			this.index = index;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(ScoredIndex other) {
+			int byScore = Double.compare(other.score, score);
+			return byScore != 0 ? byScore : Integer.compare(index, other.index);
+		}
+	}
+
+	// ----------------------------------------------------
+	// 索引語への分割
+	// ----------------------------------------------------
+
+	/**
+	 * 文字列を索引語に分割します。
+	 * CJK文字の連続は1文字ずつと隣り合う2文字ずつ、英数字の連続は小文字化した1単語にします。
+	 * @param text 分割する文字列
+	 * @return 索引語のリスト（重複を含む）
+	 */
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null) {
+			return tokens;
+		}
+
+		int wordStart = -1;
+		int previousCjk = -1;
+		for (int i = 0; i < text.length();) {
+			int codePoint = text.codePointAt(i);
+			int next = i + Character.charCount(codePoint);
+
+			if (isCjk(codePoint)) {
+				wordStart = flushWord(text, wordStart, i, tokens);
+				tokens.add(text.substring(i, next));
+				if (previousCjk >= 0) {
+					tokens.add(text.substring(previousCjk, next));
+				}
+				previousCjk = i;
+			} else {
+				previousCjk = -1;
+				if (Character.isLetterOrDigit(codePoint)) {
+					if (wordStart < 0) {
+						wordStart = i;
+					}
+				} else {
+					wordStart = flushWord(text, wordStart, i, tokens);
+				}
+			}
+			i = next;
+		}
+		flushWord(text, wordStart, text.length(), tokens);
+		return tokens;
+	}
+
+	private static int flushWord(String text, int wordStart, int end, List<String> tokens) {
+		if (wordStart >= 0) {
+			tokens.add(text.substring(wordStart, end).toLowerCase(Locale.ROOT));
+		}
+		return -1;
+	}
+
+	private static boolean isCjk(int codePoint) {
+		Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+		return script == Character.UnicodeScript.HAN
+				|| script == Character.UnicodeScript.HIRAGANA
+				|| script == Character.UnicodeScript.KATAKANA
+				|| script == Character.UnicodeScript.HANGUL
+				|| codePoint == 'ー';
+	}
+
+	// ----------------------------------------------------
+	// 項目番号のリスト
+	// ----------------------------------------------------
+
+	/**
+	 * 1つの索引語を含む項目の番号を昇順に保持する、int配列ベースのリストです。
+	 */
+	private static class PostingList {
+
+		int[] ids = new int[4];
+		int size;
+
+		void append(int id) {
+			if (size > 0 && ids[size - 1] == id) {
+				return;
+			}
+			grow();
+			ids[size++] = id;
+		}
+
+		void insert(int id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if (position >= 0) {
+				return;
+			}
+			position = -position - 1;
+			grow();
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			ids[position] = id;
+			size++;
+		}
+
+		boolean remove(int id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if (position < 0) {
+				return false;
+			}
+			System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+			size--;
+			return true;
+		}
+
+		/**
+		 * 候補の配列のうち、このリストにも含まれる番号だけを前詰めで残します。
+		 * @return 残った候補の件数
+		 */
+		int retainAll(int[] candidates, int count) {
+			int kept = 0;
+			int from = 0;
+			for (int i = 0; i < count; i++) {
+				int position = Arrays.binarySearch(ids, from, size, candidates[i]);
+				if (position >= 0) {
+					candidates[kept++] = candidates[i];
+					from = position + 1;
+				} else {
+					from = -position - 1;
+				}
+			}
+			return kept;
+		}
+
+		private void grow() {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+		}
+	}
+}
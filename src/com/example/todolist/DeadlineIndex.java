@@ -0,0 +1,135 @@
+/**
+ * 未完了のToDo項目を期限順に並べて保持する索引クラスです。
+ * 「期限切れ」「指定日まで」「期間指定」の問い合わせに、リスト全体を走査せずにO(log n + k)で答えます。
+ * TodoListListenerとしてTodoListManagerに登録し、追加・完了・期限の編集に追従させます。
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+public class DeadlineIndex implements TodoListListener {
+
+	//フィールド
+	/**
+	 * 索引のキーの集合です。
+	 * キーは上位32ビットが期限（1970-01-01からの日数）、下位32ビットが項目の番号（1始まり）で、
+	 * 期限順、同じ期限の中では番号順に並びます。
+	 */
+	private final TreeSet<Long> keys = new TreeSet<>();
+
+	/**
+	 * 期限と項目の番号から索引のキーを作ります。
+	 * @param epochDay 期限（1970-01-01からの日数）
+	 * @param index 項目の番号（1始まり）
+	 * @return 索引のキー
+	 */
+	private static long key(long epochDay, int index) {
+		return (epochDay << 32) | (index & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 索引のキーから項目の番号を取り出します。
+	 */
+	private static int indexOf(long key) {
+		return (int) key;
+	}
+
+	// ----------------------------------------------------
+	// TodoListManagerの変更への追従
+	// ----------------------------------------------------
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		if (!item.isCompleted() && item.getDeadline() != null) {
+			keys.add(key(item.getDeadline().toEpochDay(), index));
+		}
+	}
+
+	@Override
+	public void itemCompleted(int index, TodoItem item) {
+		// 完了した項目は期限の問い合わせの対象外にする
+		if (item.getDeadline() != null) {
+			keys.remove(key(item.getDeadline().toEpochDay(), index));
+		}
+	}
+
+	@Override
+	public void itemReopened(int index, TodoItem item) {
+		itemAdded(index, item);
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		if (!item.isCompleted() && item.getDeadline() != null) {
+			keys.remove(key(item.getDeadline().toEpochDay(), index));
+		}
+	}
+
+	@Override
+	public void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		if (item.isCompleted()) {
+			return;
+		}
+		if (oldDeadline != null) {
+			keys.remove(key(oldDeadline.toEpochDay(), index));
+		}
+		if (item.getDeadline() != null) {
+			keys.add(key(item.getDeadline().toEpochDay(), index));
+		}
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		keys.clear();
+		for (int i = 0; i < items.size(); i++) {
+			itemAdded(i + 1, items.get(i));
+		}
+	}
+
+	// ----------------------------------------------------
+	// 問い合わせ
+	// ----------------------------------------------------
+
+	/**
+	 * 期限切れ（期限が基準日より前）の未完了項目の番号を、期限順に取得します。
+	 * @param today 基準日
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> findOverdue(LocalDate today) {
+		return toIndexes(keys.headSet(key(today.toEpochDay(), 0), false));
+	}
+
+	/**
+	 * 指定日まで（指定日を含む）に期限を迎える未完了項目の番号を、期限順に取得します。
+	 * @param date 指定日
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> findDueBefore(LocalDate date) {
+		return toIndexes(keys.headSet(key(date.toEpochDay() + 1, 0), false));
+	}
+
+	/**
+	 * 期限が指定した期間（開始日・終了日を含む）にある未完了項目の番号を、期限順に取得します。
+	 * @param from 開始日
+	 * @param to 終了日
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> findDueBetween(LocalDate from, LocalDate to) {
+		if (from.isAfter(to)) {
+			return new ArrayList<>();
+		}
+		return toIndexes(keys.subSet(key(from.toEpochDay(), 0), true, key(to.toEpochDay() + 1, 0), false));
+	}
+
+	private static List<Integer> toIndexes(NavigableSet<Long> range) {
+		List<Integer> indexes = new ArrayList<>(range.size());
+		for (long key : range) {
+			indexes.add(indexOf(key));
+		}
+		return indexes;
+	}
+}
@@ -1,16 +1,30 @@
 /**
  * ファイルのI/O処理を管理するクラスです。
+ * 起動時はスナップショット（todo_list.txt）を読み込んだ後、ジャーナルの記録を上から適用して復元します。
+ * 起動後の変更はジャーナルに1件ずつ追記し、ジャーナルが大きくなったらスナップショットを書き直します。
+ * スナップショットは、ファイル名の拡張子が .todb の場合はバイナリ形式、.parts の場合は期限の月ごとに分けたディレクトリ
+ * （PartitionedTodoStore）、それ以外はテキスト形式で読み書きします。
+ * アーカイブを有効にした場合は、読み込み時に古い完了済みの項目をアーカイブ（TodoArchive）へ移し、スナップショットから取り除きます。
+ * 遅延読み込みを有効にした場合は、テキスト形式のスナップショットを全て解析せずにLazyTodoListとして開きます（アーカイブへの移動は行いません）。
+ * 外部の変更の監視（TodoFileWatcher）を有効にした場合は、他のツールによる追記を取り込み、追記以外の書き換えを上書きしないようにします。
  */
 package com.example.todolist;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class FileHandler {
 
@@ -18,90 +32,775 @@ public class FileHandler {
 	/** ToDoリストを保存するファイルパス */
 	private static final String FILENAME = "C:/ForDevelop/pleiades2019/WorkSpace/cli-todo-app-java/todo_list.txt";
 
-	/**
-	 * ToDoリスト全体をファイルに保存します。
-	 * @param listToSave 保存対象のTodoItemリスト
-	 */
-	public void saveList(List<TodoItem> listToSave) {
-		try(PrintWriter pw = new PrintWriter(new FileWriter(FILENAME))){
+	/** ジャーナルファイル名の接尾辞 */
+	static final String JOURNAL_SUFFIX = ".journal";
 
-			//リストの項目を1つずつループで処理する
-			for(TodoItem item : listToSave) {
+	/** アーカイブのディレクトリ名の接尾辞 */
+	private static final String ARCHIVE_SUFFIX = ".archive";
 
-				String line = item.toFileString();
+	/** 外部の書き換えと競合した場合の保存先の接尾辞 */
+	private static final String CONFLICT_SUFFIX = ".conflict";
 
-				pw.println(line);
+	/** 書き出しのために遅延読み込みで開く場合のキャッシュの項目数 */
+	private static final int EXPORT_CACHE_SIZE = 1024;
+
+	/** ジャーナルの記録件数がこの値とリストの件数の大きい方に達したら、スナップショットを書き直す */
+	private static final int MIN_COMPACTION_RECORDS = 1000;
+
+	/** スナップショット（ToDoリスト本体）のパス */
+	private final Path dataPath;
+
+	/** スナップショットをバイナリ形式で読み書きする場合はtrue */
+	private final boolean binary;
+
+	/** 期限の月ごとに分けて保存する場合のストア（それ以外の場合はnull） */
+	private final PartitionedTodoStore partitionStore;
+
+	/** 変更を追記するジャーナル */
+	private final TodoJournal journal;
+
+	/** 古い完了済みの項目を移すアーカイブ */
+	private final TodoArchive archive;
+
+	/** 期限からこの日数が過ぎた完了済みの項目をアーカイブへ移す（負の場合は移さない） */
+	private int archiveAfterDays = -1;
+
+	/** 直近に読み込んだ、または書き込んだスナップショットのCRC32 */
+	private long snapshotCrc;
+
+	/** 直近に読み込んだ、または書き込んだスナップショットの大きさ */
+	private long snapshotSize;
 
+	/** 外部の変更を監視するTodoFileWatcher（未使用の場合はnull） */
+	private TodoFileWatcher watcher;
+
+	/** 外部から追記された項目を取り込んでいる間はtrue（ジャーナルに記録しない） */
+	private boolean mergingExternal;
+
+	/** ジャーナルへの記録を行っているTodoListManager（未接続の場合はnull） */
+	private TodoListManager journaledManager;
+
+	/** スナップショットを並列に読み込むローダー */
+	private final MappedTodoLoader loader = new MappedTodoLoader();
+
+	/** ジャーナルへの記録を行うリスナー */
+	private final TodoListListener journalListener = new JournalListener();
+
+	/** fsyncとスナップショットの書き直しを、記録時ではなくsaveListの呼び出しまで遅らせる場合はtrue */
+	private boolean deferredSync;
+
+	/** 遅延読み込みのキャッシュに保持する項目数（0の場合は遅延読み込みを行わない） */
+	private int lazyCacheSize;
+
+	/** 遅延読み込みで開いたリスト（未使用の場合はnull） */
+	private LazyTodoList lazyList;
+
+	/**
+	 * 既定のファイルパスを使うFileHandlerを初期化するコンストラクタです。
+	 */
+	public FileHandler() {
+		this(FILENAME);
+	}
+
+	/**
+	 * 指定したファイルパスを使うFileHandlerを初期化するコンストラクタです。
+	 * @param filename ToDoリストを保存するファイルパス
+	 */
+	public FileHandler(String filename) {
+		this.dataPath = Paths.get(filename);
+		this.binary = filename.endsWith(BinaryTodoFormat.EXTENSION);
+		this.partitionStore = filename.endsWith(PartitionedTodoStore.EXTENSION)
+				? new PartitionedTodoStore(dataPath, loader) : null;
+		this.journal = new TodoJournal(Paths.get(filename + JOURNAL_SUFFIX));
+		this.archive = new TodoArchive(Paths.get(filename + ARCHIVE_SUFFIX));
+	}
+
+	/**
+	 * ToDoリストを保存します。
+	 * ジャーナルに接続済みの場合、変更はすでに追記されているので未同期分のfsyncだけを行い、
+	 * ジャーナルが大きくなっていればスナップショットを書き直します。
+	 * 接続していない場合は、リスト全体をスナップショットとして書き込みます。
+	 * @param listToSave 保存対象のTodoItemリスト
+	 * @return 保存に成功した場合はtrue
+	 */
+	public boolean saveList(List<TodoItem> listToSave) {
+		long start = System.nanoTime();
+		try {
+			if(journaledManager != null) {
+				journal.sync();
+				if(needsCompaction(listToSave.size())) {
+					compact(listToSave);
+				}
+			}else {
+				writeSnapshot(listToSave);
+				journal.discard();
 			}
+			return true;
 
 		}catch(IOException e) {
 				System.out.println("エラー：ファイルの保存中に問題が発生しました。");
 				e.printStackTrace();
+				return false;
+		}finally {
+			TodoMetrics.get().record(TodoMetrics.Operation.SAVE, start);
 		}
 	}
 
+	/**
+	 * ジャーナルのfsyncとスナップショットの書き直しを、変更の記録時に行うかどうかを設定します。
+	 * trueにすると、変更の記録はジャーナルへの書き込みだけになり、残りはsaveListの呼び出し時にまとめて行います。
+	 * AutoSaverのように別スレッドからsaveListを呼び出す場合に使います。
+	 * @param deferredSync saveListの呼び出しまで遅らせる場合はtrue
+	 */
+	public void setDeferredSync(boolean deferredSync) {
+		this.deferredSync = deferredSync;
+		journal.setAutoSync(!deferredSync);
+	}
+
 	/**
 	 * プリケーション起動時にデータをファイルから読み込みます。
-	 * @param listToSave 保存対象のTodoItemリスト
+	 * テキスト形式のスナップショットはメモリマップして並列に解析し、その後ジャーナルに残っている変更を適用します。
+	 * @return 復元したTodoItemリスト
 	 */
 	public List<TodoItem> loadList(){
 
-		// BufferedReaderクラスのreadLineメソッドを使って1行ずつ読み込む
-		List<TodoItem> loadedList = new ArrayList<>();
+		List<TodoItem> loadedList;
+		long start = System.nanoTime();
+
+		if(lazyCacheSize > 0 && !binary && partitionStore == null && Files.exists(dataPath)) {
+			loadedList = loadLazy();
+			if(loadedList != null) {
+				TodoMetrics.get().record(TodoMetrics.Operation.LOAD, start);
+				return loadedList;
+			}
+		}
+
+		try {
+			// 解析と同時にCRC32を計算し、ジャーナルとの対応確認に使う
+			MappedTodoLoader.Result result = binary ? BinaryTodoFormat.read(dataPath)
+					: partitionStore != null ? partitionStore.load() : loader.load(dataPath);
+			loadedList = result.getItems();
+			snapshotCrc = result.getCrc();
+			snapshotSize = result.getBytesRead();
+			TodoMetrics.get().addBytesRead(result.getBytesRead());
+			TodoMetrics.get().addSkippedRows(result.getSkippedRows());
+
+		}catch(IOException e){
+			// ファイルがない場合やI/Oエラー時の処理（空のリストを返すのが目的）
+            System.out.println("警告: ToDoリストファイルが見つからないか、読み込みに失敗しました。新規リストを開始します。");
+            loadedList = new ArrayList<>();
+            snapshotCrc = 0;
+            snapshotSize = 0;
+		}
+
+		// IDの導入前に保存されたファイルの項目には、ここでIDを割り当てる（次回の保存から記録される）
+		// 同じスナップショットからは常に同じIDになるので、ジャーナルのIDによる記録もそのまま適用できる
+		TodoIdIndex.assignIds(loadedList);
+
+		// スナップショット以降の変更をジャーナルから復元
+		int replayed = journal.replay(snapshotCrc, loadedList);
+		if(replayed > 0) {
+			System.out.println("ジャーナルから " + replayed + " 件の変更を復元しました。");
+			TodoIdIndex.assignIds(loadedList);
+			if(partitionStore != null) {
+				// ジャーナルの記録はリスナーを通さずに適用したので、次の保存では全パーティションを比べる
+				partitionStore.markAllDirty();
+			}
+		}
+
+		if(archiveAfterDays >= 0) {
+			loadedList = archiveOldItems(loadedList);
+		}
+		TodoMetrics.get().record(TodoMetrics.Operation.LOAD, start);
+		return loadedList;
+
+	}
+
+	/**
+	 * スナップショットをLazyTodoListとして開き、ジャーナルに残っている変更を適用します。
+	 * IDの無い項目には、索引を作る際に通常の読み込みと同じ規則でIDが割り当てられています。
+	 * @return 復元したリスト（開けなかった場合はnull）
+	 */
+	private List<TodoItem> loadLazy() {
+		try {
+			lazyList = LazyTodoList.open(dataPath, lazyCacheSize);
+		}catch(IOException e) {
+			System.out.println("警告：ToDoリストファイルを遅延読み込みで開けませんでした。すべて読み込みます。" + e.getMessage());
+			return null;
+		}
+		snapshotCrc = lazyList.getCrc();
+		snapshotSize = lazyList.getDataSize();
+		TodoMetrics.get().addBytesRead(lazyList.getBytesRead());
+		TodoMetrics.get().addSkippedRows(lazyList.getSkippedRows());
 
-		try(BufferedReader br = new BufferedReader(new FileReader(FILENAME))){
+		int replayed = journal.replay(snapshotCrc, lazyList);
+		if(replayed > 0) {
+			System.out.println("ジャーナルから " + replayed + " 件の変更を復元しました。");
+			lazyList.assignMissingIds();
+		}
+		return lazyList;
+	}
 
-			String line;
+	/**
+	 * テキスト形式のスナップショットを、参照された項目だけを読み込むLazyTodoListとして開くようにします。
+	 * 起動時に全項目を解析しないので、項目が非常に多い場合でもすぐに操作を始められます。
+	 * loadListの前に呼び出してください。バイナリ形式の場合は通常どおり全て読み込みます。
+	 * 遅延読み込みの場合、読み込み時のアーカイブへの移動は行いません。
+	 * @param cacheSize キャッシュに保持する項目数（0の場合は遅延読み込みを行わない）
+	 */
+	public void setLazy(int cacheSize) {
+		this.lazyCacheSize = cacheSize;
+	}
 
+	/**
+	 * 期限から指定した日数が過ぎた完了済みの項目を、読み込み時にアーカイブへ移すようにします。
+	 * loadListの前に呼び出してください。
+	 * @param days 期限から過ぎた日数（0の場合は期限が今日より前のものすべて、負の場合は移さない）
+	 */
+	public void setArchiveAfterDays(int days) {
+		this.archiveAfterDays = days;
+	}
 
-			while((line = br.readLine()) != null) {
+	/**
+	 * アーカイブを取得します。
+	 * @return アーカイブ
+	 */
+	public TodoArchive getArchive() {
+		return archive;
+	}
 
-				try {
-					// 空行や不正な行はスキップ
-	                if (line.trim().isEmpty()) {
-	                    continue;
-	                }
+	/**
+	 * アーカイブに移した項目を含めた、これまでに使われた最大のIDを取得します。
+	 * 読み込んだリストをセットした後、TodoListManager.reserveIdsに渡してIDの再利用を防ぎます。
+	 * @return アーカイブ内の最大のID（アーカイブが空、または読めない場合は0）
+	 */
+	public long getArchivedMaxId() {
+		try {
+			return archive.getMaxId();
+		}catch(IOException e) {
+			System.out.println("警告：アーカイブの一覧を読み込めませんでした。" + e.getMessage());
+			return 0;
+		}
+	}
 
-					//読み込んだ line を、区切り文字である カンマ (,) で分割します。
-					String[] parts = line.split(",");
+	/**
+	 * アーカイブへ移す対象の項目をセグメントに書き込み、残りの項目だけでスナップショットを書き直します。
+	 * セグメントを書き終えてからスナップショットを置き換えるので、途中で落ちても項目は失われません
+	 * （アーカイブとスナップショットの両方に残った項目は、次回の読み込みで再度移され、検索時に重複が除かれます）。
+	 * @param list ジャーナルまで適用済みのリスト
+	 * @return 残った項目のリスト（移す対象が無い場合、または書き込みに失敗した場合は引数のリスト）
+	 */
+	private List<TodoItem> archiveOldItems(List<TodoItem> list) {
+		LocalDate cutoff = LocalDate.now().minusDays(archiveAfterDays);
+		List<TodoItem> active = new ArrayList<>(list.size());
+		List<TodoItem> archived = new ArrayList<>();
+		for(TodoItem item : list) {
+			if(TodoArchive.isArchivable(item, cutoff)) {
+				archived.add(item);
+			}else {
+				active.add(item);
+			}
+		}
+		if(archived.isEmpty()) {
+			return list;
+		}
 
-					// データが3つ（内容,期限,完了状態）揃っているか確認
-	                if (parts.length < 3) {
-	                    System.err.println("警告: 不正なデータ形式の行をスキップしました: " + line);
-	                    continue;
-	                }
+		try {
+			archive.append(archived);
+			writeSnapshot(active);
+			// ジャーナルの内容は新しいスナップショットに含まれている
+			journal.discard();
+			System.out.println(archived.size() + " 件の完了済みの項目をアーカイブ（" + archive.getDirectory()
+					+ "）へ移しました。残りの項目の番号は詰めて振り直しています。");
+			return active;
 
-					//3つに分割したものを変数に格納します。
-	                String contentString = parts[0];
-	                String deadlineString = parts[1];
-	                String completedString = parts[2];
+		}catch(IOException e) {
+			System.out.println("エラー：アーカイブへの移動中に問題が発生しました。項目はそのまま読み込みます。");
+			e.printStackTrace();
+			return list;
+		}
+	}
 
-	                //String型からそれぞれ型変換
-	                LocalDate deadlineLocalDate = LocalDate.parse(deadlineString);
-	                boolean completedBoolean = Boolean.parseBoolean(completedString);
+	/**
+	 * ToDoリストのファイルを別の形式に変換します（テキスト形式⇔バイナリ形式）。
+	 * 形式はそれぞれのファイル名の拡張子で判断します。変換元のジャーナルに残っている変更も反映されます。
+	 * @param sourceFilename 変換元のファイルパス
+	 * @param targetFilename 変換先のファイルパス
+	 * @return 変換した項目の件数
+	 */
+	public static int convert(String sourceFilename, String targetFilename) {
+		long start = System.nanoTime();
+		List<TodoItem> items = new FileHandler(sourceFilename).loadList();
+		new FileHandler(targetFilename).saveList(items);
+		TodoMetrics.get().record(TodoMetrics.Operation.CONVERT, start);
+		return items.size();
+	}
 
-	                //変換したデータでTodoItemを生成
-	                TodoItem item = new TodoItem(contentString,deadlineLocalDate);
+	/**
+	 * このFileHandlerのToDoリストを、CSV（RFC 4180）またはJSON Lines形式で書き出します（形式は書き出し先の拡張子で判断）。
+	 * テキスト形式のファイルは遅延読み込みで開いて1件ずつ書き出すので、項目が非常に多くても全項目をメモリに載せません。
+	 * ジャーナルに残っている変更も反映されます。loadListの代わりに呼び出し、書き出した後は閉じます。
+	 * @param targetFilename 書き出し先のファイルパス（.csv または .jsonl）
+	 * @return 書き出した項目の件数（失敗した場合は-1）
+	 * @throws InputFormatException 書き出し先の拡張子に対応していない場合
+	 */
+	public long exportTo(String targetFilename) throws InputFormatException {
+		TodoExchange.Format format = TodoExchange.Format.of(targetFilename);
+		long start = System.nanoTime();
+		setLazy(EXPORT_CACHE_SIZE);
+		try {
+			return TodoExchange.export(loadList(), Paths.get(targetFilename), format);
+		}catch(IOException e) {
+			System.out.println("エラー：ファイルの書き出し中に問題が発生しました。");
+			e.printStackTrace();
+			return -1;
+		}finally {
+			close();
+			TodoMetrics.get().record(TodoMetrics.Operation.EXPORT, start);
+		}
+	}
 
-	                //完了状態をリセット
-	                item.setCompleted(completedBoolean);
+	/**
+	 * CSV（RFC 4180）またはJSON Lines形式のファイルを1件ずつ読み込み、まとめてTodoListManagerへ追加します（形式は拡張子で判断）。
+	 * ジャーナルに接続済みの場合、まとめて追加した分はそれぞれ1つのまとまりとして記録されます。
+	 * @param sourceFilename 読み込むファイルパス（.csv または .jsonl）
+	 * @param manager 追加先のTodoListManager
+	 * @return 読み込みの結果（失敗した場合はnull）
+	 * @throws InputFormatException 読み込むファイルの拡張子に対応していない場合
+	 */
+	public static TodoExchange.Result importFile(String sourceFilename, TodoListManager manager) throws InputFormatException {
+		TodoExchange.Format format = TodoExchange.Format.of(sourceFilename);
+		long start = System.nanoTime();
+		try {
+			return TodoExchange.importFrom(Paths.get(sourceFilename), format, manager, TodoExchange.DEFAULT_BATCH_SIZE);
+		}catch(IOException e) {
+			System.out.println("エラー：ファイルの読み込み中に問題が発生しました。");
+			e.printStackTrace();
+			return null;
+		}finally {
+			TodoMetrics.get().record(TodoMetrics.Operation.IMPORT, start);
+		}
+	}
 
-	                //リストに追加
-	                loadedList.add(item);
+	/**
+	 * TodoListManagerの変更をジャーナルに追記するようにします。
+	 * loadListで読み込んだリストをTodoListManagerにセットした後に呼び出してください。
+	 * @param manager 変更を記録するTodoListManager
+	 */
+	public void attachJournal(TodoListManager manager) {
+		try {
+			journal.open(snapshotCrc);
+			journaledManager = manager;
+			manager.addListener(journalListener);
+			if(partitionStore != null) {
+				// 変更のあった月を記録し、保存時にそのパーティションだけを書き出す
+				manager.addListener(partitionStore);
+				partitionStore.setTracking(true);
+			}
 
-				}catch(java.time.format.DateTimeParseException | IllegalArgumentException e) {
-                    // 日付形式やBoolean形式が不正な場合のエラーをキャッチ
-                    System.err.println("警告: パースエラーのため行をスキップしました: " + line + " (原因: " + e.getMessage() + ")");
-                    continue;
-                }
+			if(needsCompaction(manager.getTodoItems().size())) {
+				compact(manager.getTodoItems());
 			}
-		}catch(IOException e){
-			// ファイルがない場合やI/Oエラー時の処理（空のリストを返すのが目的）
-            System.out.println("警告: ToDoリストファイルが見つからないか、読み込みに失敗しました。新規リストを開始します。");
+		}catch(IOException e) {
+			System.out.println("エラー：ジャーナルを開けませんでした。変更は終了時にのみ保存されます。");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 他のツールによるファイルへの追記を監視し、TodoListManagerに取り込むようにします。
+	 * 追記以外の書き換えを検出した場合は、以降の保存を競合ファイルへ行います。
+	 * attachJournalの後に呼び出してください。バイナリ形式の場合は監視しません。
+	 * @param manager 追記された項目を追加するTodoListManager
+	 */
+	public void watchExternalChanges(TodoListManager manager) {
+		if(binary || partitionStore != null || watcher != null) {
+			return;
+		}
+		try {
+			watcher = new TodoFileWatcher(dataPath, this, manager, snapshotSize);
+			watcher.start();
+		}catch(IOException e) {
+			System.out.println("警告：ToDoリストファイルの監視を開始できませんでした。外部の変更は取り込まれません。" + e.getMessage());
+			watcher = null;
+		}
+	}
+
+	/**
+	 * 期限が指定した期間（開始日・終了日を含む）にある項目を、リスト全体を読み込まずに取得します。
+	 * 月ごとに分けて保存している場合は、期間に重なる月のパーティションだけを開き、その項目にジャーナルの変更を適用します
+	 * （期間外の項目の期限を期間内に変えた記録がある場合だけ、全パーティションを読み込みます）。
+	 * それ以外の形式ではファイル全体を読み込み、ジャーナルの変更を適用してから絞り込みます。
+	 * @param from 開始日
+	 * @param to 終了日
+	 * @return 該当する項目（期限順）
+	 */
+	public List<TodoItem> loadDueBetween(LocalDate from, LocalDate to) {
+		long start = System.nanoTime();
+		// 追記用に開いているジャーナルの状態を変えないように、読み込み専用に別のインスタンスを使う
+		TodoJournal replayJournal = new TodoJournal(Paths.get(dataPath + JOURNAL_SUFFIX));
+		List<TodoItem> items;
+		try {
+			if(partitionStore != null) {
+				items = partitionStore.findDueBetween(from, to);
+				if(!replayJournal.replayPartial(partitionStore.getManifestCrc(), items, from, to)) {
+					items = replayAll(partitionStore.load(), replayJournal);
+				}
+			}else {
+				items = replayAll(binary ? BinaryTodoFormat.read(dataPath) : loader.load(dataPath), replayJournal);
+			}
+		}catch(IOException e) {
+			// スナップショットがまだ無い場合も、loadListと同じく空のリストにジャーナルの変更を適用する
+			items = new ArrayList<>();
+			if(replayJournal.replay(0, items) < 0) {
+				System.out.println("警告: ToDoリストファイルが見つからないか、読み込みに失敗しました。");
+				TodoMetrics.get().record(TodoMetrics.Operation.LOAD_DUE, start);
+				return items;
+			}
+		}
+
+		List<TodoItem> found = new ArrayList<>();
+		for(TodoItem item : items) {
+			LocalDate deadline = item.getDeadline();
+			if(deadline != null && !deadline.isBefore(from) && !deadline.isAfter(to)) {
+				found.add(item);
+			}
+		}
+		found.sort(Comparator.comparing(TodoItem::getDeadline).thenComparingLong(TodoItem::getId));
+		TodoMetrics.get().record(TodoMetrics.Operation.LOAD_DUE, start);
+		return found;
+	}
+
+	/**
+	 * 読み込んだスナップショットの全項目に、ジャーナルの変更を適用します（loadDueBetweenで使用）。
+	 */
+	private static List<TodoItem> replayAll(MappedTodoLoader.Result result, TodoJournal replayJournal) {
+		TodoMetrics.get().addBytesRead(result.getBytesRead());
+		List<TodoItem> items = result.getItems();
+		TodoIdIndex.assignIds(items);
+		replayJournal.replay(result.getCrc(), items);
+		return items;
+	}
+
+	/**
+	 * 外部の書き換えと競合した場合の保存先を取得します。
+	 * @return 競合ファイルのパス
+	 */
+	public Path getConflictPath() {
+		return dataPath.resolveSibling(dataPath.getFileName() + CONFLICT_SUFFIX);
+	}
+
+	/**
+	 * 他のツールがファイルに追記した項目をTodoListManagerに追加し、スナップショットを書き直します（TodoFileWatcherが使用）。
+	 * 項目はすでにファイルに含まれているので、ジャーナルには記録しません。
+	 * @param manager 項目を追加するTodoListManager
+	 * @param items 追記された項目
+	 */
+	void mergeExternalItems(TodoListManager manager, List<TodoItem> items) {
+		mergingExternal = true;
+		try {
+			for(TodoItem item : items) {
+				manager.addImportedItem(item);
+			}
+		}finally {
+			mergingExternal = false;
+		}
+		rewriteSnapshot(manager.getTodoItems());
+	}
+
+	/**
+	 * リスト全体をスナップショットとして書き直し、空のジャーナルに切り替えます（TodoFileWatcherが使用）。
+	 * @param list 現在のTodoItemリスト
+	 */
+	void rewriteSnapshot(List<TodoItem> list) {
+		try {
+			if(journaledManager != null) {
+				compact(list);
+			}else {
+				writeSnapshot(list);
+			}
+		}catch(IOException e) {
+			System.out.println("エラー：ファイルの保存中に問題が発生しました。");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * ジャーナルを閉じます。アプリケーション終了時に呼び出してください。
+	 */
+	public void close() {
+		if(watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+		if(journaledManager != null) {
+			journaledManager.removeListener(journalListener);
+			if(partitionStore != null) {
+				journaledManager.removeListener(partitionStore);
+				partitionStore.setTracking(false);
+			}
+			journaledManager = null;
+		}
+		try {
+			journal.close();
+			if(lazyList != null) {
+				lazyList.close();
+			}
+		}catch(IOException e) {
+			System.out.println("エラー：ジャーナルを閉じる際に問題が発生しました。");
+			e.printStackTrace();
+		}
+	}
+
+	// ----------------------------------------------------
+    // スナップショットとコンパクション
+    // ----------------------------------------------------
+
+	/**
+	 * ジャーナルを書き直すべき大きさになっているかを判定します。
+	 * 書き直しのコストはリストの件数に比例するので、件数以上の記録が溜まった時だけ行い、
+	 * 1回の変更あたりのI/Oを平均してO(1)に保ちます。
+	 * @param listSize 現在のリストの件数
+	 * @return 書き直すべき場合はtrue
+	 */
+	private boolean needsCompaction(int listSize) {
+		return journal.getRecordCount() >= Math.max(MIN_COMPACTION_RECORDS, listSize);
+	}
+
+	/**
+	 * リスト全体をスナップショットとして書き込み、空のジャーナルに切り替えます。
+	 * @param list 現在のTodoItemリスト
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	private void compact(List<TodoItem> list) throws IOException {
+		writeSnapshot(list);
+		journal.reset(snapshotCrc);
+	}
+
+	/**
+	 * リスト全体を一時ファイルに書き込んでから、スナップショットとアトミックに置き換えます。
+	 * 書き込み中に落ちても、元のスナップショットは壊れません。
+	 * 遅延読み込みの場合は、次回の起動で全体を走査しなくて済むように、各行の開始・終了位置とIDの索引も書き込みます
+	 * （開いているLazyTodoListは元のファイルを読み続け、変更された項目はメモリに保持したままにします）。
+	 * @param list 保存対象のTodoItemリスト
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	private void writeSnapshot(List<TodoItem> list) throws IOException {
+		if(partitionStore != null) {
+			snapshotCrc = partitionStore.write(list);
+			return;
+		}
+
+		// 外部の書き換えと競合した場合は、その内容を上書きしないように競合ファイルへ保存する
+		boolean conflicted = watcher != null && !watcher.verify();
+		Path targetPath = conflicted ? getConflictPath() : dataPath;
+		Path tempPath = targetPath.resolveSibling(targetPath.getFileName() + ".tmp");
+
+		if(binary) {
+			long crc = BinaryTodoFormat.write(list, tempPath);
+			long size = Files.size(tempPath);
+			TodoMetrics.get().addBytesWritten(size);
+			TodoJournal.moveAtomically(tempPath, targetPath);
+			snapshotCrc = crc;
+			snapshotSize = size;
+			return;
+		}
+
+		CRC32 crc = new CRC32();
+		boolean indexed = lazyCacheSize > 0 && !conflicted;
+		int count = 0;
+		long[] lineStarts = new long[indexed ? list.size() : 0];
+		long[] lineEnds = new long[indexed ? list.size() : 0];
+		long[] lineIds = new long[indexed ? list.size() : 0];
+		long offset = 0;
+		int separatorLength = System.lineSeparator().length();
+
+		long itemsSize;
+		long carried = 0;
+
+		try(FileOutputStream out = new FileOutputStream(tempPath.toFile());
+			CheckedOutputStream checked = new CheckedOutputStream(out, crc);
+			PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(checked, StandardCharsets.UTF_8)))){
+
+			//リストの項目を1つずつループで処理する
+			for(TodoItem item : list) {
+
+				// 遅延読み込みで読み込めなくなった行は、通常の読み込みと同じく書き出さない
+				if(item == null) {
+					continue;
+				}
+
+				String line = item.toFileString();
+
+				pw.println(line);
+
+				if(indexed) {
+					lineIds[count] = item.getId();
+					lineStarts[count] = offset;
+					offset += utf8Length(line) + separatorLength;
+					lineEnds[count] = offset;
+					count++;
+				}
+			}
+
+			pw.flush();
+			if(pw.checkError()) {
+				throw new IOException("一時ファイルへの書き込みに失敗しました: " + tempPath);
+			}
+			itemsSize = out.getChannel().position();
+
+			// 他のツールが追記したまま、まだ取り込んでいない末尾を失わないように引き継ぐ
+			if(watcher != null && !conflicted) {
+				carried = watcher.copyUnmerged(checked);
+			}
+			out.getFD().sync();
+		}
+
+		long size = Files.size(tempPath);
+		TodoMetrics.get().addBytesWritten(size);
+		TodoJournal.moveAtomically(tempPath, targetPath);
+		snapshotCrc = crc.getValue();
+		snapshotSize = size;
+		if(watcher != null && !conflicted) {
+			watcher.snapshotWritten(itemsSize);
 		}
-		return loadedList;
 
+		// 引き継いだ末尾は項目として索引に含められないので、その場合は次回の起動で索引を作り直す
+		if(indexed && carried == 0) {
+			LazyTodoList.writeIndex(dataPath, lineStarts, lineEnds, lineIds, count, snapshotCrc);
+		}
+	}
+
+	/**
+	 * 文字列をUTF-8で書き込んだ時のバイト数を、バイト列を作らずに求めます。
+	 */
+	private static int utf8Length(String s) {
+		int length = 0;
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				length += 1;
+			}else if(c < 0x800) {
+				length += 2;
+			}else if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+				length += 4;
+				i++;
+			}else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * TodoListManagerの変更をジャーナルに記録するリスナーです。
+	 */
+	private class JournalListener implements TodoListListener {
+
+		@Override
+		public void itemAdded(int index, TodoItem item) {
+			if(mergingExternal) {
+				return;
+			}
+			try {
+				journal.recordAdd(item);
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void itemCompleted(int index, TodoItem item) {
+			try {
+				journal.recordComplete(item.getId());
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void itemReopened(int index, TodoItem item) {
+			try {
+				journal.recordReopen(item.getId());
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void itemRemoved(int index, TodoItem item) {
+			try {
+				journal.recordRemove(item.getId());
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void contentEdited(int index, TodoItem item, String oldContent) {
+			try {
+				journal.recordContent(item.getId(), item.getContent());
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+			try {
+				journal.recordDeadline(item.getId(), item.getDeadline());
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void listReplaced(List<TodoItem> items) {
+			// リスト全体が置き換わった場合は、記録ではなくスナップショットとして保存する
+			try {
+				compact(items);
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		@Override
+		public void bulkStarted(int count) {
+			journal.beginBatch();
+		}
+
+		@Override
+		public void bulkFinished(int count) {
+			// 一括操作の記録は、すべてそろってから一度に書き込む
+			try {
+				journal.commitBatch();
+				compactIfNeeded();
+			}catch(IOException e) {
+				reportWriteError(e);
+			}
+		}
+
+		private void compactIfNeeded() throws IOException {
+			if(deferredSync || journal.inBatch()) {
+				return;
+			}
+			List<TodoItem> items = journaledManager.getTodoItems();
+			if(needsCompaction(items.size())) {
+				compact(items);
+			}
+		}
+
+		private void reportWriteError(IOException e) {
+			System.out.println("エラー：ジャーナルへの書き込み中に問題が発生しました。");
+			e.printStackTrace();
+		}
 	}
 
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+/**
+ * 処理時間（ナノ秒）の分布を記録するヒストグラムです。
+ * 2のべき乗ごとの区間をさらに16等分したバケットに数えるので、相対誤差は約6%に収まります。
+ * 記録はバケットの配列を加算するだけで、オブジェクトを作らず、ロックも取りません（複数スレッドから同時に記録できます）。
+ */
+package com.example.todolist;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+	//フィールド
+	/** 2のべき乗の区間を分割する数のビット数（2^4 = 16分割） */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/** 2のべき乗の区間を分割する数 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** バケットの数（longの値の範囲をすべて表せる数） */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	/** バケットごとの件数 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/** 記録した件数 */
+	private final AtomicLong count = new AtomicLong();
+
+	/** 記録した値の合計（ナノ秒） */
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	/** 記録した値の最大（ナノ秒） */
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * 処理時間を1件記録します。
+	 * @param nanos 処理時間（ナノ秒、負の値は0として扱う）
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		totalNanos.addAndGet(value);
+
+		long max = maxNanos.get();
+		while (value > max && !maxNanos.compareAndSet(max, value)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * 記録した件数を取得します。
+	 * @return 件数
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * 記録した値の最大を取得します。
+	 * @return 最大値（ナノ秒、記録が無い場合は0）
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * 記録した値の平均を取得します。
+	 * @return 平均値（ナノ秒、記録が無い場合は0）
+	 */
+	public double getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) totalNanos.get() / n;
+	}
+
+	/**
+	 * 指定した割合の位置にある値（パーセンタイル）を求めます。
+	 * 値はバケットの中央の値で近似します（最大値を超えることはありません）。
+	 * @param quantile 割合（0.5で中央値、0.99で99パーセンタイル）
+	 * @return パーセンタイルの値（ナノ秒、記録が無い場合は0）
+	 */
+	public long getPercentileNanos(double quantile) {
+		// 記録中の値が混ざるので、件数はバケットから数え直す
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total += buckets.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(midpointOf(i), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	/**
+	 * 記録をすべて消去します。
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	// ----------------------------------------------------
+	// バケットの計算
+	// ----------------------------------------------------
+
+	/**
+	 * 値が入るバケットの番号を求めます。
+	 * 16未満の値はそのまま、それ以上の値は最上位ビットの位置と、その下の4ビットで決めます。
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * バケットに入る値の範囲の中央の値を求めます。
+	 */
+	private static long midpointOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + ((1L << shift) >>> 1);
+	}
+}
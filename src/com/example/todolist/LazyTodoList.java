@@ -0,0 +1,680 @@
+/**
+ * テキスト形式のファイルを必要な分だけ読み込むリストクラスです。
+ * 起動時には各行の開始・終了位置とIDの表（索引）だけを用意し、TodoItemは表示や操作で参照された時に1行ずつ読み込んで作ります。
+ *
+ * 索引はデータファイルの隣（{ファイル名}.lazyidx）に保存し、データファイルの大きさと更新時刻が一致すれば
+ * 次回の起動ではファイル全体を読まずに索引をメモリマップして使います（起動時間が件数によらずほぼ一定になります）。
+ * 一致しない場合は1回だけファイル全体を走査して索引を作り直します。
+ *
+ * 読み込んだ項目は件数に上限のあるキャッシュ（最近使った順）に保持します。
+ * 変更された項目と追加された項目はキャッシュから追い出さずに保持し、次にスナップショットを書き直すまでメモリに残ります。
+ */
+package com.example.todolist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+public class LazyTodoList extends AbstractList<TodoItem> implements RandomAccess, Closeable {
+
+	//フィールド
+	/** 索引ファイル名の接尾辞 */
+	public static final String INDEX_SUFFIX = ".lazyidx";
+
+	/** キャッシュに保持する項目数の既定値 */
+	public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+	/** 索引ファイルの先頭の識別子（"TDLX"） */
+	private static final int MAGIC = 0x54444C58;
+
+	/** 索引ファイルの形式のバージョン（2から各行の終了位置を持つ） */
+	private static final int VERSION = 2;
+
+	/** 索引ファイルのヘッダーのバイト数（識別子・バージョン・件数・予備、データの大きさ・更新時刻・CRC32・最大のID） */
+	private static final int HEADER_BYTES = 4 * Integer.BYTES + 4 * Long.BYTES;
+
+	/** 全体を走査する時の読み込み単位 */
+	private static final int SCAN_BUFFER_BYTES = 1 << 20;
+
+	/** データファイル */
+	private final FileChannel channel;
+
+	/** 各行の開始位置 */
+	private final LongBuffer starts;
+
+	/** 各行の終了位置（改行を含む行末の次の位置。スキップした行は前後どちらの行にも含めない） */
+	private final LongBuffer ends;
+
+	/** 各行のID */
+	private final LongBuffer ids;
+
+	/** ファイル内の項目のうち、リストに含まれる項目数（末尾の項目を削除すると減り、それ以降の行は読まない） */
+	private int baseSize;
+
+	/** データファイルの大きさ */
+	private final long dataSize;
+
+	/** データファイルのCRC32 */
+	private final long crc;
+
+	/** データファイルの項目の最大のID */
+	private final long maxId;
+
+	/** 索引を作る際にスキップした行数（索引を読み込んだ場合は0） */
+	private final int skippedRows;
+
+	/** 起動時に読み込んだバイト数（索引を読み込んだ場合は索引のヘッダーだけ） */
+	private final long bytesRead;
+
+	/** 読み込んだ項目のキャッシュ（最近使った順、上限を超えたら古いものから追い出す） */
+	private final Map<Integer, TodoItem> cache;
+
+	/** 変更された項目（キャッシュから追い出さない） */
+	private final Map<Integer, TodoItem> modified = new HashMap<>();
+
+	/** ファイルを読み込んだ後に追加された項目 */
+	private final List<TodoItem> appended = new ArrayList<>();
+
+	/** IDから項目の番号を引く索引（indexOfIdが初めて呼ばれた時に作る） */
+	private TodoIdIndex idIndex;
+
+	/** 1行を読み込むためのバッファ */
+	private byte[] lineBytes = new byte[256];
+
+	private LazyTodoList(FileChannel channel, LongBuffer starts, LongBuffer ends, LongBuffer ids, int baseSize,
+			long dataSize, long crc, long maxId, int skippedRows, long bytesRead, int cacheSize) {
+		this.channel = channel;
+		this.starts = starts;
+		this.ends = ends;
+		this.ids = ids;
+		this.baseSize = baseSize;
+		this.dataSize = dataSize;
+		this.crc = crc;
+		this.maxId = maxId;
+		this.skippedRows = skippedRows;
+		this.bytesRead = bytesRead;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, TodoItem> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * データファイルを開きます。有効な索引ファイルがあればそれを使い、無ければ全体を走査して索引ファイルを作ります。
+	 * IDの無い行には、通常の読み込み（TodoIdIndex.assignIds）と同じ規則でIDを割り当てて索引に記録します。
+	 * @param dataPath データファイルのパス
+	 * @param cacheSize キャッシュに保持する項目数
+	 * @return LazyTodoList
+	 * @throws IOException データファイルが無い、または読み込みに失敗した場合
+	 */
+	public static LazyTodoList open(Path dataPath, int cacheSize) throws IOException {
+		Path indexPath = indexPathOf(dataPath);
+		FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ);
+		try {
+			long dataSize = channel.size();
+			long dataMtime = Files.getLastModifiedTime(dataPath).toMillis();
+
+			LazyTodoList list = openIndex(channel, indexPath, dataSize, dataMtime, cacheSize);
+			if (list == null) {
+				list = scan(channel, indexPath, dataSize, dataMtime, cacheSize);
+			}
+			return list;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * データファイルに対応する索引ファイルのパスを返します。
+	 * @param dataPath データファイルのパス
+	 * @return 索引ファイルのパス
+	 */
+	public static Path indexPathOf(Path dataPath) {
+		return dataPath.resolveSibling(dataPath.getFileName() + INDEX_SUFFIX);
+	}
+
+	/**
+	 * 書き込んだばかりのデータファイルの索引ファイルを作ります（スナップショットの書き直し時に使用）。
+	 * @param dataPath データファイルのパス（書き込み済みで、置き換え後のもの）
+	 * @param lineStarts 各行の開始位置
+	 * @param lineEnds 各行の終了位置（改行を含む行末の次の位置）
+	 * @param lineIds 各行のID
+	 * @param count 件数
+	 * @param crc データファイルのCRC32
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public static void writeIndex(Path dataPath, long[] lineStarts, long[] lineEnds, long[] lineIds, int count, long crc)
+			throws IOException {
+		long maxId = 0;
+		for (int i = 0; i < count; i++) {
+			maxId = Math.max(maxId, lineIds[i]);
+		}
+		writeIndex(indexPathOf(dataPath), lineStarts, lineEnds, lineIds, count, Files.size(dataPath),
+				Files.getLastModifiedTime(dataPath).toMillis(), crc, maxId);
+	}
+
+	// ----------------------------------------------------
+	// Listの実装
+	// ----------------------------------------------------
+
+	@Override
+	public synchronized int size() {
+		return baseSize + appended.size();
+	}
+
+	/**
+	 * 指定位置の項目を返します。ファイル内の項目はキャッシュに無ければその1行だけを読み込みます。
+	 * 返した項目を変更すると、その項目はキャッシュから追い出されずに保持されます。
+	 * 索引を作った後にファイルが書き換えられて行を読み込めない場合は、警告を表示してnullを返します。
+	 */
+	@Override
+	public synchronized TodoItem get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (index >= baseSize) {
+			return appended.get(index - baseSize);
+		}
+		TodoItem item = modified.get(index);
+		if (item == null) {
+			item = cache.get(index);
+		}
+		if (item == null) {
+			item = read(index);
+			if (item != null) {
+				cache.put(index, item);
+			}
+		}
+		return item;
+	}
+
+	/**
+	 * 項目を末尾に追加します（末尾以外への挿入には対応していません）。
+	 */
+	@Override
+	public synchronized void add(int index, TodoItem item) {
+		if (index != size()) {
+			throw new UnsupportedOperationException("LazyTodoListは末尾への追加のみに対応しています。");
+		}
+		appended.add(item);
+		if (idIndex != null) {
+			idIndex.put(item.getId(), index + 1);
+		}
+		modCount++;
+	}
+
+	/**
+	 * 末尾の項目を削除します（末尾以外の削除には対応していません）。
+	 * ファイルにある項目の場合はファイルを書き換えず、その行以降をリストに含めないようにします。
+	 */
+	@Override
+	public synchronized TodoItem remove(int index) {
+		if (index != size() - 1) {
+			throw new UnsupportedOperationException("LazyTodoListは末尾の削除のみに対応しています。");
+		}
+		TodoItem item;
+		if (appended.isEmpty()) {
+			item = get(index);
+			cache.remove(index);
+			modified.remove(index);
+			baseSize--;
+		} else {
+			item = appended.remove(appended.size() - 1);
+		}
+		if (idIndex != null) {
+			idIndex.remove(item.getId());
+		}
+		modCount++;
+		return item;
+	}
+
+	/**
+	 * 全項目を順番に返すイテレーターです。スナップショットの書き直しなどで全体を読む場合に、
+	 * キャッシュを使わずに（キャッシュの内容を追い出さずに）ファイルを順に読み込みます。
+	 * 読み込めない行はget(int)と同じくnullを返します。
+	 */
+	@Override
+	public Iterator<TodoItem> iterator() {
+		return new Iterator<TodoItem>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < size();
+			}
+
+			@Override
+			public TodoItem next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				synchronized (LazyTodoList.this) {
+					int index = next++;
+					if (index >= baseSize) {
+						return appended.get(index - baseSize);
+					}
+					TodoItem item = modified.get(index);
+					if (item == null) {
+						item = cache.get(index);
+					}
+					return item != null ? item : read(index);
+				}
+			}
+		};
+	}
+
+	// ----------------------------------------------------
+	// 索引の情報
+	// ----------------------------------------------------
+
+	/**
+	 * 指定位置の項目のIDを、項目を読み込まずに取得します。
+	 * @param index 位置（0始まり）
+	 * @return タスクのID
+	 */
+	public synchronized long getId(int index) {
+		if (index >= baseSize) {
+			return appended.get(index - baseSize).getId();
+		}
+		TodoItem item = modified.get(index);
+		return item != null ? item.getId() : ids.get(index);
+	}
+
+	/**
+	 * IDに対応する項目の番号を、項目を読み込まずに取得します。初回はIDの表から索引を作ります。
+	 * @param id タスクのID
+	 * @return 項目の番号（1始まり、見つからない場合は-1）
+	 */
+	public synchronized int indexOfId(long id) {
+		if (idIndex == null) {
+			idIndex = new TodoIdIndex(size());
+			for (int i = 0; i < size(); i++) {
+				idIndex.put(getId(i), i + 1);
+			}
+		}
+		return idIndex.indexOf(id);
+	}
+
+	/**
+	 * ファイル内の項目と追加された項目のうち、最大のIDを取得します。
+	 * @return 最大のID
+	 */
+	public synchronized long getMaxId() {
+		long max = maxId;
+		for (TodoItem item : appended) {
+			max = Math.max(max, item.getId());
+		}
+		return max;
+	}
+
+	/**
+	 * 追加された項目のうち、IDが未割り当てのものに新しいIDを割り当てます（ジャーナルの古い記録を適用した後に使用）。
+	 */
+	public synchronized void assignMissingIds() {
+		long max = getMaxId();
+		for (int i = 0; i < appended.size(); i++) {
+			TodoItem item = appended.get(i);
+			if (item.getId() <= 0) {
+				item.setId(++max);
+				if (idIndex != null) {
+					idIndex.put(item.getId(), baseSize + i + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * データファイルのCRC32を取得します（ジャーナルとの対応確認に使います）。
+	 * @return CRC32の値
+	 */
+	public long getCrc() {
+		return crc;
+	}
+
+	/**
+	 * 開いた時点のデータファイルの大きさを取得します。
+	 * @return バイト数
+	 */
+	public long getDataSize() {
+		return dataSize;
+	}
+
+	/**
+	 * 索引を作る際にスキップした行数を取得します。
+	 * @return スキップした行数（索引ファイルを読み込んだ場合は0）
+	 */
+	public int getSkippedRows() {
+		return skippedRows;
+	}
+
+	/**
+	 * 開く際に読み込んだバイト数を取得します。
+	 * @return バイト数
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * キャッシュに保持している項目数と、変更・追加によってメモリに保持している項目数の合計を取得します。
+	 * @return メモリ上の項目数
+	 */
+	public synchronized int getLoadedCount() {
+		return cache.size() + modified.size() + appended.size();
+	}
+
+	/**
+	 * データファイルを閉じます。
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// ----------------------------------------------------
+	// 1行の読み込み
+	// ----------------------------------------------------
+
+	/**
+	 * ファイルから1行を読み込んでTodoItemに変換します。
+	 * @return 読み込んだ項目（行を解析できない場合は警告を表示してnull）
+	 */
+	private TodoItem read(int index) {
+		long start = starts.get(index);
+		int length = (int) (ends.get(index) - start);
+		if (lineBytes.length < length) {
+			lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(lineBytes, 0, length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					throw new IOException("データファイルが索引より短くなっています。");
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// 行末の改行コードを除く
+		while (length > 0 && (lineBytes[length - 1] == '\n' || lineBytes[length - 1] == '\r')) {
+			length--;
+		}
+		TodoItem parsed;
+		try {
+			parsed = MappedTodoLoader.parseItem(lineBytes, length);
+		} catch (DateTimeException e) {
+			parsed = null;
+		}
+		if (parsed == null) {
+			System.err.println("警告: 索引を作った後に書き換えられたため、" + (index + 1) + "件目の行を読み込めません: "
+					+ new String(lineBytes, 0, length, StandardCharsets.UTF_8));
+			return null;
+		}
+		return new LazyItem(index, parsed, ids.get(index));
+	}
+
+	/**
+	 * ファイルから読み込んだ項目です。変更されると、キャッシュから追い出されないように変更済みの項目として登録します。
+	 */
+	private class LazyItem extends TodoItem {
+
+		private final int index;
+
+		LazyItem(int index, TodoItem parsed, long id) {
+			super(parsed.getContent(), parsed.getDeadline());
+			super.setCompleted(parsed.isCompleted());
+			super.setId(id);
+			this.index = index;
+		}
+
+		@Override
+		public void setContent(String content) {
+			super.setContent(content);
+			pin();
+		}
+
+		@Override
+		public void setDeadline(LocalDate deadline) {
+			super.setDeadline(deadline);
+			pin();
+		}
+
+		@Override
+		public void setCompleted(boolean isCompleted) {
+			super.setCompleted(isCompleted);
+			pin();
+		}
+
+		@Override
+		public void setId(long id) {
+			super.setId(id);
+			pin();
+		}
+
+		private void pin() {
+			synchronized (LazyTodoList.this) {
+				modified.put(index, this);
+				cache.remove(index);
+			}
+		}
+	}
+
+	// ----------------------------------------------------
+	// 索引ファイル
+	// ----------------------------------------------------
+
+	/**
+	 * 索引ファイルをメモリマップして開きます。
+	 * @return LazyTodoList（索引ファイルが無い、壊れている、またはデータファイルと一致しない場合はnull）
+	 */
+	private static LazyTodoList openIndex(FileChannel channel, Path indexPath, long dataSize, long dataMtime,
+			int cacheSize) throws IOException {
+		if (!Files.exists(indexPath)) {
+			return null;
+		}
+		try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+			long indexSize = indexChannel.size();
+			if (indexSize < HEADER_BYTES || indexSize > Integer.MAX_VALUE) {
+				return null;
+			}
+			ByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize).order(ByteOrder.BIG_ENDIAN);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			int count = buffer.getInt();
+			buffer.getInt();
+			long size = buffer.getLong();
+			long mtime = buffer.getLong();
+			long crc = buffer.getLong();
+			long maxId = buffer.getLong();
+			if (size != dataSize || mtime != dataMtime || count < 0
+					|| indexSize != HEADER_BYTES + 3L * count * Long.BYTES) {
+				return null;
+			}
+
+			int column = count * Long.BYTES;
+			LongBuffer starts = buffer.slice(HEADER_BYTES, column).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+			LongBuffer ends = buffer.slice(HEADER_BYTES + column, column).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+			LongBuffer ids = buffer.slice(HEADER_BYTES + 2 * column, column).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+			return new LazyTodoList(channel, starts, ends, ids, count, size, crc, maxId, 0, HEADER_BYTES, cacheSize);
+		}
+	}
+
+	/**
+	 * データファイル全体を走査して各行の開始・終了位置とIDを求め、索引ファイルを作ります。
+	 * 不正な行は通常の読み込みと同じく警告を表示してスキップします（前後の行の範囲にも含めません）。
+	 */
+	private static LazyTodoList scan(FileChannel channel, Path indexPath, long dataSize, long dataMtime,
+			int cacheSize) throws IOException {
+		long[] lineStarts = new long[1024];
+		long[] lineEnds = new long[1024];
+		long[] lineIds = new long[1024];
+		int count = 0;
+		int skipped = 0;
+		int lineNumber = 0;
+		CRC32 crc = new CRC32();
+
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+		byte[] line = new byte[256];
+		int lineLength = 0;
+		long lineStart = 0;
+		long position = 0;
+
+		while (position < dataSize) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			crc.update(buffer.array(), 0, read);
+			for (int i = 0; i < read; i++) {
+				byte b = buffer.get(i);
+				boolean lastByte = position + i == dataSize - 1;
+				if (b != '\n') {
+					if (lineLength == line.length) {
+						line = Arrays.copyOf(line, line.length * 2);
+					}
+					line[lineLength++] = b;
+					if (!lastByte) {
+						continue;
+					}
+				}
+
+				// 1行分が揃ったので検証し、正しい行だけを索引に加える
+				lineNumber++;
+				long nextStart = position + i + 1;
+				long id = checkLine(line, lineLength, lineNumber);
+				if (id >= 0) {
+					if (count == lineStarts.length) {
+						lineStarts = Arrays.copyOf(lineStarts, count * 2);
+						lineEnds = Arrays.copyOf(lineEnds, count * 2);
+						lineIds = Arrays.copyOf(lineIds, count * 2);
+					}
+					lineStarts[count] = lineStart;
+					lineEnds[count] = nextStart;
+					lineIds[count] = id;
+					count++;
+				} else if (id == -2) {
+					skipped++;
+				}
+				lineStart = nextStart;
+				lineLength = 0;
+			}
+			position += read;
+		}
+
+		long maxId = TodoIdIndex.assignIds(lineIds, count);
+		writeIndex(indexPath, lineStarts, lineEnds, lineIds, count, dataSize, dataMtime, crc.getValue(), maxId);
+
+		LazyTodoList list = openIndex(channel, indexPath, dataSize, dataMtime, cacheSize);
+		if (list == null) {
+			throw new IOException("索引ファイルを作成できませんでした: " + indexPath);
+		}
+		return new LazyTodoList(channel, list.starts, list.ends, list.ids, count, dataSize, crc.getValue(), maxId, skipped, dataSize,
+				cacheSize);
+	}
+
+	/**
+	 * 走査中の1行を検証します。
+	 * @return 行のID（IDの無い行は0）、空行の場合は-1、不正な行の場合は-2
+	 */
+	private static long checkLine(byte[] line, int length, int lineNumber) {
+		int end = length;
+		if (end > 0 && line[end - 1] == '\r') {
+			end--;
+		}
+		boolean blank = true;
+		for (int i = 0; i < end && blank; i++) {
+			blank = line[i] == ' ' || line[i] == '\t';
+		}
+		if (blank) {
+			return -1;
+		}
+
+		String text = new String(line, 0, end, StandardCharsets.UTF_8);
+		try {
+			TodoItem item = MappedTodoLoader.parseItem(line, end);
+			if (item != null) {
+				return item.getId();
+			}
+			System.err.println("警告: 不正なデータ形式の行をスキップしました (" + lineNumber + "行目): " + text);
+		} catch (DateTimeException e) {
+			System.err.println("警告: パースエラーのため行をスキップしました (" + lineNumber + "行目): " + text
+					+ " (原因: " + e.getMessage() + ")");
+		}
+		return -2;
+	}
+
+	/**
+	 * 索引ファイルを一時ファイルに書いてから置き換えます。
+	 */
+	private static void writeIndex(Path indexPath, long[] lineStarts, long[] lineEnds, long[] lineIds, int count,
+			long dataSize, long dataMtime, long crc, long maxId) throws IOException {
+		Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+			header.putLong(dataSize).putLong(dataMtime).putLong(crc).putLong(maxId);
+			header.flip();
+			writeFully(out, header);
+
+			ByteBuffer block = ByteBuffer.allocate(64 * 1024).order(ByteOrder.BIG_ENDIAN);
+			for (int i = 0; i < count; i++) {
+				putLong(out, block, lineStarts[i]);
+			}
+			for (int i = 0; i < count; i++) {
+				putLong(out, block, lineEnds[i]);
+			}
+			for (int i = 0; i < count; i++) {
+				putLong(out, block, lineIds[i]);
+			}
+			block.flip();
+			writeFully(out, block);
+			out.force(true);
+		}
+		TodoJournal.moveAtomically(tempPath, indexPath);
+	}
+
+	private static void putLong(FileChannel out, ByteBuffer block, long value) throws IOException {
+		if (block.remaining() < Long.BYTES) {
+			block.flip();
+			writeFully(out, block);
+			block.clear();
+		}
+		block.putLong(value);
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,510 @@
+/**
+ * ToDoリストファイルをメモリマップして、並列に読み込むクラスです。
+ * ファイルを改行の位置で複数のチャンクに分け、各チャンクをフォーク/ジョインプールで解析した後、
+ * ファイル内の順番どおりに結合します。
+ */
+package com.example.todolist;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+public class MappedTodoLoader {
+
+	//フィールド
+	/** このサイズ未満のファイルは分割せずに呼び出し元のスレッドで読み込む */
+	private static final long MIN_CHUNK_BYTES = 1L << 20;
+
+	/** 1チャンクの最大サイズ（1回のメモリマップの上限より十分小さくする） */
+	private static final long MAX_CHUNK_BYTES = 64L << 20;
+
+	/** 区切り文字 */
+	private static final byte COMMA = ',';
+
+	/** 日付文字列（YYYY-MM-DD）の長さ */
+	private static final int DATE_LENGTH = 10;
+
+	/** チャンクの解析に使うフォーク/ジョインプール */
+	private final ForkJoinPool pool;
+
+	/**
+	 * 共通プールを使うMappedTodoLoaderを初期化するコンストラクタです。
+	 */
+	public MappedTodoLoader() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * 指定したプールを使うMappedTodoLoaderを初期化するコンストラクタです。
+	 * @param pool チャンクの解析に使うフォーク/ジョインプール
+	 */
+	public MappedTodoLoader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * 読み込み結果（項目のリスト、ファイル全体のCRC32、スキップした行数、読み込んだバイト数）を保持するクラスです。
+	 */
+	public static class Result {
+
+		/** 読み込んだTodoItemのリスト */
+		private final List<TodoItem> items;
+
+		/** ファイル全体のCRC32 */
+		private final long crc;
+
+		/** 不正な形式のためスキップした行数 */
+		private final int skippedRows;
+
+		/** 読み込んだファイルのバイト数 */
+		private final long bytesRead;
+
+		Result(List<TodoItem> items, long crc, int skippedRows, long bytesRead) {
+			this.items = items;
+			this.crc = crc;
+			this.skippedRows = skippedRows;
+			this.bytesRead = bytesRead;
+		}
+
+		/**
+		 * 読み込んだ項目のリストを取得します。
+		 * @return TodoItemのリスト（ファイル内の順番）
+		 */
+		public List<TodoItem> getItems() {
+			return items;
+		}
+
+		/**
+		 * ファイル全体のCRC32を取得します。
+		 * @return CRC32の値
+		 */
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * 不正な形式のためスキップした行数を取得します。
+		 * @return スキップした行数
+		 */
+		public int getSkippedRows() {
+			return skippedRows;
+		}
+
+		/**
+		 * 読み込んだファイルのバイト数を取得します。
+		 * @return バイト数
+		 */
+		public long getBytesRead() {
+			return bytesRead;
+		}
+	}
+
+	/**
+	 * ファイルを読み込み、TodoItemのリストに変換します。
+	 * 不正な行は行番号付きの警告を表示してスキップします。
+	 * @param path 読み込むファイルのパス
+	 * @return 読み込み結果
+	 * @throws IOException ファイルが無い、または読み込みに失敗した場合
+	 */
+	public Result load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long[] bounds = splitOnNewlines(channel, size);
+			int chunkCount = bounds.length - 1;
+
+			ChunkTask[] tasks = new ChunkTask[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				tasks[i] = new ChunkTask(channel, bounds[i], bounds[i + 1] - bounds[i]);
+			}
+			ChecksumTask checksum = new ChecksumTask(channel, size);
+
+			if (chunkCount <= 1) {
+				// 小さいファイルはプールを使わずにそのまま読み込む
+				for (ChunkTask task : tasks) {
+					task.invoke();
+				}
+				checksum.invoke();
+			} else {
+				pool.invoke(new RecursiveTask<Void>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected Void compute() {
+						checksum.fork();
+						ForkJoinTask.invokeAll(tasks);
+						checksum.join();
+						return null;
+					}
+				});
+			}
+
+			List<TodoItem> items = merge(tasks);
+			int skippedRows = 0;
+			for (ChunkTask task : tasks) {
+				skippedRows += task.join().warnings.size();
+			}
+			return new Result(items, checksum.join(), skippedRows, size);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * 各チャンクの結果をファイル内の順番どおりに結合し、警告をファイル全体の行番号で表示します。
+	 */
+	private static List<TodoItem> merge(ChunkTask[] tasks) {
+		int total = 0;
+		for (ChunkTask task : tasks) {
+			total += task.join().items.size();
+		}
+
+		List<TodoItem> merged = new ArrayList<>(total);
+		int lineOffset = 0;
+		for (ChunkTask task : tasks) {
+			ChunkResult result = task.join();
+			merged.addAll(result.items);
+			for (int i = 0; i < result.warningLines.size(); i++) {
+				int lineNumber = lineOffset + result.warningLines.get(i);
+				String[] warning = result.warnings.get(i);
+				System.err.println("警告: " + warning[0] + " (" + lineNumber + "行目): " + warning[1]);
+			}
+			lineOffset += result.lineCount;
+		}
+		return merged;
+	}
+
+	/**
+	 * ファイルをおよそ均等な大きさのチャンクに分け、各境界を改行の直後にそろえます。
+	 * @return チャンクの境界位置（先頭0、末尾はファイルサイズ）
+	 */
+	private long[] splitOnNewlines(FileChannel channel, long size) throws IOException {
+		if (size < MIN_CHUNK_BYTES) {
+			return size == 0 ? new long[] { 0 } : new long[] { 0, size };
+		}
+
+		long chunkSize = Math.max(MIN_CHUNK_BYTES,
+				Math.min(MAX_CHUNK_BYTES, size / (pool.getParallelism() * 4L)));
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+
+		ByteBuffer probe = ByteBuffer.allocate(8192);
+		long position = chunkSize;
+		while (position < size) {
+			long newline = findNewline(channel, position, size, probe);
+			if (newline < 0) {
+				break;
+			}
+			bounds.add(newline + 1);
+			position = newline + 1 + chunkSize;
+		}
+		if (bounds.get(bounds.size() - 1) < size) {
+			bounds.add(size);
+		}
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * 指定位置以降で最初に現れる改行の位置を探します。
+	 * @return 改行の位置（見つからない場合は-1）
+	 */
+	private static long findNewline(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+		long position = from;
+		while (position < size) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read <= 0) {
+				return -1;
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n') {
+					return position + i;
+				}
+			}
+			position += read;
+		}
+		return -1;
+	}
+
+	// ----------------------------------------------------
+	// チャンクの解析
+	// ----------------------------------------------------
+
+	/**
+	 * 1チャンク分の解析結果です。
+	 */
+	private static class ChunkResult {
+
+		/** 読み込んだ項目 */
+		final List<TodoItem> items = new ArrayList<>();
+
+		/** 警告メッセージ（行番号の前に置く説明と、後に置く詳細） */
+		final List<String[]> warnings = new ArrayList<>();
+
+		/** 警告の出た行のチャンク内での行番号（1始まり） */
+		final List<Integer> warningLines = new ArrayList<>();
+
+		/** チャンクに含まれる行数 */
+		int lineCount;
+	}
+
+	/**
+	 * 1チャンクをメモリマップして解析するタスクです。
+	 */
+	private static class ChunkTask extends RecursiveTask<ChunkResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient FileChannel channel;
+		private final long start;
+		private final long length;
+
+		/** 1行分のバイト列をコピーする使い回しバッファ */
+		private byte[] lineBytes = new byte[256];
+
+		ChunkTask(FileChannel channel, long start, long length) {
+			this.channel = channel;
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		protected ChunkResult compute() {
+			MappedByteBuffer buffer;
+			try {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			ChunkResult result = new ChunkResult();
+			int limit = buffer.limit();
+			int lineStart = 0;
+			while (lineStart < limit) {
+				int lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				result.lineCount++;
+				parseLine(buffer, lineStart, lineEnd, result);
+				lineStart = lineEnd + 1;
+			}
+			return result;
+		}
+
+		/**
+		 * 1行（内容,期限,完了状態[,ID]）を解析して結果に追加します。不正な行は警告を記録してスキップします。
+		 */
+		private void parseLine(ByteBuffer buffer, int from, int to, ChunkResult result) {
+			// 改行コードがCRLFの場合は末尾のCRを除く
+			if (to > from && buffer.get(to - 1) == '\r') {
+				to--;
+			}
+
+			int length = to - from;
+			if (lineBytes.length < length) {
+				lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+			}
+			buffer.get(from, lineBytes, 0, length);
+
+			// 空行や不正な行はスキップ
+			if (isBlank(lineBytes, length)) {
+				return;
+			}
+
+			TodoItem item;
+			try {
+				item = parseItem(lineBytes, length);
+			} catch (DateTimeException e) {
+				warn(result, "パースエラーのため行をスキップしました",
+						decode(lineBytes, 0, length) + " (原因: " + e.getMessage() + ")");
+				return;
+			}
+			if (item == null) {
+				warn(result, "不正なデータ形式の行をスキップしました", decode(lineBytes, 0, length));
+				return;
+			}
+			result.items.add(item);
+		}
+
+		private void warn(ChunkResult result, String description, String detail) {
+			result.warnings.add(new String[] { description, detail });
+			result.warningLines.add(result.lineCount);
+		}
+	}
+
+	/**
+	 * ファイル全体のCRC32を計算するタスクです（チャンクの解析と並行して実行されます）。
+	 */
+	private static class ChecksumTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient FileChannel channel;
+		private final long size;
+
+		ChecksumTask(FileChannel channel, long size) {
+			this.channel = channel;
+			this.size = size;
+		}
+
+		@Override
+		protected Long compute() {
+			CRC32 crc = new CRC32();
+			try {
+				for (long position = 0; position < size; position += MAX_CHUNK_BYTES) {
+					crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+							Math.min(MAX_CHUNK_BYTES, size - position)));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return crc.getValue();
+		}
+	}
+
+	// ----------------------------------------------------
+	// バイト列の解析
+	// ----------------------------------------------------
+
+	/**
+	 * 1行分のバイト列（内容,期限,完了状態[,ID]、改行を除く）をTodoItemに変換します。
+	 * 内容にカンマが含まれていても読めるように、期限と完了状態とIDは行末側から切り出します。
+	 * 完了状態は数字にならないので、末尾の項目が数字だけならIDとみなします（IDの無い古い形式も読めます）。
+	 * @param bytes 行のバイト列（UTF-8）
+	 * @param length 行の長さ
+	 * @return 変換したTodoItem（項目が揃っていない場合はnull）
+	 * @throws DateTimeException 期限の形式が不正な場合
+	 */
+	static TodoItem parseItem(byte[] bytes, int length) {
+		// 末尾がIDの場合は切り離し、残りを内容,期限,完了状態として扱う
+		int end = length;
+		int lastComma = lastIndexOf(bytes, COMMA, end);
+		long id = lastComma < 0 ? -1 : parseId(bytes, lastComma + 1, end);
+		if (id >= 0) {
+			end = lastComma;
+			lastComma = lastIndexOf(bytes, COMMA, end);
+		} else {
+			id = 0;
+		}
+
+		// 行末側から2つ目のカンマを探す
+		int secondComma = lastComma < 0 ? -1 : lastIndexOf(bytes, COMMA, lastComma);
+
+		// データが3つ（内容,期限,完了状態）揃っているか確認
+		if (secondComma < 0 || lastComma == end - 1) {
+			return null;
+		}
+
+		LocalDate deadline = parseDate(bytes, secondComma + 1, lastComma);
+		TodoItem item = new TodoItem(decode(bytes, 0, secondComma), deadline);
+		item.setCompleted(isTrue(bytes, lastComma + 1, end));
+		item.setId(id);
+		return item;
+	}
+
+	/**
+	 * YYYY-MM-DD形式の日付を、正規表現や文字列の分割を使わずにバイト列から直接解析します。
+	 * @throws DateTimeException 形式または日付が不正な場合
+	 */
+	static LocalDate parseDate(byte[] bytes, int from, int to) {
+		if (to - from != DATE_LENGTH || bytes[from + 4] != '-' || bytes[from + 7] != '-') {
+			throw new DateTimeException("Text '" + decode(bytes, from, to - from) + "' could not be parsed");
+		}
+		int year = digits(bytes, from, from + 4);
+		int month = digits(bytes, from + 5, from + 7);
+		int day = digits(bytes, from + 8, from + 10);
+		if (year < 0 || month < 0 || day < 0) {
+			throw new DateTimeException("Text '" + decode(bytes, from, to - from) + "' could not be parsed");
+		}
+		return LocalDate.of(year, month, day);
+	}
+
+	/**
+	 * 数字だけからなるバイト列を整数に変換します。
+	 * @return 変換した値（数字以外が含まれる場合は-1）
+	 */
+	private static int digits(byte[] bytes, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * 数字だけからなるIDを解析します。
+	 * @return 解析したID（空、数字以外を含む、または桁数が多すぎる場合は-1）
+	 */
+	private static long parseId(byte[] bytes, int from, int to) {
+		if (to <= from || to - from > 18) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Boolean.parseBooleanと同じく、大文字小文字を区別せずに"true"かどうかを判定します。
+	 */
+	private static boolean isTrue(byte[] bytes, int from, int to) {
+		if (to - from != 4) {
+			return false;
+		}
+		return (bytes[from] | 0x20) == 't' && (bytes[from + 1] | 0x20) == 'r'
+				&& (bytes[from + 2] | 0x20) == 'u' && (bytes[from + 3] | 0x20) == 'e';
+	}
+
+	/**
+	 * String.trim()と同じく、空白・制御文字だけからなる行かどうかを判定します。
+	 */
+	private static boolean isBlank(byte[] bytes, int length) {
+		for (int i = 0; i < length; i++) {
+			if ((bytes[i] & 0xFF) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int lastIndexOf(byte[] bytes, byte target, int before) {
+		for (int i = before - 1; i >= 0; i--) {
+			if (bytes[i] == target) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String decode(byte[] bytes, int from, int length) {
+		return new String(bytes, from, length, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,503 @@
+/**
+ * ToDoリストを期限の月ごとのファイル（パーティション）に分けて保存するクラスです。
+ * ファイル名の拡張子が .parts の場合、FileHandlerはそのパスをディレクトリとしてこの形式で読み書きします。
+ *
+ * ディレクトリには、月ごとのパーティション（テキスト形式の行、例: 2026-03-g000012.txt、期限の無い項目は none-…）と、
+ * それらの一覧であるマニフェスト（manifest.txt）を置きます。マニフェストには各パーティションのファイル名・件数・最大のID・
+ * CRC32・大きさを記録し、マニフェストのCRC32をスナップショット全体を識別する値（ジャーナルの前提）として使います。
+ *
+ * 保存時は変更のあったパーティションだけを新しい世代のファイルに書き、最後にマニフェストを置き換えます。
+ * マニフェストが指していないファイルは読み込まないので、途中で落ちても前回の状態のまま読み込めます。
+ * TodoListListenerとして登録すると変更のあった月を記録し、それ以外の月は内容を書き出すことなく前回のファイルを使い続けます。
+ * 登録していない場合は各パーティションの内容のCRC32をマニフェストと比べ、変わったものだけを書きます。
+ *
+ * 起動時は全パーティションを並列に読み込み、IDの順（追加した順）に並べます。
+ * 期限の範囲を指定した検索では、範囲に重なる月のパーティションだけを開きます。
+ */
+package com.example.todolist;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+public class PartitionedTodoStore implements TodoListListener {
+
+	//フィールド
+	/** この形式で保存するディレクトリの拡張子 */
+	public static final String EXTENSION = ".parts";
+
+	/** マニフェストのファイル名 */
+	private static final String MANIFEST = "manifest.txt";
+
+	/** マニフェストの1行目 */
+	private static final String HEADER_PREFIX = "#todo-partitions v1 generation=";
+
+	/** 期限の無い項目のパーティションを表すキー（期限のあるキーは 年*100+月 なので重ならない） */
+	private static final int NO_DEADLINE = Integer.MAX_VALUE;
+
+	/** パーティションのファイル名の接尾辞 */
+	private static final String PARTITION_SUFFIX = ".txt";
+
+	/** パーティションを置くディレクトリ */
+	private final Path directory;
+
+	/** パーティションの解析に使うローダー */
+	private final MappedTodoLoader loader;
+
+	/** 現在のマニフェストに記録されているパーティション（キーの順） */
+	private final TreeMap<Integer, Partition> partitions = new TreeMap<>();
+
+	/** マニフェストの世代（保存のたびに1つ増やし、新しいパーティションのファイル名に使う） */
+	private long generation;
+
+	/** 前回の保存から変更のあったパーティションのキー */
+	private final Set<Integer> dirty = new HashSet<>();
+
+	/** 変更を追跡できていない（全パーティションの内容を比べる必要がある）場合はtrue */
+	private boolean allDirty = true;
+
+	/** リスナーとして変更を追跡している場合はtrue */
+	private boolean tracking;
+
+	/** 直前の保存で書き込んだパーティションの数 */
+	private int lastWrittenCount;
+
+	/**
+	 * パーティションの記録（マニフェストの1行）です。
+	 */
+	private static class Partition {
+
+		final int key;
+		final String fileName;
+		final int count;
+		final long maxId;
+		final long crc;
+		final long size;
+
+		Partition(int key, String fileName, int count, long maxId, long crc, long size) {
+			this.key = key;
+			this.fileName = fileName;
+			this.count = count;
+			this.maxId = maxId;
+			this.crc = crc;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * PartitionedTodoStoreを初期化するコンストラクタです。ディレクトリは最初の保存で作ります。
+	 * @param directory パーティションを置くディレクトリ
+	 * @param loader パーティションの解析に使うローダー
+	 */
+	public PartitionedTodoStore(Path directory, MappedTodoLoader loader) {
+		this.directory = directory;
+		this.loader = loader;
+	}
+
+	/**
+	 * 期限が属するパーティションのキーを求めます。
+	 * @param deadline 期限（nullの場合は期限の無い項目のパーティション）
+	 * @return パーティションのキー（年*100+月）
+	 */
+	public static int partitionOf(LocalDate deadline) {
+		return deadline == null ? NO_DEADLINE : deadline.getYear() * 100 + deadline.getMonthValue();
+	}
+
+	// ----------------------------------------------------
+	// 読み込み
+	// ----------------------------------------------------
+
+	/**
+	 * マニフェストに記録された全パーティションを並列に読み込み、IDの順に並べます。
+	 * マニフェストが指していない古い世代のファイル（保存の途中で落ちた場合の残り）は削除します。
+	 * @return 読み込み結果（CRC32はマニフェストのもの）
+	 * @throws IOException マニフェストが無い、または読み込みに失敗した場合
+	 */
+	public synchronized MappedTodoLoader.Result load() throws IOException {
+		long manifestSize = readManifest();
+		removeUnreferencedFiles();
+
+		List<PartitionTask> tasks = new ArrayList<>();
+		for (Partition partition : partitions.values()) {
+			tasks.add(new PartitionTask(partition));
+		}
+		ForkJoinTask.invokeAll(tasks);
+
+		List<TodoItem> items = new ArrayList<>();
+		int skippedRows = 0;
+		long bytesRead = manifestSize;
+		for (PartitionTask task : tasks) {
+			MappedTodoLoader.Result result = join(task);
+			items.addAll(result.getItems());
+			skippedRows += result.getSkippedRows();
+			bytesRead += result.getBytesRead();
+			if (result.getCrc() != task.partition.crc) {
+				System.err.println("警告: パーティションの内容がマニフェストと一致しません: " + task.partition.fileName);
+				dirty.add(task.partition.key);
+			}
+		}
+		// 追加した順に並べる（IDは追加した順に割り当てられる）
+		items.sort(Comparator.comparingLong(TodoItem::getId));
+		allDirty = !tracking;
+		return new MappedTodoLoader.Result(items, manifestCrc(), skippedRows, bytesRead);
+	}
+
+	/**
+	 * 期限が指定した期間（開始日・終了日を含む）にある項目を、期間に重なる月のパーティションだけを開いて探します。
+	 * 全体を読み込まずに期限で絞り込む場合に使います。
+	 * @param from 開始日
+	 * @param to 終了日
+	 * @return 該当する項目（期限順）
+	 * @throws IOException マニフェストが無い、または読み込みに失敗した場合
+	 */
+	public synchronized List<TodoItem> findDueBetween(LocalDate from, LocalDate to) throws IOException {
+		if (partitions.isEmpty()) {
+			readManifest();
+		}
+		List<TodoItem> found = new ArrayList<>();
+		for (Partition partition : partitions.subMap(partitionOf(from), true, partitionOf(to), true).values()) {
+			MappedTodoLoader.Result result = loader.load(directory.resolve(partition.fileName));
+			TodoMetrics.get().addBytesRead(result.getBytesRead());
+			for (TodoItem item : result.getItems()) {
+				LocalDate deadline = item.getDeadline();
+				if (!deadline.isBefore(from) && !deadline.isAfter(to)) {
+					found.add(item);
+				}
+			}
+		}
+		found.sort(Comparator.comparing(TodoItem::getDeadline).thenComparingLong(TodoItem::getId));
+		return found;
+	}
+
+	/**
+	 * 現在のマニフェストのCRC32を取得します（ジャーナルがこのマニフェストに対応するかの確認に使用）。
+	 * @return CRC32
+	 */
+	public synchronized long getManifestCrc() {
+		return manifestCrc();
+	}
+
+	/**
+	 * マニフェストに記録された項目の最大のIDを取得します（パーティションは読みません）。
+	 * @return 最大のID
+	 */
+	public synchronized long getMaxId() {
+		long maxId = 0;
+		for (Partition partition : partitions.values()) {
+			maxId = Math.max(maxId, partition.maxId);
+		}
+		return maxId;
+	}
+
+	/**
+	 * パーティションの数を取得します。
+	 * @return パーティションの数
+	 */
+	public synchronized int getPartitionCount() {
+		return partitions.size();
+	}
+
+	/**
+	 * 直前の保存で書き込んだパーティションの数を取得します。
+	 * @return パーティションの数
+	 */
+	public synchronized int getLastWrittenCount() {
+		return lastWrittenCount;
+	}
+
+	// ----------------------------------------------------
+	// 保存
+	// ----------------------------------------------------
+
+	/**
+	 * リストを保存します。変更のあったパーティションだけを新しい世代のファイルに書き、マニフェストを置き換えます。
+	 * @param list 保存対象のTodoItemリスト
+	 * @return 新しいマニフェストのCRC32
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized long write(List<TodoItem> list) throws IOException {
+		Files.createDirectories(directory);
+
+		// 書き直す可能性のあるパーティションの項目だけを集める
+		Map<Integer, List<TodoItem>> grouped = new HashMap<>();
+		Set<Integer> present = new HashSet<>();
+		for (TodoItem item : list) {
+			int key = partitionOf(item.getDeadline());
+			present.add(key);
+			if (allDirty || dirty.contains(key) || !partitions.containsKey(key)) {
+				grouped.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+			}
+		}
+
+		long nextGeneration = generation + 1;
+		TreeMap<Integer, Partition> next = new TreeMap<>();
+		List<String> superseded = new ArrayList<>();
+		int written = 0;
+
+		for (Partition partition : partitions.values()) {
+			if (!present.contains(partition.key)) {
+				// 項目が無くなった月
+				superseded.add(partition.fileName);
+			} else if (!grouped.containsKey(partition.key)) {
+				next.put(partition.key, partition);
+			}
+		}
+		for (Map.Entry<Integer, List<TodoItem>> entry : grouped.entrySet()) {
+			Partition old = partitions.get(entry.getKey());
+			Partition partition = writePartition(entry.getKey(), entry.getValue(), old, nextGeneration);
+			next.put(partition.key, partition);
+			if (partition != old) {
+				written++;
+				if (old != null) {
+					superseded.add(old.fileName);
+				}
+			}
+		}
+
+		if (written > 0 || !superseded.isEmpty() || !Files.exists(directory.resolve(MANIFEST))) {
+			writeManifest(next, nextGeneration);
+			generation = nextGeneration;
+			partitions.clear();
+			partitions.putAll(next);
+			for (String fileName : superseded) {
+				Files.deleteIfExists(directory.resolve(fileName));
+			}
+		}
+
+		lastWrittenCount = written;
+		dirty.clear();
+		allDirty = !tracking;
+		return manifestCrc();
+	}
+
+	/**
+	 * 保存の前に、変更を追跡できていない（全パーティションの内容を比べる必要がある）状態にします。
+	 * ジャーナルの記録をリストに直接適用した後など、リスナーを通さずに変更された場合に呼び出します。
+	 */
+	public synchronized void markAllDirty() {
+		allDirty = true;
+	}
+
+	/**
+	 * リスナーとして変更を追跡しているかどうかを設定します。
+	 * 追跡している場合、保存時には変更のあった月のパーティションだけを書き出します。
+	 * @param tracking TodoListManagerにリスナーとして登録した場合はtrue
+	 */
+	public synchronized void setTracking(boolean tracking) {
+		this.tracking = tracking;
+		if (!tracking) {
+			allDirty = true;
+		}
+	}
+
+	/**
+	 * 1つのパーティションの内容を作り、前回と同じであれば前回の記録を、異なれば新しい世代のファイルに書いた記録を返します。
+	 */
+	private Partition writePartition(int key, List<TodoItem> items, Partition old, long nextGeneration) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(items.size() * 48);
+		long maxId = 0;
+		for (TodoItem item : items) {
+			bytes.write(item.toFileString().getBytes(StandardCharsets.UTF_8));
+			bytes.write('\n');
+			maxId = Math.max(maxId, item.getId());
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		if (old != null && old.crc == crc.getValue() && old.size == bytes.size()) {
+			return old;
+		}
+
+		String fileName = String.format("%s-g%06d%s", nameOf(key), nextGeneration, PARTITION_SUFFIX);
+		try (FileOutputStream out = new FileOutputStream(directory.resolve(fileName).toFile())) {
+			bytes.writeTo(out);
+			out.getFD().sync();
+		}
+		TodoMetrics.get().addBytesWritten(bytes.size());
+		return new Partition(key, fileName, items.size(), maxId, crc.getValue(), bytes.size());
+	}
+
+	private static String nameOf(int key) {
+		return key == NO_DEADLINE ? "none" : String.format("%04d-%02d", key / 100, key % 100);
+	}
+
+	// ----------------------------------------------------
+	// マニフェスト
+	// ----------------------------------------------------
+
+	/**
+	 * マニフェストを読み込み、パーティションの記録を置き換えます。
+	 * @return マニフェストの大きさ
+	 */
+	private long readManifest() throws IOException {
+		List<String> lines = Files.readAllLines(directory.resolve(MANIFEST), StandardCharsets.UTF_8);
+		if (lines.isEmpty() || !lines.get(0).startsWith(HEADER_PREFIX)) {
+			throw new IOException("マニフェストの形式が不正です: " + directory.resolve(MANIFEST));
+		}
+		partitions.clear();
+		generation = Long.parseLong(lines.get(0).substring(HEADER_PREFIX.length()));
+
+		long size = 0;
+		for (String line : lines) {
+			size += line.getBytes(StandardCharsets.UTF_8).length + 1;
+			if (line.startsWith("#") || line.isEmpty()) {
+				continue;
+			}
+			String[] fields = line.split("\t");
+			if (fields.length != 6) {
+				throw new IOException("マニフェストの行が不正です: " + line);
+			}
+			int key = fields[0].equals(nameOf(NO_DEADLINE)) ? NO_DEADLINE
+					: Integer.parseInt(fields[0].substring(0, 4)) * 100 + Integer.parseInt(fields[0].substring(5));
+			partitions.put(key, new Partition(key, fields[1], Integer.parseInt(fields[2]), Long.parseLong(fields[3]),
+					Long.parseLong(fields[4], 16), Long.parseLong(fields[5])));
+		}
+		return size;
+	}
+
+	/**
+	 * マニフェストを一時ファイルに書いてから置き換えます。
+	 */
+	private void writeManifest(TreeMap<Integer, Partition> next, long nextGeneration) throws IOException {
+		Path tempPath = directory.resolve(MANIFEST + ".tmp");
+		byte[] bytes = manifestText(next, nextGeneration).getBytes(StandardCharsets.UTF_8);
+		try (FileOutputStream out = new FileOutputStream(tempPath.toFile())) {
+			out.write(bytes);
+			out.getFD().sync();
+		}
+		TodoMetrics.get().addBytesWritten(bytes.length);
+		TodoJournal.moveAtomically(tempPath, directory.resolve(MANIFEST));
+	}
+
+	private static String manifestText(TreeMap<Integer, Partition> partitions, long generation) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(HEADER_PREFIX).append(generation).append('\n');
+		sb.append("#月\tファイル\t件数\t最大のID\tCRC32\tバイト数\n");
+		for (Partition partition : partitions.values()) {
+			sb.append(nameOf(partition.key)).append('\t').append(partition.fileName).append('\t')
+					.append(partition.count).append('\t').append(partition.maxId).append('\t')
+					.append(Long.toHexString(partition.crc)).append('\t').append(partition.size).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 現在のパーティションの記録から、マニフェストのCRC32を求めます。
+	 */
+	private long manifestCrc() {
+		CRC32 crc = new CRC32();
+		crc.update(manifestText(partitions, generation).getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	/**
+	 * マニフェストが指していないパーティションのファイルを削除します。
+	 */
+	private void removeUnreferencedFiles() throws IOException {
+		Set<String> referenced = new HashSet<>();
+		for (Partition partition : partitions.values()) {
+			referenced.add(partition.fileName);
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*-g*" + PARTITION_SUFFIX)) {
+			for (Path path : stream) {
+				if (!referenced.contains(path.getFileName().toString())) {
+					Files.deleteIfExists(path);
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// ディレクトリが無い
+		}
+	}
+
+	// ----------------------------------------------------
+	// 並列読み込み
+	// ----------------------------------------------------
+
+	/**
+	 * 1つのパーティションを読み込むタスクです。
+	 */
+	private class PartitionTask extends RecursiveTask<MappedTodoLoader.Result> {
+
+		private static final long serialVersionUID = 1L;
+
+		final transient Partition partition;
+
+		PartitionTask(Partition partition) {
+			this.partition = partition;
+		}
+
+		@Override
+		protected MappedTodoLoader.Result compute() {
+			try {
+				return loader.load(directory.resolve(partition.fileName));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static MappedTodoLoader.Result join(PartitionTask task) throws IOException {
+		try {
+			return task.join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// ----------------------------------------------------
+	// 変更の追跡（TodoListListener）
+	// ----------------------------------------------------
+
+	@Override
+	public synchronized void itemAdded(int index, TodoItem item) {
+		dirty.add(partitionOf(item.getDeadline()));
+	}
+
+	@Override
+	public synchronized void itemCompleted(int index, TodoItem item) {
+		dirty.add(partitionOf(item.getDeadline()));
+	}
+
+	@Override
+	public synchronized void itemReopened(int index, TodoItem item) {
+		dirty.add(partitionOf(item.getDeadline()));
+	}
+
+	@Override
+	public synchronized void itemRemoved(int index, TodoItem item) {
+		dirty.add(partitionOf(item.getDeadline()));
+	}
+
+	@Override
+	public synchronized void contentEdited(int index, TodoItem item, String oldContent) {
+		dirty.add(partitionOf(item.getDeadline()));
+	}
+
+	@Override
+	public synchronized void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		dirty.add(partitionOf(oldDeadline));
+		dirty.add(partitionOf(item.getDeadline()));
+	}
+
+	@Override
+	public synchronized void listReplaced(List<TodoItem> items) {
+		allDirty = true;
+	}
+}
@@ -0,0 +1,382 @@
+/**
+ * 未完了の項目の期限が近づいた時と、期限を過ぎた時に通知するクラスです。
+ * TodoListListenerとして登録するとリストの変更に追従し、通知の予定を時刻順の木（TreeSet）で保持します。
+ * 通知のたびにリストを走査することはなく、予定の先頭から時刻を過ぎたものだけを取り出します。
+ *
+ * 項目ごとに「期限が近い」（期限の指定日数前の0時）と「期限切れ」（期限の翌日の0時）の2つの予定を登録し、
+ * IDから予定を引く表を併せて持つので、完了による取り消しと期限の変更による登録し直しはO(log n)で行えます。
+ *
+ * 時刻はコンストラクタで渡すClockから取得するので、固定の時刻や進めた時刻で動作を確かめられます（fireDueを直接呼び出します）。
+ * startを呼び出すと、次の予定の時刻に合わせてバックグラウンドのスレッドで通知します。
+ */
+package com.example.todolist;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ReminderScheduler implements TodoListListener, Closeable {
+
+	/**
+	 * 通知の種類です。
+	 */
+	public enum Kind {
+		/** 期限が近い */
+		DUE_SOON,
+		/** 期限切れ */
+		OVERDUE
+	}
+
+	/**
+	 * 通知を受け取るリスナーです。同じ時刻に届いた通知はまとめて渡します。
+	 */
+	public interface ReminderListener {
+
+		/**
+		 * 通知の時刻になった予定を受け取ります。
+		 * @param reminders 通知（時刻順）
+		 */
+		void remind(List<Reminder> reminders);
+	}
+
+	/**
+	 * 1件の通知の予定です。
+	 */
+	public static class Reminder implements Comparable<Reminder> {
+
+		private final Instant fireAt;
+		private final Kind kind;
+		private final TodoItem item;
+		private final long id;
+		private final long sequence;
+
+		Reminder(Instant fireAt, Kind kind, TodoItem item, long sequence) {
+			this.fireAt = fireAt;
+			this.kind = kind;
+			this.item = item;
+			this.id = item.getId();
+			this.sequence = sequence;
+		}
+
+		/** @return 通知する時刻 */
+		public Instant getFireAt() {
+			return fireAt;
+		}
+
+		/** @return 通知の種類 */
+		public Kind getKind() {
+			return kind;
+		}
+
+		/** @return 対象の項目 */
+		public TodoItem getItem() {
+			return item;
+		}
+
+		@Override
+		public int compareTo(Reminder other) {
+			int c = fireAt.compareTo(other.fireAt);
+			if (c == 0) {
+				c = Long.compare(id, other.id);
+			}
+			if (c == 0) {
+				c = kind.compareTo(other.kind);
+			}
+			return c != 0 ? c : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	//フィールド
+	/** 既定では、期限のこの日数前に「期限が近い」と通知する */
+	public static final int DEFAULT_LEAD_DAYS = 1;
+
+	/** コンソールに表示する通知の最大件数（超えた分は件数だけを表示） */
+	private static final int CONSOLE_LIMIT = 10;
+
+	/** 現在の時刻を取得するClock */
+	private final Clock clock;
+
+	/** 期限の何日前に「期限が近い」と通知するか */
+	private final int leadDays;
+
+	/** 通知を受け取るリスナー */
+	private final ReminderListener listener;
+
+	/** 通知の予定（時刻順） */
+	private final TreeSet<Reminder> queue = new TreeSet<>();
+
+	/** IDから、その項目の予定（最大2件）を引く表 */
+	private final Map<Long, Reminder[]> byId = new HashMap<>();
+
+	/** 予定を登録した順番（同じ時刻・同じIDの予定を区別する） */
+	private long sequence;
+
+	/** 通知を行うスレッド（startを呼び出すまではnull） */
+	private ScheduledThreadPoolExecutor scheduler;
+
+	/** 次の通知の予約 */
+	private ScheduledFuture<?> pending;
+
+	/** 予約した通知の時刻 */
+	private Instant pendingAt;
+
+	/** 通知した件数 */
+	private long firedCount;
+
+	/**
+	 * 通知をコンソールに表示するReminderSchedulerを初期化するコンストラクタです。
+	 * @param clock 現在の時刻を取得するClock
+	 * @param leadDays 期限の何日前に「期限が近い」と通知するか（0で期限の当日）
+	 */
+	public ReminderScheduler(Clock clock, int leadDays) {
+		this(clock, leadDays, consoleListener(System.out));
+	}
+
+	/**
+	 * 通知の受け取り先を指定してReminderSchedulerを初期化するコンストラクタです。
+	 * @param clock 現在の時刻を取得するClock
+	 * @param leadDays 期限の何日前に「期限が近い」と通知するか（0で期限の当日）
+	 * @param listener 通知を受け取るリスナー
+	 * @throws IllegalArgumentException 日数が負の場合
+	 */
+	public ReminderScheduler(Clock clock, int leadDays, ReminderListener listener) {
+		if (leadDays < 0) {
+			throw new IllegalArgumentException("通知する日数は0以上を指定してください: " + leadDays);
+		}
+		this.clock = clock;
+		this.leadDays = leadDays;
+		this.listener = listener;
+	}
+
+	/**
+	 * 通知をコンソールに表示するリスナーを作ります。多数の通知が同時に届いた場合は、先頭の数件と残りの件数を表示します。
+	 * @param out 表示先
+	 * @return リスナー
+	 */
+	public static ReminderListener consoleListener(PrintStream out) {
+		return reminders -> {
+			StringBuilder sb = new StringBuilder();
+			sb.append(System.lineSeparator());
+			for (int i = 0; i < reminders.size() && i < CONSOLE_LIMIT; i++) {
+				Reminder reminder = reminders.get(i);
+				sb.append(reminder.getKind() == Kind.OVERDUE ? "【期限切れ】" : "【期限間近】");
+				reminder.getItem().appendTo(sb).append(System.lineSeparator());
+			}
+			if (reminders.size() > CONSOLE_LIMIT) {
+				sb.append("ほか ").append(reminders.size() - CONSOLE_LIMIT).append(" 件の通知があります。")
+						.append(System.lineSeparator());
+			}
+			out.print(sb);
+		};
+	}
+
+	// ----------------------------------------------------
+	// 開始・終了
+	// ----------------------------------------------------
+
+	/**
+	 * バックグラウンドのスレッドで通知を始めます。すでに時刻を過ぎている予定はすぐに通知します。
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "todo-reminder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		reschedule();
+	}
+
+	/**
+	 * 通知を止めます。
+	 */
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+			pending = null;
+			pendingAt = null;
+		}
+	}
+
+	/**
+	 * 時刻を過ぎた予定をすべて取り出してリスナーに通知します。
+	 * バックグラウンドのスレッドから呼ばれるほか、Clockを差し替えて動作を確かめる場合は直接呼び出します。
+	 * @return 通知した件数
+	 */
+	public int fireDue() {
+		List<Reminder> due = new ArrayList<>();
+		synchronized (this) {
+			Instant now = clock.instant();
+			while (!queue.isEmpty() && !queue.first().fireAt.isAfter(now)) {
+				Reminder reminder = queue.pollFirst();
+				Reminder[] entries = byId.get(reminder.id);
+				if (entries != null) {
+					entries[reminder.kind.ordinal()] = null;
+					if (entries[0] == null && entries[1] == null) {
+						byId.remove(reminder.id);
+					}
+				}
+				due.add(reminder);
+			}
+			firedCount += due.size();
+			pendingAt = null;
+			reschedule();
+		}
+		// リスナーの処理は同期の外で行う（表示に時間がかかっても予定の変更を妨げない）
+		if (!due.isEmpty()) {
+			listener.remind(due);
+		}
+		return due.size();
+	}
+
+	/**
+	 * 登録されている予定の件数を取得します。
+	 * @return 件数
+	 */
+	public synchronized int getPendingCount() {
+		return queue.size();
+	}
+
+	/**
+	 * 次の予定の時刻を取得します。
+	 * @return 時刻（予定が無い場合はnull）
+	 */
+	public synchronized Instant getNextFireTime() {
+		return queue.isEmpty() ? null : queue.first().fireAt;
+	}
+
+	/**
+	 * これまでに通知した件数を取得します。
+	 * @return 件数
+	 */
+	public synchronized long getFiredCount() {
+		return firedCount;
+	}
+
+	// ----------------------------------------------------
+	// 予定の登録・取り消し
+	// ----------------------------------------------------
+
+	/**
+	 * 項目の予定を登録し直します（既存の予定は取り消します）。完了済み・期限の無い項目は予定を持ちません。
+	 * 現在の時刻より前の予定は、その種類のうち最新の状態（期限切れなら期限切れ）だけを登録します。
+	 */
+	private void schedule(TodoItem item) {
+		cancel(item.getId());
+		LocalDate deadline = item.getDeadline();
+		if (item.isCompleted() || deadline == null || item.getId() <= 0) {
+			return;
+		}
+
+		Instant dueSoonAt = deadline.minusDays(leadDays).atStartOfDay(clock.getZone()).toInstant();
+		Instant overdueAt = deadline.plusDays(1).atStartOfDay(clock.getZone()).toInstant();
+		Reminder[] entries = new Reminder[Kind.values().length];
+		if (overdueAt.isAfter(clock.instant())) {
+			entries[Kind.DUE_SOON.ordinal()] = new Reminder(dueSoonAt, Kind.DUE_SOON, item, ++sequence);
+		}
+		entries[Kind.OVERDUE.ordinal()] = new Reminder(overdueAt, Kind.OVERDUE, item, ++sequence);
+
+		for (Reminder reminder : entries) {
+			if (reminder != null) {
+				queue.add(reminder);
+			}
+		}
+		byId.put(item.getId(), entries);
+	}
+
+	/**
+	 * 項目の予定を取り消します。
+	 */
+	private void cancel(long id) {
+		Reminder[] entries = byId.remove(id);
+		if (entries == null) {
+			return;
+		}
+		for (Reminder reminder : entries) {
+			if (reminder != null) {
+				queue.remove(reminder);
+			}
+		}
+	}
+
+	/**
+	 * 予定の先頭の時刻に合わせて、次の通知を予約し直します（先頭が変わらなければ何もしません）。
+	 */
+	private void reschedule() {
+		if (scheduler == null) {
+			return;
+		}
+		Instant next = queue.isEmpty() ? null : queue.first().fireAt;
+		if (next == null ? pendingAt == null : next.equals(pendingAt)) {
+			return;
+		}
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+		pendingAt = next;
+		if (next != null) {
+			long delayMillis = Math.max(0, next.toEpochMilli() - clock.millis());
+			pending = scheduler.schedule(this::fireDue, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// ----------------------------------------------------
+	// リストの変更（TodoListListener）
+	// ----------------------------------------------------
+
+	@Override
+	public synchronized void itemAdded(int index, TodoItem item) {
+		schedule(item);
+		reschedule();
+	}
+
+	@Override
+	public synchronized void itemCompleted(int index, TodoItem item) {
+		cancel(item.getId());
+		reschedule();
+	}
+
+	@Override
+	public synchronized void itemReopened(int index, TodoItem item) {
+		schedule(item);
+		reschedule();
+	}
+
+	@Override
+	public synchronized void itemRemoved(int index, TodoItem item) {
+		cancel(item.getId());
+		reschedule();
+	}
+
+	@Override
+	public synchronized void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		schedule(item);
+		reschedule();
+	}
+
+	@Override
+	public synchronized void listReplaced(List<TodoItem> items) {
+		queue.clear();
+		byId.clear();
+		for (TodoItem item : items) {
+			schedule(item);
+		}
+		reschedule();
+	}
+}
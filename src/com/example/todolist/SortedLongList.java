@@ -0,0 +1,209 @@
+/**
+ * 重複の無いlong値を昇順に保持するリストです。TodoViewsの並び順の保持に使います。
+ * 値は最大BLOCK_CAPACITY件ずつの配列（ブロック）に分けて格納するので、
+ * 追加・削除は該当するブロックの中だけを詰め直し（O(log n + B)）、k番目の値の取得はブロックの件数をたどって求めます。
+ * TreeSet&lt;Long&gt;と違い値をオブジェクトにしないので、100万件でも数MBに収まります。
+ */
+package com.example.todolist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class SortedLongList {
+
+	//フィールド
+	/** 1つのブロックに格納する最大の件数（超えたら半分に分割する） */
+	private static final int BLOCK_CAPACITY = 1024;
+
+	/** まとめて作る場合に1つのブロックに詰める件数（分割までの余裕を残す） */
+	private static final int BUILD_FILL = BLOCK_CAPACITY * 3 / 4;
+
+	/** ブロックの並び（各ブロックは空でなく、前のブロックの値はすべて後のブロックの値より小さい） */
+	private final List<Block> blocks = new ArrayList<>();
+
+	/** 全体の件数 */
+	private int size;
+
+	/**
+	 * 昇順の値の配列を1つ持つブロックです。
+	 */
+	private static class Block {
+
+		long[] values;
+		int size;
+
+		Block(long[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		long first() {
+			return values[0];
+		}
+	}
+
+	/**
+	 * 件数を取得します。
+	 * @return 件数
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * すべての値を削除します。
+	 */
+	void clear() {
+		blocks.clear();
+		size = 0;
+	}
+
+	/**
+	 * 値の配列からリストを作り直します。配列は並べ替えてから使うので、順番は問いません（重複は1つにまとめます）。
+	 * @param values 値の配列（並べ替えるので、呼び出し側ではこの後使わないでください）
+	 * @param count 配列の先頭から使う件数
+	 */
+	void build(long[] values, int count) {
+		clear();
+		Arrays.parallelSort(values, 0, count);
+		long[] block = null;
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			if (i > 0 && values[i] == values[i - 1]) {
+				continue;
+			}
+			if (block == null || n == BUILD_FILL) {
+				if (block != null) {
+					blocks.add(new Block(block, n));
+				}
+				block = new long[BLOCK_CAPACITY];
+				n = 0;
+			}
+			block[n++] = values[i];
+			size++;
+		}
+		if (block != null) {
+			blocks.add(new Block(block, n));
+		}
+	}
+
+	/**
+	 * 値を追加します。
+	 * @param value 追加する値
+	 * @return 追加した場合はtrue（すでにある場合はfalse）
+	 */
+	boolean add(long value) {
+		if (blocks.isEmpty()) {
+			long[] values = new long[BLOCK_CAPACITY];
+			values[0] = value;
+			blocks.add(new Block(values, 1));
+			size = 1;
+			return true;
+		}
+		int b = Math.max(0, blockFor(value));
+		Block block = blocks.get(b);
+		int pos = Arrays.binarySearch(block.values, 0, block.size, value);
+		if (pos >= 0) {
+			return false;
+		}
+		pos = -pos - 1;
+		if (block.size == BLOCK_CAPACITY) {
+			// 満杯のブロックは後半を新しいブロックに移してから追加する
+			int half = BLOCK_CAPACITY / 2;
+			long[] moved = new long[BLOCK_CAPACITY];
+			System.arraycopy(block.values, half, moved, 0, BLOCK_CAPACITY - half);
+			Block next = new Block(moved, BLOCK_CAPACITY - half);
+			block.size = half;
+			blocks.add(b + 1, next);
+			if (pos > half) {
+				block = next;
+				pos -= half;
+			}
+		}
+		System.arraycopy(block.values, pos, block.values, pos + 1, block.size - pos);
+		block.values[pos] = value;
+		block.size++;
+		size++;
+		return true;
+	}
+
+	/**
+	 * 値を削除します。
+	 * @param value 削除する値
+	 * @return 削除した場合はtrue（無かった場合はfalse）
+	 */
+	boolean remove(long value) {
+		int b = blockFor(value);
+		if (b < 0) {
+			return false;
+		}
+		Block block = blocks.get(b);
+		int pos = Arrays.binarySearch(block.values, 0, block.size, value);
+		if (pos < 0) {
+			return false;
+		}
+		System.arraycopy(block.values, pos + 1, block.values, pos, block.size - pos - 1);
+		block.size--;
+		size--;
+		if (block.size == 0) {
+			blocks.remove(b);
+		}
+		return true;
+	}
+
+	/**
+	 * 小さい方からk番目（0始まり）の値を取得します。
+	 * @param k 位置
+	 * @return 値
+	 * @throws IndexOutOfBoundsException 位置が範囲外の場合
+	 */
+	long get(int k) {
+		if (k < 0 || k >= size) {
+			throw new IndexOutOfBoundsException("位置 " + k + " は範囲外です（件数: " + size + "）");
+		}
+		for (Block block : blocks) {
+			if (k < block.size) {
+				return block.values[k];
+			}
+			k -= block.size;
+		}
+		throw new IllegalStateException("ブロックの件数が一致しません。");
+	}
+
+	/**
+	 * 指定した値より小さい値の件数を取得します。
+	 * @param value 基準の値
+	 * @return 件数
+	 */
+	int rank(long value) {
+		int count = 0;
+		for (Block block : blocks) {
+			if (block.values[block.size - 1] < value) {
+				count += block.size;
+				continue;
+			}
+			int pos = Arrays.binarySearch(block.values, 0, block.size, value);
+			return count + (pos >= 0 ? pos : -pos - 1);
+		}
+		return count;
+	}
+
+	/**
+	 * 値が入るブロックの位置（先頭の値が指定した値以下のうち最後のブロック）を探します。
+	 * @return ブロックの位置（すべてのブロックの先頭より小さい場合は-1）
+	 */
+	private int blockFor(long value) {
+		int low = 0;
+		int high = blocks.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (blocks.get(mid).first() <= value) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * TodoListManagerの格納方式ごとに、1項目あたりのヒープ使用量を計測して表示するクラスです。
+ * 使い方: java com.example.todolist.StorageFootprint [項目数] [内容の種類数]
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StorageFootprint {
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private StorageFootprint() {
+	}
+
+	/**
+	 * 指定した格納方式のリストに項目を追加し、ヒープ使用量の増加分から1項目あたりのバイト数を求めます。
+	 * 項目はファイルから読み込んだ場合と同じく、項目ごとに別のLocalDateとStringを作って追加します。
+	 * 索引はどちらの格納方式でも同じなので計測に含めません。
+	 * @param mode 格納方式
+	 * @param count 項目数
+	 * @param distinct 内容の種類数
+	 * @return 1項目あたりのバイト数
+	 */
+	public static double measureBytesPerItem(TodoListManager.StorageMode mode, int count, int distinct) {
+		long before = usedHeap();
+
+		List<TodoItem> list = mode == TodoListManager.StorageMode.COLUMNAR ? new ColumnarTodoList() : new ArrayList<>();
+		LocalDate base = LocalDate.of(2025, 1, 1);
+		for (int i = 0; i < count; i++) {
+			TodoItem item = new TodoItem(new String("タスク" + (i % distinct)),
+					LocalDate.ofEpochDay(base.toEpochDay() + i % 365));
+			item.setCompleted(i % 3 == 0);
+			list.add(item);
+		}
+
+		long after = usedHeap();
+
+		// 計測中にリストが回収されないよう、計測後まで参照を保つ
+		if (list.size() != count) {
+			throw new IllegalStateException("項目数が一致しません。");
+		}
+		return (double) (after - before) / count;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * 計測結果をコンソールに表示します。
+	 * @param args [項目数（既定: 1000000）] [内容の種類数（既定: 項目数と同じ）]
+	 */
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int distinct = args.length > 1 ? Integer.parseInt(args[1]) : count;
+
+		System.out.println("項目数: " + count + "　内容の種類数: " + distinct);
+		for (TodoListManager.StorageMode mode : TodoListManager.StorageMode.values()) {
+			System.out.printf("%-8s : %.1f バイト/項目%n", mode, measureBytesPerItem(mode, count, distinct));
+		}
+	}
+}
@@ -4,12 +4,30 @@
  */
 package com.example.todolist;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.IntUnaryOperator;
 
 public class TodoApp {
 
 	//フィールド
+	/** 検索結果として表示する最大件数 */
+	private static final int SEARCH_RESULT_LIMIT = 20;
+
+	/** ワークスペースにリストが1つも無い場合に作るリストの名前 */
+	private static final String DEFAULT_LIST_NAME = "default";
+
 	/**
 	 * ユーザー入力を受け付けるオブジェクト
 	 * @param コマンドラインからの入力
@@ -19,13 +37,103 @@ public class TodoApp {
 	/**
 	 * TodoListManagerをインスタンス化
 	 */
-	private TodoListManager todoListManager = new TodoListManager();
+	private TodoListManager todoListManager;
 
 	/**
 	 * FileHandlerをインスタンス化
 	 */
 	private FileHandler fileHandler = new FileHandler();
 
+	/** 自動保存の保存間隔（ミリ秒） */
+	private final long autoSaveIntervalMillis;
+
+	/** 自動保存の最大遅延時間（ミリ秒） */
+	private final long autoSaveMaxLatencyMillis;
+
+	/** 期限の何日前に通知するか（負の場合は通知しない） */
+	private int reminderLeadDays = ReminderScheduler.DEFAULT_LEAD_DAYS;
+
+	/** 元に戻せる操作の数（0の場合は履歴を記録しない） */
+	private int historyDepth = TodoHistory.DEFAULT_MAX_DEPTH;
+
+	/** 履歴の大きさの上限（バイト数の概算） */
+	private long historyBytes = TodoHistory.DEFAULT_MAX_BYTES;
+
+	/** ワークスペースモードの場合のワークスペース（1つのリストだけを扱う場合はnull） */
+	private TodoWorkspace workspace;
+
+	/** ワークスペースモードで現在開いているリストの名前 */
+	private String currentListName;
+
+	/**
+	 * TodoItemオブジェクトをそのまま格納するTodoAppを初期化するコンストラクタです。
+	 */
+	public TodoApp() {
+		this(TodoListManager.StorageMode.OBJECT);
+	}
+
+	/**
+	 * 項目の格納方式を指定してTodoAppを初期化するコンストラクタです。
+	 * @param storageMode 項目の格納方式
+	 */
+	public TodoApp(TodoListManager.StorageMode storageMode) {
+		this(storageMode, AutoSaver.DEFAULT_INTERVAL_MILLIS, AutoSaver.DEFAULT_MAX_LATENCY_MILLIS);
+	}
+
+	/**
+	 * 期限から指定した日数が過ぎた完了済みの項目を、起動時にアーカイブへ移すようにします。
+	 * @param days 期限から過ぎた日数（負の場合は移さない）
+	 */
+	public void setArchiveAfterDays(int days) {
+		fileHandler.setArchiveAfterDays(days);
+	}
+
+	/**
+	 * 対話モードで、期限が近い項目と期限切れの項目を通知する日数を設定します。
+	 * @param days 期限の何日前に通知するか（0で期限の当日、負の場合は通知しない）
+	 */
+	public void setReminderLeadDays(int days) {
+		this.reminderLeadDays = days;
+	}
+
+	/**
+	 * 対話モードで元に戻せる操作の数と、履歴の大きさの上限を設定します。
+	 * @param depth 元に戻せる操作の数（0の場合は履歴を記録しない）
+	 * @param bytes 履歴の大きさの上限（バイト数の概算）
+	 */
+	public void setHistoryLimits(int depth, long bytes) {
+		this.historyDepth = depth;
+		this.historyBytes = bytes;
+	}
+
+	/**
+	 * 既定のファイルの代わりに、指定したファイルでToDoリストを読み書きします。他の設定より前に呼び出してください。
+	 * @param filename ToDoリストのファイルパス（.todbでバイナリ形式、.partsで期限の月ごとに分けたディレクトリ）
+	 */
+	public void setDataFile(String filename) {
+		fileHandler = new FileHandler(filename);
+	}
+
+	/**
+	 * 起動時にToDoリストを全て読み込まず、参照された項目だけを読み込むようにします（格納方式がLAZYの場合に使用）。
+	 * @param cacheSize キャッシュに保持する項目数
+	 */
+	public void setLazy(int cacheSize) {
+		fileHandler.setLazy(cacheSize);
+	}
+
+	/**
+	 * 項目の格納方式と自動保存の設定を指定してTodoAppを初期化するコンストラクタです。
+	 * @param storageMode 項目の格納方式
+	 * @param autoSaveIntervalMillis 最後の変更から自動保存までの時間（ミリ秒）
+	 * @param autoSaveMaxLatencyMillis 最初の未保存の変更から自動保存までの最大の時間（ミリ秒）
+	 */
+	public TodoApp(TodoListManager.StorageMode storageMode, long autoSaveIntervalMillis, long autoSaveMaxLatencyMillis) {
+		this.todoListManager = new TodoListManager(storageMode);
+		this.autoSaveIntervalMillis = autoSaveIntervalMillis;
+		this.autoSaveMaxLatencyMillis = autoSaveMaxLatencyMillis;
+	}
+
 	// ----------------------------------------------------
     // アプリケーションの開始・終了処理
     // ----------------------------------------------------
@@ -41,17 +149,149 @@ public class TodoApp {
 		 * 保存されているデータを読み込み、TodoListManagerにセットします。
 		 */
 		todoListManager.setTodoItems(fileHandler.loadList());
+		todoListManager.reserveIds(fileHandler.getArchivedMaxId());
         System.out.println("初期データを読み込みました。");
 
+        //統計情報をJMXで公開する
+        TodoMetrics.get().setItemCountSource(() -> todoListManager.getTodoItems().size());
+        TodoMetrics.get().register();
+
+        //以降の変更はジャーナルに1件ずつ追記する
+        fileHandler.attachJournal(todoListManager);
+
+        //他のツールによるファイルへの追記を取り込み、追記以外の書き換えは上書きしない
+        fileHandler.watchExternalChanges(todoListManager);
+
+        //fsyncとスナップショットの書き直しは、入力を受け付けるスレッドではなく自動保存のスレッドで行う
+        AutoSaver autoSaver = new AutoSaver(fileHandler, todoListManager, autoSaveIntervalMillis, autoSaveMaxLatencyMillis);
+        autoSaver.start();
+
+        //期限が近い項目と期限切れの項目を通知する（遅延読み込みの場合は全項目を読むことになるので行わない）
+        ReminderScheduler reminders = null;
+        if(reminderLeadDays >= 0 && todoListManager.getStorageMode() != TodoListManager.StorageMode.LAZY) {
+        	reminders = new ReminderScheduler(Clock.systemDefaultZone(), reminderLeadDays);
+        	synchronized(todoListManager) {
+        		reminders.listReplaced(todoListManager.getTodoItems());
+        		todoListManager.addListener(reminders);
+        	}
+        	reminders.start();
+        }
+
+        //元に戻す・やり直すための履歴を記録する
+        if(historyDepth > 0) {
+        	todoListManager.enableHistory(historyDepth, historyBytes);
+        }
+
         //メインループを実行
         runLoop();
 
-        //終了処理
+        //終了処理（未保存の変更を保存してから閉じる）
+        if(reminders != null) {
+        	todoListManager.removeListener(reminders);
+        	reminders.close();
+        }
+        autoSaver.close();
+        fileHandler.close();
+        System.out.println("データを保存しました。Todoリストアプリを終了します。");
         scanner.close();
 	}
 
+	/**
+	 * ワークスペースの複数のリストを切り替えながら扱う対話モードを開始します。
+	 * リストは切り替えた時に初めて読み込み、ワークスペースのキャッシュから外れたリストは保存してから閉じます。
+	 * 期限の通知と外部からの追記の取り込みは、1つのリストを扱う場合だけ行います。
+	 * @param workspace 扱うワークスペース
+	 */
+	public void startWorkspace(TodoWorkspace workspace) {
+		System.out.println("--- ToDoリストアプリを起動中（ワークスペース: " + workspace.getDirectory() + "）---");
+		this.workspace = workspace;
+
+		try {
+			List<String> names = workspace.listNames();
+			openList(names.isEmpty() ? DEFAULT_LIST_NAME : names.get(0));
+			System.out.println(names.size() + " 件のリストがあります。「L」でリストを切り替えられます。");
+		}catch(IOException e) {
+			System.out.println("エラー：ワークスペースの読み込み中に問題が発生しました。");
+			e.printStackTrace();
+			return;
+		}catch(InputFormatException e) {
+			System.out.println("エラー (入力形式): " + e.getMessage());
+			return;
+		}
+
+        //統計情報をJMXで公開する（件数は現在のリストのもの）
+        TodoMetrics.get().setItemCountSource(() -> todoListManager.getTodoItems().size());
+        TodoMetrics.get().register();
+
+        runLoop();
+
+        //終了処理（開いているすべてのリストの未保存の変更を保存してから閉じる）
+        workspace.close();
+        System.out.println("データを保存しました。Todoリストアプリを終了します。");
+        scanner.close();
+	}
+
+
+
+
+	/**
+	 * メニューを表示せずに、スクリプトのコマンドをまとめて実行します。
+	 * 変更はジャーナルに記録せず、すべてのコマンドを適用した後に1回だけ保存します。
+	 * @param script コマンドを読み込むReader
+	 */
+	public void startBatch(BufferedReader script) {
+		todoListManager.setTodoItems(fileHandler.loadList());
+		todoListManager.reserveIds(fileHandler.getArchivedMaxId());
+
+		try {
+			BatchRunner.Result result = new BatchRunner(todoListManager).execute(script);
+
+			//すべてのコマンドを適用した後にまとめて保存
+			long saveStart = System.nanoTime();
+			fileHandler.saveList(todoListManager.getTodoItems());
+			long saveNanos = System.nanoTime() - saveStart;
+
+			System.out.printf("%d 件のコマンドを処理しました（成功: %d 件, スキップ: %d 件）。%n",
+					result.getApplied() + result.getFailed(), result.getApplied(), result.getFailed());
+			System.out.printf("処理時間: %.3f 秒（%.0f 件/秒）, 保存時間: %.3f 秒%n",
+					result.getElapsedNanos() / 1e9, result.getCommandsPerSecond(), saveNanos / 1e9);
+
+		}catch(IOException e) {
+			System.out.println("エラー：スクリプトの読み込み中に問題が発生しました。" + e.getMessage());
+		}finally {
+			fileHandler.close();
+		}
+	}
+
+	/**
+	 * CSVまたはJSON Linesのファイルを読み込んで項目を追加し、1回だけ保存します。
+	 * 読み込みは1件ずつ行い、一定件数ごとにまとめてTodoListManagerへ追加します。
+	 * @param sourceFilename 読み込むファイルパス（.csv または .jsonl）
+	 */
+	public void startImport(String sourceFilename) {
+		todoListManager.setTodoItems(fileHandler.loadList());
+		todoListManager.reserveIds(fileHandler.getArchivedMaxId());
+
+		try {
+			TodoExchange.Result result = FileHandler.importFile(sourceFilename, todoListManager);
+			if(result == null) {
+				return;
+			}
+
+			//すべての項目を追加した後にまとめて保存
+			long saveStart = System.nanoTime();
+			fileHandler.saveList(todoListManager.getTodoItems());
+			long saveNanos = System.nanoTime() - saveStart;
 
+			System.out.printf("%d 件の項目を読み込みました（スキップ: %d 件）。%n", result.getImported(), result.getSkipped());
+			System.out.printf("処理時間: %.3f 秒, 保存時間: %.3f 秒%n", result.getElapsedNanos() / 1e9, saveNanos / 1e9);
 
+		}catch(InputFormatException e) {
+			System.out.println("エラー (入力形式): " + e.getMessage());
+		}finally {
+			fileHandler.close();
+		}
+	}
 
 	// ----------------------------------------------------
     // メインループ処理
@@ -65,10 +305,13 @@ public class TodoApp {
 		while(true) {
 			/**
 			 * メニュー表示
-			 * ユーザーに「1:追加, 2:編集, 3:一覧, 4:完了, 0:終了」のコマンドメニューを表示します。
+			 * ユーザーに「1:追加, 2:編集, 3:一覧, 4:完了, 5:期限検索, 6:検索, 7:アーカイブ検索, 8:一括操作, 9:ビュー, S:統計, U:元に戻す, R:やり直す, 0:終了」のコマンドメニューを表示します。
 			 */
 			System.out.println("行いたい操作の番号を入力してください。");
-			System.out.println("1:追加　2:編集　3:一覧　4:完了　0:終了");
+			if(workspace != null) {
+				System.out.println("（リスト: " + currentListName + "）　L:リスト切替");
+			}
+			System.out.println("1:追加　2:編集　3:一覧　4:完了　5:期限検索　6:検索　7:アーカイブ検索　8:一括操作　9:ビュー　S:統計　U:元に戻す　R:やり直す　0:終了");
 			System.out.print("> ");
 
 			/**
@@ -94,9 +337,9 @@ public class TodoApp {
 						editTask();
 						break;
 
-					//一覧の場合
+					//一覧の場合（ページ単位で表示）
 					case "3":
-						todoListManager.displayList();
+						showPages(page -> todoListManager.displayList(page));
 						break;
 
 					//完了の場合completeTaskメソッドを実行
@@ -104,15 +347,67 @@ public class TodoApp {
 						completeTask();
 						break;
 
+					//期限検索の場合searchByDeadlineメソッドを実行
+					case "5":
+						searchByDeadline();
+						break;
+
+					//検索の場合searchTasksメソッドを実行
+					case "6":
+						searchTasks();
+						break;
+
+					//アーカイブ検索の場合searchArchiveメソッドを実行
+					case "7":
+						searchArchive();
+						break;
+
+					//一括操作の場合bulkTaskメソッドを実行
+					case "8":
+						bulkTask();
+						break;
+
+					//ビューの場合showViewメソッドを実行
+					case "9":
+						showView();
+						break;
+
+					//統計の場合（集計は変更に追従して保持しているので、リストは走査しない）
+					case "S":
+					case "s":
+						long statsStart = System.nanoTime();
+						todoListManager.displayStats(LocalDate.now(), TodoStats.DEFAULT_WEEKS);
+						TodoMetrics.get().record(TodoMetrics.Operation.STATS, statsStart);
+						break;
+
+					//元に戻す・やり直すの場合undoTaskメソッドを実行
+					case "U":
+					case "u":
+						undoTask(true);
+						break;
+
+					case "R":
+					case "r":
+						undoTask(false);
+						break;
+
+					//リスト切替の場合switchListメソッドを実行（ワークスペースモードのみ）
+					case "L":
+					case "l":
+						if(workspace == null) {
+							System.out.println("エラー: リストの切り替えはワークスペースモード（--workspace）でのみ使えます。");
+							break;
+						}
+						switchList();
+						break;
+
 					case "0":
-						// 終了処理: データを保存し、ループを抜ける
-                        fileHandler.saveList(todoListManager.getTodoItems());
-                        System.out.println("データを保存しました。Todoリストアプリを終了します。");
+						// 終了処理: ループを抜ける（データの保存はstartの終了処理で行う）
 						return;
 
 					default:
-						// 1, 2, 3, 4, 0 以外のコマンドが入力された場合
-						System.out.println("エラー: 無効な操作番号です。1, 2, 3, 4, 0 のいずれかを入力してください。");
+						// 1～9, S, U, R, 0 以外のコマンドが入力された場合
+						System.out.println("エラー: 無効な操作番号です。1, 2, 3, 4, 5, 6, 7, 8, 9, S, U, R, 0 のいずれかを入力してください。");
 						break;
 				}
 
@@ -175,7 +470,11 @@ public class TodoApp {
 
         // 3. TodoItemの生成と追加
         TodoItem newItem = new TodoItem(content, deadline);
-        todoListManager.addItem(newItem);
+        long start = System.nanoTime();
+        synchronized(todoListManager) {
+        	todoListManager.addItem(newItem);
+        }
+        TodoMetrics.get().record(TodoMetrics.Operation.ADD, start);
         System.out.println("タスクを追加しました: " + newItem.toString());
     }
 
@@ -196,7 +495,7 @@ public class TodoApp {
 		switch(operationNumber) {
 			case "1":
 				System.out.println("編集したい項目の番号と内容を入力してください");
-				System.out.println("[入力例]　7 javaの勉強");
+				System.out.println("[入力例]　7 javaの勉強　（#12 のように#を付けるとIDで指定できます）");
 				System.out.print("> ");
 				String inputEditContent = scanner.nextLine();
 
@@ -211,16 +510,20 @@ public class TodoApp {
 				String content		= editContentParts[1];
 
 				//1-2. 型変換 (Integer.parseIntが失敗するとExceptionをスローする)
-				index = Integer.parseInt(indexString);
+				index = resolveIndex(indexString);
 
-				//1-3.項目番号と内容をTodoListManagerに渡す
-				todoListManager.editContent(index, content);
+				//1-3.項目番号と内容をTodoListManagerに渡す（自動保存と同時に変更しないように同期する）
+				long contentStart = System.nanoTime();
+				synchronized(todoListManager) {
+					todoListManager.editContent(index, content);
+				}
+				TodoMetrics.get().record(TodoMetrics.Operation.EDIT, contentStart);
 
 				break;
 
 			case "2":
 				System.out.println("編集したい項目の番号と期限を入力してください");
-				System.out.println("[入力例]　7 2026-01-01");
+				System.out.println("[入力例]　7 2026-01-01　（#12 のように#を付けるとIDで指定できます）");
 				System.out.print("> ");
 				String inputEditDeadline = scanner.nextLine();
 
@@ -235,11 +538,15 @@ public class TodoApp {
 				String deadlineString = editDeadlineParts[1];
 
 				//2-2. 型変換 (Integer.parseInt、LocalDate.parseが失敗するとExceptionをスローする)
-				index = Integer.parseInt(indexString);
+				index = resolveIndex(indexString);
 		        LocalDate deadline = LocalDate.parse(deadlineString);
 
-				//2-3.項目番号と内容をTodoListManagerに渡す
-				todoListManager.editDeadline(index, deadline);
+				//2-3.項目番号と内容をTodoListManagerに渡す（自動保存と同時に変更しないように同期する）
+				long deadlineStart = System.nanoTime();
+				synchronized(todoListManager) {
+					todoListManager.editDeadline(index, deadline);
+				}
+				TodoMetrics.get().record(TodoMetrics.Operation.EDIT, deadlineStart);
 
 				break;
 		}
@@ -250,15 +557,371 @@ public class TodoApp {
 	 * TodoListManagerのcompleteItemメソッドを呼び出し完了状態にする
 	 */
     private void completeTask() throws InputFormatException{
-    	System.out.println("完了にしたい項目の番号を入力してください");
+    	System.out.println("完了にしたい項目の番号を入力してください（#12 のように#を付けるとIDで指定できます）");
     	System.out.print("> ");
     	String inputIndex = scanner.nextLine().trim();
 
 		//型変換 (Integer.parseIntが失敗するとExceptionをスローする)
-		int index = Integer.parseInt(inputIndex);
+		int index = resolveIndex(inputIndex);
+
+		//項目番号をTodoListManagerに渡す（自動保存と同時に変更しないように同期する）
+		long start = System.nanoTime();
+		synchronized(todoListManager) {
+			todoListManager.completeItem(index);
+		}
+		TodoMetrics.get().record(TodoMetrics.Operation.COMPLETE, start);
+    }
+
+
+	/**
+	 * 一括操作
+	 * 範囲・番号の並び・条件で指定した項目に、完了・期限をずらす・内容の置換のいずれかをまとめて行います。
+	 * 対象の絞り込みから変更までを自動保存と同期して行うので、変更は1つのまとまりとして1回で保存されます。
+	 */
+    private void bulkTask() throws InputFormatException{
+		System.out.println("対象を入力してください");
+		System.out.println("[入力例]　3-500　1,4,7　#12　before:2025-11-07　match:掃除　before:2025-11-07&open");
+		System.out.print("> ");
+		TodoSelector selector = TodoSelector.parse(scanner.nextLine());
+
+		System.out.println("操作の番号を入力してください。");
+		System.out.println("1:完了　2:期限をずらす　3:内容の置換");
+		System.out.print("> ");
+		String operationNumber = scanner.nextLine().trim();
+
+		int count;
+		long start;
+		switch(operationNumber) {
+			case "1":
+				start = System.nanoTime();
+				synchronized(todoListManager) {
+					count = todoListManager.completeItems(selector.resolve(todoListManager));
+				}
+				System.out.println(count + " 件の項目を完了にしました。");
+				break;
+
+			case "2":
+				System.out.println("ずらす日数を入力してください（負の値で前にずらします）");
+				System.out.println("[入力例]　7");
+				System.out.print("> ");
+				long days;
+				try {
+					days = Long.parseLong(scanner.nextLine().trim());
+				}catch(NumberFormatException e) {
+					throw new InputFormatException("日数は整数で入力してください。", e);
+				}
+
+				start = System.nanoTime();
+				synchronized(todoListManager) {
+					count = todoListManager.shiftDeadlines(selector.resolve(todoListManager), days);
+				}
+				System.out.println(count + " 件の項目の期限を変更しました。");
+				break;
+
+			case "3":
+				System.out.println("置き換える文字列を入力してください");
+				System.out.print("> ");
+				String target = scanner.nextLine();
+				if(target.isEmpty()) {
+					throw new InputFormatException("置き換える文字列が入力されていません。");
+				}
+				System.out.println("置き換え後の文字列を入力してください");
+				System.out.print("> ");
+				String replacement = scanner.nextLine();
+
+				start = System.nanoTime();
+				synchronized(todoListManager) {
+					count = todoListManager.replaceContent(selector.resolve(todoListManager), target, replacement);
+				}
+				System.out.println(count + " 件の項目の内容を変更しました。");
+				break;
+
+			default:
+				throw new InputFormatException("無効な番号です。1, 2, 3 のいずれかを入力してください。");
+		}
+		TodoMetrics.get().record(TodoMetrics.Operation.BULK, start);
+    }
+
+	/**
+	 * ビューの表示
+	 * 未完了（期限順）・期限切れ・完了済みのいずれかを、件数を添えて選ばせて表示します。
+	 * ビューは変更に追従して保持されているので、大量の項目でも並べ替えを待たずに表示できます。
+	 */
+    private void showView() throws InputFormatException{
+		LocalDate today = LocalDate.now();
+		TodoViews.View[] views = TodoViews.View.values();
+
+		System.out.println("表示するビューの番号を入力してください。");
+		long start = System.nanoTime();
+		StringBuilder menu = new StringBuilder();
+		for(int i = 0; i < views.length; i++) {
+			if(i > 0) {
+				menu.append('　');
+			}
+			menu.append(i + 1).append(':').append(views[i].getLabel())
+					.append("（").append(todoListManager.countView(views[i], today)).append(" 件）");
+		}
+		System.out.println(menu);
+		TodoMetrics.get().record(TodoMetrics.Operation.VIEW, start);
+		System.out.print("> ");
+		String viewNumber = scanner.nextLine().trim();
+
+		int selected;
+		try {
+			selected = Integer.parseInt(viewNumber);
+		}catch(NumberFormatException e) {
+			selected = 0;
+		}
+		if(selected < 1 || selected > views.length) {
+			throw new InputFormatException("無効な番号です。1～" + views.length + " のいずれかを入力してください。");
+		}
+		TodoViews.View view = views[selected - 1];
+		showPages(page -> todoListManager.displayView(view, today, page));
+    }
+
+	/**
+	 * 元に戻す・やり直す
+	 * 直前の追加・完了・編集・一括操作を1回分元に戻すか、元に戻した操作をやり直します。
+	 * @param undo 元に戻す場合はtrue、やり直す場合はfalse
+	 */
+    private void undoTask(boolean undo) {
+		if(todoListManager.getHistory() == null) {
+			System.out.println("エラー: 履歴を記録していないため、元に戻す・やり直すは使えません。");
+			return;
+		}
+		long start = System.nanoTime();
+		int count;
+		try {
+			synchronized(todoListManager) {
+				count = undo ? todoListManager.undo() : todoListManager.redo();
+			}
+		}catch(IllegalStateException | IndexOutOfBoundsException e) {
+			System.out.println("エラー: " + (undo ? "元に戻せませんでした。" : "やり直せませんでした。") + e.getMessage());
+			return;
+		}
+		TodoMetrics.get().record(TodoMetrics.Operation.UNDO, start);
+
+		if(count < 0) {
+			System.out.println(undo ? "元に戻せる操作はありません。" : "やり直せる操作はありません。");
+			return;
+		}
+		TodoHistory history = todoListManager.getHistory();
+		System.out.println(count + " 件の変更を" + (undo ? "元に戻しました。" : "やり直しました。")
+				+ "（元に戻せる操作: " + history.undoDepth() + "、やり直せる操作: " + history.redoDepth() + "）");
+    }
+
+	/**
+	 * リストの切り替え
+	 * ワークスペースのリストの一覧を表示し、入力された名前のリストに切り替えます（無ければ新しく作ります）。
+	 * 一覧はファイル名から作るので、まだ読み込んでいないリストの中身は読みません。
+	 */
+    private void switchList() throws InputFormatException, IOException{
+		List<String> names = workspace.listNames();
+		System.out.println("リストの一覧（" + names.size() + " 件、* は読み込み済み）");
+		for(String name : names) {
+			System.out.println((workspace.isLoaded(name) ? "* " : "  ") + name);
+		}
+		System.out.println("切り替えるリストの名前を入力してください（新しい名前で作成、空のままEnterで中止）");
+		System.out.print("> ");
+		String name = scanner.nextLine().trim();
+		if(name.isEmpty()) {
+			return;
+		}
+
+		boolean created = !names.contains(name);
+		long start = System.nanoTime();
+		openList(name);
+		TodoMetrics.get().record(TodoMetrics.Operation.SWITCH_LIST, start);
+		System.out.println((created ? "新しいリスト「" : "リスト「") + name + "」" + (created ? "を作成しました。" : "に切り替えました。")
+				+ "（" + todoListManager.getTodoItems().size() + " 件）");
+    }
+
+	/**
+	 * ワークスペースのリストを開き、以降の操作の対象にします。
+	 * @param name リストの名前
+	 */
+	private void openList(String name) throws InputFormatException {
+		TodoListManager manager = workspace.open(name);
+		if(historyDepth > 0) {
+			//履歴はリストごとに記録し、キャッシュから外れたリストの履歴は一緒に捨てる
+			manager.enableHistory(historyDepth, historyBytes);
+		}
+		todoListManager = manager;
+		fileHandler = workspace.fileHandlerOf(name);
+		currentListName = name;
+	}
+
+	/**
+	 * 期限による検索
+	 * 期限切れ・指定日まで・期間指定のいずれかで、未完了の項目を期限順に表示します。
+	 */
+    private void searchByDeadline() throws InputFormatException{
+		System.out.println("検索方法の番号を入力してください。");
+		System.out.println("1:期限切れ　2:指定日まで　3:期間指定");
+		System.out.print("> ");
+		String operationNumber = scanner.nextLine().trim();
+
+		switch(operationNumber) {
+			case "1":
+				long overdueStart = System.nanoTime();
+				List<Integer> overdue = todoListManager.findOverdue(LocalDate.now());
+				TodoMetrics.get().record(TodoMetrics.Operation.SEARCH_DEADLINE, overdueStart);
+				showPages(page -> todoListManager.displayItems("期限切れの項目", overdue, page));
+				break;
+
+			case "2":
+				System.out.println("日付を入力してください");
+				System.out.println("[入力例]　2025-11-07");
+				System.out.print("> ");
+				LocalDate date = parseDate(scanner.nextLine().trim());
+
+				long beforeStart = System.nanoTime();
+				List<Integer> dueBefore = todoListManager.findDueBefore(date);
+				TodoMetrics.get().record(TodoMetrics.Operation.SEARCH_DEADLINE, beforeStart);
+				showPages(page -> todoListManager.displayItems(date + " までに期限を迎える項目", dueBefore, page));
+				break;
+
+			case "3":
+				System.out.println("開始日と終了日を入力してください");
+				System.out.println("[入力例]　2025-11-01 2025-11-30");
+				System.out.print("> ");
+				String[] parts = scanner.nextLine().trim().split(" ",2);
+		        if (parts.length < 2) {
+		            // 例外をスローして、runLoopのcatchで処理させる
+		            throw new InputFormatException("入力が不正です。 [開始日 終了日] の形式で入力してください。");
+		        }
+				LocalDate from = parseDate(parts[0]);
+				LocalDate to = parseDate(parts[1].trim());
+
+				long betweenStart = System.nanoTime();
+				List<Integer> dueBetween = todoListManager.findDueBetween(from, to);
+				TodoMetrics.get().record(TodoMetrics.Operation.SEARCH_DEADLINE, betweenStart);
+				showPages(page -> todoListManager.displayItems(from + " から " + to + " までに期限を迎える項目",
+						dueBetween, page));
+				break;
+
+			default:
+				throw new InputFormatException("無効な番号です。1, 2, 3 のいずれかを入力してください。");
+		}
+    }
+
+	/**
+	 * キーワード検索
+	 * 内容にキーワードを含む項目を、関連度の高い順に表示します。
+	 */
+    private void searchTasks() throws InputFormatException{
+		System.out.println("検索キーワードを入力してください（空白区切りで複数指定できます）");
+		System.out.println("[入力例]　java 学習");
+		System.out.print("> ");
+		String query = scanner.nextLine().trim();
+
+		//キーワードが空の場合
+		if (query.isEmpty()) {
+            throw new InputFormatException("キーワードが入力されていません。");
+        }
+
+		long start = System.nanoTime();
+		List<Integer> results = todoListManager.search(query, SEARCH_RESULT_LIMIT);
+		TodoMetrics.get().record(TodoMetrics.Operation.SEARCH, start);
+		showPages(page -> todoListManager.displayItems("「" + query + "」の検索結果", results, page));
+    }
+
+	/**
+	 * アーカイブ検索
+	 * アーカイブへ移した完了済みの項目から、内容にキーワードを含むものを新しい順に表示します。
+	 * アーカイブは検索するたびに必要な分だけ読み込みます。
+	 */
+    private void searchArchive() {
+		System.out.println("検索キーワードを入力してください（Enterのみで最近アーカイブした項目を表示）");
+		System.out.print("> ");
+		String keyword = scanner.nextLine().trim();
+
+		List<TodoItem> results;
+		long start = System.nanoTime();
+		try {
+			results = fileHandler.getArchive().find(item -> item.getContent().contains(keyword), SEARCH_RESULT_LIMIT);
+		}catch(IOException e) {
+			System.out.println("エラー：アーカイブの読み込み中に問題が発生しました。" + e.getMessage());
+			return;
+		}
+		TodoMetrics.get().record(TodoMetrics.Operation.ARCHIVE_SEARCH, start);
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("--- アーカイブの検索結果（最大 ").append(SEARCH_RESULT_LIMIT).append(" 件）---").append(System.lineSeparator());
+		for(TodoItem item : results) {
+			item.appendTo(sb).append(System.lineSeparator());
+		}
+		if(results.isEmpty()) {
+			sb.append("該当する項目はありません。").append(System.lineSeparator());
+		}
+		sb.append("-------------------------");
+		System.out.println(sb);
+    }
+
+	/**
+	 * 一覧のページ送り
+	 * 先頭ページを表示し、複数ページある場合は表示したいページ番号を受け付けます（空入力で終了）。
+	 * @param renderPage 指定したページを表示し、総ページ数を返す処理
+	 */
+    private void showPages(IntUnaryOperator renderPage) {
+		int totalPages = renderPage(renderPage, 1);
+
+		while(totalPages > 1) {
+			System.out.println("表示するページ番号を入力してください（1～" + totalPages + "、Enterでメニューに戻る）");
+			System.out.print("> ");
+			String inputPage = scanner.nextLine().trim();
+			if(inputPage.isEmpty()) {
+				return;
+			}
+
+			//型変換 (Integer.parseIntが失敗するとExceptionをスローする)
+			totalPages = renderPage(renderPage, Integer.parseInt(inputPage));
+		}
+    }
+
+	/**
+	 * 1ページを表示し、表示にかかった時間を記録します。
+	 * @param renderPage 指定したページを表示し、総ページ数を返す処理
+	 * @param page ページ番号
+	 * @return 総ページ数
+	 */
+    private int renderPage(IntUnaryOperator renderPage, int page) {
+		long start = System.nanoTime();
+		int totalPages = renderPage.applyAsInt(page);
+		TodoMetrics.get().record(TodoMetrics.Operation.DISPLAY, start);
+		return totalPages;
+    }
+
+	/**
+	 * 項目の指定を項目番号に変換します。
+	 * 「#」で始まる場合はタスクのIDとして扱い、IDの索引から現在の番号を引きます。
+	 * @param indexString 項目番号、または「#ID」
+	 * @return 項目番号（1始まり）
+	 */
+    private int resolveIndex(String indexString) {
+		if(indexString.startsWith("#")) {
+			//型変換 (Long.parseLongが失敗するとExceptionをスローする)
+			return todoListManager.indexOf(Long.parseLong(indexString.substring(1)));
+		}
+		return Integer.parseInt(indexString);
+    }
+
+	/**
+	 * 日付の文字列をLocalDateに変換します。
+	 * @param dateString YYYY-MM-DD形式の文字列
+	 * @return 変換した日付
+	 */
+    private LocalDate parseDate(String dateString) throws InputFormatException{
+	    try {
+	        return LocalDate.parse(dateString);
 
-		//項目番号をTodoListManagerに渡す
-		todoListManager.completeItem(index);
+	    } catch (java.time.format.DateTimeParseException e) {
+	        // パースエラーが発生した場合、それを InputFormatException でラップする
+	        throw new InputFormatException(
+	            "日付の形式が不正です。YYYY-MM-DD (例: 2025-11-07) 形式で入力してください。",
+	            e
+	        );
+	    }
     }
 
 
@@ -266,8 +929,284 @@ public class TodoApp {
     // メインメソッド (アプリケーションのエントリーポイント)
     // ----------------------------------------------------
 
-	public static void main(String[] args) {
-        TodoApp app = new TodoApp();
+	/**
+	 * コマンドライン引数
+	 * --columnar              列形式で項目を格納する（大量の項目を扱う場合にメモリを節約）
+	 * --lazy [件数]            参照された項目だけをファイルから読み込む（大量の項目でもすぐに起動、キャッシュの件数の既定: 10000）
+	 * --convert 変換元 変換先  ファイル形式を変換する（例: --convert todo_list.txt todo_list.todb）
+	 * --export ファイル        CSV（.csv）またはJSON Lines（.jsonl）で書き出す（1件ずつ書き出すので大量の項目でもメモリを使わない）
+	 * --import ファイル        CSV（.csv）またはJSON Lines（.jsonl）の項目をまとめて追加する
+	 * --batch ファイル         スクリプトファイルのコマンドをまとめて実行する（"-" で標準入力）
+	 * --exec コマンド...       引数で渡したコマンドをまとめて実行する（例: --exec "add 掃除 2025-11-07" "list"）
+	 * --serve [ポート番号]     JSONのHTTP APIサーバーとして起動する（既定のポート: 8080、Ctrl+Cで保存して終了）
+	 * --autosave-interval ミリ秒     最後の変更から自動保存までの時間（既定: 2000）
+	 * --autosave-max-latency ミリ秒  変更が続いていても自動保存する最大の遅れ（既定: 10000）
+	 * --stats 秒               処理時間とI/Oの統計を指定した間隔で標準エラー出力に表示する
+	 * --archive-after 日数     期限からこの日数が過ぎた完了済みの項目を起動時にアーカイブへ移す（指定しない場合は移さない）
+	 * --file ファイル          既定の代わりに使うToDoリストのファイル（.todb でバイナリ形式、.parts で期限の月ごとに分けて保存）
+	 * --due 開始日 終了日      期限が期間内の項目を表示する（.parts の場合は期間に重なる月のファイルだけを読む）
+	 * --remind-days 日数       期限のこの日数前と期限切れの時に通知する（既定: 1、負の値で通知しない）
+	 * --undo-depth 回数        対話モードで元に戻せる操作の数（既定: 100、0で履歴を記録しない）
+	 * --undo-memory KB         元に戻すための履歴の大きさの上限（既定: 4096）
+	 * --workspace ディレクトリ  ディレクトリの下の複数のリスト（名前.txt）を切り替えて使う（リストは使う時に読み込む）
+	 * --workspace-cache 件数   ワークスペースで同時に読み込んでおくリストの数（既定: 8、超えたら使っていないリストを保存して閉じる）
+	 */
+	public static void main(String[] args) throws IOException {
+		TodoListManager.StorageMode storageMode = TodoListManager.StorageMode.OBJECT;
+		long autoSaveIntervalMillis = AutoSaver.DEFAULT_INTERVAL_MILLIS;
+		long autoSaveMaxLatencyMillis = AutoSaver.DEFAULT_MAX_LATENCY_MILLIS;
+		int archiveAfterDays = -1;
+		int lazyCacheSize = 0;
+		String dataFile = null;
+		int reminderLeadDays = ReminderScheduler.DEFAULT_LEAD_DAYS;
+		int historyDepth = TodoHistory.DEFAULT_MAX_DEPTH;
+		long historyBytes = TodoHistory.DEFAULT_MAX_BYTES;
+		String workspaceDirectory = null;
+		int workspaceCacheSize = TodoWorkspace.DEFAULT_CACHE_SIZE;
+
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+				case "--columnar":
+					storageMode = TodoListManager.StorageMode.COLUMNAR;
+					break;
+
+				case "--lazy":
+					storageMode = TodoListManager.StorageMode.LAZY;
+					lazyCacheSize = LazyTodoList.DEFAULT_CACHE_SIZE;
+					if(i + 1 < args.length && args[i + 1].matches("\\d+")) {
+						lazyCacheSize = Integer.parseInt(args[i + 1]);
+						i++;
+					}
+					if(lazyCacheSize <= 0) {
+						System.out.println("エラー: --lazy のキャッシュの件数は1以上を指定してください。");
+						return;
+					}
+					break;
+
+				case "--autosave-interval":
+				case "--autosave-max-latency":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: " + args[i] + " にはミリ秒を指定してください。");
+						return;
+					}
+					long millis = Long.parseLong(args[i + 1]);
+					if(args[i].equals("--autosave-interval")) {
+						autoSaveIntervalMillis = millis;
+					}else {
+						autoSaveMaxLatencyMillis = millis;
+					}
+					i++;
+					break;
+
+				case "--archive-after":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --archive-after には日数を指定してください。");
+						return;
+					}
+					archiveAfterDays = Integer.parseInt(args[i + 1]);
+					i++;
+					break;
+
+				case "--remind-days":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --remind-days には日数を指定してください。");
+						return;
+					}
+					reminderLeadDays = Integer.parseInt(args[i + 1]);
+					i++;
+					break;
+
+				case "--file":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --file にはファイルを指定してください。");
+						return;
+					}
+					dataFile = args[i + 1];
+					i++;
+					break;
+
+				case "--undo-depth":
+				case "--undo-memory":
+					if(i + 1 >= args.length || !args[i + 1].matches("\\d+")) {
+						System.out.println("エラー: " + args[i] + " には0以上の整数を指定してください。");
+						return;
+					}
+					if(args[i].equals("--undo-depth")) {
+						historyDepth = Integer.parseInt(args[i + 1]);
+					}else {
+						historyBytes = Long.parseLong(args[i + 1]) * 1024;
+						if(historyBytes <= 0) {
+							System.out.println("エラー: --undo-memory には1以上を指定してください。");
+							return;
+						}
+					}
+					i++;
+					break;
+
+				case "--workspace":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --workspace にはディレクトリを指定してください。");
+						return;
+					}
+					workspaceDirectory = args[i + 1];
+					i++;
+					break;
+
+				case "--workspace-cache":
+					if(i + 1 >= args.length || !args[i + 1].matches("\\d+") || Integer.parseInt(args[i + 1]) < 1) {
+						System.out.println("エラー: --workspace-cache には1以上のリストの数を指定してください。");
+						return;
+					}
+					workspaceCacheSize = Integer.parseInt(args[i + 1]);
+					i++;
+					break;
+
+				case "--due":
+					if(i + 2 >= args.length) {
+						System.out.println("エラー: --due には開始日と終了日を指定してください。");
+						return;
+					}
+					LocalDate dueFrom;
+					LocalDate dueTo;
+					try {
+						dueFrom = LocalDate.parse(args[i + 1]);
+						dueTo = LocalDate.parse(args[i + 2]);
+					}catch(DateTimeParseException e) {
+						System.out.println("エラー: --due の日付は YYYY-MM-DD の形式で指定してください: " + e.getParsedString());
+						return;
+					}
+					FileHandler dueFileHandler = dataFile == null ? new FileHandler() : new FileHandler(dataFile);
+					List<TodoItem> dueItems = dueFileHandler.loadDueBetween(dueFrom, dueTo);
+					for(TodoItem item : dueItems) {
+						System.out.println(item);
+					}
+					System.out.println(dueItems.size() + " 件の項目が見つかりました。");
+					return;
+
+				case "--stats":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --stats には出力の間隔（秒）を指定してください。");
+						return;
+					}
+					long periodSeconds = Long.parseLong(args[i + 1]);
+					if(periodSeconds <= 0) {
+						System.out.println("エラー: --stats の間隔は1秒以上を指定してください。");
+						return;
+					}
+					TodoMetrics.get().startDump(periodSeconds, System.err);
+					i++;
+					break;
+
+				case "--convert":
+					if(i + 2 >= args.length) {
+						System.out.println("エラー: --convert には変換元と変換先のファイルを指定してください。");
+						return;
+					}
+					int count = FileHandler.convert(args[i + 1], args[i + 2]);
+					System.out.println(count + " 件の項目を " + args[i + 2] + " に変換しました。");
+					return;
+
+				case "--export":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --export には書き出し先のファイル（.csv または .jsonl）を指定してください。");
+						return;
+					}
+					FileHandler exportFileHandler = dataFile == null ? new FileHandler() : new FileHandler(dataFile);
+					try {
+						long exported = exportFileHandler.exportTo(args[i + 1]);
+						if(exported >= 0) {
+							System.out.println(exported + " 件の項目を " + args[i + 1] + " に書き出しました。");
+						}
+					}catch(InputFormatException e) {
+						System.out.println("エラー (入力形式): " + e.getMessage());
+					}
+					return;
+
+				case "--import":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --import には読み込むファイル（.csv または .jsonl）を指定してください。");
+						return;
+					}
+					TodoApp importApp = new TodoApp(storageMode);
+					if(dataFile != null) {
+						importApp.setDataFile(dataFile);
+					}
+					importApp.setArchiveAfterDays(archiveAfterDays);
+					importApp.setLazy(lazyCacheSize);
+					importApp.startImport(args[i + 1]);
+					return;
+
+				case "--batch":
+					if(i + 1 >= args.length) {
+						System.out.println("エラー: --batch にはスクリプトファイルを指定してください。");
+						return;
+					}
+					try(BufferedReader script = args[i + 1].equals("-")
+							? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+							: Files.newBufferedReader(Paths.get(args[i + 1]), StandardCharsets.UTF_8)) {
+						TodoApp batchApp = new TodoApp(storageMode);
+						if(dataFile != null) {
+							batchApp.setDataFile(dataFile);
+						}
+						batchApp.setArchiveAfterDays(archiveAfterDays);
+						batchApp.setLazy(lazyCacheSize);
+						batchApp.startBatch(script);
+					}
+					return;
+
+				case "--exec":
+					String commands = String.join("\n", Arrays.asList(args).subList(i + 1, args.length));
+					TodoApp execApp = new TodoApp(storageMode);
+					if(dataFile != null) {
+						execApp.setDataFile(dataFile);
+					}
+					execApp.setArchiveAfterDays(archiveAfterDays);
+					execApp.setLazy(lazyCacheSize);
+					execApp.startBatch(new BufferedReader(new StringReader(commands)));
+					return;
+
+				case "--serve":
+					int port = TodoServer.DEFAULT_PORT;
+					if(i + 1 < args.length) {
+						port = Integer.parseInt(args[i + 1]);
+					}
+					FileHandler serverFileHandler = dataFile == null ? new FileHandler() : new FileHandler(dataFile);
+					serverFileHandler.setArchiveAfterDays(archiveAfterDays);
+					TodoServer server = new TodoServer(serverFileHandler, port);
+					server.start();
+
+					//Ctrl+Cなどでの終了時に保存する
+					Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "todo-server-shutdown"));
+					System.out.println("HTTPサーバーを起動しました: http://localhost:" + server.getPort() + "/todos （Ctrl+Cで終了）");
+					return;
+
+				default:
+					System.out.println("エラー: 不明な引数です: " + args[i]);
+					return;
+			}
+		}
+
+		if(autoSaveIntervalMillis <= 0 || autoSaveMaxLatencyMillis < autoSaveIntervalMillis) {
+			System.out.println("エラー: 自動保存の間隔は正の値、最大遅延時間は間隔以上の値を指定してください。");
+			return;
+		}
+
+        TodoApp app = new TodoApp(storageMode, autoSaveIntervalMillis, autoSaveMaxLatencyMillis);
+        app.setHistoryLimits(historyDepth, historyBytes);
+        if(workspaceDirectory != null) {
+        	TodoWorkspace workspace = new TodoWorkspace(Paths.get(workspaceDirectory), workspaceCacheSize, storageMode);
+        	workspace.setArchiveAfterDays(archiveAfterDays);
+        	workspace.setLazy(lazyCacheSize);
+        	workspace.setAutoSave(autoSaveIntervalMillis, autoSaveMaxLatencyMillis);
+        	app.startWorkspace(workspace);
+        	return;
+        }
+        if(dataFile != null) {
+        	app.setDataFile(dataFile);
+        }
+        app.setReminderLeadDays(reminderLeadDays);
+        app.setArchiveAfterDays(archiveAfterDays);
+        app.setLazy(lazyCacheSize);
         app.start(); // startメソッドを呼び出す
 	}
 
@@ -0,0 +1,212 @@
+/**
+ * 完了済みの古い項目を保管するアーカイブです。
+ * 起動時に読み込む項目を未完了の項目（と最近完了した項目）に絞るため、古い完了済みの項目はここへ移します。
+ *
+ * アーカイブはディレクトリ内のセグメントファイルの集まりで、移すたびに新しいセグメントを1つ追加します。
+ * 既存のセグメントは書き換えません（追記のみ）。各セグメントはスナップショットと同じテキスト形式の行をGZIPで圧縮したもので、
+ * ファイル名は segment-{連番}-{含まれる最大のID}.gz です。最大のIDをファイル名に持たせることで、
+ * IDの再利用を防ぐための値をセグメントを開かずに求められます。
+ * 検索は新しいセグメントから順に1つずつ展開して行い、必要な件数が見つかった時点で打ち切ります。
+ */
+package com.example.todolist;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class TodoArchive {
+
+	//フィールド
+	/** セグメントのファイル名の接頭辞 */
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	/** セグメントのファイル名の接尾辞 */
+	private static final String SEGMENT_SUFFIX = ".gz";
+
+	/** セグメントを置くディレクトリ */
+	private final Path directory;
+
+	/**
+	 * アーカイブを初期化するコンストラクタです。ディレクトリは最初に項目を移す時に作ります。
+	 * @param directory セグメントを置くディレクトリ
+	 */
+	public TodoArchive(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * セグメントを置くディレクトリを取得します。
+	 * @return ディレクトリのパス
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * アーカイブへ移す対象かどうかを判定します。
+	 * 完了済みで、期限が基準日より前の項目が対象です（期限の無い項目は対象外）。
+	 * @param item 判定するTodoItem
+	 * @param cutoff 基準日
+	 * @return アーカイブへ移す対象の場合はtrue
+	 */
+	public static boolean isArchivable(TodoItem item, LocalDate cutoff) {
+		return item.isCompleted() && item.getDeadline() != null && item.getDeadline().isBefore(cutoff);
+	}
+
+	/**
+	 * 項目を新しいセグメントとして書き込みます。
+	 * 一時ファイルに書いてfsyncしてから名前を変えるので、途中で落ちても不完全なセグメントは残りません。
+	 * @param items 移す項目（IDが割り当て済みであること）
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public void append(List<TodoItem> items) throws IOException {
+		if (items.isEmpty()) {
+			return;
+		}
+		Files.createDirectories(directory);
+
+		long maxId = 0;
+		for (TodoItem item : items) {
+			maxId = Math.max(maxId, item.getId());
+		}
+		TreeMap<Integer, Path> segments = listSegments();
+		int sequence = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+		Path target = directory.resolve(String.format("%s%06d-%d%s", SEGMENT_PREFIX, sequence, maxId, SEGMENT_SUFFIX));
+		Path tempPath = directory.resolve(target.getFileName() + ".tmp");
+
+		try (FileOutputStream out = new FileOutputStream(tempPath.toFile())) {
+			GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(out));
+			Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+			for (TodoItem item : items) {
+				writer.write(item.toFileString());
+				writer.write('\n');
+			}
+			writer.flush();
+			gzip.finish();
+			gzip.flush();
+			out.getFD().sync();
+		}
+		TodoMetrics.get().addBytesWritten(Files.size(tempPath));
+		TodoJournal.moveAtomically(tempPath, target);
+	}
+
+	/**
+	 * アーカイブに含まれる最大のIDを取得します（セグメントのファイル名から求めるので、中身は読みません）。
+	 * @return 最大のID（アーカイブが空の場合は0）
+	 * @throws IOException ディレクトリの読み込みに失敗した場合
+	 */
+	public long getMaxId() throws IOException {
+		long maxId = 0;
+		for (Path segment : listSegments().values()) {
+			String name = segment.getFileName().toString();
+			String idPart = name.substring(name.lastIndexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length());
+			maxId = Math.max(maxId, Long.parseLong(idPart));
+		}
+		return maxId;
+	}
+
+	/**
+	 * セグメントの数を取得します。
+	 * @return セグメントの数
+	 * @throws IOException ディレクトリの読み込みに失敗した場合
+	 */
+	public int getSegmentCount() throws IOException {
+		return listSegments().size();
+	}
+
+	/**
+	 * 条件に合う項目を、新しいセグメントから順に探します。
+	 * セグメントは1つずつ展開し、limit件見つかった時点で残りのセグメントは読みません。
+	 * 同じIDの項目が複数のセグメントにある場合（移す途中で落ちた場合）は、新しい方だけを返します。
+	 * @param filter 項目の条件
+	 * @param limit 最大件数
+	 * @return 条件に合う項目（新しいセグメントの順、セグメント内はファイル内の順）
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public List<TodoItem> find(Predicate<TodoItem> filter, int limit) throws IOException {
+		List<TodoItem> found = new ArrayList<>();
+		Set<Long> seenIds = new HashSet<>();
+
+		for (Path segment : listSegments().descendingMap().values()) {
+			try (InputStream in = Files.newInputStream(segment)) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in), StandardCharsets.UTF_8));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					TodoItem item = parse(line, segment);
+					if (item == null || !seenIds.add(item.getId()) || !filter.test(item)) {
+						continue;
+					}
+					found.add(item);
+					if (found.size() >= limit) {
+						return found;
+					}
+				}
+			}
+			TodoMetrics.get().addBytesRead(Files.size(segment));
+		}
+		return found;
+	}
+
+	/**
+	 * セグメントの1行をTodoItemに変換します。
+	 * @return 変換したTodoItem（不正な行の場合は警告を表示してnull）
+	 */
+	private static TodoItem parse(String line, Path segment) {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		try {
+			TodoItem item = MappedTodoLoader.parseItem(bytes, bytes.length);
+			if (item != null) {
+				return item;
+			}
+		} catch (DateTimeException e) {
+			// 下の警告にまとめる
+		}
+		System.err.println("警告: アーカイブの不正な行をスキップしました (" + segment.getFileName() + "): " + line);
+		TodoMetrics.get().addSkippedRows(1);
+		return null;
+	}
+
+	/**
+	 * セグメントの一覧を連番の順に取得します。
+	 */
+	private TreeMap<Integer, Path> listSegments() throws IOException {
+		TreeMap<Integer, Path> segments = new TreeMap<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				int dash = name.indexOf('-', SEGMENT_PREFIX.length());
+				if (dash < 0) {
+					continue;
+				}
+				try {
+					segments.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), dash)), path);
+				} catch (NumberFormatException e) {
+					// 連番の無いファイルは無視する
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// まだ何も移していない
+		}
+		return segments;
+	}
+}
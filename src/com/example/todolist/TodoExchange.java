@@ -0,0 +1,539 @@
+/**
+ * ToDo項目を他のツールとやり取りするための、CSV（RFC 4180）とJSON Lines形式の読み書きを行うクラスです。
+ * どちらも1件ずつ読み書きするので、ファイルの大きさにかかわらず、使うメモリは入出力のバッファと1件分の項目だけです。
+ *
+ * <pre>
+ * CSV:        id,content,deadline,completed（1行目は見出し、改行はCRLF）
+ *             カンマ・ダブルクォート・改行を含む値はダブルクォートで囲み、値の中のダブルクォートは2つ重ねます。
+ * JSON Lines: {"id":ID,"index":番号,"content":"内容","deadline":"YYYY-MM-DD","completed":true/false}（1行1件）
+ * </pre>
+ * 読み込み時は、CSVの見出しがあればその列の順番に従い、無ければ上の順番とみなします。
+ * IDは省略でき、リストでこれまでに使われたID以下の場合は追加時に新しいIDが割り当てられます（TodoListManager.addImportedItemを参照）。
+ * ToDoリストのファイルは1行1件の形式なので、内容に含まれる改行は読み込み時に空白に置き換えます。
+ */
+package com.example.todolist;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TodoExchange {
+
+	/**
+	 * ファイルの形式です。
+	 */
+	public enum Format {
+		/** RFC 4180のCSV（拡張子 .csv） */
+		CSV,
+		/** JSON Lines（拡張子 .jsonl または .ndjson） */
+		JSON_LINES;
+
+		/**
+		 * ファイル名の拡張子から形式を判断します。
+		 * @param filename ファイル名
+		 * @return 形式
+		 * @throws InputFormatException 対応していない拡張子の場合
+		 */
+		public static Format of(String filename) throws InputFormatException {
+			String lower = filename.toLowerCase();
+			if (lower.endsWith(".csv")) {
+				return CSV;
+			}
+			if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) {
+				return JSON_LINES;
+			}
+			throw new InputFormatException("対応していない形式です。拡張子を .csv または .jsonl にしてください: " + filename);
+		}
+	}
+
+	//フィールド
+	/** 読み込んだ項目をTodoListManagerへまとめて追加する既定の件数 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/** 入出力のバッファの大きさ（文字数） */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** CSVの列の名前（書き出す順番） */
+	private static final String[] COLUMNS = { "id", "content", "deadline", "completed" };
+
+	/** CSVの改行（RFC 4180） */
+	private static final String CSV_NEWLINE = "\r\n";
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private TodoExchange() {
+	}
+
+	/**
+	 * 読み込みの結果（件数と所要時間）を保持するクラスです。
+	 */
+	public static class Result {
+
+		private final long imported;
+		private final long skipped;
+		private final long elapsedNanos;
+
+		Result(long imported, long skipped, long elapsedNanos) {
+			this.imported = imported;
+			this.skipped = skipped;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/** @return 追加した項目の件数 */
+		public long getImported() {
+			return imported;
+		}
+
+		/** @return 不正なためスキップしたレコードの件数 */
+		public long getSkipped() {
+			return skipped;
+		}
+
+		/** @return 所要時間（ナノ秒） */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+	}
+
+	// ----------------------------------------------------
+	// 書き出し
+	// ----------------------------------------------------
+
+	/**
+	 * 項目を1件ずつファイルに書き出します。一時ファイルに書いてから置き換えるので、途中で失敗しても書きかけのファイルは残りません。
+	 * 項目はイテレーターで1件ずつ取り出すので、LazyTodoListを渡せば全項目をメモリに載せずに書き出せます。
+	 * @param items 書き出す項目
+	 * @param target 書き出し先のファイル
+	 * @param format 形式
+	 * @return 書き出した件数
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public static long export(Iterable<TodoItem> items, Path target, Format format) throws IOException {
+		Path tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+		long count = 0;
+		try (Writer out = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(tempPath), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			StringBuilder record = new StringBuilder();
+			if (format == Format.CSV) {
+				out.write(String.join(",", COLUMNS));
+				out.write(CSV_NEWLINE);
+			}
+			for (TodoItem item : items) {
+				record.setLength(0);
+				if (format == Format.CSV) {
+					appendCsv(record, item).append(CSV_NEWLINE);
+				} else {
+					TodoJson.appendItem(record, (int) Math.min(count + 1, Integer.MAX_VALUE), item).append('\n');
+				}
+				out.append(record);
+				count++;
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(tempPath);
+			throw e;
+		}
+		TodoMetrics.get().addBytesWritten(Files.size(tempPath));
+		TodoJournal.moveAtomically(tempPath, target);
+		return count;
+	}
+
+	/**
+	 * 項目をCSVの1レコード（改行を除く）としてバッファの末尾に追加します。
+	 * @param sb 追加先のバッファ
+	 * @param item ToDo項目
+	 * @return 引数のバッファ
+	 */
+	public static StringBuilder appendCsv(StringBuilder sb, TodoItem item) {
+		if (item.getId() > 0) {
+			sb.append(item.getId());
+		}
+		sb.append(',');
+		appendCsvField(sb, item.getContent());
+		sb.append(',');
+		if (item.getDeadline() != null) {
+			sb.append(item.getDeadline());
+		}
+		return sb.append(',').append(item.isCompleted());
+	}
+
+	/**
+	 * 値をCSVのフィールドとして追加します。カンマ・ダブルクォート・改行を含む場合だけダブルクォートで囲みます。
+	 */
+	private static void appendCsvField(StringBuilder sb, String value) {
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			sb.append(value);
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				sb.append('"');
+			}
+			sb.append(c);
+		}
+		sb.append('"');
+	}
+
+	// ----------------------------------------------------
+	// 読み込み
+	// ----------------------------------------------------
+
+	/**
+	 * ファイルを1件ずつ読み込み、指定した件数ごとにまとめてTodoListManagerへ追加します。
+	 * 追加はTodoListManagerで同期して行うので、自動保存と並行して呼び出せます。
+	 * 不正なレコードは警告を表示してスキップし、残りの読み込みを続けます。
+	 * @param source 読み込むファイル
+	 * @param format 形式
+	 * @param manager 追加先のTodoListManager
+	 * @param batchSize まとめて追加する件数
+	 * @return 読み込みの結果
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public static Result importFrom(Path source, Format format, TodoListManager manager, int batchSize)
+			throws IOException {
+		long start = System.nanoTime();
+		TodoMetrics.get().addBytesRead(Files.size(source));
+		List<TodoItem> batch = new ArrayList<>(batchSize);
+		long imported = 0;
+		long skipped = 0;
+
+		try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(Files.newInputStream(source), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			RecordReader reader = format == Format.CSV ? new CsvRecordReader(in) : new JsonLinesRecordReader(in);
+			while (true) {
+				TodoItem item;
+				try {
+					item = reader.next();
+				} catch (InputFormatException e) {
+					System.err.println("警告: レコードをスキップしました (" + reader.lineNumber() + "行目): " + e.getMessage());
+					skipped++;
+					continue;
+				}
+				if (item == null) {
+					break;
+				}
+				batch.add(item);
+				if (batch.size() == batchSize) {
+					imported += addBatch(manager, batch);
+				}
+			}
+		}
+		imported += addBatch(manager, batch);
+		return new Result(imported, skipped, System.nanoTime() - start);
+	}
+
+	private static int addBatch(TodoListManager manager, List<TodoItem> batch) {
+		int count = batch.size();
+		if (count > 0) {
+			synchronized (manager) {
+				manager.addImportedItems(batch);
+			}
+			batch.clear();
+		}
+		return count;
+	}
+
+	/**
+	 * 1件ずつ項目を読み込む処理です。
+	 */
+	private interface RecordReader {
+
+		/**
+		 * 次の項目を読み込みます。
+		 * @return 項目（ファイルの終わりの場合はnull）
+		 * @throws InputFormatException レコードが不正な場合（次の呼び出しでは次のレコードから読み込みます）
+		 */
+		TodoItem next() throws IOException, InputFormatException;
+
+		/**
+		 * 直前に読み込んだレコードの開始行を返します。
+		 */
+		long lineNumber();
+	}
+
+	/**
+	 * 読み込んだ値から項目を作ります。
+	 */
+	private static TodoItem toItem(String id, String content, String deadline, String completed)
+			throws InputFormatException {
+		if (content == null) {
+			throw new InputFormatException("内容がありません");
+		}
+		if (content.indexOf('\n') >= 0 || content.indexOf('\r') >= 0) {
+			content = content.replace("\r\n", " ").replace('\r', ' ').replace('\n', ' ');
+		}
+		TodoItem item;
+		try {
+			item = new TodoItem(content, LocalDate.parse(deadline == null ? "" : deadline.trim()));
+		} catch (DateTimeParseException e) {
+			throw new InputFormatException("期限の形式が不正です: " + deadline, e);
+		}
+		if (completed != null && !completed.isEmpty()) {
+			if (completed.equalsIgnoreCase("true")) {
+				item.setCompleted(true);
+			} else if (!completed.equalsIgnoreCase("false")) {
+				throw new InputFormatException("完了状態は true または false で指定してください: " + completed);
+			}
+		}
+		if (id != null && !id.isEmpty()) {
+			try {
+				item.setId(Long.parseLong(id.trim()));
+			} catch (NumberFormatException e) {
+				throw new InputFormatException("IDが不正です: " + id, e);
+			}
+		}
+		return item;
+	}
+
+	/**
+	 * RFC 4180のCSVを1レコードずつ読み込みます。ダブルクォートで囲んだフィールドは、カンマや改行を含めて1つの値になります。
+	 */
+	private static class CsvRecordReader implements RecordReader {
+
+		private final Reader in;
+
+		/** 列の位置（COLUMNSの順番） */
+		private final int[] positions = { 0, 1, 2, 3 };
+
+		/** 1レコード分のフィールド（使い回す） */
+		private final List<String> fields = new ArrayList<>();
+
+		/** 読み込み中のフィールド（使い回す） */
+		private final StringBuilder field = new StringBuilder();
+
+		/** 読み込みのバッファ（1文字ずつReaderを呼び出さないように、まとめて読み込む） */
+		private final char[] buffer = new char[BUFFER_SIZE];
+
+		/** バッファの次に読む位置 */
+		private int position;
+
+		/** バッファに読み込んだ文字数（ファイルの終わりの場合は-1） */
+		private int limit;
+
+		/** 現在の行番号 */
+		private long line = 1;
+
+		/** 直前に読み込んだレコードの開始行 */
+		private long recordLine;
+
+		/** 1レコード目（見出しの可能性がある）を読んだかどうか */
+		private boolean started;
+
+		CsvRecordReader(Reader in) {
+			this.in = in;
+		}
+
+		@Override
+		public TodoItem next() throws IOException, InputFormatException {
+			while (true) {
+				if (!readRecord()) {
+					return null;
+				}
+				if (fields.size() == 1 && fields.get(0).isEmpty()) {
+					// 空行は読み飛ばす
+					continue;
+				}
+				if (!started) {
+					started = true;
+					if (readHeader()) {
+						continue;
+					}
+				}
+				return toItem(column(0), column(1), column(2), column(3));
+			}
+		}
+
+		@Override
+		public long lineNumber() {
+			return recordLine;
+		}
+
+		/**
+		 * 1レコード目が見出しであれば、列の位置を読み取ります。
+		 * @return 見出しだった場合はtrue
+		 */
+		private boolean readHeader() throws InputFormatException {
+			int[] found = { -1, -1, -1, -1 };
+			for (int i = 0; i < fields.size(); i++) {
+				String name = fields.get(i).trim().toLowerCase();
+				for (int c = 0; c < COLUMNS.length; c++) {
+					if (COLUMNS[c].equals(name)) {
+						found[c] = i;
+					}
+				}
+			}
+			if (found[1] < 0 && found[2] < 0) {
+				return false;
+			}
+			if (found[1] < 0 || found[2] < 0) {
+				throw new InputFormatException("見出しには content と deadline の列が必要です");
+			}
+			System.arraycopy(found, 0, positions, 0, positions.length);
+			return true;
+		}
+
+		private String column(int c) {
+			int position = positions[c];
+			return position >= 0 && position < fields.size() ? fields.get(position) : null;
+		}
+
+		/**
+		 * 1レコードを読み込んでfieldsに入れます。
+		 * @return ファイルの終わりでレコードが無い場合はfalse
+		 */
+		private boolean readRecord() throws IOException, InputFormatException {
+			fields.clear();
+			field.setLength(0);
+			recordLine = line;
+
+			int c = read();
+			if (c < 0) {
+				return false;
+			}
+			boolean quoted = false;
+			boolean afterQuote = false;
+			while (true) {
+				if (quoted) {
+					if (c < 0) {
+						throw new InputFormatException("ダブルクォートが閉じられていません");
+					}
+					if (c == '"') {
+						int next = read();
+						if (next == '"') {
+							field.append('"');
+						} else {
+							quoted = false;
+							afterQuote = true;
+							c = next;
+							continue;
+						}
+					} else {
+						if (c == '\n') {
+							line++;
+						}
+						field.append((char) c);
+					}
+				} else if (c < 0 || c == '\n' || c == '\r') {
+					fields.add(field.toString());
+					if (c == '\r') {
+						int next = read();
+						if (next != '\n') {
+							unread(next);
+						}
+					}
+					if (c >= 0) {
+						line++;
+					}
+					return true;
+				} else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+					afterQuote = false;
+				} else if (c == '"' && field.length() == 0 && !afterQuote) {
+					quoted = true;
+				} else if (afterQuote) {
+					skipRecord();
+					throw new InputFormatException("閉じたダブルクォートの後に文字があります");
+				} else {
+					field.append((char) c);
+				}
+				c = read();
+			}
+		}
+
+		/**
+		 * 不正なレコードの残り（行末まで）を読み飛ばします。
+		 */
+		private void skipRecord() throws IOException {
+			int c;
+			while ((c = read()) >= 0 && c != '\n') {
+				// 読み飛ばす
+			}
+			line++;
+		}
+
+		private int read() throws IOException {
+			if (position >= limit) {
+				if (limit < 0) {
+					return -1;
+				}
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0) {
+					limit = -1;
+					return -1;
+				}
+			}
+			return buffer[position++];
+		}
+
+		/**
+		 * 直前にreadで読んだ1文字を戻します（ファイルの終わりの場合は何もしません）。
+		 */
+		private void unread(int c) {
+			if (c >= 0) {
+				position--;
+			}
+		}
+	}
+
+	/**
+	 * JSON Linesを1行ずつ読み込みます。
+	 */
+	private static class JsonLinesRecordReader implements RecordReader {
+
+		private final BufferedReader in;
+		private long line;
+
+		JsonLinesRecordReader(BufferedReader in) {
+			this.in = in;
+		}
+
+		@Override
+		public TodoItem next() throws IOException, InputFormatException {
+			String text;
+			do {
+				text = in.readLine();
+				if (text == null) {
+					return null;
+				}
+				line++;
+			} while (text.isBlank());
+
+			Map<String, Object> values = TodoJson.parseObject(text);
+			Object content = values.get("content");
+			if (content != null && !(content instanceof String)) {
+				throw new InputFormatException("content は文字列で指定してください");
+			}
+			Object id = values.get("id");
+			Object deadline = values.get("deadline");
+			Object completed = values.get("completed");
+			return toItem(id == null ? null : id.toString(), (String) content,
+					deadline == null ? null : deadline.toString(), completed == null ? null : completed.toString());
+		}
+
+		@Override
+		public long lineNumber() {
+			return line;
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/**
+ * アプリケーションの実行中に、他のツールがToDoリストのファイル（テキスト形式）へ加えた変更を監視するクラスです。
+ *
+ * ファイルの末尾に行が追記された場合は、前回読んだ位置から後ろのバイトだけを読み込み、
+ * 完全な行（改行まで）をTodoListManagerに追加します。ファイル全体を読み直すことはありません。
+ * 追記された項目はすでにファイルに含まれているのでジャーナルには記録せず、取り込んだ直後にスナップショットを書き直して
+ * ジャーナルの前提を揃えます（IDもこの時にファイルへ書き込まれます）。
+ *
+ * 追記ではない変更（ファイルの置き換え、切り詰め、前回読んだ位置の直前の内容の変化、削除）は競合とみなします。
+ * 競合を検出した後は外部の変更を上書きしないように、以降の保存を競合ファイル（{ファイル名}.conflict）へ行います。
+ *
+ * FileHandlerはスナップショットを書き直す直前にverifyでファイルが変わっていないことを確かめ、
+ * まだ取り込んでいない末尾（書き込み途中の行など）をcopyUnmergedで新しいスナップショットの後ろに引き継ぎ、
+ * 書き込んだ後にsnapshotWrittenを呼び出して基準を更新します。
+ * 他のツールがファイルを開いたまま追記し続ける場合、書き直しの後の追記は古いファイルに書かれるため取り込めません
+ * （追記のたびにファイルを開き直すツールを想定しています）。
+ * 取り込みはTodoListManagerのインスタンスで同期して行うので、項目を変更する側も同じインスタンスで同期してください。
+ */
+package com.example.todolist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TodoFileWatcher implements Closeable {
+
+	//フィールド
+	/** 監視の通知が届かない環境に備えて、この間隔でもファイルを確認する（ミリ秒） */
+	private static final long POLL_INTERVAL_MILLIS = 1000;
+
+	/** 前回読んだ位置の直前で、内容が変わっていないことを確認するバイト数 */
+	private static final int TAIL_CHECK_BYTES = 64;
+
+	/** 監視するファイル */
+	private final Path dataPath;
+
+	/** スナップショットの書き直しに使うFileHandler */
+	private final FileHandler fileHandler;
+
+	/** 追記された項目を追加するTodoListManager */
+	private final TodoListManager manager;
+
+	/** ディレクトリの変更の通知を受け取るWatchService */
+	private final WatchService watchService;
+
+	/** 監視を行うスレッド */
+	private final Thread thread;
+
+	/** 取り込み済みの位置（ファイルの先頭からのバイト数） */
+	private long knownSize;
+
+	/** 取り込み済みのファイルの識別子（置き換えの検出に使用、取得できない環境ではnull） */
+	private Object knownFileKey;
+
+	/** 取り込み済みの位置の直前のバイト列 */
+	private byte[] knownTail = new byte[0];
+
+	/** 競合を検出した場合はtrue */
+	private volatile boolean conflicted;
+
+	/** closeが呼ばれた場合はtrue */
+	private volatile boolean closed;
+
+	/** 外部から取り込んだ項目の件数 */
+	private long mergedCount;
+
+	/**
+	 * TodoFileWatcherを初期化するコンストラクタです。startを呼び出すまで監視は始まりません。
+	 * @param dataPath 監視するファイル
+	 * @param fileHandler スナップショットの書き直しに使うFileHandler
+	 * @param manager 追記された項目を追加するTodoListManager
+	 * @param loadedSize 読み込んだ時点のファイルの大きさ（これより後ろを追記として扱う）
+	 * @throws IOException WatchServiceを作成できなかった場合
+	 */
+	public TodoFileWatcher(Path dataPath, FileHandler fileHandler, TodoListManager manager, long loadedSize) throws IOException {
+		this.dataPath = dataPath.toAbsolutePath();
+		this.fileHandler = fileHandler;
+		this.manager = manager;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.thread = new Thread(this::run, "todo-file-watcher");
+		this.thread.setDaemon(true);
+
+		synchronized (this) {
+			setBaseline(loadedSize);
+		}
+	}
+
+	/**
+	 * 監視を始めます。読み込み後から開始までの間に追記された行も、最初の確認で取り込みます。
+	 * @throws IOException ディレクトリの監視を登録できなかった場合
+	 */
+	public void start() throws IOException {
+		dataPath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		thread.start();
+	}
+
+	/**
+	 * 監視を止めます。取り込み中の場合は完了を待ちます。
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			System.out.println("警告：ファイルの監視を止める際に問題が発生しました。" + e.getMessage());
+		}
+		if (Thread.currentThread() != thread) {
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * 外部による書き換えを検出したかどうかを判定します。
+	 * @return 競合を検出した場合はtrue
+	 */
+	public boolean isConflicted() {
+		return conflicted;
+	}
+
+	/**
+	 * 外部から取り込んだ項目の件数を取得します。
+	 * @return 件数
+	 */
+	public synchronized long getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * ファイルが追記以外の方法で変更されていないかを確認します。変更されていた場合は競合として記録します。
+	 * FileHandlerがスナップショットを書き直す直前に呼び出し、falseの場合は競合ファイルへ保存します。
+	 * @return 競合が無い場合はtrue
+	 */
+	public synchronized boolean verify() {
+		if (conflicted) {
+			return false;
+		}
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(dataPath, BasicFileAttributes.class);
+			if (attributes.size() < knownSize || !sameFile(attributes) || !Arrays.equals(readTail(knownSize), knownTail)) {
+				reportConflict("ファイルが置き換えられたか、既存の内容が変更されました");
+			}
+		} catch (NoSuchFileException e) {
+			if (knownSize > 0 || knownFileKey != null) {
+				reportConflict("ファイルが削除されました");
+			}
+		} catch (IOException e) {
+			System.out.println("警告：ToDoリストファイルの確認中に問題が発生しました。" + e.getMessage());
+		}
+		return !conflicted;
+	}
+
+	/**
+	 * まだ取り込んでいない末尾のバイト列（取り込み済みの位置からファイルの末尾まで）を書き出します。
+	 * スナップショットを書き直す際に、その後ろに引き継いで失われないようにするために使います。
+	 * @param out 書き出し先
+	 * @return 書き出したバイト数
+	 * @throws IOException 読み込みまたは書き出しに失敗した場合
+	 */
+	public synchronized long copyUnmerged(OutputStream out) throws IOException {
+		try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+			long copied = 0;
+			long size;
+			// 書き出している間に追記された分も引き継ぐ
+			while ((size = channel.size()) > knownSize + copied) {
+				byte[] bytes = read(channel, knownSize + copied, size - knownSize - copied);
+				out.write(bytes);
+				copied += bytes.length;
+			}
+			return copied;
+		} catch (NoSuchFileException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * アプリケーション自身がスナップショットを書き込んだことを通知します。
+	 * 書き込んだ内容を新しい基準とし、以降はその後ろへの追記（引き継いだ末尾を含む）を取り込みます。
+	 * @param size 書き込んだスナップショットのうち、リストの項目の部分の大きさ
+	 */
+	public synchronized void snapshotWritten(long size) {
+		try {
+			setBaseline(size);
+		} catch (IOException e) {
+			System.out.println("警告：ToDoリストファイルの状態を取得できませんでした。" + e.getMessage());
+		}
+	}
+
+	// ----------------------------------------------------
+	// 監視
+	// ----------------------------------------------------
+
+	/**
+	 * 監視のスレッドの処理です。ディレクトリの変更の通知を待ち、通知が無くても一定間隔でファイルを確認します。
+	 */
+	private void run() {
+		while (!closed && !conflicted) {
+			check();
+			try {
+				WatchKey key = watchService.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					// 同じディレクトリの他のファイル（ジャーナルなど）の通知もまとめて捨て、確認は1回にする
+					key.pollEvents();
+					key.reset();
+				}
+			} catch (ClosedWatchServiceException e) {
+				return;
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * ファイルの状態を基準と比べ、追記されていれば取り込み、追記以外の変更であれば競合として扱います。
+	 */
+	private void check() {
+		synchronized (manager) {
+			synchronized (this) {
+				if (closed || conflicted) {
+					return;
+				}
+				if (!verify()) {
+					// 現在の内容を競合ファイルへ書き出しておく
+					fileHandler.rewriteSnapshot(manager.getTodoItems());
+					return;
+				}
+				try {
+					long size = Files.size(dataPath);
+					if (size > knownSize) {
+						mergeAppended(size);
+					}
+				} catch (NoSuchFileException e) {
+					// まだファイルが無い
+				} catch (IOException e) {
+					System.out.println("警告：ToDoリストファイルの確認中に問題が発生しました。" + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 取り込み済みの位置から後ろの完全な行を読み込んで追加し、スナップショットを書き直します。
+	 * 改行で終わっていない最後の行は、書き込みの途中とみなして次の確認まで待ちます。
+	 */
+	private void mergeAppended(long size) throws IOException {
+		byte[] bytes;
+		try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+			bytes = read(channel, knownSize, size - knownSize);
+		}
+		int lastNewline = bytes.length - 1;
+		while (lastNewline >= 0 && bytes[lastNewline] != '\n') {
+			lastNewline--;
+		}
+		if (lastNewline < 0) {
+			return;
+		}
+		TodoMetrics.get().addBytesRead(lastNewline + 1);
+
+		List<TodoItem> items = parseLines(bytes, lastNewline + 1);
+		long consumed = knownSize + lastNewline + 1;
+		setBaseline(consumed);
+		if (items.isEmpty()) {
+			return;
+		}
+
+		// 追記された行はファイルに含まれているので、ジャーナルには記録せずにスナップショットを書き直す
+		fileHandler.mergeExternalItems(manager, items);
+		mergedCount += items.size();
+		System.out.println();
+		System.out.println("他のツールが追加した " + items.size() + " 件の項目を読み込みました。");
+	}
+
+	/**
+	 * 追記されたバイト列を行に分けてTodoItemに変換します。不正な行は警告を表示してスキップします。
+	 */
+	private List<TodoItem> parseLines(byte[] bytes, int length) {
+		List<TodoItem> items = new ArrayList<>();
+		int lineStart = 0;
+		for (int i = 0; i < length; i++) {
+			if (bytes[i] != '\n') {
+				continue;
+			}
+			int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+			byte[] line = Arrays.copyOfRange(bytes, lineStart, lineEnd);
+			lineStart = i + 1;
+
+			String text = new String(line, StandardCharsets.UTF_8);
+			if (text.isBlank()) {
+				continue;
+			}
+			try {
+				TodoItem item = MappedTodoLoader.parseItem(line, line.length);
+				if (item != null) {
+					items.add(item);
+					continue;
+				}
+				System.err.println("警告: 追記された不正なデータ形式の行をスキップしました: " + text);
+			} catch (DateTimeException e) {
+				System.err.println("警告: 追記された行をパースエラーのためスキップしました: " + text + " (原因: " + e.getMessage() + ")");
+			}
+			TodoMetrics.get().addSkippedRows(1);
+		}
+		return items;
+	}
+
+	/**
+	 * 競合を記録し、以降の保存を競合ファイルへ行うことを表示します。
+	 */
+	private void reportConflict(String reason) {
+		conflicted = true;
+		System.out.println();
+		System.out.println("警告：ToDoリストファイルが外部で書き換えられました（" + reason + "）。");
+		System.out.println("外部の変更を上書きしないように、以降の保存は " + fileHandler.getConflictPath() + " に行います。");
+	}
+
+	// ----------------------------------------------------
+	// 基準の記録
+	// ----------------------------------------------------
+
+	/**
+	 * 指定した位置までを取り込み済みとし、その時点のファイルの識別子と直前のバイト列を記録します。
+	 */
+	private void setBaseline(long size) throws IOException {
+		knownSize = size;
+		try {
+			knownFileKey = Files.readAttributes(dataPath, BasicFileAttributes.class).fileKey();
+			knownTail = readTail(size);
+		} catch (NoSuchFileException e) {
+			// まだファイルが無い（最初の保存で作られる）
+			knownFileKey = null;
+			knownTail = new byte[0];
+		}
+	}
+
+	private boolean sameFile(BasicFileAttributes attributes) {
+		return knownFileKey == null || knownFileKey.equals(attributes.fileKey());
+	}
+
+	/**
+	 * 指定した位置の直前のバイト列を読み込みます。
+	 */
+	private byte[] readTail(long end) throws IOException {
+		long start = Math.max(0, end - TAIL_CHECK_BYTES);
+		try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+			if (channel.size() < end) {
+				return new byte[0];
+			}
+			return read(channel, start, end - start);
+		}
+	}
+
+	private static byte[] read(FileChannel channel, long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("追記された内容が大きすぎます: " + length + " バイト");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				break;
+			}
+		}
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+}
@@ -0,0 +1,399 @@
+/**
+ * ToDoリストへの変更を、元に戻す（undo）・やり直す（redo）ための履歴です。
+ * リストのコピーを取る代わりに、変更1件ごとに「どの項目（ID）の何を、何から何に変えたか」だけを記録し、
+ * 元に戻す時は逆の変更を、やり直す時は同じ変更を適用します。記録は変更1件あたりO(1)です。
+ *
+ * TodoListListenerとして登録すると、1回の操作（一括操作の場合はbulkStartedからbulkFinishedまで）を1つの手順として記録します。
+ * 保持する手順の数と、記録の大きさの概算（バイト数）には上限があり、超えた分は古い手順から捨てます。
+ * 1つの手順だけで上限を超える場合は、その手順は元に戻せないものとして履歴をすべて捨てます。
+ * リスト全体が置き換えられた場合（setTodoItems）も、記録が当てはまらなくなるので履歴を捨てます。
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+public class TodoHistory implements TodoListListener {
+
+	//フィールド
+	/** 既定で保持する手順の数 */
+	public static final int DEFAULT_MAX_DEPTH = 100;
+
+	/** 既定の記録の大きさの上限（バイト数の概算） */
+	public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+	/** 変更1件の記録の大きさの概算（内容の文字列を除く） */
+	private static final int CHANGE_OVERHEAD_BYTES = 64;
+
+	/**
+	 * 変更の種類です。
+	 */
+	private enum Type {
+		ADD, REMOVE, COMPLETE, REOPEN, CONTENT, DEADLINE
+	}
+
+	/**
+	 * 変更1件の記録です。
+	 */
+	private static class Change {
+
+		final Type type;
+		final long id;
+
+		/** 追加・削除した項目のコピー（それ以外はnull） */
+		final TodoItem item;
+
+		/** 内容・期限の変更前と変更後の値（それ以外はnull） */
+		final Object oldValue;
+		final Object newValue;
+
+		Change(Type type, long id, TodoItem item, Object oldValue, Object newValue) {
+			this.type = type;
+			this.id = id;
+			this.item = item;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+
+		/**
+		 * この変更を打ち消す変更を作ります。
+		 */
+		Change inverse() {
+			switch (type) {
+				case ADD:
+					return new Change(Type.REMOVE, id, item, null, null);
+				case REMOVE:
+					return new Change(Type.ADD, id, item, null, null);
+				case COMPLETE:
+					return new Change(Type.REOPEN, id, null, null, null);
+				case REOPEN:
+					return new Change(Type.COMPLETE, id, null, null, null);
+				default:
+					return new Change(type, id, null, newValue, oldValue);
+			}
+		}
+
+		/**
+		 * この変更をTodoListManagerに適用します。対象の項目はIDで探します。
+		 * @throws IndexOutOfBoundsException 対象の項目が存在しない場合
+		 * @throws IllegalStateException 削除する項目が末尾に無い場合
+		 */
+		void applyTo(TodoListManager manager) {
+			switch (type) {
+				case ADD:
+					manager.addItem(copyOf(item));
+					break;
+				case REMOVE:
+					if (manager.indexOf(id) != manager.getTodoItems().size()) {
+						throw new IllegalStateException("ID " + id + " の項目より後に追加された項目があるため、追加を取り消せません。");
+					}
+					manager.removeLastItem();
+					break;
+				case COMPLETE:
+					manager.completeItem(manager.indexOf(id));
+					break;
+				case REOPEN:
+					manager.reopenItem(manager.indexOf(id));
+					break;
+				case CONTENT:
+					manager.editContent(manager.indexOf(id), (String) newValue);
+					break;
+				case DEADLINE:
+					manager.editDeadline(manager.indexOf(id), (LocalDate) newValue);
+					break;
+				default:
+					throw new IllegalArgumentException("未知の変更の種類です: " + type);
+			}
+		}
+
+		/**
+		 * 記録の大きさの概算を求めます。
+		 */
+		long estimatedBytes() {
+			long bytes = CHANGE_OVERHEAD_BYTES;
+			if (item != null) {
+				bytes += CHANGE_OVERHEAD_BYTES + 2L * item.getContent().length();
+			}
+			if (oldValue instanceof String) {
+				bytes += 2L * ((String) oldValue).length();
+			}
+			if (newValue instanceof String) {
+				bytes += 2L * ((String) newValue).length();
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * 1回の操作で行われた変更のまとまり（元に戻す単位）です。
+	 */
+	private static class Step {
+
+		final List<Change> changes;
+		final long bytes;
+
+		Step(List<Change> changes) {
+			this.changes = changes;
+			long sum = 0;
+			for (Change change : changes) {
+				sum += change.estimatedBytes();
+			}
+			this.bytes = sum;
+		}
+	}
+
+	/** 保持する手順の数の上限 */
+	private final int maxDepth;
+
+	/** 記録の大きさの上限（バイト数の概算） */
+	private final long maxBytes;
+
+	/** 元に戻せる手順（末尾が最新） */
+	private final Deque<Step> undoSteps = new ArrayDeque<>();
+
+	/** やり直せる手順（末尾が直前に元に戻した手順） */
+	private final Deque<Step> redoSteps = new ArrayDeque<>();
+
+	/** 保持している手順の大きさの合計 */
+	private long totalBytes;
+
+	/** 一括操作の途中で記録している変更（一括操作の外ではnull） */
+	private List<Change> pending;
+
+	/** 元に戻す・やり直す変更を適用している間はtrue（その変更は記録しない） */
+	private boolean applying;
+
+	/**
+	 * 上限を指定してTodoHistoryを初期化するコンストラクタです。
+	 * @param maxDepth 保持する手順の数（1以上）
+	 * @param maxBytes 記録の大きさの上限（バイト数の概算、1以上）
+	 * @throws IllegalArgumentException 上限が1未満の場合
+	 */
+	public TodoHistory(int maxDepth, long maxBytes) {
+		if (maxDepth < 1 || maxBytes < 1) {
+			throw new IllegalArgumentException("履歴の上限は1以上を指定してください: " + maxDepth + ", " + maxBytes);
+		}
+		this.maxDepth = maxDepth;
+		this.maxBytes = maxBytes;
+	}
+
+	// ----------------------------------------------------
+	// 元に戻す・やり直す
+	// ----------------------------------------------------
+
+	/**
+	 * 元に戻せる手順の数を取得します。
+	 * @return 手順の数
+	 */
+	public int undoDepth() {
+		return undoSteps.size();
+	}
+
+	/**
+	 * やり直せる手順の数を取得します。
+	 * @return 手順の数
+	 */
+	public int redoDepth() {
+		return redoSteps.size();
+	}
+
+	/**
+	 * 保持している記録の大きさの概算を取得します。
+	 * @return バイト数
+	 */
+	public long getEstimatedBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * 次に元に戻す手順の変更の件数を取得します。
+	 * @return 変更の件数（元に戻せる手順が無い場合は-1）
+	 */
+	int nextUndoSize() {
+		Step step = undoSteps.peekLast();
+		return step == null ? -1 : step.changes.size();
+	}
+
+	/**
+	 * 次にやり直す手順の変更の件数を取得します。
+	 * @return 変更の件数（やり直せる手順が無い場合は-1）
+	 */
+	int nextRedoSize() {
+		Step step = redoSteps.peekLast();
+		return step == null ? -1 : step.changes.size();
+	}
+
+	/**
+	 * 直前の手順を元に戻します。TodoListManager.undoから呼び出します。
+	 * 途中で失敗した場合は、それまでに戻した変更を適用し直してから例外を投げます。
+	 * @param manager 変更を適用するTodoListManager
+	 * @return 元に戻した変更の件数（元に戻せる手順が無い場合は-1）
+	 */
+	int undo(TodoListManager manager) {
+		Step step = undoSteps.pollLast();
+		if (step == null) {
+			return -1;
+		}
+		List<Change> inverses = new ArrayList<>(step.changes.size());
+		for (int i = step.changes.size() - 1; i >= 0; i--) {
+			inverses.add(step.changes.get(i).inverse());
+		}
+		apply(manager, inverses, step, undoSteps);
+		redoSteps.addLast(step);
+		return step.changes.size();
+	}
+
+	/**
+	 * 直前に元に戻した手順をやり直します。TodoListManager.redoから呼び出します。
+	 * @param manager 変更を適用するTodoListManager
+	 * @return やり直した変更の件数（やり直せる手順が無い場合は-1）
+	 */
+	int redo(TodoListManager manager) {
+		Step step = redoSteps.pollLast();
+		if (step == null) {
+			return -1;
+		}
+		apply(manager, step.changes, step, redoSteps);
+		undoSteps.addLast(step);
+		return step.changes.size();
+	}
+
+	/**
+	 * 変更を順番に適用します。途中で失敗した場合は適用済みの変更を打ち消し、手順を元の場所に戻します。
+	 */
+	private void apply(TodoListManager manager, List<Change> changes, Step step, Deque<Step> origin) {
+		applying = true;
+		int applied = 0;
+		try {
+			for (Change change : changes) {
+				change.applyTo(manager);
+				applied++;
+			}
+		} catch (RuntimeException e) {
+			for (int i = applied - 1; i >= 0; i--) {
+				changes.get(i).inverse().applyTo(manager);
+			}
+			origin.addLast(step);
+			throw e;
+		} finally {
+			applying = false;
+		}
+	}
+
+	/**
+	 * 履歴をすべて捨てます。
+	 */
+	public void clear() {
+		undoSteps.clear();
+		redoSteps.clear();
+		totalBytes = 0;
+		pending = null;
+	}
+
+	// ----------------------------------------------------
+	// 変更の記録
+	// ----------------------------------------------------
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		record(new Change(Type.ADD, item.getId(), copyOf(item), null, null));
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		record(new Change(Type.REMOVE, item.getId(), copyOf(item), null, null));
+	}
+
+	@Override
+	public void itemCompleted(int index, TodoItem item) {
+		record(new Change(Type.COMPLETE, item.getId(), null, null, null));
+	}
+
+	@Override
+	public void itemReopened(int index, TodoItem item) {
+		record(new Change(Type.REOPEN, item.getId(), null, null, null));
+	}
+
+	@Override
+	public void contentEdited(int index, TodoItem item, String oldContent) {
+		record(new Change(Type.CONTENT, item.getId(), null, oldContent, item.getContent()));
+	}
+
+	@Override
+	public void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		record(new Change(Type.DEADLINE, item.getId(), null, oldDeadline, item.getDeadline()));
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		clear();
+	}
+
+	@Override
+	public void bulkStarted(int count) {
+		if (!applying) {
+			pending = new ArrayList<>();
+		}
+	}
+
+	@Override
+	public void bulkFinished(int count) {
+		if (applying || pending == null) {
+			return;
+		}
+		List<Change> changes = pending;
+		pending = null;
+		if (!changes.isEmpty()) {
+			push(new Step(changes));
+		}
+	}
+
+	/**
+	 * 変更を1件記録します。一括操作の途中であればまとまりに加え、そうでなければ1つの手順にします。
+	 */
+	private void record(Change change) {
+		if (applying) {
+			return;
+		}
+		if (pending != null) {
+			pending.add(change);
+			return;
+		}
+		List<Change> changes = new ArrayList<>(1);
+		changes.add(change);
+		push(new Step(changes));
+	}
+
+	/**
+	 * 新しい手順を加え、上限を超えた分を古い手順から捨てます。新しい変更を記録したので、やり直せる手順は捨てます。
+	 */
+	private void push(Step step) {
+		for (Step redo : redoSteps) {
+			totalBytes -= redo.bytes;
+		}
+		redoSteps.clear();
+		if (step.bytes > maxBytes) {
+			// この手順だけで上限を超えるので記録できず、それより前の手順も戻せなくなる
+			clear();
+			return;
+		}
+		undoSteps.addLast(step);
+		totalBytes += step.bytes;
+		while (undoSteps.size() > maxDepth || totalBytes > maxBytes) {
+			totalBytes -= undoSteps.pollFirst().bytes;
+		}
+	}
+
+	/**
+	 * 項目のコピーを作ります（列形式のビューなど、後で書き換わる可能性のある項目を記録に残すため）。
+	 */
+	private static TodoItem copyOf(TodoItem item) {
+		TodoItem copy = new TodoItem(item.getContent(), item.getDeadline());
+		copy.setCompleted(item.isCompleted());
+		copy.setId(item.getId());
+		return copy;
+	}
+}
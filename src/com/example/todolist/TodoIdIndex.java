@@ -0,0 +1,225 @@
+/**
+ * タスクのIDから、リスト内の位置（1始まりの番号）を引くための索引です。
+ * TodoListListenerとしてリストの変更に追従します。
+ * 項目ごとのオブジェクトを作らないように、IDと位置をプリミティブ配列のハッシュ表（オープンアドレス法）で保持します。
+ */
+package com.example.todolist;
+
+import java.util.List;
+
+public class TodoIdIndex implements TodoListListener {
+
+	//フィールド
+	/** 空きを表すキー（IDは1以上なので使われない） */
+	private static final long EMPTY = 0;
+
+	/** IDのハッシュ表 */
+	private long[] keys;
+
+	/** keysと同じ位置に格納する、項目の番号（1始まり） */
+	private int[] positions;
+
+	/** 登録されている件数 */
+	private int size;
+
+	/**
+	 * 空のTodoIdIndexを初期化するコンストラクタです。
+	 */
+	public TodoIdIndex() {
+		this(16);
+	}
+
+	/**
+	 * 想定件数を指定してTodoIdIndexを初期化するコンストラクタです。
+	 * @param expectedSize 想定件数
+	 */
+	public TodoIdIndex(int expectedSize) {
+		allocate(expectedSize);
+	}
+
+	/**
+	 * リストの項目のうち、IDが未割り当て（0以下）または他の項目と重複しているものに新しいIDを割り当てます。
+	 * 新しいIDは既存の最大のIDより大きい値を順番に使います。
+	 * @param items IDを割り当てるリスト
+	 * @return 割り当て後の最大のID（項目が無い場合は0）
+	 */
+	public static long assignIds(List<TodoItem> items) {
+		long maxId = 0;
+		for (TodoItem item : items) {
+			maxId = Math.max(maxId, item.getId());
+		}
+
+		TodoIdIndex seen = new TodoIdIndex(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			TodoItem item = items.get(i);
+			long id = item.getId();
+			if (id <= 0 || seen.indexOf(id) > 0) {
+				id = ++maxId;
+				item.setId(id);
+			}
+			seen.put(id, i + 1);
+		}
+		return maxId;
+	}
+
+	/**
+	 * IDの配列のうち、未割り当て（0以下）または重複しているものに新しいIDを割り当てます。
+	 * assignIds(List)と同じ規則で、項目を作らずにIDだけを扱う場合（LazyTodoListの索引）に使います。
+	 * @param ids IDの配列（書き換えます）
+	 * @param count 有効な件数
+	 * @return 割り当て後の最大のID（項目が無い場合は0）
+	 */
+	public static long assignIds(long[] ids, int count) {
+		long maxId = 0;
+		for (int i = 0; i < count; i++) {
+			maxId = Math.max(maxId, ids[i]);
+		}
+
+		TodoIdIndex seen = new TodoIdIndex(count);
+		for (int i = 0; i < count; i++) {
+			if (ids[i] <= 0 || seen.indexOf(ids[i]) > 0) {
+				ids[i] = ++maxId;
+			}
+			seen.put(ids[i], i + 1);
+		}
+		return maxId;
+	}
+
+	/**
+	 * IDに対応する項目の番号を取得します。
+	 * @param id タスクのID
+	 * @return 項目の番号（1始まり、見つからない場合は-1）
+	 */
+	public int indexOf(long id) {
+		if (id <= 0) {
+			return -1;
+		}
+		int slot = find(id);
+		return keys[slot] == EMPTY ? -1 : positions[slot];
+	}
+
+	/**
+	 * 登録されている件数を取得します。
+	 * @return 件数
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		put(item.getId(), index);
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		remove(item.getId());
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		if (items instanceof LazyTodoList) {
+			// 全項目を読み込まないように、IDの検索はLazyTodoListが持つIDの表で行う
+			allocate(0);
+			return;
+		}
+		allocate(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			put(items.get(i).getId(), i + 1);
+		}
+	}
+
+	// ----------------------------------------------------
+	// ハッシュ表の操作
+	// ----------------------------------------------------
+
+	/**
+	 * IDと項目の番号を登録します（すでに登録済みのIDは番号を更新します）。
+	 * @param id タスクのID（0以下の場合は何もしない）
+	 * @param position 項目の番号（1始まり）
+	 */
+	void put(long id, int position) {
+		if (id <= 0) {
+			return;
+		}
+		int slot = find(id);
+		if (keys[slot] == EMPTY) {
+			keys[slot] = id;
+			size++;
+		}
+		positions[slot] = position;
+		if (size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * IDの登録を削除します。後ろに続く項目を詰め直すので、削除の印は残りません。
+	 * @param id タスクのID（登録されていない場合は何もしない）
+	 */
+	void remove(long id) {
+		if (id <= 0) {
+			return;
+		}
+		int slot = find(id);
+		if (keys[slot] == EMPTY) {
+			return;
+		}
+		keys[slot] = EMPTY;
+		size--;
+
+		// 削除した位置より後ろの連続した項目のうち、本来の位置が削除した位置以前のものを前に詰める
+		int mask = keys.length - 1;
+		int hole = slot;
+		for (int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = mix(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				positions[hole] = positions[next];
+				keys[next] = EMPTY;
+				hole = next;
+			}
+		}
+	}
+
+	/**
+	 * IDが格納されている、または格納すべき位置を返します（線形探索）。
+	 */
+	private int find(long id) {
+		int mask = keys.length - 1;
+		int slot = mix(id) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void allocate(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+		keys = new long[capacity];
+		positions = new int[capacity];
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldPositions = positions;
+		keys = new long[capacity];
+		positions = new int[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				positions[slot] = oldPositions[i];
+			}
+		}
+	}
+
+	/**
+	 * 連番のIDが隣り合う位置に集まらないように、ビットを混ぜてからハッシュ表の位置を決めます。
+	 */
+	private static int mix(long id) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
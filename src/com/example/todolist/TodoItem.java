@@ -18,6 +18,9 @@ public class TodoItem {
     /** タスクの完了状態（true:完了, false:未完了） */
     private boolean isCompleted;
 
+    /** タスクのID（リスト内で一意、並び順が変わっても変わらない。0は未割り当て） */
+    private long id;
+
     /**
      * TodoItemを初期化するコンストラクタです。
      * @param ct タスクの内容
@@ -77,23 +80,76 @@ public class TodoItem {
 		this.isCompleted = isCompleted;
 	}
 
+	/**
+	 * タスクのIDを取得します。
+	 * @return タスクのID（未割り当ての場合は0）
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * タスクのIDを設定します。通常はTodoListManagerが追加・読み込み時に割り当てます。
+	 * @param id 新しいID
+	 */
+	public void setId(long id) {
+		this.id = id;
+	}
+
 	/**
 	 * ToDo項目をコンソール表示用の読みやすい形式で返します。
-	 * (例: [DONE]｜期限：2025-11-06｜内容：報告書作成)
+	 * (例: [DONE]｜期限：2025-11-06｜内容：報告書作成｜ID：12)
 	 * * @return 整形されたステータス、期限、内容を含む文字列
 	 */
 	@Override
 	public String toString() {
-		String status = isCompleted ? "[DONE]":"[TODO]";
-		return status + "｜期限：" + deadline + "｜内容：" + content;
+		String text = getContent();
+		StringBuilder sb = new StringBuilder(32 + (text == null ? 4 : text.length()));
+		appendTo(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * toString()と同じ表示用の形式で、ToDo項目を指定したバッファの末尾に追加します。
+	 * 一覧表示で項目ごとに文字列を作らずに済むように使います。
+	 * @param sb 追加先のバッファ
+	 * @return 引数のバッファ
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		sb.append(isCompleted() ? "[DONE]":"[TODO]").append("｜期限：");
+		appendDate(sb, getDeadline());
+		sb.append("｜内容：").append(getContent());
+		long itemId = getId();
+		if (itemId > 0) {
+			sb.append("｜ID：").append(itemId);
+		}
+		return sb;
+	}
+
+	/**
+	 * 日付をYYYY-MM-DD形式でバッファに追加します（LocalDate.toString()の文字列を作らずに済ませます）。
+	 */
+	private static void appendDate(StringBuilder sb, LocalDate date) {
+		if (date == null || date.getYear() < 1000 || date.getYear() > 9999) {
+			// 4桁に収まらない年はLocalDateの表記に任せる
+			sb.append(date);
+			return;
+		}
+		int month = date.getMonthValue();
+		int day = date.getDayOfMonth();
+		sb.append(date.getYear()).append('-')
+			.append((char) ('0' + month / 10)).append((char) ('0' + month % 10)).append('-')
+			.append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
 	}
 
 	/**
 	 * ToDo項目をファイル保存用のカンマ区切り文字列として返します。
-	 * 形式: 内容,期限(YYYY-MM-DD),完了状態(true/false)
+	 * 形式: 内容,期限(YYYY-MM-DD),完了状態(true/false),ID（IDが未割り当ての場合はIDを省略）
 	 * * @return ファイルに書き込むためのCSV形式のデータ文字列
 	 */
 	public String toFileString() {
-		return this.content + "," + this.deadline + "," + this.isCompleted;
+		long itemId = getId();
+		String line = getContent() + "," + getDeadline() + "," + isCompleted();
+		return itemId > 0 ? line + "," + itemId : line;
 	}
 }
@@ -0,0 +1,741 @@
+/**
+ * ToDoリストへの変更を1件ずつ追記する先行書き込みジャーナル（WAL）を管理するクラスです。
+ * 変更のたびにリスト全体を書き直す代わりに、小さな記録を末尾へ追記します。
+ * fsyncは一定件数または一定時間ごとにまとめて行います。
+ *
+ * 記録の形式（タブ区切り、1行1件）:
+ * <pre>
+ * A 内容 期限 ID 完了  追加（完了は true/false）
+ * C #ID              完了
+ * T #ID 内容         内容の編集
+ * D #ID 期限         期限の編集
+ * O #ID              完了を元に戻す（未完了に戻す）
+ * X #ID              末尾の項目の削除（追加を元に戻す）
+ * B 件数             続く件数分の記録を1つのまとまり（一括操作）として扱う
+ * </pre>
+ * 対象の項目はIDで指定するので、リストの並び順が変わっても記録が別の項目に適用されることはありません。
+ * IDの導入前に書かれた、項目を番号（1始まり）で指定する記録や、完了の状態を持たない追加の記録（未完了として追加）もそのまま読み込めます。
+ * まとまりの記録は一度の書き込みで追記し、再生時は全件がそろっている場合だけ適用するので、一括操作が途中まで反映されることはありません。
+ */
+package com.example.todolist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TodoJournal implements Closeable {
+
+	//フィールド
+	/** 1行目のヘッダー（このジャーナルが前提とするスナップショットのCRC32を記録） */
+	private static final String HEADER_PREFIX = "#base-crc ";
+
+	/** この件数の記録を書き込むごとにfsyncする */
+	private static final int SYNC_EVERY_RECORDS = 64;
+
+	/** 前回のfsyncからこの時間（ミリ秒）が経過していれば、次の書き込みでfsyncする */
+	private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+	/** 記録の種類: 追加 */
+	private static final char TYPE_ADD = 'A';
+
+	/** 記録の種類: 完了 */
+	private static final char TYPE_COMPLETE = 'C';
+
+	/** 記録の種類: 内容の編集 */
+	private static final char TYPE_CONTENT = 'T';
+
+	/** 記録の種類: 期限の編集 */
+	private static final char TYPE_DEADLINE = 'D';
+
+	/** 記録の種類: 未完了に戻す */
+	private static final char TYPE_REOPEN = 'O';
+
+	/** 記録の種類: 末尾の項目の削除 */
+	private static final char TYPE_REMOVE = 'X';
+
+	/** まとまりの始まりを表す行の種類 */
+	private static final char TYPE_BATCH = 'B';
+
+	/** 対象の項目をIDで指定していることを表す接頭辞 */
+	private static final char ID_PREFIX = '#';
+
+	/** ジャーナルファイルのパス */
+	private final Path path;
+
+	/** 追記用のチャネル（open前・close後はnull） */
+	private FileChannel channel;
+
+	/** 現在のジャーナルに含まれる記録の件数 */
+	private int recordCount;
+
+	/** まだfsyncしていない記録の件数 */
+	private int unsyncedRecords;
+
+	/** 前回fsyncした時刻（ミリ秒） */
+	private long lastSyncMillis;
+
+	/** 記録の書き込み時に一定件数・一定時間ごとのfsyncを行う場合はtrue（falseの場合はsyncの呼び出し時のみ） */
+	private boolean autoSync = true;
+
+	/** replayで読み込んだ、末尾まで正しく書き込まれている部分のバイト数（使えない場合は-1） */
+	private long validLength = -1;
+
+	/** 1件分の記録を組み立てるための使い回しバッファ */
+	private final StringBuilder recordBuffer = new StringBuilder();
+
+	/** まとまりとして書き込む前の記録（まとまりの外ではnull） */
+	private StringBuilder batchBuffer;
+
+	/** batchBufferに溜めた記録の件数 */
+	private int batchRecords;
+
+	/**
+	 * TodoJournalを初期化するコンストラクタです。
+	 * @param path ジャーナルファイルのパス
+	 */
+	public TodoJournal(Path path) {
+		this.path = path;
+	}
+
+	// ----------------------------------------------------
+	// 起動時の再生
+	// ----------------------------------------------------
+
+	/**
+	 * ジャーナルの記録を、読み込んだスナップショットのリストに順番に適用します。
+	 * ヘッダーのCRCがスナップショットと一致しないジャーナルは古いものとして適用しません。
+	 * 書き込み途中で途切れた末尾の記録と、全件がそろっていない末尾のまとまりは無視します。
+	 * @param snapshotCrc 読み込んだスナップショットのCRC32
+	 * @param list 記録を適用するリスト
+	 * @return 適用した記録の件数（ジャーナルが無い、または使えない場合は-1）
+	 */
+	public int replay(long snapshotCrc, List<TodoItem> list) {
+		return replay(snapshotCrc, new Replay(list, null, null));
+	}
+
+	/**
+	 * 期限で絞り込んだ一部の項目だけに、ジャーナルの記録を適用します（リスト全体を読み込まない検索で使用）。
+	 * 含まれていない項目への記録は、その項目の期限を期間内に変えるものでなければ無視します。
+	 * 追加の記録はすべて加えるので、期間での絞り込みは呼び出し側で行ってください。
+	 * @param snapshotCrc 読み込んだスナップショットのCRC32
+	 * @param items 記録を適用する一部の項目
+	 * @param from 期間の開始日
+	 * @param to 期間の終了日
+	 * @return 適用できた場合（ジャーナルが無い場合を含む）はtrue。含まれていない項目を期間内に移す記録や、
+	 *         項目を番号で指定する古い記録があり、一部の項目だけでは結果が決まらない場合はfalse
+	 */
+	public boolean replayPartial(long snapshotCrc, List<TodoItem> items, LocalDate from, LocalDate to) {
+		Replay state = new Replay(items, from, to);
+		replay(snapshotCrc, state);
+		return !state.needsFullList;
+	}
+
+	private int replay(long snapshotCrc, Replay state) {
+		validLength = -1;
+		recordCount = 0;
+
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(path);
+		} catch (NoSuchFileException e) {
+			return -1;
+		} catch (IOException e) {
+			System.err.println("警告: ジャーナルの読み込みに失敗しました: " + e.getMessage());
+			return -1;
+		}
+		TodoMetrics.get().addBytesRead(bytes.length);
+
+		int lineStart = 0;
+		int lineNumber = 0;
+		// 読み込み中のまとまり（残りの件数が0の場合はまとまりの外）
+		List<String> batch = new ArrayList<>();
+		int batchRemaining = 0;
+		int batchStart = 0;
+		int batchLineNumber = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != '\n') {
+				continue;
+			}
+			String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+			int start = lineStart;
+			lineStart = i + 1;
+			lineNumber++;
+
+			if (lineNumber == 1) {
+				// ヘッダーでスナップショットとの対応を確認
+				if (!line.equals(HEADER_PREFIX + Long.toHexString(snapshotCrc))) {
+					System.err.println("警告: ジャーナルが現在のファイルと一致しないため破棄しました: " + path);
+					return -1;
+				}
+				continue;
+			}
+
+			if (batchRemaining > 0) {
+				batch.add(line);
+				if (--batchRemaining == 0) {
+					for (int j = 0; j < batch.size(); j++) {
+						apply(state, batch.get(j), batchLineNumber + 1 + j);
+					}
+					batch.clear();
+				}
+				continue;
+			}
+			if (line.length() > 2 && line.charAt(0) == TYPE_BATCH && line.charAt(1) == '\t') {
+				try {
+					batchRemaining = Integer.parseInt(line.substring(2));
+					batchStart = start;
+					batchLineNumber = lineNumber;
+				} catch (NumberFormatException e) {
+					System.err.println("警告: ジャーナルの不正な記録をスキップしました (" + lineNumber + "行目): " + line);
+				}
+				continue;
+			}
+			apply(state, line, lineNumber);
+		}
+
+		if (lineNumber == 0) {
+			// ヘッダーすら書き込まれていないジャーナルは使わない
+			return -1;
+		}
+		if (batchRemaining > 0) {
+			// 書き込み途中で途切れたまとまりは、先頭の行から切り捨てる
+			System.err.println("警告: ジャーナル末尾の一括操作が途中までしか書き込まれていないため無視しました ("
+					+ batchLineNumber + "行目以降)");
+			validLength = batchStart;
+			return recordCount;
+		}
+		validLength = lineStart;
+		return recordCount;
+	}
+
+	/**
+	 * 1件の記録を適用します。不正な記録は警告を表示してスキップします。
+	 */
+	private void apply(Replay state, String line, int lineNumber) {
+		try {
+			state.apply(line);
+			recordCount++;
+		} catch (RuntimeException e) {
+			System.err.println("警告: ジャーナルの不正な記録をスキップしました (" + lineNumber + "行目): "
+					+ line + " (原因: " + e.getMessage() + ")");
+		}
+	}
+
+	/**
+	 * 記録をリストに順番に適用する処理と、IDから項目を探すための対応表です。
+	 * 対応表はIDで指定した記録が初めて現れた時に作ります（LazyTodoListの場合はリストのIDの表を使います）。
+	 * 期間を指定した場合は、リストがその期間の一部の項目だけを持つものとして適用します（replayPartialを参照）。
+	 */
+	private static class Replay {
+
+		private final List<TodoItem> list;
+
+		/** 一部の項目だけに適用する場合の期間（リスト全体に適用する場合はnull） */
+		private final LocalDate from;
+		private final LocalDate to;
+
+		/** 一部の項目だけでは結果が決まらない記録があった場合はtrue（以降の記録は適用しない） */
+		private boolean needsFullList;
+
+		/** IDから項目への対応（未作成の場合はnull） */
+		private Map<Long, TodoItem> byId;
+
+		Replay(List<TodoItem> list, LocalDate from, LocalDate to) {
+			this.list = list;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * 1件の記録をリストに適用します。
+		 * @param line 記録の1行
+		 */
+		void apply(String line) {
+			String[] fields = line.split("\t", -1);
+			if (fields.length < 2 || fields[0].length() != 1) {
+				throw new IllegalArgumentException("記録の形式が不正です");
+			}
+			if (needsFullList || (from != null && fields[0].charAt(0) != TYPE_ADD && skipUnloaded(fields))) {
+				return;
+			}
+
+			switch (fields[0].charAt(0)) {
+				case TYPE_ADD:
+					if (fields.length < 3 || fields.length > 5) {
+						throw new IllegalArgumentException("記録の項目数が不正です");
+					}
+					TodoItem item = new TodoItem(unescape(fields[1]), LocalDate.parse(fields[2]));
+					if (fields.length >= 4) {
+						item.setId(Long.parseLong(fields[3]));
+					}
+					if (fields.length == 5) {
+						item.setCompleted(parseCompleted(fields[4]));
+					}
+					list.add(item);
+					if (byId != null && item.getId() > 0) {
+						byId.put(item.getId(), item);
+					}
+					break;
+
+				case TYPE_COMPLETE:
+					target(fields[1]).setCompleted(true);
+					break;
+
+				case TYPE_REOPEN:
+					target(fields[1]).setCompleted(false);
+					break;
+
+				case TYPE_REMOVE: {
+					TodoItem removed = target(fields[1]);
+					if (from != null) {
+						// 一部の項目だけの場合は、末尾かどうかは確かめられない
+						list.remove(removed);
+					} else if (list.isEmpty() || list.get(list.size() - 1).getId() != removed.getId()) {
+						throw new IllegalArgumentException("削除できるのは末尾の項目だけです");
+					} else {
+						list.remove(list.size() - 1);
+					}
+					if (byId != null) {
+						byId.remove(removed.getId());
+					}
+					break;
+				}
+
+				case TYPE_CONTENT:
+					checkFieldCount(fields, 3);
+					target(fields[1]).setContent(unescape(fields[2]));
+					break;
+
+				case TYPE_DEADLINE:
+					checkFieldCount(fields, 3);
+					target(fields[1]).setDeadline(LocalDate.parse(fields[2]));
+					break;
+
+				default:
+					throw new IllegalArgumentException("未知の記録の種類です: " + fields[0]);
+			}
+		}
+
+		/**
+		 * 一部の項目だけに適用する場合に、含まれていない項目への記録を読み飛ばすかを判定します。
+		 * 期限を期間内に変える記録と番号で指定する記録は、全体を読まないと結果が決まらないのでneedsFullListを立てます。
+		 * @return 読み飛ばす（またはこれ以降を適用しない）場合はtrue
+		 */
+		private boolean skipUnloaded(String[] fields) {
+			String field = fields[1];
+			if (field.isEmpty() || field.charAt(0) != ID_PREFIX) {
+				needsFullList = true;
+				return true;
+			}
+			if (byId().containsKey(Long.parseLong(field.substring(1)))) {
+				return false;
+			}
+			if (fields[0].charAt(0) == TYPE_DEADLINE && fields.length == 3) {
+				LocalDate deadline = LocalDate.parse(fields[2]);
+				needsFullList = !deadline.isBefore(from) && !deadline.isAfter(to);
+			}
+			return true;
+		}
+
+		/**
+		 * 記録の対象の項目を、IDまたは番号から探します。
+		 */
+		private TodoItem target(String field) {
+			if (field.isEmpty() || field.charAt(0) != ID_PREFIX) {
+				return itemAt(list, field);
+			}
+			long id = Long.parseLong(field.substring(1));
+			if (list instanceof LazyTodoList) {
+				// 全項目を読み込まないように、LazyTodoListのIDの表から番号を引く
+				int index = ((LazyTodoList) list).indexOfId(id);
+				if (index < 0) {
+					throw new IllegalArgumentException("ID " + id + " の項目は存在しません。");
+				}
+				return list.get(index - 1);
+			}
+			TodoItem item = byId().get(id);
+			if (item == null) {
+				throw new IllegalArgumentException("ID " + id + " の項目は存在しません。");
+			}
+			return item;
+		}
+
+		/**
+		 * IDから項目への対応表を取得します（初めて使う時に作ります）。
+		 */
+		private Map<Long, TodoItem> byId() {
+			if (byId == null) {
+				byId = new HashMap<>(list.size() * 2);
+				for (TodoItem item : list) {
+					byId.put(item.getId(), item);
+				}
+			}
+			return byId;
+		}
+	}
+
+	private static boolean parseCompleted(String field) {
+		if (field.equals("true")) {
+			return true;
+		}
+		if (field.equals("false")) {
+			return false;
+		}
+		throw new IllegalArgumentException("完了の状態が不正です: " + field);
+	}
+
+	private static void checkFieldCount(String[] fields, int expected) {
+		if (fields.length != expected) {
+			throw new IllegalArgumentException("記録の項目数が不正です");
+		}
+	}
+
+	private static TodoItem itemAt(List<TodoItem> list, String indexString) {
+		int index = Integer.parseInt(indexString);
+		if (index < 1 || index > list.size()) {
+			throw new IndexOutOfBoundsException("項目番号 " + index + " は存在しません。");
+		}
+		return list.get(index - 1);
+	}
+
+	// ----------------------------------------------------
+	// 追記
+	// ----------------------------------------------------
+
+	/**
+	 * ジャーナルを追記できる状態で開きます。
+	 * 直前のreplayで使えるジャーナルが見つかった場合はその末尾から追記し、
+	 * そうでなければ指定したスナップショットを前提とする空のジャーナルを作り直します。
+	 * @param snapshotCrc 現在のスナップショットのCRC32
+	 * @throws IOException ファイル操作に失敗した場合
+	 */
+	public void open(long snapshotCrc) throws IOException {
+		if (validLength < 0) {
+			reset(snapshotCrc);
+			return;
+		}
+		channel = FileChannel.open(path, StandardOpenOption.WRITE);
+		// 途切れた末尾の記録を切り捨ててから追記を始める
+		channel.truncate(validLength);
+		channel.position(validLength);
+		lastSyncMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * 新しいスナップショットを前提とする空のジャーナルに置き換えます（コンパクション後に使用）。
+	 * 一時ファイルに書いてから置き換えるので、途中で落ちても古いジャーナルか新しいジャーナルのどちらかが残ります。
+	 * @param snapshotCrc 新しいスナップショットのCRC32
+	 * @throws IOException ファイル操作に失敗した場合
+	 */
+	public void reset(long snapshotCrc) throws IOException {
+		closeChannel();
+
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(temp, (HEADER_PREFIX + Long.toHexString(snapshotCrc) + "\n").getBytes(StandardCharsets.UTF_8));
+			temp.force(true);
+		}
+		moveAtomically(tempPath, path);
+
+		channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		recordCount = 0;
+		if (batchBuffer != null) {
+			// まとまりの途中までの変更は新しいスナップショットに含まれている
+			batchBuffer.setLength(0);
+			batchRecords = 0;
+		}
+		unsyncedRecords = 0;
+		validLength = channel.size();
+		lastSyncMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * 追加の記録を書き込みます。
+	 * @param item 追加されたTodoItemオブジェクト
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void recordAdd(TodoItem item) throws IOException {
+		recordBuffer.setLength(0);
+		recordBuffer.append(TYPE_ADD).append('\t');
+		escapeTo(item.getContent(), recordBuffer);
+		recordBuffer.append('\t').append(item.getDeadline()).append('\t').append(item.getId())
+				.append('\t').append(item.isCompleted());
+		append();
+	}
+
+	/**
+	 * 完了の記録を書き込みます。
+	 * @param id 完了にした項目のID
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void recordComplete(long id) throws IOException {
+		recordBuffer.setLength(0);
+		recordBuffer.append(TYPE_COMPLETE).append('\t').append(ID_PREFIX).append(id);
+		append();
+	}
+
+	/**
+	 * 完了を元に戻したことを記録します。
+	 * @param id 未完了に戻した項目のID
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void recordReopen(long id) throws IOException {
+		recordBuffer.setLength(0);
+		recordBuffer.append(TYPE_REOPEN).append('\t').append(ID_PREFIX).append(id);
+		append();
+	}
+
+	/**
+	 * 末尾の項目を削除したことを記録します。
+	 * @param id 削除した項目のID
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void recordRemove(long id) throws IOException {
+		recordBuffer.setLength(0);
+		recordBuffer.append(TYPE_REMOVE).append('\t').append(ID_PREFIX).append(id);
+		append();
+	}
+
+	/**
+	 * 内容の編集の記録を書き込みます。
+	 * @param id 編集した項目のID
+	 * @param newContent 新しい内容
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void recordContent(long id, String newContent) throws IOException {
+		recordBuffer.setLength(0);
+		recordBuffer.append(TYPE_CONTENT).append('\t').append(ID_PREFIX).append(id).append('\t');
+		escapeTo(newContent, recordBuffer);
+		append();
+	}
+
+	/**
+	 * 期限の編集の記録を書き込みます。
+	 * @param id 編集した項目のID
+	 * @param newDeadline 新しい期限
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void recordDeadline(long id, LocalDate newDeadline) throws IOException {
+		recordBuffer.setLength(0);
+		recordBuffer.append(TYPE_DEADLINE).append('\t').append(ID_PREFIX).append(id).append('\t').append(newDeadline);
+		append();
+	}
+
+	/**
+	 * まとまりを始めます。commitBatchを呼び出すまでの記録はメモリに溜め、まとめて書き込みます。
+	 * すでにまとまりの中の場合は何もしません。
+	 */
+	public synchronized void beginBatch() {
+		if (batchBuffer == null) {
+			batchBuffer = new StringBuilder();
+			batchRecords = 0;
+		}
+	}
+
+	/**
+	 * beginBatchから溜めた記録を、件数を表す行に続けて一度に書き込みます（記録が無い場合は何も書き込みません）。
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void commitBatch() throws IOException {
+		StringBuilder pending = batchBuffer;
+		int records = batchRecords;
+		batchBuffer = null;
+		batchRecords = 0;
+		if (pending == null || records == 0) {
+			return;
+		}
+		if (channel == null) {
+			throw new IOException("ジャーナルが開かれていません。");
+		}
+		long start = System.nanoTime();
+		pending.insert(0, TYPE_BATCH + "\t" + records + "\n");
+		writeFully(channel, pending.toString().getBytes(StandardCharsets.UTF_8));
+		recordCount += records;
+		unsyncedRecords += records;
+		syncIfNeeded();
+		TodoMetrics.get().record(TodoMetrics.Operation.JOURNAL_APPEND, start);
+	}
+
+	/**
+	 * まとまりの途中かどうかを返します。
+	 * @return beginBatchの後、commitBatchを呼び出す前の場合はtrue
+	 */
+	public synchronized boolean inBatch() {
+		return batchBuffer != null;
+	}
+
+	/**
+	 * recordBufferの内容を1行としてジャーナル末尾に書き込み、必要ならfsyncします。
+	 * 書き込み自体はOSに渡されるので、プロセスが落ちても記録は失われません。
+	 * fsyncをまとめることで、OSごと落ちた場合に失われるのは直近の数件に限られます。
+	 * まとまりの途中の場合は、書き込まずにbatchBufferへ溜めます。
+	 */
+	private void append() throws IOException {
+		if (channel == null) {
+			throw new IOException("ジャーナルが開かれていません。");
+		}
+		recordBuffer.append('\n');
+		if (batchBuffer != null) {
+			batchBuffer.append(recordBuffer);
+			batchRecords++;
+			return;
+		}
+		long start = System.nanoTime();
+		writeFully(channel, recordBuffer.toString().getBytes(StandardCharsets.UTF_8));
+		recordCount++;
+		unsyncedRecords++;
+		syncIfNeeded();
+		TodoMetrics.get().record(TodoMetrics.Operation.JOURNAL_APPEND, start);
+	}
+
+	/**
+	 * 前回のfsyncから一定件数・一定時間が過ぎていればfsyncします。
+	 */
+	private void syncIfNeeded() throws IOException {
+		long now = System.currentTimeMillis();
+		if (autoSync && (unsyncedRecords >= SYNC_EVERY_RECORDS || now - lastSyncMillis >= SYNC_INTERVAL_MILLIS)) {
+			channel.force(false);
+			unsyncedRecords = 0;
+			lastSyncMillis = now;
+		}
+	}
+
+	/**
+	 * まだfsyncしていない記録をディスクに書き出します。
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	public synchronized void sync() throws IOException {
+		if (channel != null && unsyncedRecords > 0) {
+			channel.force(false);
+			unsyncedRecords = 0;
+			lastSyncMillis = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * 記録の書き込み時にfsyncを行うかどうかを設定します。
+	 * 別スレッドから定期的にsyncを呼び出す場合はfalseにして、書き込み側のスレッドがfsyncを待たないようにします。
+	 * @param autoSync 書き込み時にfsyncを行う場合はtrue
+	 */
+	public synchronized void setAutoSync(boolean autoSync) {
+		this.autoSync = autoSync;
+	}
+
+	/**
+	 * 現在のジャーナルに含まれる記録の件数を取得します。
+	 * @return 記録の件数
+	 */
+	public synchronized int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * ジャーナルファイルを削除します（ジャーナルを使わずにスナップショットを保存した場合に使用）。
+	 * @throws IOException 削除に失敗した場合
+	 */
+	public synchronized void discard() throws IOException {
+		closeChannel();
+		Files.deleteIfExists(path);
+		recordCount = 0;
+		validLength = -1;
+	}
+
+	/**
+	 * 未同期の記録をfsyncしてからジャーナルを閉じます。
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		sync();
+		closeChannel();
+	}
+
+	private void closeChannel() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+		unsyncedRecords = 0;
+	}
+
+	// ----------------------------------------------------
+	// 補助メソッド
+	// ----------------------------------------------------
+
+	/**
+	 * 一時ファイルを目的のファイルにアトミックに置き換えます。
+	 * アトミックな移動に対応していないファイルシステムでは通常の置き換えを行います。
+	 * @param source 一時ファイル
+	 * @param target 置き換え先のファイル
+	 * @throws IOException 移動に失敗した場合
+	 */
+	static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		TodoMetrics.get().addBytesWritten(bytes.length);
+	}
+
+	/**
+	 * 内容に含まれるタブ・改行・バックスラッシュをエスケープして追加します。
+	 */
+	private static void escapeTo(String text, StringBuilder sb) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '\\': sb.append("\\\\"); break;
+				case '\t': sb.append("\\t"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				default: sb.append(c); break;
+			}
+		}
+	}
+
+	/**
+	 * escapeToでエスケープした文字列を元に戻します。
+	 */
+	private static String unescape(String text) {
+		if (text.indexOf('\\') < 0) {
+			return text;
+		}
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != '\\' || i + 1 == text.length()) {
+				sb.append(c);
+				continue;
+			}
+			char next = text.charAt(++i);
+			switch (next) {
+				case 't': sb.append('\t'); break;
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				default: sb.append(next); break;
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,228 @@
+/**
+ * ToDo項目とJSONの相互変換を行うクラスです。
+ * 外部ライブラリを使わずに、HTTP APIで扱う範囲（文字列・真偽値・数値・nullを値に持つ1階層のオブジェクト）だけを扱います。
+ */
+package com.example.todolist;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TodoJson {
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private TodoJson() {
+	}
+
+	/**
+	 * ToDo項目をJSONのオブジェクトとしてバッファの末尾に追加します。
+	 * 形式: {"id":ID,"index":番号,"content":"内容","deadline":"YYYY-MM-DD","completed":true/false}
+	 * @param sb 追加先のバッファ
+	 * @param index 項目の番号（1始まり）
+	 * @param item ToDo項目
+	 * @return 引数のバッファ
+	 */
+	public static StringBuilder appendItem(StringBuilder sb, int index, TodoItem item) {
+		sb.append("{\"id\":").append(item.getId()).append(",\"index\":").append(index).append(",\"content\":");
+		appendString(sb, item.getContent());
+		sb.append(",\"deadline\":");
+		appendString(sb, item.getDeadline() == null ? null : item.getDeadline().toString());
+		return sb.append(",\"completed\":").append(item.isCompleted()).append('}');
+	}
+
+	/**
+	 * 文字列をJSONの文字列リテラルとしてバッファの末尾に追加します（nullの場合はnull）。
+	 * @param sb 追加先のバッファ
+	 * @param value 文字列
+	 * @return 引数のバッファ
+	 */
+	public static StringBuilder appendString(StringBuilder sb, String value) {
+		if (value == null) {
+			return sb.append("null");
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		return sb.append('"');
+	}
+
+	/**
+	 * 1階層のJSONオブジェクトを解析します。
+	 * 値は文字列の場合はString、真偽値の場合はBoolean、数値の場合はその表記のString、nullの場合はnullになります。
+	 * @param json JSONの文字列
+	 * @return キーと値の対応（記述順）
+	 * @throws InputFormatException JSONの形式が不正な場合、または入れ子のオブジェクトや配列を含む場合
+	 */
+	public static Map<String, Object> parseObject(String json) throws InputFormatException {
+		Parser parser = new Parser(json);
+		Map<String, Object> values = new LinkedHashMap<>();
+
+		parser.expect('{');
+		if (!parser.consume('}')) {
+			do {
+				String key = parser.readString();
+				parser.expect(':');
+				values.put(key, parser.readValue());
+			} while (parser.consume(','));
+			parser.expect('}');
+		}
+		parser.expectEnd();
+		return values;
+	}
+
+	/**
+	 * 1文字ずつ読み進める簡易的なJSONの字句解析器です。
+	 */
+	private static class Parser {
+
+		private final String text;
+		private int position;
+
+		Parser(String text) {
+			this.text = text;
+		}
+
+		private void skipWhitespace() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+
+		boolean consume(char c) {
+			skipWhitespace();
+			if (position < text.length() && text.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(char c) throws InputFormatException {
+			if (!consume(c)) {
+				throw error("'" + c + "' が必要です");
+			}
+		}
+
+		void expectEnd() throws InputFormatException {
+			skipWhitespace();
+			if (position != text.length()) {
+				throw error("余分な文字があります");
+			}
+		}
+
+		Object readValue() throws InputFormatException {
+			skipWhitespace();
+			if (position >= text.length()) {
+				throw error("値がありません");
+			}
+			char c = text.charAt(position);
+			if (c == '"') {
+				return readString();
+			}
+			if (text.startsWith("true", position)) {
+				position += 4;
+				return Boolean.TRUE;
+			}
+			if (text.startsWith("false", position)) {
+				position += 5;
+				return Boolean.FALSE;
+			}
+			if (text.startsWith("null", position)) {
+				position += 4;
+				return null;
+			}
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				int start = position;
+				while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+					position++;
+				}
+				return text.substring(start, position);
+			}
+			throw error("対応していない値です");
+		}
+
+		String readString() throws InputFormatException {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (position < text.length()) {
+				char c = text.charAt(position++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (position >= text.length()) {
+					break;
+				}
+				char escaped = text.charAt(position++);
+				switch (escaped) {
+					case '"':
+					case '\\':
+					case '/':
+						sb.append(escaped);
+						break;
+					case 'b':
+						sb.append('\b');
+						break;
+					case 'f':
+						sb.append('\f');
+						break;
+					case 'n':
+						sb.append('\n');
+						break;
+					case 'r':
+						sb.append('\r');
+						break;
+					case 't':
+						sb.append('\t');
+						break;
+					case 'u':
+						if (position + 4 > text.length()) {
+							throw error("\\u の後に4桁の16進数が必要です");
+						}
+						try {
+							sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+						} catch (NumberFormatException e) {
+							throw error("\\u の後に4桁の16進数が必要です");
+						}
+						position += 4;
+						break;
+					default:
+						throw error("不正なエスケープ文字です");
+				}
+			}
+			throw error("文字列が閉じられていません");
+		}
+
+		private InputFormatException error(String reason) {
+			return new InputFormatException("JSONの形式が不正です（" + (position + 1) + "文字目）: " + reason);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * TodoListManagerで行われた変更（追加・完了・編集・置き換え、元に戻す操作による未完了への戻しと末尾の削除）を受け取るリスナーです。
+ * ジャーナルなど、リストの変更に追従する仕組みはこのインターフェースを実装して登録します。
+ * 一括操作による変更は、bulkStartedとbulkFinishedの間に1件ずつ通知されます。
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TodoListListener {
+
+	/**
+	 * 項目がリストの末尾に追加された後に呼ばれます。
+	 * @param index 追加された項目の番号（1始まり）
+	 * @param item 追加されたTodoItemオブジェクト
+	 */
+	default void itemAdded(int index, TodoItem item) {
+	}
+
+	/**
+	 * 未完了の項目が完了状態になった後に呼ばれます。
+	 * すでに完了していた項目を再度完了にした場合は呼ばれません。
+	 * @param index 完了にした項目の番号（1始まり）
+	 * @param item 完了にしたTodoItemオブジェクト
+	 */
+	default void itemCompleted(int index, TodoItem item) {
+	}
+
+	/**
+	 * 完了済みの項目が未完了に戻された後に呼ばれます（完了を元に戻す操作で使用）。
+	 * @param index 未完了に戻した項目の番号（1始まり）
+	 * @param item 未完了に戻したTodoItemオブジェクト
+	 */
+	default void itemReopened(int index, TodoItem item) {
+	}
+
+	/**
+	 * リストの末尾の項目が削除された後に呼ばれます（追加を元に戻す操作で使用）。
+	 * 末尾以外の項目が削除されることはないので、他の項目の番号は変わりません。
+	 * @param index 削除された項目の番号（1始まり、削除前の末尾）
+	 * @param item 削除されたTodoItemオブジェクト
+	 */
+	default void itemRemoved(int index, TodoItem item) {
+	}
+
+	/**
+	 * 項目の内容が編集された後に呼ばれます。
+	 * @param index 編集した項目の番号（1始まり）
+	 * @param item 編集後のTodoItemオブジェクト
+	 * @param oldContent 編集前の内容
+	 */
+	default void contentEdited(int index, TodoItem item, String oldContent) {
+	}
+
+	/**
+	 * 項目の期限が編集された後に呼ばれます。
+	 * @param index 編集した項目の番号（1始まり）
+	 * @param item 編集後のTodoItemオブジェクト
+	 * @param oldDeadline 編集前の期限
+	 */
+	default void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+	}
+
+	/**
+	 * リスト全体がsetTodoItemsで置き換えられた後に呼ばれます。
+	 * @param items 新しいTodoItemのリスト
+	 */
+	default void listReplaced(List<TodoItem> items) {
+	}
+
+	/**
+	 * 一括操作で複数の項目を変更する前に呼ばれます。
+	 * この後、bulkFinishedまでの変更は1つのまとまりとして扱ってください（ジャーナルでは一度に書き込みます）。
+	 * @param count 変更する項目の件数
+	 */
+	default void bulkStarted(int count) {
+	}
+
+	/**
+	 * 一括操作による変更の通知がすべて終わった後に呼ばれます。
+	 * @param count 変更した項目の件数
+	 */
+	default void bulkFinished(int count) {
+	}
+}
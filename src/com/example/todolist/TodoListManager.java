@@ -6,52 +6,299 @@ package com.example.todolist;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class TodoListManager {
 
+	/**
+	 * ToDo項目の格納方式です。
+	 */
+	public enum StorageMode {
+		/** TodoItemオブジェクトをArrayListに格納する（既定） */
+		OBJECT,
+		/** 期限・完了状態・内容を列ごとのプリミティブ配列に格納する（ColumnarTodoList） */
+		COLUMNAR,
+		/** ファイルから参照された項目だけを読み込む（LazyTodoList）。期限・全文検索の索引は初めて検索した時に作る */
+		LAZY
+	}
+
 	//フィールド
+	/** 項目の格納方式 */
+	private final StorageMode storageMode;
+
 	/** ToDoItemオブジェクトを保持するリスト */
-	private List<TodoItem> todoItems = new ArrayList <>();
+	private List<TodoItem> todoItems;
+
+	/** リストの変更を通知するリスナー（通知中の登録・解除に備えてコピーオンライトのリストを使用） */
+	private final List<TodoListListener> listeners = new CopyOnWriteArrayList<>();
+
+	/** 未完了の項目を期限順に保持する索引 */
+	private final DeadlineIndex deadlineIndex = new DeadlineIndex();
+
+	/** 未完了（期限順）・期限切れ・完了済みのビュー */
+	private final TodoViews views = new TodoViews();
+
+	/** 件数の集計と週ごとの未完了の件数 */
+	private final TodoStats stats = new TodoStats();
+
+	/** 一覧をページ単位でまとめて表示するレンダラー */
+	private final TodoListRenderer renderer = new TodoListRenderer();
+
+	/** 内容を全文検索するための転置索引 */
+	private final ContentSearchIndex searchIndex = new ContentSearchIndex();
+
+	/** IDから項目の番号を引く索引 */
+	private final TodoIdIndex idIndex = new TodoIdIndex();
+
+	/** これまでに割り当てた最大のID（新しい項目にはこれより大きいIDを割り当てる） */
+	private long maxId;
+
+	/** 元に戻す・やり直すための履歴（有効にしていない場合はnull） */
+	private TodoHistory history;
+
+	/** 期限・全文検索の索引がリストに追従しているかどうか（LAZYの場合は初めて検索するまでfalse） */
+	private boolean indexesReady;
+
+	/**
+	 * TodoItemオブジェクトをそのまま格納するTodoListManagerを初期化するコンストラクタです。
+	 */
+	public TodoListManager() {
+		this(StorageMode.OBJECT);
+	}
+
+	/**
+	 * 格納方式を指定してTodoListManagerを初期化するコンストラクタです。
+	 * 期限・全文検索・IDの索引、ビューと集計をリスナーとして登録し、リストの変更に追従させます。
+	 * LAZYの場合は起動時に全項目を読まないように、期限・全文検索の索引、ビューと集計は初めて使う時に登録します
+	 * （LazyTodoListを使う間は、IDの検索もLazyTodoListが持つIDの表で行います）。
+	 * @param storageMode 項目の格納方式
+	 */
+	public TodoListManager(StorageMode storageMode) {
+		this.storageMode = storageMode;
+		this.todoItems = storageMode == StorageMode.COLUMNAR ? new ColumnarTodoList() : new ArrayList<>();
+
+		addListener(idIndex);
+		if(storageMode != StorageMode.LAZY) {
+			addListener(deadlineIndex);
+			addListener(searchIndex);
+			addListener(views);
+			addListener(stats);
+			searchIndex.listReplaced(todoItems);
+			indexesReady = true;
+		}
+	}
+
+	/**
+	 * リストの変更を受け取るリスナーを登録します。
+	 * @param listener 登録するTodoListListener
+	 */
+	public void addListener(TodoListListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * 登録済みのリスナーを解除します。
+	 * @param listener 解除するTodoListListener
+	 */
+	public void removeListener(TodoListListener listener) {
+		listeners.remove(listener);
+	}
 
 	/**
 	 * ToDo項目をリストに追加します。
+	 * IDが未割り当て、または既存の項目と重複している場合は新しいIDを割り当てます。
 	 * @param item 追加するTodoItemオブジェクト
 	 */
 	public void addItem(TodoItem item) {
+		assignId(item);
 		todoItems.add(item);
+
+		//列形式の場合は格納した項目のビューをリスナーに渡す
+		int index = todoItems.size();
+		TodoItem added = storageMode == StorageMode.COLUMNAR ? todoItems.get(index - 1) : item;
+
+		fireItemAdded(index, added);
 	}
 
 	/**
-	 * 現在のToDoリスト全体をコンソールに番号付きで表示します。
+	 * 複数のToDo項目をまとめてリストに追加します（インポートなどで使用）。
+	 * 追加はbulkStartedとbulkFinishedの間に通知されるので、ジャーナルには1つのまとまりとして書き込まれます。
+	 * @param items 追加するTodoItemオブジェクトのリスト
+	 */
+	public void addItems(List<TodoItem> items) {
+		fireBulkStarted(items.size());
+		try {
+			for(TodoItem item : items) {
+				addItem(item);
+			}
+		}finally {
+			fireBulkFinished(items.size());
+		}
+	}
+
+	/**
+	 * 他のファイルから読み込んだ項目（インポートした項目）をまとめて追加します。一括操作として通知します。
+	 * 各項目の扱いはaddImportedItemと同じです。
+	 * @param items 追加するTodoItemオブジェクトのリスト
+	 */
+	public void addImportedItems(List<TodoItem> items) {
+		fireBulkStarted(items.size());
+		try {
+			for(TodoItem item : items) {
+				addImportedItem(item);
+			}
+		}finally {
+			fireBulkFinished(items.size());
+		}
+	}
+
+	/**
+	 * 他のファイルから読み込んだ項目（インポートや、外部のツールが追記した項目）を追加します。
+	 * 項目のIDは、このリストでこれまでに使ったID（アーカイブへ移した項目のIDを含む）より大きい場合だけそのまま使い、
+	 * それ以外の場合は新しいIDを割り当てます。IDが追加した順に大きくなること（月ごとのパーティションはIDの順に並びを復元する）と、
+	 * アーカイブの項目とIDが重ならないことを保つためです。
+	 * @param item 追加するTodoItemオブジェクト
+	 */
+	public void addImportedItem(TodoItem item) {
+		if(item.getId() <= maxId) {
+			item.setId(0);
+		}
+		addItem(item);
+	}
+
+	/**
+	 * 現在のToDoリスト全体をコンソールに番号付きで表示します（先頭ページ）。
 	 */
 	public void displayList() {
+		displayList(1);
+	}
+
+	/**
+	 * 現在のToDoリストの指定したページを、コンソールに番号付きで表示します。
+	 * @param page 表示するページ番号（1始まり）
+	 * @return 総ページ数
+	 */
+	public int displayList(int page) {
+		return renderer.render("現在のToDoリスト", todoItems, null, "ToDoリストに項目はありません。", page);
+	}
+
+	/**
+	 * 指定した番号のToDo項目だけを、見出し付きでコンソールに表示します（先頭ページ）。
+	 * @param title 見出し
+	 * @param indexes 表示する項目の番号（1始まり）のリスト
+	 */
+	public void displayItems(String title, List<Integer> indexes) {
+		displayItems(title, indexes, 1);
+	}
+
+	/**
+	 * 指定した番号のToDo項目のうち、指定したページを見出し付きでコンソールに表示します。
+	 * @param title 見出し
+	 * @param indexes 表示する項目の番号（1始まり）のリスト
+	 * @param page 表示するページ番号（1始まり）
+	 * @return 総ページ数
+	 */
+	public int displayItems(String title, List<Integer> indexes, int page) {
+		return renderer.render(title, todoItems, indexes, "該当する項目はありません。", page);
+	}
 
+	/**
+	 * ビューの指定したページを、コンソールに表示します。ビューは変更に追従して保持しているので、並べ替えは行いません。
+	 * @param view ビューの種類
+	 * @param today 期限切れの基準日
+	 * @param page 表示するページ番号（1始まり）
+	 * @return 総ページ数
+	 */
+	public int displayView(TodoViews.View view, LocalDate today, int page) {
+		ensureIndexes();
+		return renderer.render(view.getLabel(), todoItems, views.indexes(view, today), "該当する項目はありません。", page);
+	}
 
-		if(todoItems.isEmpty()) {
+	/**
+	 * ビューに含まれる項目の件数を取得します。
+	 * @param view ビューの種類
+	 * @param today 期限切れの基準日
+	 * @return 件数
+	 */
+	public int countView(TodoViews.View view, LocalDate today) {
+		ensureIndexes();
+		return views.count(view, today);
+	}
 
-			//項目がない場合は"ToDoリストに項目はありません。"を表示
-			System.out.println("-------------------------");
-	        System.out.println("ToDoリストに項目はありません。");
-	        System.out.println("-------------------------");
-	        return;
+	/**
+	 * 件数の集計を取得します。集計は変更に追従して保持しているので、リストの走査は行いません。
+	 * @param today 期限切れの基準日
+	 * @return 集計
+	 */
+	public TodoStats.Summary getStats(LocalDate today) {
+		ensureIndexes();
+		return stats.summary(today);
+	}
 
-		}else{
+	/**
+	 * 指定した日付を含む週から、週ごとの未完了の項目の件数を取得します。
+	 * @param from 最初の週に含まれる日付
+	 * @param weeks 週の数
+	 * @return 週ごとの件数（先頭が最初の週）
+	 */
+	public int[] weeklyLoad(LocalDate from, int weeks) {
+		ensureIndexes();
+		return stats.weeklyLoad(from, weeks);
+	}
 
-			//項目がある場合は一覧表示
-			System.out.println("--- 現在のToDoリスト ---");
-			for(int i = 0; i < todoItems.size(); i++) {
+	/**
+	 * 件数の集計と、今週から指定した週数分の未完了の項目の件数をコンソールに表示します。
+	 * @param today 期限切れの基準日（今週の基準にも使用）
+	 * @param weeks 表示する週の数
+	 */
+	public void displayStats(LocalDate today, int weeks) {
+		renderer.renderStats(today, getStats(today), TodoStats.weekOf(today), weeklyLoad(today, weeks));
+	}
 
-				// (i + 1) を表示番号として出力
-				System.out.print((i + 1) + ". ");
+	/**
+	 * 期限切れ（期限が今日より前）の未完了項目の番号を、期限順に取得します。
+	 * @param today 今日の日付
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> findOverdue(LocalDate today) {
+		ensureIndexes();
+		return deadlineIndex.findOverdue(today);
+	}
 
-				//TodoItemオブジェクトを取得し、出力
-				TodoItem item = todoItems.get(i);
-				System.out.println(item);
+	/**
+	 * 指定日まで（指定日を含む）に期限を迎える未完了項目の番号を、期限順に取得します。
+	 * @param date 指定日
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> findDueBefore(LocalDate date) {
+		ensureIndexes();
+		return deadlineIndex.findDueBefore(date);
+	}
 
-			}
-			System.out.println("-------------------------");
-		}
+	/**
+	 * 期限が指定した期間（開始日・終了日を含む）にある未完了項目の番号を、期限順に取得します。
+	 * @param from 開始日
+	 * @param to 終了日
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> findDueBetween(LocalDate from, LocalDate to) {
+		ensureIndexes();
+		return deadlineIndex.findDueBetween(from, to);
+	}
+
+	/**
+	 * 内容にキーワードを含む項目を、関連度の高い順に検索します。
+	 * @param query 検索キーワード（空白区切りで複数指定するとAND検索）
+	 * @param limit 取得する最大件数
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> search(String query, int limit) {
+		ensureIndexes();
+		return searchIndex.search(query, limit);
 	}
 
 	/**
@@ -73,8 +320,15 @@ public class TodoListManager {
 			int zeroBasedIndex = index - 1;
 			TodoItem itemToComplete = todoItems.get(zeroBasedIndex);
 
+			//すでに完了している場合は何もしない
+			if(itemToComplete.isCompleted()) {
+				return;
+			}
+
 			//取得したオブジェクトの setCompleted(true) メソッドを呼び出し
 			itemToComplete.setCompleted(true);
+
+			fireItemCompleted(index, itemToComplete);
 		}
 	}
 
@@ -98,7 +352,10 @@ public class TodoListManager {
 			TodoItem itemToComplete = todoItems.get(zeroBasedIndex);
 
 			//取得したオブジェクトのsetContent(newContent)メソッドを呼び出し
+			String oldContent = itemToComplete.getContent();
 			itemToComplete.setContent(newContent);
+
+			fireContentEdited(index, itemToComplete, oldContent);
 		}
 	}
 
@@ -122,8 +379,294 @@ public class TodoListManager {
 			TodoItem itemToComplete = todoItems.get(zeroBasedIndex);
 
 			//取得したオブジェクトのsetDeadline(newDeadline)メソッドを呼び出し
+			LocalDate oldDeadline = itemToComplete.getDeadline();
 			itemToComplete.setDeadline(newDeadline);
+
+			fireDeadlineEdited(index, itemToComplete, oldDeadline);
+		}
+	}
+
+	/**
+	 * ユーザーが指定した番号の完了済みのToDo項目を、未完了に戻します（完了を元に戻す操作で使用）。
+	 * @param index 未完了に戻したい項目の番号（1始まり）
+	 */
+	public void reopenItem(int index) {
+		if(index < 1 || index > todoItems.size()) {
+			throw new IndexOutOfBoundsException("項目番号 " + index + " は存在しません。");
+		}
+		TodoItem item = todoItems.get(index - 1);
+
+		//すでに未完了の場合は何もしない
+		if(!item.isCompleted()) {
+			return;
 		}
+		item.setCompleted(false);
+		fireItemReopened(index, item);
+	}
+
+	/**
+	 * リストの末尾の項目を削除します（追加を元に戻す操作で使用）。
+	 * 末尾だけを削除するので、他の項目の番号は変わりません。
+	 * @return 削除した項目
+	 * @throws IndexOutOfBoundsException リストが空の場合
+	 */
+	public TodoItem removeLastItem() {
+		int index = todoItems.size();
+		if(index == 0) {
+			throw new IndexOutOfBoundsException("削除できる項目がありません。");
+		}
+		TodoItem removed = todoItems.remove(index - 1);
+		fireItemRemoved(index, removed);
+		return removed;
+	}
+
+	// ----------------------------------------------------
+	// 元に戻す・やり直す
+	// ----------------------------------------------------
+
+	/**
+	 * 元に戻す・やり直すための履歴の記録を始めます。すでに記録している場合は何もしません。
+	 * @param maxDepth 保持する手順の数
+	 * @param maxBytes 記録の大きさの上限（バイト数の概算）
+	 */
+	public void enableHistory(int maxDepth, long maxBytes) {
+		if(history != null) {
+			return;
+		}
+		history = new TodoHistory(maxDepth, maxBytes);
+		addListener(history);
+	}
+
+	/**
+	 * 履歴を取得します。
+	 * @return 履歴（記録していない場合はnull）
+	 */
+	public TodoHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * 直前の操作（一括操作はまとめて1回）を元に戻します。
+	 * 戻す変更は1つの一括操作として通知するので、ジャーナルには1つのまとまりとして書き込まれます。
+	 * @return 元に戻した変更の件数（元に戻せる操作が無い場合は-1）
+	 * @throws IllegalStateException 後から追加された項目があり、追加を取り消せない場合
+	 */
+	public int undo() {
+		int count = history == null ? -1 : history.nextUndoSize();
+		if(count < 0) {
+			return -1;
+		}
+		fireBulkStarted(count);
+		try {
+			return history.undo(this);
+		}finally {
+			fireBulkFinished(count);
+		}
+	}
+
+	/**
+	 * 直前に元に戻した操作をやり直します。
+	 * @return やり直した変更の件数（やり直せる操作が無い場合は-1）
+	 */
+	public int redo() {
+		int count = history == null ? -1 : history.nextRedoSize();
+		if(count < 0) {
+			return -1;
+		}
+		fireBulkStarted(count);
+		try {
+			return history.redo(this);
+		}finally {
+			fireBulkFinished(count);
+		}
+	}
+
+	/**
+	 * IDに対応する項目の番号を取得します。
+	 * @param id タスクのID
+	 * @return 項目の番号（1始まり）
+	 * @throws IndexOutOfBoundsException 指定したIDの項目が存在しない場合
+	 */
+	public int indexOf(long id) {
+		int index = todoItems instanceof LazyTodoList ? ((LazyTodoList) todoItems).indexOfId(id) : idIndex.indexOf(id);
+		if(index < 0) {
+			throw new IndexOutOfBoundsException("ID " + id + " の項目は存在しません。");
+		}
+		return index;
+	}
+
+	/**
+	 * 指定したIDのToDo項目を取得します。
+	 * @param id タスクのID
+	 * @return TodoItemオブジェクト
+	 * @throws IndexOutOfBoundsException 指定したIDの項目が存在しない場合
+	 */
+	public TodoItem getItemById(long id) {
+		return getTodoItems().get(indexOf(id) - 1);
+	}
+
+	/**
+	 * 指定したIDのToDo項目を「完了」状態にします。
+	 * @param id 完了にしたい項目のID
+	 */
+	public void completeItemById(long id) {
+		completeItem(indexOf(id));
+	}
+
+	/**
+	 * 指定したIDのToDo項目の内容を編集します。
+	 * @param id 編集したい項目のID
+	 * @param newContent 新しい内容
+	 */
+	public void editContentById(long id, String newContent) {
+		editContent(indexOf(id), newContent);
+	}
+
+	/**
+	 * 指定したIDのToDo項目の期限を編集します。
+	 * @param id 編集したい項目のID
+	 * @param newDeadline 新しい期限
+	 */
+	public void editDeadlineById(long id, LocalDate newDeadline) {
+		editDeadline(indexOf(id), newDeadline);
+	}
+
+	// ----------------------------------------------------
+	// 一括操作
+	// ----------------------------------------------------
+
+	/**
+	 * 条件に一致する項目の番号を、リストを並列に走査して求めます。
+	 * @param filter 項目の条件
+	 * @return 一致した項目の番号（1始まり、昇順）
+	 */
+	public int[] selectIndexes(Predicate<TodoItem> filter) {
+		List<TodoItem> items = getTodoItems();
+		return indexStream(items, IntStream.rangeClosed(1, items.size()))
+				.filter(index -> filter.test(items.get(index - 1)))
+				.toArray();
+	}
+
+	/**
+	 * 指定した番号の項目をまとめて「完了」状態にします。すでに完了している項目は変更しません。
+	 * @param indexes 項目の番号（1始まり）
+	 * @return 完了にした件数
+	 * @throws IndexOutOfBoundsException 存在しない番号が含まれる場合（どの項目も変更しません）
+	 */
+	public int completeItems(int[] indexes) {
+		List<TodoItem> items = getTodoItems();
+		int[] targets = indexStream(items, checkedIndexes(indexes, items.size()))
+				.filter(index -> !items.get(index - 1).isCompleted())
+				.toArray();
+
+		fireBulkStarted(targets.length);
+		try {
+			for(int index : targets) {
+				completeItem(index);
+			}
+		}finally {
+			fireBulkFinished(targets.length);
+		}
+		return targets.length;
+	}
+
+	/**
+	 * 指定した番号の項目の期限をまとめてずらします。期限の無い項目は変更しません。
+	 * @param indexes 項目の番号（1始まり）
+	 * @param days ずらす日数（負の値で前へずらす）
+	 * @return 期限を変更した件数
+	 * @throws IndexOutOfBoundsException 存在しない番号が含まれる場合（どの項目も変更しません）
+	 * @throws java.time.DateTimeException ずらした期限が日付の範囲を超える場合（どの項目も変更しません）
+	 */
+	public int shiftDeadlines(int[] indexes, long days) {
+		List<TodoItem> items = getTodoItems();
+		int[] targets = checkedIndexes(indexes, items.size()).toArray();
+
+		// 新しい期限を先にすべて求めておき、途中で失敗した場合にリストが中途半端に変わらないようにする
+		LocalDate[] deadlines = new LocalDate[targets.length];
+		indexStream(items, IntStream.range(0, targets.length)).forEach(i -> {
+			LocalDate deadline = items.get(targets[i] - 1).getDeadline();
+			deadlines[i] = deadline == null || days == 0 ? null : deadline.plusDays(days);
+		});
+		int count = countNonNull(deadlines);
+
+		fireBulkStarted(count);
+		try {
+			for(int i = 0; i < targets.length; i++) {
+				if(deadlines[i] != null) {
+					editDeadline(targets[i], deadlines[i]);
+				}
+			}
+		}finally {
+			fireBulkFinished(count);
+		}
+		return count;
+	}
+
+	/**
+	 * 指定した番号の項目の内容に含まれる文字列を、まとめて置き換えます。文字列を含まない項目は変更しません。
+	 * @param indexes 項目の番号（1始まり）
+	 * @param target 置き換える文字列
+	 * @param replacement 置き換え後の文字列
+	 * @return 内容を変更した件数
+	 * @throws IndexOutOfBoundsException 存在しない番号が含まれる場合（どの項目も変更しません）
+	 * @throws IllegalArgumentException 置き換える文字列が空の場合
+	 */
+	public int replaceContent(int[] indexes, String target, String replacement) {
+		if(target.isEmpty()) {
+			throw new IllegalArgumentException("置き換える文字列が空です。");
+		}
+		List<TodoItem> items = getTodoItems();
+		int[] targets = checkedIndexes(indexes, items.size()).toArray();
+
+		String[] contents = new String[targets.length];
+		indexStream(items, IntStream.range(0, targets.length)).forEach(i -> {
+			String content = items.get(targets[i] - 1).getContent();
+			contents[i] = content.contains(target) ? content.replace(target, replacement) : null;
+		});
+		int count = countNonNull(contents);
+
+		fireBulkStarted(count);
+		try {
+			for(int i = 0; i < targets.length; i++) {
+				if(contents[i] != null) {
+					editContent(targets[i], contents[i]);
+				}
+			}
+		}finally {
+			fireBulkFinished(count);
+		}
+		return count;
+	}
+
+	/**
+	 * 番号がすべてリストの範囲内にあることを確かめ、重複を除いて昇順に並べます。
+	 */
+	private static IntStream checkedIndexes(int[] indexes, int size) {
+		for(int index : indexes) {
+			if(index < 1 || index > size) {
+				throw new IndexOutOfBoundsException("項目番号 " + index + " は存在しません。");
+			}
+		}
+		return Arrays.stream(indexes).sorted().distinct();
+	}
+
+	/**
+	 * 項目を読み取る処理を並列に行うストリームにします。
+	 * LazyTodoListは読み込みのたびにキャッシュを更新するので、並列にはしません。
+	 */
+	private static IntStream indexStream(List<TodoItem> items, IntStream stream) {
+		return items instanceof LazyTodoList ? stream.sequential() : stream.parallel();
+	}
+
+	private static int countNonNull(Object[] values) {
+		int count = 0;
+		for(Object value : values) {
+			if(value != null) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 	/**
@@ -135,12 +678,166 @@ public class TodoListManager {
 	}
 
 
+	/**
+	 * 項目の格納方式を取得します。
+	 * @return 格納方式
+	 */
+	public StorageMode getStorageMode() {
+		return storageMode;
+	}
+
 	/**
 	 * TodoItemのsetter
+	 * 列形式の場合は、渡されたリストの内容を列にコピーして保持します。
+	 * IDが未割り当て、または重複している項目には新しいIDを割り当てます。
 	 * @param todoItems 読み込んだリスト
 	 */
 	public void setTodoItems(List<TodoItem> todoItems) {
+		if(storageMode == StorageMode.COLUMNAR && !(todoItems instanceof ColumnarTodoList)) {
+			todoItems = new ColumnarTodoList(todoItems);
+		}
 		this.todoItems = todoItems;
+		//LazyTodoListは索引を作る際に割り当て済みなので、全項目を読まずに最大のIDだけを受け取る
+		maxId = todoItems instanceof LazyTodoList ? ((LazyTodoList) todoItems).getMaxId() : TodoIdIndex.assignIds(todoItems);
+
+		for(TodoListListener listener : listeners) {
+			listener.listReplaced(todoItems);
+		}
+	}
+
+	/**
+	 * 期限・全文検索の索引、ビューと集計がまだリストに追従していなければ、全項目から作ってリスナーとして登録します（LAZYの場合に使用）。
+	 * 全項目を1回読み込むので、LAZYでは最初の検索だけ時間がかかります。
+	 */
+	protected void ensureIndexes() {
+		if(indexesReady) {
+			return;
+		}
+		deadlineIndex.listReplaced(todoItems);
+		searchIndex.listReplaced(todoItems);
+		views.listReplaced(todoItems);
+		stats.listReplaced(todoItems);
+		addListener(deadlineIndex);
+		addListener(searchIndex);
+		addListener(views);
+		addListener(stats);
+		indexesReady = true;
+	}
+
+	/**
+	 * 指定したIDまでを使用済みとし、以降に追加する項目にはそれより大きいIDを割り当てます。
+	 * アーカイブへ移した項目のIDが再利用されないように、setTodoItemsの後に呼び出します。
+	 * @param id 使用済みとする最大のID
+	 */
+	public void reserveIds(long id) {
+		maxId = Math.max(maxId, id);
+	}
+
+	/**
+	 * 追加する項目のIDが未割り当て、または既存の項目と重複している場合に、新しいIDを割り当てます。
+	 * サブクラスから追加の排他の下で呼び出せるようにしています。
+	 * @param item 追加する項目
+	 */
+	protected void assignId(TodoItem item) {
+		long id = item.getId();
+		boolean duplicated = id > 0 && (todoItems instanceof LazyTodoList ? ((LazyTodoList) todoItems).indexOfId(id) : idIndex.indexOf(id)) > 0;
+		if(id <= 0 || duplicated) {
+			item.setId(++maxId);
+		}else {
+			maxId = Math.max(maxId, id);
+		}
+	}
+
+	// ----------------------------------------------------
+    // リスナーへの通知（サブクラスから独自の同期の下で呼び出せるようにしています）
+    // ----------------------------------------------------
+
+	/**
+	 * 項目の追加をリスナーに通知します。
+	 * @param index 追加された項目の番号（1始まり）
+	 * @param item 追加された項目
+	 */
+	protected void fireItemAdded(int index, TodoItem item) {
+		for(TodoListListener listener : listeners) {
+			listener.itemAdded(index, item);
+		}
+	}
+
+	/**
+	 * 項目の完了をリスナーに通知します。
+	 * @param index 完了にした項目の番号（1始まり）
+	 * @param item 完了にした項目
+	 */
+	protected void fireItemCompleted(int index, TodoItem item) {
+		for(TodoListListener listener : listeners) {
+			listener.itemCompleted(index, item);
+		}
+	}
+
+	/**
+	 * 完了済みの項目を未完了に戻したことをリスナーに通知します。
+	 * @param index 未完了に戻した項目の番号（1始まり）
+	 * @param item 未完了に戻した項目
+	 */
+	protected void fireItemReopened(int index, TodoItem item) {
+		for(TodoListListener listener : listeners) {
+			listener.itemReopened(index, item);
+		}
+	}
+
+	/**
+	 * 末尾の項目の削除をリスナーに通知します。
+	 * @param index 削除した項目の番号（1始まり）
+	 * @param item 削除した項目
+	 */
+	protected void fireItemRemoved(int index, TodoItem item) {
+		for(TodoListListener listener : listeners) {
+			listener.itemRemoved(index, item);
+		}
+	}
+
+	/**
+	 * 内容の編集をリスナーに通知します。
+	 * @param index 編集した項目の番号（1始まり）
+	 * @param item 編集後の項目
+	 * @param oldContent 編集前の内容
+	 */
+	protected void fireContentEdited(int index, TodoItem item, String oldContent) {
+		for(TodoListListener listener : listeners) {
+			listener.contentEdited(index, item, oldContent);
+		}
+	}
+
+	/**
+	 * 期限の編集をリスナーに通知します。
+	 * @param index 編集した項目の番号（1始まり）
+	 * @param item 編集後の項目
+	 * @param oldDeadline 編集前の期限
+	 */
+	protected void fireDeadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		for(TodoListListener listener : listeners) {
+			listener.deadlineEdited(index, item, oldDeadline);
+		}
+	}
+
+	/**
+	 * 一括操作の開始をリスナーに通知します。
+	 * @param count 変更する項目の件数
+	 */
+	protected void fireBulkStarted(int count) {
+		for(TodoListListener listener : listeners) {
+			listener.bulkStarted(count);
+		}
+	}
+
+	/**
+	 * 一括操作の終了をリスナーに通知します。
+	 * @param count 変更した項目の件数
+	 */
+	protected void fireBulkFinished(int count) {
+		for(TodoListListener listener : listeners) {
+			listener.bulkFinished(count);
+		}
 	}
 
 
@@ -0,0 +1,147 @@
+/**
+ * ToDoリストの一覧をコンソールに表示するクラスです。
+ * 項目ごとにSystem.outへ書き込む代わりに、使い回しのバッファに行を組み立てて大きなまとまりで書き出します。
+ * 一覧はページ単位で表示し、表示するページの項目だけを文字列にします。
+ */
+package com.example.todolist;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.List;
+
+public class TodoListRenderer {
+
+	//フィールド
+	/** 1ページに表示する既定の件数 */
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	/** バッファがこの文字数を超えたら出力先に書き出す */
+	private static final int FLUSH_THRESHOLD = 32 * 1024;
+
+	/** 区切り線 */
+	private static final String RULE = "-------------------------";
+
+	/** 出力先 */
+	private final PrintStream out;
+
+	/** 1ページに表示する件数 */
+	private final int pageSize;
+
+	/** 行を組み立てる使い回しのバッファ */
+	private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+
+	/**
+	 * 標準出力に既定の件数ずつ表示するTodoListRendererを初期化するコンストラクタです。
+	 */
+	public TodoListRenderer() {
+		this(System.out, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * 出力先と1ページの件数を指定してTodoListRendererを初期化するコンストラクタです。
+	 * @param out 出力先
+	 * @param pageSize 1ページに表示する件数
+	 */
+	public TodoListRenderer(PrintStream out, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("1ページの件数は1以上を指定してください: " + pageSize);
+		}
+		this.out = out;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * 表示対象の項目数から総ページ数を求めます。
+	 * @param count 表示対象の項目数
+	 * @return 総ページ数（項目が無い場合は0）
+	 */
+	public int pageCount(int count) {
+		return (count + pageSize - 1) / pageSize;
+	}
+
+	/**
+	 * 一覧の1ページ分を表示します。範囲外のページ番号は最初または最後のページに丸めます。
+	 * @param title 見出し
+	 * @param items 項目を取り出す元のリスト
+	 * @param indexes 表示する項目の番号（1始まり）のリスト（nullの場合はitems全体を順番に表示）
+	 * @param emptyMessage 表示する項目が無い場合のメッセージ
+	 * @param page 表示するページ番号（1始まり）
+	 * @return 総ページ数
+	 */
+	public synchronized int render(String title, List<TodoItem> items, List<Integer> indexes,
+			String emptyMessage, int page) {
+		int count = indexes == null ? items.size() : indexes.size();
+
+		buffer.setLength(0);
+		if (count == 0) {
+			buffer.append(RULE).append('\n').append(emptyMessage).append('\n').append(RULE).append('\n');
+			flush();
+			return 0;
+		}
+
+		int totalPages = pageCount(count);
+		page = Math.max(1, Math.min(page, totalPages));
+		int from = (page - 1) * pageSize;
+		int to = Math.min(count, from + pageSize);
+
+		buffer.append("--- ").append(title).append(" ---\n");
+		for (int i = from; i < to; i++) {
+			int index = indexes == null ? i + 1 : indexes.get(i);
+
+			// 元のリストでの番号を表示番号として出力（読み込めない行は番号だけを表示する）
+			buffer.append(index).append(". ");
+			TodoItem item = items.get(index - 1);
+			if (item != null) {
+				item.appendTo(buffer);
+			} else {
+				buffer.append("（読み込めない行）");
+			}
+			buffer.append('\n');
+
+			if (buffer.length() >= FLUSH_THRESHOLD) {
+				flush();
+			}
+		}
+
+		if (totalPages > 1) {
+			buffer.append("--- ページ ").append(page).append('/').append(totalPages)
+					.append("（全 ").append(count).append(" 件） ---\n");
+		} else {
+			buffer.append(RULE).append('\n');
+		}
+		flush();
+		return totalPages;
+	}
+
+	/**
+	 * 件数の集計と、週ごとの未完了の項目の件数を表示します。
+	 * @param today 期限切れの基準日
+	 * @param summary 集計
+	 * @param firstWeek 最初の週の月曜日
+	 * @param weeklyLoad 週ごとの件数（先頭が最初の週）
+	 */
+	public synchronized void renderStats(LocalDate today, TodoStats.Summary summary, LocalDate firstWeek, int[] weeklyLoad) {
+		buffer.setLength(0);
+		buffer.append("--- 統計（").append(today).append(" 時点） ---\n");
+		buffer.append("全体: ").append(summary.getTotal()).append(" 件　未完了: ").append(summary.getOpen())
+				.append(" 件　完了済み: ").append(summary.getCompleted()).append(" 件　期限切れ: ").append(summary.getOverdue())
+				.append(" 件　期限なし: ").append(summary.getNoDeadline()).append(" 件\n");
+		if (weeklyLoad.length > 0) {
+			buffer.append("週ごとの未完了の件数:\n");
+			for (int i = 0; i < weeklyLoad.length; i++) {
+				buffer.append(firstWeek.plusWeeks(i)).append(" の週: ").append(weeklyLoad[i]).append(" 件\n");
+			}
+		}
+		buffer.append(RULE).append('\n');
+		flush();
+	}
+
+	/**
+	 * バッファの内容をまとめて出力先に書き出します。
+	 */
+	private void flush() {
+		out.append(buffer);
+		out.flush();
+		buffer.setLength(0);
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * TodoServerに負荷をかけ、1秒あたりのリクエスト数と応答時間の分布を表示するクラスです。
+ * 一覧・追加・完了・編集を混ぜたリクエストを、指定した数のクライアントから同時に送り続けます。
+ * 使い方: java com.example.todolist.TodoLoadGenerator [URL] [同時接続数] [計測秒数]
+ * 例: java com.example.todolist.TodoLoadGenerator http://localhost:8080 32 10
+ */
+package com.example.todolist;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TodoLoadGenerator {
+
+	/** 計測前に負荷をかけておく秒数（JITのウォームアップ） */
+	private static final int WARMUP_SECONDS = 2;
+
+	/** 一覧の応答から件数を取り出すパターン */
+	private static final Pattern TOTAL = Pattern.compile("\"total\":(\\d+)");
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private TodoLoadGenerator() {
+	}
+
+	/**
+	 * 1クライアント分の送信ループと、その計測結果を保持するクラスです。
+	 */
+	private static class Client implements Runnable {
+
+		final HttpClient http;
+		final String baseUrl;
+		final AtomicInteger knownSize;
+		final long measureFrom;
+		final long measureUntil;
+
+		/** 計測期間中の応答時間（ナノ秒） */
+		long[] latencies = new long[1024];
+		int count;
+
+		/** 計測期間中に2xx以外で応答したリクエストと、送信に失敗したリクエストの件数 */
+		int errors;
+
+		Client(HttpClient http, String baseUrl, AtomicInteger knownSize, long measureFrom, long measureUntil) {
+			this.http = http;
+			this.baseUrl = baseUrl;
+			this.knownSize = knownSize;
+			this.measureFrom = measureFrom;
+			this.measureUntil = measureUntil;
+		}
+
+		@Override
+		public void run() {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long now;
+			while ((now = System.nanoTime()) < measureUntil) {
+				HttpRequest request = nextRequest(random);
+				boolean ok;
+				try {
+					HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+					ok = response.statusCode() / 100 == 2;
+					if (ok && request.method().equals("POST") && response.statusCode() == 201) {
+						knownSize.incrementAndGet();
+					}
+				} catch (IOException e) {
+					ok = false;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				long end = System.nanoTime();
+
+				if (now >= measureFrom) {
+					record(end - now);
+					if (!ok) {
+						errors++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * 一覧70%、追加10%、完了10%、編集10%の割合でリクエストを作ります。
+		 */
+		private HttpRequest nextRequest(ThreadLocalRandom random) {
+			int size = Math.max(1, knownSize.get());
+			int choice = random.nextInt(10);
+			if (choice < 7) {
+				int offset = random.nextInt(size);
+				return HttpRequest.newBuilder(URI.create(baseUrl + "/todos?offset=" + offset + "&limit=20")).GET().build();
+			}
+			if (choice == 7) {
+				String body = "{\"content\":\"負荷試験 " + random.nextInt(1_000_000) + "\",\"deadline\":\""
+						+ LocalDate.of(2025, 1, 1).plusDays(random.nextInt(730)) + "\"}";
+				return HttpRequest.newBuilder(URI.create(baseUrl + "/todos"))
+						.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+			}
+			int index = 1 + random.nextInt(size);
+			if (choice == 8) {
+				return HttpRequest.newBuilder(URI.create(baseUrl + "/todos/" + index + "/complete"))
+						.POST(HttpRequest.BodyPublishers.noBody()).build();
+			}
+			String body = "{\"content\":\"編集 " + random.nextInt(1_000_000) + "\"}";
+			return HttpRequest.newBuilder(URI.create(baseUrl + "/todos/" + index))
+					.method("PATCH", HttpRequest.BodyPublishers.ofString(body)).build();
+		}
+
+		private void record(long nanos) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = nanos;
+		}
+	}
+
+	/**
+	 * 負荷をかけ、結果をコンソールに表示します。
+	 * @param args [URL（既定: http://localhost:8080）] [同時接続数（既定: 32）] [計測秒数（既定: 10）]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String baseUrl = args.length > 0 ? args[0] : "http://localhost:" + TodoServer.DEFAULT_PORT;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(5)).build();
+
+		// 完了・編集の対象を既存の項目から選ぶため、開始時の件数を取得しておく
+		HttpResponse<String> first = http.send(
+				HttpRequest.newBuilder(URI.create(baseUrl + "/todos?limit=0")).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+		Matcher matcher = TOTAL.matcher(first.body());
+		if (first.statusCode() != 200 || !matcher.find()) {
+			System.out.println("エラー: サーバーから件数を取得できませんでした: " + first.statusCode() + " " + first.body());
+			return;
+		}
+		AtomicInteger knownSize = new AtomicInteger(Integer.parseInt(matcher.group(1)));
+
+		System.out.println("接続先: " + baseUrl + "　同時接続数: " + concurrency + "　計測: " + seconds + " 秒（ウォームアップ "
+				+ WARMUP_SECONDS + " 秒）");
+
+		long measureFrom = System.nanoTime() + WARMUP_SECONDS * 1_000_000_000L;
+		long measureUntil = measureFrom + seconds * 1_000_000_000L;
+		Client[] clients = new Client[concurrency];
+		Thread[] threads = new Thread[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			clients[i] = new Client(http, baseUrl, knownSize, measureFrom, measureUntil);
+			threads[i] = new Thread(clients[i], "load-" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// 全クライアントの応答時間をまとめて並べ替え、百分位数を求める
+		int total = 0;
+		int errors = 0;
+		for (Client client : clients) {
+			total += client.count;
+			errors += client.errors;
+		}
+		long[] all = new long[total];
+		int position = 0;
+		for (Client client : clients) {
+			System.arraycopy(client.latencies, 0, all, position, client.count);
+			position += client.count;
+		}
+		Arrays.sort(all);
+
+		System.out.printf("リクエスト数: %,d 件（エラー: %,d 件）%n", total, errors);
+		System.out.printf("スループット: %,.0f リクエスト/秒%n", (double) total / seconds);
+		if (total > 0) {
+			System.out.printf("応答時間: p50 %.2f ms, p99 %.2f ms, 最大 %.2f ms%n",
+					percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[total - 1] / 1e6);
+		}
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		int position = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, position))];
+	}
+}
@@ -0,0 +1,320 @@
+/**
+ * アプリケーションの処理時間とI/Oの量を集計するクラスです。
+ * 操作ごとの件数と処理時間の分布（LatencyHistogram）、項目数、スキップした行数、読み書きしたバイト数を保持し、
+ * JMX（TodoMetricsMXBean）で公開するほか、一定間隔で集計を出力することもできます。
+ *
+ * 記録用のメソッドはオブジェクトを作らないので、コマンドやファイル操作のたびに呼び出しても負荷はわずかです。
+ * アプリケーション全体で1つのインスタンス（getで取得）を共有します。
+ */
+package com.example.todolist;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class TodoMetrics implements TodoMetricsMXBean {
+
+	/**
+	 * 計測する操作の種類です。
+	 */
+	public enum Operation {
+		/** FileHandler.loadList */
+		LOAD,
+		/** FileHandler.saveList */
+		SAVE,
+		/** ジャーナルへの記録の書き込み（一括操作のまとまりは1回） */
+		JOURNAL_APPEND,
+		/** FileHandler.loadDueBetween（--due） */
+		LOAD_DUE,
+		/** FileHandler.convert（--convert） */
+		CONVERT,
+		/** FileHandler.exportTo（--export） */
+		EXPORT,
+		/** FileHandler.importFile（--import） */
+		IMPORT,
+		/** 項目の追加 */
+		ADD,
+		/** 項目の編集（内容・期限） */
+		EDIT,
+		/** 項目の完了 */
+		COMPLETE,
+		/** 一括操作（完了・期限をずらす・内容の置換） */
+		BULK,
+		/** 元に戻す・やり直す */
+		UNDO,
+		/** 一覧・検索結果の1ページの表示 */
+		DISPLAY,
+		/** ビューの選択メニュー（ビューごとの件数）の表示 */
+		VIEW,
+		/** 統計の表示 */
+		STATS,
+		/** ワークスペースのリストの切り替え */
+		SWITCH_LIST,
+		/** 期限による検索 */
+		SEARCH_DEADLINE,
+		/** キーワード検索 */
+		SEARCH,
+		/** アーカイブの検索 */
+		ARCHIVE_SEARCH,
+		/** バッチ処理（--batch・--exec）の1コマンド */
+		BATCH_COMMAND,
+		/** HTTP APIの1リクエスト */
+		HTTP_REQUEST
+	}
+
+	//フィールド
+	/** JMXに登録する名前 */
+	public static final String OBJECT_NAME = "com.example.todolist:type=TodoMetrics";
+
+	/** アプリケーション全体で共有するインスタンス */
+	private static final TodoMetrics INSTANCE = new TodoMetrics();
+
+	/** 操作ごとの処理時間の分布（Operationの順番） */
+	private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+
+	/** 読み込み時にスキップした行数の累計 */
+	private final AtomicLong skippedRows = new AtomicLong();
+
+	/** ファイルから読み込んだバイト数の累計 */
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	/** ファイルに書き込んだバイト数の累計 */
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	/** 現在の項目数を返す処理（未設定の場合は常に0） */
+	private volatile IntSupplier itemCount = () -> 0;
+
+	/** 集計を定期的に出力するスレッド（未使用の場合はnull） */
+	private ScheduledExecutorService dumpScheduler;
+
+	/**
+	 * getで取得するインスタンスだけを使うため、外部からは初期化しません。
+	 */
+	private TodoMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * アプリケーション全体で共有するインスタンスを取得します。
+	 * @return TodoMetricsのインスタンス
+	 */
+	public static TodoMetrics get() {
+		return INSTANCE;
+	}
+
+	// ----------------------------------------------------
+	// 記録（オブジェクトを作らない）
+	// ----------------------------------------------------
+
+	/**
+	 * 操作の処理時間を記録します。開始時刻はSystem.nanoTimeで取得した値を渡してください。
+	 * @param operation 操作の種類
+	 * @param startNanos 操作を開始した時刻（System.nanoTime）
+	 */
+	public void record(Operation operation, long startNanos) {
+		histograms[operation.ordinal()].record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * 読み込み時にスキップした行数を加算します。
+	 * @param rows スキップした行数
+	 */
+	public void addSkippedRows(long rows) {
+		skippedRows.addAndGet(rows);
+	}
+
+	/**
+	 * ファイルから読み込んだバイト数を加算します。
+	 * @param bytes バイト数
+	 */
+	public void addBytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	/**
+	 * ファイルに書き込んだバイト数を加算します。
+	 * @param bytes バイト数
+	 */
+	public void addBytesWritten(long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+	/**
+	 * 現在の項目数を返す処理を設定します。JMXや集計の出力のたびに呼び出されます。
+	 * @param itemCount 項目数を返す処理
+	 */
+	public void setItemCountSource(IntSupplier itemCount) {
+		this.itemCount = itemCount;
+	}
+
+	/**
+	 * 操作の処理時間の分布を取得します。
+	 * @param operation 操作の種類
+	 * @return 処理時間の分布
+	 */
+	public LatencyHistogram getHistogram(Operation operation) {
+		return histograms[operation.ordinal()];
+	}
+
+	// ----------------------------------------------------
+	// TodoMetricsMXBean
+	// ----------------------------------------------------
+
+	@Override
+	public Map<String, OperationStats> getOperations() {
+		Map<String, OperationStats> operations = new LinkedHashMap<>();
+		for (Operation operation : Operation.values()) {
+			operations.put(operation.name(), new OperationStats(histograms[operation.ordinal()]));
+		}
+		return operations;
+	}
+
+	@Override
+	public int getItemCount() {
+		return itemCount.getAsInt();
+	}
+
+	@Override
+	public long getSkippedRows() {
+		return skippedRows.get();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		skippedRows.set(0);
+		bytesRead.set(0);
+		bytesWritten.set(0);
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("--- 統計（項目数: %d, スキップした行: %d, 読み込み: %d バイト, 書き込み: %d バイト）---%n",
+				getItemCount(), getSkippedRows(), getBytesRead(), getBytesWritten()));
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram histogram = histograms[operation.ordinal()];
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			OperationStats stats = new OperationStats(histogram);
+			sb.append(String.format("%-16s 件数: %8d  p50: %10.1f µs  p99: %10.1f µs  最大: %10.1f µs%n",
+					operation.name(), stats.getCount(), stats.getP50Micros(), stats.getP99Micros(), stats.getMaxMicros()));
+		}
+		return sb.toString();
+	}
+
+	// ----------------------------------------------------
+	// 公開と出力
+	// ----------------------------------------------------
+
+	/**
+	 * プラットフォームのMBeanServerに登録し、jconsoleなどのJMXクライアントから参照できるようにします。
+	 * すでに登録済みの場合は何もしません。
+	 */
+	public synchronized void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			System.err.println("警告: 統計情報をJMXに登録できませんでした: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 集計を一定間隔で出力し始めます。すでに出力中の場合は間隔を変更します。
+	 * @param periodSeconds 出力の間隔（秒）
+	 * @param out 出力先
+	 */
+	public synchronized void startDump(long periodSeconds, PrintStream out) {
+		stopDump();
+		dumpScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "todo-metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumpScheduler.scheduleAtFixedRate(() -> out.print(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 集計の定期的な出力を止めます。
+	 */
+	public synchronized void stopDump() {
+		if (dumpScheduler != null) {
+			dumpScheduler.shutdownNow();
+			dumpScheduler = null;
+		}
+	}
+
+	/**
+	 * 1つの操作の集計結果です。JMXでは複合データ（CompositeData）として公開されます。
+	 */
+	public static class OperationStats {
+
+		private final long count;
+		private final double p50Micros;
+		private final double p99Micros;
+		private final double maxMicros;
+		private final double meanMicros;
+
+		OperationStats(LatencyHistogram histogram) {
+			this.count = histogram.getCount();
+			this.p50Micros = histogram.getPercentileNanos(0.50) / 1e3;
+			this.p99Micros = histogram.getPercentileNanos(0.99) / 1e3;
+			this.maxMicros = histogram.getMaxNanos() / 1e3;
+			this.meanMicros = histogram.getMeanNanos() / 1e3;
+		}
+
+		/** @return 件数 */
+		public long getCount() {
+			return count;
+		}
+
+		/** @return 処理時間の中央値（マイクロ秒） */
+		public double getP50Micros() {
+			return p50Micros;
+		}
+
+		/** @return 処理時間の99パーセンタイル（マイクロ秒） */
+		public double getP99Micros() {
+			return p99Micros;
+		}
+
+		/** @return 処理時間の最大（マイクロ秒） */
+		public double getMaxMicros() {
+			return maxMicros;
+		}
+
+		/** @return 処理時間の平均（マイクロ秒） */
+		public double getMeanMicros() {
+			return meanMicros;
+		}
+	}
+}
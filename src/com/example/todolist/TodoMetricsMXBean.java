@@ -0,0 +1,51 @@
+/**
+ * TodoMetricsをJMXで公開するためのインターフェースです。
+ * jconsoleなどでは com.example.todolist:type=TodoMetrics として表示されます。
+ */
+package com.example.todolist;
+
+import java.util.Map;
+
+public interface TodoMetricsMXBean {
+
+	/**
+	 * 操作ごとの集計結果を取得します。
+	 * @return 操作の名前（TodoMetrics.Operationの名前）と集計結果の対応
+	 */
+	Map<String, TodoMetrics.OperationStats> getOperations();
+
+	/**
+	 * 現在の項目数を取得します。
+	 * @return 項目数
+	 */
+	int getItemCount();
+
+	/**
+	 * 読み込み時にスキップした行数の累計を取得します。
+	 * @return スキップした行数
+	 */
+	long getSkippedRows();
+
+	/**
+	 * ファイルから読み込んだバイト数の累計を取得します。
+	 * @return バイト数
+	 */
+	long getBytesRead();
+
+	/**
+	 * ファイルに書き込んだバイト数の累計を取得します。
+	 * @return バイト数
+	 */
+	long getBytesWritten();
+
+	/**
+	 * 集計をすべて消去します（項目数は除く）。
+	 */
+	void reset();
+
+	/**
+	 * 集計を人が読める形式の文字列にします。
+	 * @return 集計の文字列
+	 */
+	String dump();
+}
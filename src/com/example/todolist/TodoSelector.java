@@ -0,0 +1,158 @@
+/**
+ * 一括操作の対象を指定する文字列を解析し、項目の番号に変換するクラスです。
+ *
+ * 指定の書式:
+ * <pre>
+ * 3-500              番号の範囲（両端を含む）
+ * 1,4,7              番号の並び（「3-10,15,#42」のように範囲やIDと組み合わせられます）
+ * #42                タスクのID
+ * all                すべての項目
+ * before:2025-11-07  期限が指定日より前の項目
+ * match:キーワード    内容にキーワードを含む項目
+ * open / done        未完了 / 完了済みの項目
+ * </pre>
+ * 条件（all・before・match・open・done）は「before:2025-11-07&amp;open」のように「&amp;」でつなぐと、すべてを満たす項目になります。
+ * 条件による絞り込みはTodoListManager.selectIndexesでリストを並列に走査して行います。
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+public class TodoSelector {
+
+	//フィールド
+	/** 番号の並び（条件で指定した場合はnull） */
+	private final String[] parts;
+
+	/** 項目の条件（番号で指定した場合はnull） */
+	private final Predicate<TodoItem> filter;
+
+	private TodoSelector(String[] parts, Predicate<TodoItem> filter) {
+		this.parts = parts;
+		this.filter = filter;
+	}
+
+	/**
+	 * 指定の文字列を解析します。番号やIDがリストに存在するかどうかはresolveで確かめます。
+	 * @param spec 指定の文字列
+	 * @return 解析したTodoSelector
+	 * @throws InputFormatException 書式が不正な場合
+	 */
+	public static TodoSelector parse(String spec) throws InputFormatException {
+		String trimmed = spec.trim();
+		if (trimmed.isEmpty()) {
+			throw new InputFormatException("対象が入力されていません。");
+		}
+		char first = trimmed.charAt(0);
+		if (Character.isDigit(first) || first == '#') {
+			String[] parts = trimmed.split(",");
+			for (int i = 0; i < parts.length; i++) {
+				parts[i] = parts[i].trim();
+				checkPart(parts[i]);
+			}
+			return new TodoSelector(parts, null);
+		}
+
+		Predicate<TodoItem> filter = item -> true;
+		for (String condition : trimmed.split("&")) {
+			filter = filter.and(parseCondition(condition.trim()));
+		}
+		return new TodoSelector(null, filter);
+	}
+
+	/**
+	 * 指定に一致する項目の番号を求めます。
+	 * @param manager 対象のTodoListManager
+	 * @return 項目の番号（1始まり、昇順・重複なし）
+	 * @throws IndexOutOfBoundsException 存在しない番号やIDが含まれる場合
+	 */
+	public int[] resolve(TodoListManager manager) {
+		if (filter != null) {
+			return manager.selectIndexes(filter);
+		}
+		int size = manager.getTodoItems().size();
+		IntStream indexes = IntStream.empty();
+		for (String part : parts) {
+			indexes = IntStream.concat(indexes, resolvePart(part, manager, size));
+		}
+		return indexes.sorted().distinct().toArray();
+	}
+
+	/**
+	 * 番号の並びの1つ（番号・範囲・ID）の書式を確かめます。
+	 */
+	private static void checkPart(String part) throws InputFormatException {
+		try {
+			if (part.startsWith("#")) {
+				Long.parseLong(part.substring(1));
+				return;
+			}
+			int dash = part.indexOf('-');
+			if (dash < 0) {
+				Integer.parseInt(part);
+				return;
+			}
+			int from = Integer.parseInt(part.substring(0, dash).trim());
+			int to = Integer.parseInt(part.substring(dash + 1).trim());
+			if (from > to) {
+				throw new InputFormatException("範囲の開始が終了より後になっています: " + part);
+			}
+		} catch (NumberFormatException e) {
+			throw new InputFormatException("番号の指定が不正です: " + part, e);
+		}
+	}
+
+	/**
+	 * 番号の並びの1つを、リストの範囲を確かめて番号に変換します。
+	 */
+	private static IntStream resolvePart(String part, TodoListManager manager, int size) {
+		if (part.startsWith("#")) {
+			return IntStream.of(manager.indexOf(Long.parseLong(part.substring(1))));
+		}
+		int dash = part.indexOf('-');
+		int from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash).trim());
+		int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+		if (from < 1 || from > size) {
+			throw new IndexOutOfBoundsException("項目番号 " + from + " は存在しません。");
+		}
+		if (to > size) {
+			throw new IndexOutOfBoundsException("項目番号 " + to + " は存在しません。");
+		}
+		return IntStream.rangeClosed(from, to);
+	}
+
+	/**
+	 * 条件の1つを項目の条件に変換します。
+	 */
+	private static Predicate<TodoItem> parseCondition(String condition) throws InputFormatException {
+		if (condition.equals("all")) {
+			return item -> true;
+		}
+		if (condition.equals("open")) {
+			return item -> !item.isCompleted();
+		}
+		if (condition.equals("done")) {
+			return TodoItem::isCompleted;
+		}
+		if (condition.startsWith("before:")) {
+			LocalDate date;
+			try {
+				date = LocalDate.parse(condition.substring("before:".length()).trim());
+			} catch (DateTimeParseException e) {
+				throw new InputFormatException("日付の形式が不正です。YYYY-MM-DD (例: 2025-11-07) 形式で入力してください。", e);
+			}
+			return item -> item.getDeadline() != null && item.getDeadline().isBefore(date);
+		}
+		if (condition.startsWith("match:")) {
+			String keyword = condition.substring("match:".length());
+			if (keyword.isEmpty()) {
+				throw new InputFormatException("match: の後にキーワードを入力してください。");
+			}
+			return item -> item.getContent().contains(keyword);
+		}
+		throw new InputFormatException("対象の指定が不正です: " + condition);
+	}
+}
@@ -0,0 +1,428 @@
+/**
+ * ToDoリストをJSONのHTTP APIとして公開するサーバークラスです。
+ * JDK標準のHTTPサーバー（com.sun.net.httpserver）を使い、リクエストごとに1つのスレッドで処理します。
+ * 仮想スレッドが使えるJava（21以降）では仮想スレッドを、それ以外では都度作成するプラットフォームスレッドを使います。
+ * 項目はConcurrentTodoListManagerで管理し、変更はFileHandlerのジャーナルに記録して永続化します。
+ *
+ * API（本文はUTF-8のJSON）:
+ * <pre>
+ * GET   /todos?offset=0&amp;limit=100      一覧（{"total":件数,"offset":..,"items":[...]}）
+ * POST  /todos                          追加（{"content":"内容","deadline":"YYYY-MM-DD"}）
+ * GET   /todos/{番号}                    1件取得
+ * PATCH /todos/{番号}                    編集（{"content":"内容"} と {"deadline":"YYYY-MM-DD"} のどちらか、または両方）
+ * POST  /todos/{番号}/complete           完了
+ * GET   /todos/stats?weeks=8             件数の集計と、今週から週ごとの未完了の件数（変更に追従して保持しているので走査しない）
+ * </pre>
+ * {番号} の代わりに id/{ID} と書くと（例: /todos/id/42/complete）、タスクのIDで項目を指定できます。
+ */
+package com.example.todolist;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class TodoServer {
+
+	//フィールド
+	/** 既定のポート番号 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/** APIのパス */
+	private static final String BASE_PATH = "/todos";
+
+	/** 一覧で1回に返す件数の既定値と上限 */
+	private static final int DEFAULT_LIMIT = 100;
+	private static final int MAX_LIMIT = 1000;
+
+	/** 集計で返す週の数の上限 */
+	private static final int MAX_STATS_WEEKS = 520;
+
+	/** 受け付けるリクエスト本文の最大バイト数 */
+	private static final int MAX_BODY_BYTES = 64 * 1024;
+
+	static {
+		// 応答のヘッダーと本文が別々に送られるため、Nagleアルゴリズムと遅延ACKが重なると1往復ごとに約40ms待たされる
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	/** 項目を管理するTodoListManager */
+	private final ConcurrentTodoListManager todoListManager = new ConcurrentTodoListManager();
+
+	/** 永続化に使うFileHandler */
+	private final FileHandler fileHandler;
+
+	/** HTTPサーバー */
+	private final HttpServer server;
+
+	/** リクエストを処理するスレッドを作るExecutor */
+	private final ExecutorService executor;
+
+	/**
+	 * ローカルホストの指定したポートで待ち受けるTodoServerを初期化するコンストラクタです。
+	 * 起動はstart()で行います。
+	 * @param fileHandler 永続化に使うFileHandler
+	 * @param port 待ち受けるポート番号（0の場合は空いているポート）
+	 * @throws IOException ポートを開けなかった場合
+	 */
+	public TodoServer(FileHandler fileHandler, int port) throws IOException {
+		this.fileHandler = fileHandler;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = newRequestExecutor();
+		server.setExecutor(executor);
+		server.createContext(BASE_PATH, this::handle);
+	}
+
+	/**
+	 * 保存されているデータを読み込み、リクエストの受け付けを開始します。
+	 */
+	public void start() {
+		todoListManager.setTodoItems(fileHandler.loadList());
+		todoListManager.reserveIds(fileHandler.getArchivedMaxId());
+		fileHandler.attachJournal(todoListManager);
+		TodoMetrics.get().setItemCountSource(todoListManager::size);
+		TodoMetrics.get().register();
+		server.start();
+	}
+
+	/**
+	 * リクエストの受け付けを止め、処理中のリクエストを待ってからデータを保存します。
+	 */
+	public void stop() {
+		server.stop(1);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		fileHandler.saveList(todoListManager.getTodoItems());
+		fileHandler.close();
+	}
+
+	/**
+	 * 待ち受けているポート番号を取得します。
+	 * @return ポート番号
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * リクエストごとに1つのスレッドを割り当てるExecutorを作ります。
+	 * Java 21以降の仮想スレッドはリフレクションで呼び出し、古いJavaでもコンパイル・実行できるようにしています。
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// 仮想スレッドが使えない場合は、必要な分だけスレッドを作り、空いたスレッドは再利用する
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "todo-http");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	// ----------------------------------------------------
+	// リクエストの振り分け
+	// ----------------------------------------------------
+
+	/**
+	 * パスとメソッドに応じて処理を振り分け、エラーはJSONで返します。
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			String rest = path.substring(BASE_PATH.length());
+			if (!rest.isEmpty() && rest.charAt(0) != '/') {
+				sendError(exchange, 404, "パスが見つかりません: " + path);
+				return;
+			}
+			String[] segments = rest.split("/");
+
+			// segmentsは ["", 番号, "complete"] のように先頭が空になる
+			if (segments.length <= 1) {
+				switch (method) {
+					case "GET":
+						listItems(exchange);
+						return;
+					case "POST":
+						addItem(exchange);
+						return;
+					default:
+						sendError(exchange, 405, "このパスでは GET と POST のみ使用できます。");
+						return;
+				}
+			}
+
+			if (segments.length == 2 && segments[1].equals("stats")) {
+				if (!method.equals("GET")) {
+					sendError(exchange, 405, "このパスでは GET のみ使用できます。");
+					return;
+				}
+				sendStats(exchange);
+				return;
+			}
+
+			// id/{ID} の形式は、IDの索引で現在の番号に変換してから番号の形式と同じように扱う
+			int index;
+			if (segments[1].equals("id") && segments.length >= 3) {
+				index = todoListManager.indexOf(parseId(segments[2]));
+				segments = Arrays.copyOfRange(segments, 1, segments.length);
+			} else {
+				index = parseIndex(segments[1]);
+			}
+			if (segments.length == 2) {
+				switch (method) {
+					case "GET":
+						sendItem(exchange, 200, index);
+						return;
+					case "PATCH":
+						editItem(exchange, index);
+						return;
+					default:
+						sendError(exchange, 405, "このパスでは GET と PATCH のみ使用できます。");
+						return;
+				}
+			}
+			if (segments.length == 3 && segments[2].equals("complete")) {
+				if (!method.equals("POST")) {
+					sendError(exchange, 405, "このパスでは POST のみ使用できます。");
+					return;
+				}
+				todoListManager.completeItem(index);
+				sendItem(exchange, 200, index);
+				return;
+			}
+			sendError(exchange, 404, "パスが見つかりません: " + path);
+
+		} catch (InputFormatException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (IndexOutOfBoundsException e) {
+			sendError(exchange, 404, e.getMessage());
+		} catch (RuntimeException e) {
+			sendError(exchange, 500, "予期せぬエラーが発生しました: " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			exchange.close();
+			TodoMetrics.get().record(TodoMetrics.Operation.HTTP_REQUEST, start);
+		}
+	}
+
+	// ----------------------------------------------------
+	// 各APIの処理
+	// ----------------------------------------------------
+
+	private void listItems(HttpExchange exchange) throws IOException, InputFormatException {
+		int offset = 0;
+		int limit = DEFAULT_LIMIT;
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				String name = eq < 0 ? pair : pair.substring(0, eq);
+				String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+				if (name.equals("offset")) {
+					offset = parseNonNegative(name, value);
+				} else if (name.equals("limit")) {
+					limit = Math.min(MAX_LIMIT, parseNonNegative(name, value));
+				}
+			}
+		}
+
+		int total = todoListManager.size();
+		List<TodoItem> items = todoListManager.getItems(offset + 1, limit);
+
+		StringBuilder sb = new StringBuilder(64 + items.size() * 96);
+		sb.append("{\"total\":").append(total).append(",\"offset\":").append(offset).append(",\"items\":[");
+		for (int i = 0; i < items.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			TodoJson.appendItem(sb, offset + i + 1, items.get(i));
+		}
+		sb.append("]}");
+		send(exchange, 200, sb);
+	}
+
+	private void sendStats(HttpExchange exchange) throws IOException, InputFormatException {
+		int weeks = TodoStats.DEFAULT_WEEKS;
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				String name = eq < 0 ? pair : pair.substring(0, eq);
+				if (name.equals("weeks")) {
+					String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+					weeks = Math.min(MAX_STATS_WEEKS, parseNonNegative(name, value));
+				}
+			}
+		}
+
+		LocalDate today = LocalDate.now();
+		TodoStats.Summary summary = todoListManager.getStats(today);
+		int[] weeklyLoad = todoListManager.weeklyLoad(today, weeks);
+		LocalDate firstWeek = TodoStats.weekOf(today);
+
+		StringBuilder sb = new StringBuilder(128 + weeks * 40);
+		sb.append("{\"total\":").append(summary.getTotal())
+				.append(",\"open\":").append(summary.getOpen())
+				.append(",\"completed\":").append(summary.getCompleted())
+				.append(",\"overdue\":").append(summary.getOverdue())
+				.append(",\"noDeadline\":").append(summary.getNoDeadline())
+				.append(",\"weeks\":[");
+		for (int i = 0; i < weeklyLoad.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"week\":\"").append(firstWeek.plusWeeks(i)).append("\",\"open\":").append(weeklyLoad[i]).append('}');
+		}
+		sb.append("]}");
+		send(exchange, 200, sb);
+	}
+
+	private void addItem(HttpExchange exchange) throws IOException, InputFormatException {
+		Map<String, Object> body = readBody(exchange);
+		String content = requireContent(body);
+		LocalDate deadline = parseDate(requireString(body, "deadline"));
+
+		int index = todoListManager.addItemAndGetIndex(new TodoItem(content, deadline));
+		sendItem(exchange, 201, index);
+	}
+
+	private void editItem(HttpExchange exchange, int index) throws IOException, InputFormatException {
+		Map<String, Object> body = readBody(exchange);
+		if (!body.containsKey("content") && !body.containsKey("deadline")) {
+			throw new InputFormatException("content と deadline のどちらかを指定してください。");
+		}
+
+		// 両方指定された場合は、どちらも検証してから適用する
+		String content = body.containsKey("content") ? requireContent(body) : null;
+		LocalDate deadline = body.containsKey("deadline") ? parseDate(requireString(body, "deadline")) : null;
+		if (content != null) {
+			todoListManager.editContent(index, content);
+		}
+		if (deadline != null) {
+			todoListManager.editDeadline(index, deadline);
+		}
+		sendItem(exchange, 200, index);
+	}
+
+	// ----------------------------------------------------
+	// 入力の解析
+	// ----------------------------------------------------
+
+	private static Map<String, Object> readBody(HttpExchange exchange) throws IOException, InputFormatException {
+		byte[] bytes;
+		try (InputStream in = exchange.getRequestBody()) {
+			bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+		}
+		if (bytes.length > MAX_BODY_BYTES) {
+			throw new InputFormatException("リクエスト本文が大きすぎます（上限 " + MAX_BODY_BYTES + " バイト）。");
+		}
+		return TodoJson.parseObject(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	private static String requireString(Map<String, Object> body, String name) throws InputFormatException {
+		Object value = body.get(name);
+		if (!(value instanceof String) || ((String) value).isEmpty()) {
+			throw new InputFormatException(name + " を文字列で指定してください。");
+		}
+		return (String) value;
+	}
+
+	/**
+	 * 内容を取り出します。ファイルは1行に1項目を保存するので、改行は空白に置き換えます（インポートと同じ扱い）。
+	 */
+	private static String requireContent(Map<String, Object> body) throws InputFormatException {
+		String content = requireString(body, "content");
+		if (content.indexOf('\n') >= 0 || content.indexOf('\r') >= 0) {
+			content = content.replace("\r\n", " ").replace('\r', ' ').replace('\n', ' ');
+		}
+		return content;
+	}
+
+	private static int parseIndex(String segment) throws InputFormatException {
+		try {
+			return Integer.parseInt(segment);
+		} catch (NumberFormatException e) {
+			throw new InputFormatException("項目番号が不正です: " + segment, e);
+		}
+	}
+
+	private static long parseId(String segment) throws InputFormatException {
+		try {
+			return Long.parseLong(segment);
+		} catch (NumberFormatException e) {
+			throw new InputFormatException("IDが不正です: " + segment, e);
+		}
+	}
+
+	private static int parseNonNegative(String name, String value) throws InputFormatException {
+		try {
+			int number = Integer.parseInt(value);
+			if (number >= 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// 下で同じエラーにまとめる
+		}
+		throw new InputFormatException(name + " には0以上の整数を指定してください: " + value);
+	}
+
+	private static LocalDate parseDate(String dateString) throws InputFormatException {
+		try {
+			return LocalDate.parse(dateString);
+		} catch (DateTimeParseException e) {
+			throw new InputFormatException("日付の形式が不正です。YYYY-MM-DD (例: 2025-11-07) 形式で入力してください。", e);
+		}
+	}
+
+	// ----------------------------------------------------
+	// 応答の送信
+	// ----------------------------------------------------
+
+	private void sendItem(HttpExchange exchange, int status, int index) throws IOException {
+		StringBuilder sb = new StringBuilder(128);
+		TodoJson.appendItem(sb, index, todoListManager.getItem(index));
+		send(exchange, status, sb);
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		StringBuilder sb = new StringBuilder(64 + message.length());
+		sb.append("{\"error\":");
+		TodoJson.appendString(sb, message);
+		send(exchange, status, sb.append('}'));
+	}
+
+	private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+		byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,266 @@
+/**
+ * ToDoリストの件数の集計（全体・未完了・完了済み・期限切れ・期限なし）と、未完了の項目の週ごとの件数を保持するクラスです。
+ * TodoListListenerとして登録すると、追加・完了・期限の編集（と、それらを元に戻す操作）のたびに該当する1件分だけ集計を増減するので、
+ * 集計を問い合わせるたびにリスト全体を走査する必要はありません。
+ *
+ * 期限切れの件数は基準日によって変わるため、最後に問い合わせた基準日での件数を保持し、
+ * 基準日が変わった場合はその間の日の件数だけを足し引きします（毎日問い合わせる場合は1日分で済みます）。
+ * 週は月曜日から日曜日までとし、月曜日の日付で表します。
+ */
+package com.example.todolist;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TodoStats implements TodoListListener {
+
+	//フィールド
+	/** 週ごとの件数を表示する既定の週数 */
+	public static final int DEFAULT_WEEKS = 8;
+
+	/** 期限切れの件数をまだ求めていないことを表す基準日 */
+	private static final long NOT_COMPUTED = Long.MIN_VALUE;
+
+	/** 未完了の項目の件数 */
+	private int openCount;
+
+	/** 完了済みの項目の件数 */
+	private int completedCount;
+
+	/** 期限の無い未完了の項目の件数 */
+	private int noDeadlineCount;
+
+	/** 期限（1970-01-01からの日数）ごとの未完了の項目の件数（0件の日は持たない） */
+	private final Map<Long, Integer> openByDay = new HashMap<>();
+
+	/** 週（月曜日の1970-01-01からの日数）ごとの未完了の項目の件数（0件の週は持たない） */
+	private final Map<Long, Integer> openByWeek = new HashMap<>();
+
+	/** overdueCountを求めた基準日（1970-01-01からの日数） */
+	private long overdueBefore = NOT_COMPUTED;
+
+	/** 期限が基準日より前の未完了の項目の件数 */
+	private int overdueCount;
+
+	/**
+	 * ある時点の集計を保持するクラスです。
+	 */
+	public static class Summary {
+
+		private final int total;
+		private final int open;
+		private final int completed;
+		private final int overdue;
+		private final int noDeadline;
+
+		Summary(int total, int open, int completed, int overdue, int noDeadline) {
+			this.total = total;
+			this.open = open;
+			this.completed = completed;
+			this.overdue = overdue;
+			this.noDeadline = noDeadline;
+		}
+
+		/**
+		 * 全体の件数を取得します。
+		 * @return 件数
+		 */
+		public int getTotal() {
+			return total;
+		}
+
+		/**
+		 * 未完了の項目の件数を取得します。
+		 * @return 件数
+		 */
+		public int getOpen() {
+			return open;
+		}
+
+		/**
+		 * 完了済みの項目の件数を取得します。
+		 * @return 件数
+		 */
+		public int getCompleted() {
+			return completed;
+		}
+
+		/**
+		 * 期限が基準日より前の未完了の項目の件数を取得します。
+		 * @return 件数
+		 */
+		public int getOverdue() {
+			return overdue;
+		}
+
+		/**
+		 * 期限の無い未完了の項目の件数を取得します。
+		 * @return 件数
+		 */
+		public int getNoDeadline() {
+			return noDeadline;
+		}
+	}
+
+	/**
+	 * 日付を含む週の月曜日を取得します。
+	 * @param date 日付
+	 * @return 月曜日の日付
+	 */
+	public static LocalDate weekOf(LocalDate date) {
+		return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+	}
+
+	/**
+	 * 1970-01-01からの日数を、その日を含む週の月曜日の日数に変換します（1970-01-01は木曜日）。
+	 */
+	private static long weekKey(long epochDay) {
+		return epochDay - Math.floorMod(epochDay + 3, 7);
+	}
+
+	// ----------------------------------------------------
+	// 問い合わせ
+	// ----------------------------------------------------
+
+	/**
+	 * 現在の集計を取得します。
+	 * @param today 期限切れの基準日
+	 * @return 集計
+	 */
+	public Summary summary(LocalDate today) {
+		return new Summary(openCount + completedCount, openCount, completedCount, overdue(today), noDeadlineCount);
+	}
+
+	/**
+	 * 期限が基準日より前の未完了の項目の件数を取得します。
+	 * 前回の基準日との差が期限の種類の数より小さければ、その間の日の件数だけを足し引きします。
+	 * @param today 期限切れの基準日
+	 * @return 件数
+	 */
+	public int overdue(LocalDate today) {
+		long day = today.toEpochDay();
+		if (overdueBefore == NOT_COMPUTED || Math.abs(day - overdueBefore) > openByDay.size()) {
+			int count = 0;
+			for (Map.Entry<Long, Integer> entry : openByDay.entrySet()) {
+				if (entry.getKey() < day) {
+					count += entry.getValue();
+				}
+			}
+			overdueCount = count;
+		} else {
+			for (long d = overdueBefore; d < day; d++) {
+				overdueCount += openByDay.getOrDefault(d, 0);
+			}
+			for (long d = day; d < overdueBefore; d++) {
+				overdueCount -= openByDay.getOrDefault(d, 0);
+			}
+		}
+		overdueBefore = day;
+		return overdueCount;
+	}
+
+	/**
+	 * 指定した日付を含む週から、週ごとの未完了の項目の件数を取得します。
+	 * @param from 最初の週に含まれる日付
+	 * @param weeks 週の数
+	 * @return 週ごとの件数（先頭が最初の週）
+	 */
+	public int[] weeklyLoad(LocalDate from, int weeks) {
+		int[] counts = new int[weeks];
+		long week = weekKey(from.toEpochDay());
+		for (int i = 0; i < weeks; i++) {
+			counts[i] = openByWeek.getOrDefault(week + 7L * i, 0);
+		}
+		return counts;
+	}
+
+	// ----------------------------------------------------
+	// TodoListManagerの変更への追従
+	// ----------------------------------------------------
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		if (item.isCompleted()) {
+			completedCount++;
+		} else {
+			openCount++;
+			countOpen(item.getDeadline(), 1);
+		}
+	}
+
+	@Override
+	public void itemCompleted(int index, TodoItem item) {
+		openCount--;
+		completedCount++;
+		countOpen(item.getDeadline(), -1);
+	}
+
+	@Override
+	public void itemReopened(int index, TodoItem item) {
+		completedCount--;
+		openCount++;
+		countOpen(item.getDeadline(), 1);
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		if (item.isCompleted()) {
+			completedCount--;
+		} else {
+			openCount--;
+			countOpen(item.getDeadline(), -1);
+		}
+	}
+
+	@Override
+	public void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		if (item.isCompleted()) {
+			return;
+		}
+		countOpen(oldDeadline, -1);
+		countOpen(item.getDeadline(), 1);
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		openCount = 0;
+		completedCount = 0;
+		noDeadlineCount = 0;
+		openByDay.clear();
+		openByWeek.clear();
+		overdueBefore = NOT_COMPUTED;
+		for (TodoItem item : items) {
+			itemAdded(0, item);
+		}
+	}
+
+	/**
+	 * 未完了の項目1件分を、期限ごと・週ごとの件数に足し引きします。
+	 */
+	private void countOpen(LocalDate deadline, int delta) {
+		if (deadline == null) {
+			noDeadlineCount += delta;
+			return;
+		}
+		long day = deadline.toEpochDay();
+		add(openByDay, day, delta);
+		add(openByWeek, weekKey(day), delta);
+		if (overdueBefore != NOT_COMPUTED && day < overdueBefore) {
+			overdueCount += delta;
+		}
+	}
+
+	/**
+	 * 件数を足し引きし、0件になったら取り除きます。
+	 */
+	private static void add(Map<Long, Integer> counts, long key, int delta) {
+		counts.compute(key, (k, count) -> {
+			int sum = (count == null ? 0 : count) + delta;
+			return sum == 0 ? null : sum;
+		});
+	}
+}
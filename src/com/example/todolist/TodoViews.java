@@ -0,0 +1,188 @@
+/**
+ * ToDoリストを決まった条件で並べ替え・絞り込んだ「ビュー」を、常に最新の状態で保持するクラスです。
+ * TodoListListenerとして登録すると、追加・完了・期限の編集（と、それらを元に戻す操作）のたびに該当する1件だけを並びに出し入れするので、
+ * ビューを切り替えるたびにリスト全体を並べ替える必要はありません。
+ *
+ * 並びは項目の番号を詰めたlong値（SortedLongList）で持ち、ビューは番号のリストとして返します。
+ * ビューのリストは並びを直接参照するので、作るのにも1ページ分を取り出すのにも全件の走査は行いません。
+ * 内容の編集は並び順に影響しないので、何もしません。
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+public class TodoViews implements TodoListListener {
+
+	/**
+	 * ビューの種類です。
+	 */
+	public enum View {
+		/** 未完了の項目を期限順に（期限の無い項目は最後） */
+		OPEN_BY_DEADLINE("未完了（期限順）"),
+		/** 期限が今日より前の未完了の項目を期限順に */
+		OVERDUE("期限切れ（期限順）"),
+		/** 完了済みの項目を追加した順に */
+		COMPLETED("完了済み（追加順）");
+
+		private final String label;
+
+		View(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * 表示用の名前を取得します。
+		 * @return 名前
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	//フィールド
+	/** 期限の無い項目に使う、どの期限よりも後の日付（1970-01-01からの日数） */
+	private static final long NO_DEADLINE = Integer.MAX_VALUE;
+
+	/**
+	 * 未完了の項目の並びです。
+	 * 値は上位32ビットが期限（1970-01-01からの日数）、下位32ビットが項目の番号（1始まり）で、
+	 * 期限順、同じ期限の中では番号順に並びます（DeadlineIndexと同じ形式です）。
+	 */
+	private final SortedLongList open = new SortedLongList();
+
+	/** 完了済みの項目の番号の並び */
+	private final SortedLongList completed = new SortedLongList();
+
+	private static long openKey(LocalDate deadline, int index) {
+		long epochDay = deadline == null ? NO_DEADLINE : deadline.toEpochDay();
+		return (epochDay << 32) | (index & 0xFFFFFFFFL);
+	}
+
+	// ----------------------------------------------------
+	// 問い合わせ
+	// ----------------------------------------------------
+
+	/**
+	 * ビューに含まれる項目の番号のリストを取得します。
+	 * リストは現在の並びを直接参照するので、次にリストが変更されるまでの間だけ使ってください。
+	 * @param view ビューの種類
+	 * @param today 期限切れの基準日（OVERDUEの場合に使用）
+	 * @return 項目の番号（1始まり）のリスト
+	 */
+	public List<Integer> indexes(View view, LocalDate today) {
+		switch (view) {
+			case OPEN_BY_DEADLINE:
+				return new IndexList(open, open.size());
+			case OVERDUE:
+				// 期限切れの項目は、期限順の未完了の並びの先頭部分にあたる
+				return new IndexList(open, open.rank(openKey(today, 0)));
+			case COMPLETED:
+				return new IndexList(completed, completed.size());
+			default:
+				throw new IllegalArgumentException("未知のビューです: " + view);
+		}
+	}
+
+	/**
+	 * ビューに含まれる項目の件数を取得します。
+	 * @param view ビューの種類
+	 * @param today 期限切れの基準日（OVERDUEの場合に使用）
+	 * @return 件数
+	 */
+	public int count(View view, LocalDate today) {
+		return indexes(view, today).size();
+	}
+
+	/**
+	 * 並びの先頭から指定した件数を、項目の番号として参照するリストです。
+	 */
+	private static class IndexList extends AbstractList<Integer> implements RandomAccess {
+
+		private final SortedLongList keys;
+		private final int size;
+
+		IndexList(SortedLongList keys, int size) {
+			this.keys = keys;
+			this.size = size;
+		}
+
+		@Override
+		public Integer get(int position) {
+			if (position < 0 || position >= size) {
+				throw new IndexOutOfBoundsException("位置 " + position + " は範囲外です（件数: " + size + "）");
+			}
+			return (int) keys.get(position);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	// ----------------------------------------------------
+	// TodoListManagerの変更への追従
+	// ----------------------------------------------------
+
+	@Override
+	public void itemAdded(int index, TodoItem item) {
+		if (item.isCompleted()) {
+			completed.add(index);
+		} else {
+			open.add(openKey(item.getDeadline(), index));
+		}
+	}
+
+	@Override
+	public void itemCompleted(int index, TodoItem item) {
+		open.remove(openKey(item.getDeadline(), index));
+		completed.add(index);
+	}
+
+	@Override
+	public void itemReopened(int index, TodoItem item) {
+		completed.remove(index);
+		open.add(openKey(item.getDeadline(), index));
+	}
+
+	@Override
+	public void itemRemoved(int index, TodoItem item) {
+		if (item.isCompleted()) {
+			completed.remove(index);
+		} else {
+			open.remove(openKey(item.getDeadline(), index));
+		}
+	}
+
+	@Override
+	public void deadlineEdited(int index, TodoItem item, LocalDate oldDeadline) {
+		if (item.isCompleted()) {
+			return;
+		}
+		open.remove(openKey(oldDeadline, index));
+		open.add(openKey(item.getDeadline(), index));
+	}
+
+	@Override
+	public void listReplaced(List<TodoItem> items) {
+		// 1件ずつ挿入せず、値をまとめて並べ替えてから作り直す
+		long[] openKeys = new long[items.size()];
+		long[] completedKeys = new long[items.size()];
+		int openCount = 0;
+		int completedCount = 0;
+		int index = 0;
+		for (TodoItem item : items) {
+			index++;
+			if (item.isCompleted()) {
+				completedKeys[completedCount++] = index;
+			} else {
+				openKeys[openCount++] = openKey(item.getDeadline(), index);
+			}
+		}
+		open.build(openKeys, openCount);
+		completed.build(completedKeys, completedCount);
+	}
+}
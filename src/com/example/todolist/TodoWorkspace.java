@@ -0,0 +1,309 @@
+/**
+ * 1つのデータディレクトリの下に、名前を付けた複数のToDoリストを保持するワークスペースです。
+ * リストはディレクトリ内の「名前.txt」に保存され、ジャーナルやアーカイブもリストごとに作られます。
+ *
+ * リストは初めて開いた時に読み込み、最近使った順に決まった数だけTodoListManagerとして保持します（LRUキャッシュ）。
+ * 上限を超えたら最も長く使われていないリストを閉じ、未保存の変更があれば書き戻してから手放すので、
+ * 使うメモリはリストの総数ではなくキャッシュの大きさで決まります。
+ *
+ * 開いているリストはそれぞれAutoSaverで自動保存します。項目を変更する側は、AutoSaverと同じく
+ * TodoListManagerのインスタンスで同期してください。キャッシュから外れたTodoListManagerへの変更は保存されないので、
+ * openで取得したTodoListManagerは、次に別のリストを開くまでの間だけ使ってください。
+ */
+package com.example.todolist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TodoWorkspace implements Closeable {
+
+	//フィールド
+	/** 既定で同時に保持するリストの数 */
+	public static final int DEFAULT_CACHE_SIZE = 8;
+
+	/** リストのファイルの拡張子 */
+	public static final String EXTENSION = ".txt";
+
+	/** リストの名前に使えない文字 */
+	private static final String INVALID_NAME_CHARS = "/\\:*?\"<>|";
+
+	/** リストの名前の最大の長さ */
+	private static final int MAX_NAME_LENGTH = 100;
+
+	/** リストを保存するディレクトリ */
+	private final Path directory;
+
+	/** 同時に保持するリストの数 */
+	private final int cacheSize;
+
+	/** 新しく開くリストの格納方式 */
+	private final TodoListManager.StorageMode storageMode;
+
+	/** 開いているリスト（アクセス順、先頭が最も長く使われていないリスト） */
+	private final LinkedHashMap<String, OpenList> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** 期限からこの日数が過ぎた完了済みの項目を、リストを開く時にアーカイブへ移す（負の場合は移さない） */
+	private int archiveAfterDays = -1;
+
+	/** 遅延読み込みのキャッシュに保持する項目数（0の場合は遅延読み込みを行わない） */
+	private int lazyCacheSize;
+
+	/** 自動保存の保存間隔（ミリ秒） */
+	private long autoSaveIntervalMillis = AutoSaver.DEFAULT_INTERVAL_MILLIS;
+
+	/** 自動保存の最大遅延時間（ミリ秒） */
+	private long autoSaveMaxLatencyMillis = AutoSaver.DEFAULT_MAX_LATENCY_MILLIS;
+
+	/** リストを読み込んだ回数 */
+	private long loadCount;
+
+	/** キャッシュから外したリストの数 */
+	private long evictionCount;
+
+	/**
+	 * 開いている1つのリストです。
+	 */
+	private static class OpenList {
+
+		final FileHandler fileHandler;
+		final TodoListManager manager;
+		final AutoSaver autoSaver;
+
+		OpenList(FileHandler fileHandler, TodoListManager manager, AutoSaver autoSaver) {
+			this.fileHandler = fileHandler;
+			this.manager = manager;
+			this.autoSaver = autoSaver;
+		}
+	}
+
+	/**
+	 * TodoWorkspaceを初期化するコンストラクタです。ディレクトリが無ければ作ります。
+	 * @param directory リストを保存するディレクトリ
+	 * @param cacheSize 同時に保持するリストの数（1以上）
+	 * @param storageMode 新しく開くリストの格納方式
+	 * @throws IOException ディレクトリを作れなかった場合
+	 * @throws IllegalArgumentException 保持するリストの数が1未満の場合
+	 */
+	public TodoWorkspace(Path directory, int cacheSize, TodoListManager.StorageMode storageMode) throws IOException {
+		if (cacheSize < 1) {
+			throw new IllegalArgumentException("保持するリストの数は1以上を指定してください: " + cacheSize);
+		}
+		this.directory = directory;
+		this.cacheSize = cacheSize;
+		this.storageMode = storageMode;
+		Files.createDirectories(directory);
+	}
+
+	/**
+	 * 期限から指定した日数が過ぎた完了済みの項目を、リストを開く時にアーカイブへ移すようにします。
+	 * @param days 期限から過ぎた日数（負の場合は移さない）
+	 */
+	public void setArchiveAfterDays(int days) {
+		this.archiveAfterDays = days;
+	}
+
+	/**
+	 * 格納方式がLAZYの場合に、リストを開く時に参照された項目だけを読み込むようにします。
+	 * @param cacheSize キャッシュに保持する項目数（0の場合は遅延読み込みを行わない）
+	 */
+	public void setLazy(int cacheSize) {
+		this.lazyCacheSize = cacheSize;
+	}
+
+	/**
+	 * これから開くリストの自動保存の設定を指定します。
+	 * @param intervalMillis 最後の変更から自動保存までの時間（ミリ秒）
+	 * @param maxLatencyMillis 最初の未保存の変更から自動保存までの最大の時間（ミリ秒）
+	 */
+	public void setAutoSave(long intervalMillis, long maxLatencyMillis) {
+		this.autoSaveIntervalMillis = intervalMillis;
+		this.autoSaveMaxLatencyMillis = maxLatencyMillis;
+	}
+
+	/**
+	 * リストの保存先のディレクトリを取得します。
+	 * @return ディレクトリ
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	// ----------------------------------------------------
+	// リストの一覧と読み込み
+	// ----------------------------------------------------
+
+	/**
+	 * ディレクトリにあるリストの名前を、名前順に取得します（まだ保存されていない、開いただけのリストも含みます）。
+	 * リストの中身は読み込みません。
+	 * @return リストの名前
+	 * @throws IOException ディレクトリの読み込みに失敗した場合
+	 */
+	public synchronized List<String> listNames() throws IOException {
+		List<String> names = new ArrayList<>(cache.keySet());
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (Path file : files) {
+				String filename = file.getFileName().toString();
+				String name = filename.substring(0, filename.length() - EXTENSION.length());
+				if (!cache.containsKey(name) && Files.isRegularFile(file)) {
+					names.add(name);
+				}
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * リストを開きます。キャッシュに無ければファイルから読み込み（ファイルが無ければ空のリストとして作り）、
+	 * キャッシュの上限を超えた場合は最も長く使われていないリストを書き戻して閉じます。
+	 * @param name リストの名前
+	 * @return リストのTodoListManager
+	 * @throws InputFormatException 名前に使えない文字が含まれる場合
+	 */
+	public synchronized TodoListManager open(String name) throws InputFormatException {
+		checkName(name);
+		OpenList list = cache.get(name);
+		if (list == null) {
+			list = load(name);
+			cache.put(name, list);
+			evictOverflow();
+		}
+		return list.manager;
+	}
+
+	/**
+	 * リストが読み込み済み（キャッシュにある）かを判定します。
+	 * @param name リストの名前
+	 * @return 読み込み済みの場合はtrue
+	 */
+	public synchronized boolean isLoaded(String name) {
+		return cache.containsKey(name);
+	}
+
+	/**
+	 * 開いているリストのFileHandlerを取得します（アーカイブの検索などに使用）。
+	 * @param name リストの名前
+	 * @return FileHandler（開いていない場合はnull）
+	 */
+	synchronized FileHandler fileHandlerOf(String name) {
+		OpenList list = cache.get(name);
+		return list == null ? null : list.fileHandler;
+	}
+
+	/**
+	 * 開いているリストの数を取得します。
+	 * @return リストの数
+	 */
+	public synchronized int getLoadedCount() {
+		return cache.size();
+	}
+
+	/**
+	 * これまでにリストを読み込んだ回数を取得します。
+	 * @return 回数
+	 */
+	public synchronized long getLoadCount() {
+		return loadCount;
+	}
+
+	/**
+	 * これまでにキャッシュから外したリストの数を取得します。
+	 * @return リストの数
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * 開いているすべてのリストを書き戻して閉じます。
+	 */
+	@Override
+	public synchronized void close() {
+		for (OpenList list : cache.values()) {
+			release(list);
+		}
+		cache.clear();
+	}
+
+	/**
+	 * リストをファイルから読み込み、ジャーナルと自動保存を設定します。
+	 */
+	private OpenList load(String name) {
+		Path file = directory.resolve(name + EXTENSION);
+		FileHandler fileHandler = new FileHandler(file.toString());
+		fileHandler.setArchiveAfterDays(archiveAfterDays);
+		if (storageMode == TodoListManager.StorageMode.LAZY) {
+			fileHandler.setLazy(lazyCacheSize);
+		}
+		TodoListManager manager = new TodoListManager(storageMode);
+		if (Files.exists(file) || Files.exists(Paths.get(file + FileHandler.JOURNAL_SUFFIX))) {
+			manager.setTodoItems(fileHandler.loadList());
+			manager.reserveIds(fileHandler.getArchivedMaxId());
+		} else {
+			// 新しいリストは空のファイルを作り、項目を追加する前でも一覧に出るようにする
+			// （スナップショットが無くてもジャーナルが残っている場合は、上で読み込んで復元する）
+			fileHandler.saveList(manager.getTodoItems());
+		}
+		fileHandler.attachJournal(manager);
+
+		AutoSaver autoSaver = new AutoSaver(fileHandler, manager, autoSaveIntervalMillis, autoSaveMaxLatencyMillis);
+		autoSaver.start();
+		loadCount++;
+		return new OpenList(fileHandler, manager, autoSaver);
+	}
+
+	/**
+	 * キャッシュの上限を超えた分を、最も長く使われていないリストから閉じます。
+	 */
+	private void evictOverflow() {
+		Iterator<Map.Entry<String, OpenList>> eldest = cache.entrySet().iterator();
+		while (cache.size() > cacheSize && eldest.hasNext()) {
+			OpenList list = eldest.next().getValue();
+			eldest.remove();
+			release(list);
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * リストの未保存の変更を書き戻し、ジャーナルを閉じます。
+	 */
+	private static void release(OpenList list) {
+		// AutoSaverのcloseは、未保存の変更がある場合だけ保存する
+		list.autoSaver.close();
+		list.fileHandler.close();
+	}
+
+	/**
+	 * リストの名前として使えるかを確かめます。
+	 * @param name リストの名前
+	 * @throws InputFormatException 空、長すぎる、「.」で始まる、またはファイル名に使えない文字を含む場合
+	 */
+	static void checkName(String name) throws InputFormatException {
+		if (name == null || name.isBlank()) {
+			throw new InputFormatException("リストの名前が入力されていません。");
+		}
+		if (name.length() > MAX_NAME_LENGTH) {
+			throw new InputFormatException("リストの名前は " + MAX_NAME_LENGTH + " 文字以内で入力してください。");
+		}
+		if (name.startsWith(".") || !name.equals(name.trim())) {
+			throw new InputFormatException("リストの名前を「.」や空白で始めたり、空白で終えたりすることはできません。");
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c < 0x20 || INVALID_NAME_CHARS.indexOf(c) >= 0) {
+				throw new InputFormatException("リストの名前に使えない文字が含まれています: " + c);
+			}
+		}
+	}
+}
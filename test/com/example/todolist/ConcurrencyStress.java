@@ -0,0 +1,255 @@
+/**
+ * ConcurrentTodoListManagerに複数スレッドから同時に変更を加え、スループットと変更の取りこぼしが無いことを確認するクラスです。
+ * 比較のため、通常のTodoListManagerを1つのロックで保護した場合のスループットも計測します。
+ * 計測は慣らしの1回の後に交互に数回繰り返して最も良い値を比べ、最終的な項目数や状態が一致しない場合と、
+ * ConcurrentTodoListManagerのスループットが単一ロックを上回らない場合は終了コード1で終わります。
+ * CPUが1つしか使えない環境ではロックを分けても並列に動かないので、スループットの比較は行いません。
+ * 使い方: java com.example.todolist.ConcurrencyStress [スレッド数] [1スレッドあたりの操作数] [初期の項目数]
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ConcurrencyStress {
+
+	/** 期限の基準日 */
+	private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 1);
+
+	/** 計測を繰り返す回数（慣らしの回は含めず、JITコンパイルの途中の回があっても最も良い値で比べる） */
+	private static final int ROUNDS = 3;
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private ConcurrencyStress() {
+	}
+
+	/**
+	 * 1スレッド分の操作と、検証に使う期待値を保持するクラスです。
+	 */
+	private static class Worker implements Runnable {
+
+		final TodoListManager manager;
+		final Object globalLock;
+		final int id;
+		final int threads;
+		final int operations;
+		final int initialSize;
+		final CountDownLatch start;
+
+		/** このスレッドが追加した件数 */
+		int added;
+
+		/** このスレッドが担当する項目の、最後に書き込んだ内容と期限 */
+		final Map<Integer, String> lastContent = new HashMap<>();
+		final Map<Integer, LocalDate> lastDeadline = new HashMap<>();
+
+		/** このスレッドが完了にした項目 */
+		final List<Integer> completed = new ArrayList<>();
+
+		Worker(TodoListManager manager, Object globalLock, int id, int threads, int operations, int initialSize,
+				CountDownLatch start) {
+			this.manager = manager;
+			this.globalLock = globalLock;
+			this.id = id;
+			this.threads = threads;
+			this.operations = operations;
+			this.initialSize = initialSize;
+			this.start = start;
+		}
+
+		@Override
+		public void run() {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			try {
+				start.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			for (int i = 0; i < operations; i++) {
+				int choice = random.nextInt(10);
+				// 内容と期限の編集は、スレッドごとに担当を分けた項目に対して行う
+				int owned = id + 1 + threads * random.nextInt(initialSize / threads);
+				if (choice == 0) {
+					run(() -> manager.addItem(new TodoItem("t" + id + "-add" + added, BASE_DATE)));
+					added++;
+				} else if (choice <= 3) {
+					int index = 1 + random.nextInt(initialSize);
+					run(() -> manager.completeItem(index));
+					completed.add(index);
+				} else if (choice <= 6) {
+					String content = "t" + id + "-edit" + i;
+					run(() -> manager.editContent(owned, content));
+					lastContent.put(owned, content);
+				} else {
+					LocalDate deadline = BASE_DATE.plusDays(i % 1000);
+					run(() -> manager.editDeadline(owned, deadline));
+					lastDeadline.put(owned, deadline);
+				}
+			}
+		}
+
+		private void run(Runnable operation) {
+			if (globalLock == null) {
+				operation.run();
+			} else {
+				synchronized (globalLock) {
+					operation.run();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 指定したマネージャーに対して全スレッドの操作を実行します。
+	 * @return 1秒あたりの操作数
+	 */
+	private static double runWorkers(TodoListManager manager, Object globalLock, Worker[] workers,
+			int threads, int operations, int initialSize) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] running = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Worker(manager, globalLock, t, threads, operations, initialSize, start);
+			running[t] = new Thread(workers[t], "stress-" + t);
+			running[t].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread thread : running) {
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		return (double) threads * operations * 1_000_000_000L / elapsed;
+	}
+
+	private static List<TodoItem> initialItems(int count) {
+		List<TodoItem> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			items.add(new TodoItem("initial" + i, BASE_DATE.plusDays(i % 365)));
+		}
+		return items;
+	}
+
+	/**
+	 * 全スレッドの変更が最終的なスナップショットと索引に反映されているかを確認します。
+	 * @return 見つかった不整合の一覧
+	 */
+	private static List<String> verify(TodoListManager manager, Worker[] workers, int initialSize) {
+		List<String> problems = new ArrayList<>();
+		List<TodoItem> items = manager.getTodoItems();
+
+		int expectedAdds = 0;
+		for (Worker worker : workers) {
+			expectedAdds += worker.added;
+		}
+		if (items.size() != initialSize + expectedAdds) {
+			problems.add("項目数が一致しません: " + items.size() + " (期待値 " + (initialSize + expectedAdds) + ")");
+		}
+
+		// 追加した項目がちょうど1回ずつ含まれているか
+		Map<String, Integer> addedContents = new HashMap<>();
+		for (int i = initialSize; i < items.size(); i++) {
+			addedContents.merge(items.get(i).getContent(), 1, Integer::sum);
+		}
+		for (Worker worker : workers) {
+			for (int n = 0; n < worker.added; n++) {
+				Integer count = addedContents.get("t" + worker.id + "-add" + n);
+				if (count == null || count != 1) {
+					problems.add("追加した項目が見つからないか重複しています: t" + worker.id + "-add" + n);
+				}
+			}
+
+			// 最後に書き込んだ値が残っているか
+			for (Map.Entry<Integer, String> entry : worker.lastContent.entrySet()) {
+				if (!entry.getValue().equals(items.get(entry.getKey() - 1).getContent())) {
+					problems.add("内容の編集が失われました: 項目 " + entry.getKey());
+				}
+			}
+			for (Map.Entry<Integer, LocalDate> entry : worker.lastDeadline.entrySet()) {
+				if (!entry.getValue().equals(items.get(entry.getKey() - 1).getDeadline())) {
+					problems.add("期限の編集が失われました: 項目 " + entry.getKey());
+				}
+			}
+			for (int index : worker.completed) {
+				if (!items.get(index - 1).isCompleted()) {
+					problems.add("完了が失われました: 項目 " + index);
+				}
+			}
+		}
+
+		// 期限の索引が最終状態と一致しているか
+		int open = 0;
+		for (TodoItem item : items) {
+			if (!item.isCompleted()) {
+				open++;
+			}
+		}
+		int indexed = manager.findDueBetween(LocalDate.MIN, LocalDate.MAX.minusDays(1)).size();
+		if (indexed != open) {
+			problems.add("期限の索引の件数が一致しません: " + indexed + " (未完了 " + open + ")");
+		}
+		return problems;
+	}
+
+	/**
+	 * 計測と検証を実行し、結果をコンソールに表示します。
+	 * @param args [スレッド数（既定: 16）] [1スレッドあたりの操作数（既定: 100000）] [初期の項目数（既定: 100000）]
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int operations = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+		int initialSize = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+		System.out.println("スレッド数: " + threads + "　操作数/スレッド: " + operations + "　初期の項目数: " + initialSize);
+
+		double lockedRate = 0;
+		double concurrentRate = 0;
+		List<String> problems = new ArrayList<>();
+		for (int round = 0; round <= ROUNDS && problems.isEmpty(); round++) {
+			// 比較用: 通常のTodoListManagerを1つのロックで保護
+			TodoListManager locked = new TodoListManager();
+			locked.setTodoItems(initialItems(initialSize));
+			Worker[] lockedWorkers = new Worker[threads];
+			double lockedRound = runWorkers(locked, locked, lockedWorkers, threads, operations, initialSize);
+			problems.addAll(verify(locked, lockedWorkers, initialSize));
+
+			ConcurrentTodoListManager concurrent = new ConcurrentTodoListManager();
+			concurrent.setTodoItems(initialItems(initialSize));
+			Worker[] workers = new Worker[threads];
+			double concurrentRound = runWorkers(concurrent, null, workers, threads, operations, initialSize);
+			problems.addAll(verify(concurrent, workers, initialSize));
+
+			System.out.printf("%s  単一ロック: %,.0f 操作/秒　ConcurrentTodoListManager: %,.0f 操作/秒%n",
+					round == 0 ? "慣らし" : round + "回目", lockedRound, concurrentRound);
+			if (round == 0) {
+				continue;
+			}
+			lockedRate = Math.max(lockedRate, lockedRound);
+			concurrentRate = Math.max(concurrentRate, concurrentRound);
+		}
+		if (Runtime.getRuntime().availableProcessors() == 1) {
+			System.out.println("CPUが1つしか使えないため、スループットの比較は省略します。");
+		} else if (problems.isEmpty() && concurrentRate <= lockedRate) {
+			problems.add(String.format("ConcurrentTodoListManagerのスループット（%,.0f 操作/秒）が単一ロック（%,.0f 操作/秒）を上回りません",
+					concurrentRate, lockedRate));
+		}
+
+		if (problems.isEmpty()) {
+			System.out.printf("検証OK: 変更の取りこぼしはありません（スループットは単一ロックの %.2f 倍）。%n", concurrentRate / lockedRate);
+		} else {
+			for (String problem : problems.subList(0, Math.min(20, problems.size()))) {
+				System.out.println("検証NG: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+}
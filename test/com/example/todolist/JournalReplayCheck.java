@@ -0,0 +1,230 @@
+/**
+ * ジャーナルに接続したTodoListManagerに無作為な変更を加えてから閉じ、ファイルを読み込み直した結果が
+ * 閉じる前のリスト（ID・内容・期限・完了の状態）と一致することを確認するクラスです。
+ * 完了済みの項目の追加（addItem・addItems・CSVのインポート）や、元に戻す・やり直すも含めます。
+ * インポートするCSVには既存のIDより小さいIDや大きいIDを混ぜ、IDの順に並びを復元するパーティションでも順番が変わらないことを確かめます。
+ * 変更の途中では、リスト全体を読み込まずに期限で絞り込む検索（FileHandler.loadDueBetween）が、
+ * ジャーナルの変更を含めた現在のリストを絞り込んだ結果と一致することも確認します。
+ * 保存形式はテキスト・月ごとのパーティション・バイナリ、格納方式はOBJECT・COLUMNAR・LAZYのそれぞれで確認します。
+ * 使い方: java com.example.todolist.JournalReplayCheck [操作数] [シード]
+ */
+package com.example.todolist;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class JournalReplayCheck {
+
+	/** 期限の基準日 */
+	private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 1);
+
+	/** 期限を散らばらせる日数 */
+	private static final int DEADLINE_SPREAD = 400;
+
+	/** 確認する保存形式（ファイル名の拡張子） */
+	private static final String[] EXTENSIONS = { ".txt", PartitionedTodoStore.EXTENSION, BinaryTodoFormat.EXTENSION };
+
+	/** この操作数ごとに閉じて読み込み直す */
+	private static final int RESTART_INTERVAL = 200;
+
+	/** この操作数ごとに期限での絞り込みを確認する */
+	private static final int DUE_CHECK_INTERVAL = 20;
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private JournalReplayCheck() {
+	}
+
+	/**
+	 * 1つの保存形式と格納方式で、変更・再起動・比較を繰り返します。
+	 * @return 見つかった不整合の一覧
+	 */
+	private static List<String> run(Path directory, String extension, TodoListManager.StorageMode mode,
+			int operations, long seed) throws IOException {
+		Random random = new Random(seed);
+		List<String> problems = new ArrayList<>();
+		String name = extension + " " + mode;
+		String filename = directory.resolve("check" + extension).toString();
+
+		List<TodoItem> initial = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			initial.add(randomItem(random, "initial" + i));
+		}
+		FileHandler first = new FileHandler(filename);
+		TodoIdIndex.assignIds(initial);
+		first.saveList(initial);
+		first.close();
+
+		int done = 0;
+		while (done < operations && problems.isEmpty()) {
+			FileHandler fileHandler = open(filename, mode);
+			TodoListManager manager = new TodoListManager(mode);
+			manager.setTodoItems(fileHandler.loadList());
+			fileHandler.attachJournal(manager);
+			manager.enableHistory(TodoHistory.DEFAULT_MAX_DEPTH, TodoHistory.DEFAULT_MAX_BYTES);
+
+			for (int i = 0; i < RESTART_INTERVAL && done < operations; i++, done++) {
+				operate(random, manager, directory, done);
+				if (random.nextInt(50) == 0) {
+					// 保存（ジャーナルが大きければコンパクション）を途中に挟む
+					fileHandler.saveList(manager.getTodoItems());
+				}
+				if (i % DUE_CHECK_INTERVAL == DUE_CHECK_INTERVAL - 1) {
+					checkDueBetween(random, name + " 操作 " + done, filename, manager, problems);
+				}
+			}
+			List<String> expected = describe(manager.getTodoItems());
+			fileHandler.saveList(manager.getTodoItems());
+			fileHandler.close();
+
+			FileHandler reloaded = new FileHandler(filename);
+			List<String> actual = describe(reloaded.loadList());
+			reloaded.close();
+			compare(name + " 操作 " + done, expected, actual, problems);
+		}
+		return problems;
+	}
+
+	private static FileHandler open(String filename, TodoListManager.StorageMode mode) {
+		FileHandler fileHandler = new FileHandler(filename);
+		if (mode == TodoListManager.StorageMode.LAZY) {
+			fileHandler.setLazy(64);
+		}
+		return fileHandler;
+	}
+
+	/**
+	 * 無作為な変更を1回加えます。
+	 */
+	private static void operate(Random random, TodoListManager manager, Path directory, int operation)
+			throws IOException {
+		int size = manager.getTodoItems().size();
+		int index = 1 + random.nextInt(size);
+		int choice = random.nextInt(20);
+		if (choice < 5) {
+			manager.addItem(randomItem(random, "add" + operation));
+		} else if (choice < 8) {
+			manager.completeItem(index);
+		} else if (choice < 11) {
+			manager.editDeadline(index, randomDeadline(random));
+		} else if (choice < 13) {
+			manager.editContent(index, "edit" + operation);
+		} else if (choice < 14) {
+			List<TodoItem> batch = new ArrayList<>();
+			for (int k = random.nextInt(10); k > 0; k--) {
+				batch.add(randomItem(random, "batch" + operation + "-" + k));
+			}
+			manager.addItems(batch);
+		} else if (choice < 15) {
+			Path csv = directory.resolve("import.csv");
+			StringBuilder sb = new StringBuilder("id,content,deadline,completed\r\n");
+			for (int k = random.nextInt(10); k > 0; k--) {
+				if (random.nextBoolean()) {
+					sb.append(1 + random.nextInt(size + 200));
+				}
+				sb.append(",import").append(operation).append('-').append(k).append(',')
+						.append(randomDeadline(random)).append(',').append(random.nextBoolean()).append("\r\n");
+			}
+			Files.write(csv, sb.toString().getBytes(StandardCharsets.UTF_8));
+			TodoExchange.importFrom(csv, TodoExchange.Format.CSV, manager, 4);
+		} else if (choice < 18) {
+			manager.undo();
+		} else {
+			manager.redo();
+		}
+	}
+
+	/**
+	 * 無作為な期間で、ファイルとジャーナルから期限で絞り込んだ結果と、現在のリストを絞り込んだ結果を比べます。
+	 */
+	private static void checkDueBetween(Random random, String label, String filename, TodoListManager manager,
+			List<String> problems) {
+		LocalDate from = randomDeadline(random);
+		LocalDate to = from.plusDays(random.nextInt(60));
+		List<TodoItem> expected = new ArrayList<>();
+		for (TodoItem item : manager.getTodoItems()) {
+			if (!item.getDeadline().isBefore(from) && !item.getDeadline().isAfter(to)) {
+				expected.add(item);
+			}
+		}
+		expected.sort(Comparator.comparing(TodoItem::getDeadline).thenComparingLong(TodoItem::getId));
+		List<TodoItem> actual = new FileHandler(filename).loadDueBetween(from, to);
+		compare(label + " 期限 " + from + "～" + to, describe(expected), describe(actual), problems);
+	}
+
+	/**
+	 * 比べるために、項目をID・内容・期限・完了の状態の文字列にします。
+	 */
+	private static List<String> describe(List<TodoItem> items) {
+		List<String> lines = new ArrayList<>(items.size());
+		for (TodoItem item : items) {
+			lines.add(item.getId() + "," + item.getContent() + "," + item.getDeadline() + "," + item.isCompleted());
+		}
+		return lines;
+	}
+
+	private static void compare(String label, List<String> expected, List<String> actual, List<String> problems) {
+		if (expected.size() != actual.size()) {
+			problems.add(label + ": 読み込み直した件数が " + actual.size() + " 件（正しくは " + expected.size() + " 件）");
+		}
+		for (int i = 0; i < Math.min(expected.size(), actual.size()) && problems.size() < 20; i++) {
+			if (!expected.get(i).equals(actual.get(i))) {
+				problems.add(label + ": " + (i + 1) + " 件目が " + actual.get(i) + "（正しくは " + expected.get(i) + "）");
+			}
+		}
+	}
+
+	private static TodoItem randomItem(Random random, String content) {
+		TodoItem item = new TodoItem(content, randomDeadline(random));
+		item.setCompleted(random.nextInt(3) == 0);
+		return item;
+	}
+
+	private static LocalDate randomDeadline(Random random) {
+		return BASE_DATE.plusDays(random.nextInt(DEADLINE_SPREAD));
+	}
+
+	private static void deleteRecursively(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("操作数: " + operations + "　シード: " + seed);
+
+		List<String> problems = new ArrayList<>();
+		for (String extension : EXTENSIONS) {
+			for (TodoListManager.StorageMode mode : TodoListManager.StorageMode.values()) {
+				Path directory = Files.createTempDirectory("journal-check");
+				try {
+					problems.addAll(run(directory, extension, mode, operations, seed));
+				} finally {
+					deleteRecursively(directory);
+				}
+			}
+		}
+
+		if (problems.isEmpty()) {
+			System.out.println("検証OK: 読み込み直したリストは閉じる前のリストと一致しました。");
+		} else {
+			for (String problem : problems.subList(0, Math.min(20, problems.size()))) {
+				System.out.println("検証NG: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * 空行や不正な行を無作為に混ぜたテキスト形式のファイルを、遅延読み込み（LazyTodoList）と通常の読み込みで開き、
+ * 読み込んだ項目（ID・内容・期限・完了の状態）が一致することを確認するクラスです。
+ * 遅延読み込みは、索引を作る初回と、保存した索引を使う2回目の両方を確認し、
+ * 保存して索引を書き直した後に読み込み直した結果も比べます。
+ * 使い方: java com.example.todolist.LazyLoadCheck [ファイル数] [シード]
+ */
+package com.example.todolist;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LazyLoadCheck {
+
+	/** 期限の基準日 */
+	private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 1);
+
+	/** 有効な行の間に混ぜる不正な行 */
+	private static final String[] BAD_LINES = { "", "   ", "bad,line", "x,2025-13-45,false,9", "y,notadate,true", "\r" };
+
+	/** キャッシュに保持する項目数（キャッシュからの追い出しも起こるように小さくする） */
+	private static final int CACHE_SIZE = 8;
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private LazyLoadCheck() {
+	}
+
+	/**
+	 * 1つのファイルを書き、遅延読み込みと通常の読み込みの結果を比べます。
+	 * @return 見つかった不整合の一覧
+	 */
+	private static List<String> run(Path directory, String label, String content) throws IOException {
+		List<String> problems = new ArrayList<>();
+		Path dataPath = directory.resolve("check.txt");
+		Files.write(dataPath, content.getBytes(StandardCharsets.UTF_8));
+		Files.deleteIfExists(LazyTodoList.indexPathOf(dataPath));
+
+		List<String> expected = load(dataPath, false);
+		compare(label + " 索引の作成", expected, load(dataPath, true), problems);
+		compare(label + " 索引の読み込み", expected, load(dataPath, true), problems);
+
+		// 遅延読み込みのまま保存し、書き直した索引で読み込み直す
+		FileHandler fileHandler = new FileHandler(dataPath.toString());
+		fileHandler.setLazy(CACHE_SIZE);
+		fileHandler.saveList(fileHandler.loadList());
+		fileHandler.close();
+		compare(label + " 保存後", expected, load(dataPath, true), problems);
+		compare(label + " 保存後（通常）", expected, load(dataPath, false), problems);
+		return problems;
+	}
+
+	private static List<String> load(Path dataPath, boolean lazy) {
+		FileHandler fileHandler = new FileHandler(dataPath.toString());
+		if (lazy) {
+			fileHandler.setLazy(CACHE_SIZE);
+		}
+		List<TodoItem> items = fileHandler.loadList();
+		List<String> lines = new ArrayList<>(items.size());
+		// キャッシュからの追い出しも起こるように、後ろから参照する
+		for (int i = items.size() - 1; i >= 0; i--) {
+			TodoItem item = items.get(i);
+			lines.add(0, item == null ? "null"
+					: item.getId() + "," + item.getContent() + "," + item.getDeadline() + "," + item.isCompleted());
+		}
+		fileHandler.close();
+		return lines;
+	}
+
+	private static void compare(String label, List<String> expected, List<String> actual, List<String> problems) {
+		if (expected.size() != actual.size()) {
+			problems.add(label + ": 件数が " + actual.size() + " 件（正しくは " + expected.size() + " 件）");
+		}
+		for (int i = 0; i < Math.min(expected.size(), actual.size()) && problems.size() < 20; i++) {
+			if (!expected.get(i).equals(actual.get(i))) {
+				problems.add(label + ": " + (i + 1) + " 件目が " + actual.get(i) + "（正しくは " + expected.get(i) + "）");
+			}
+		}
+	}
+
+	/**
+	 * 有効な行と不正な行を無作為に並べたファイルの内容を作ります。
+	 */
+	private static String randomContent(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int rows = 1 + random.nextInt(60);
+		for (int i = 0; i < rows; i++) {
+			if (random.nextInt(4) == 0) {
+				sb.append(BAD_LINES[random.nextInt(BAD_LINES.length)]);
+			} else {
+				sb.append("item").append(i).append(',').append(BASE_DATE.plusDays(random.nextInt(400))).append(',')
+						.append(random.nextBoolean());
+				if (random.nextBoolean()) {
+					sb.append(',').append(1 + random.nextInt(100));
+				}
+			}
+			sb.append(random.nextInt(5) == 0 ? "\r\n" : "\n");
+		}
+		if (random.nextBoolean()) {
+			// 最後の行の改行を省く
+			sb.setLength(sb.length() - 1);
+		}
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int files = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("ファイル数: " + files + "　シード: " + seed);
+
+		Random random = new Random(seed);
+		Path directory = Files.createTempDirectory("lazy-check");
+		List<String> problems = new ArrayList<>();
+		try {
+			// 有効な行の間に不正な行が1行だけある場合
+			problems.addAll(run(directory, "中間の不正な行", "A,2025-01-01,false,1\nbad,line\nB,2025-01-02,false,2\n"));
+			for (int i = 0; i < files && problems.isEmpty(); i++) {
+				problems.addAll(run(directory, "ファイル " + (i + 1), randomContent(random)));
+			}
+		} finally {
+			try (var paths = Files.list(directory)) {
+				for (Path path : (Iterable<Path>) paths::iterator) {
+					Files.delete(path);
+				}
+			}
+			Files.delete(directory);
+		}
+
+		if (problems.isEmpty()) {
+			System.out.println("検証OK: 遅延読み込みの結果は通常の読み込みと一致しました。");
+		} else {
+			for (String problem : problems.subList(0, Math.min(20, problems.size()))) {
+				System.out.println("検証NG: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * TodoListManagerに無作為な変更を加えながら、変更に追従して保持している集計（getStats・weeklyLoad）が
+ * リスト全体を数え直した結果と一致することを確認するクラスです。
+ * 変更には元に戻す・やり直すも含めます。
+ * 格納方式はOBJECT・COLUMNAR・LAZY（集計を初めて使う時に作る）と、ConcurrentTodoListManagerのそれぞれで確認します。
+ * 使い方: java com.example.todolist.TodoStatsCheck [操作数] [シード]
+ */
+package com.example.todolist;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TodoStatsCheck {
+
+	/** 期限の基準日 */
+	private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 1);
+
+	/** 期限を散らばらせる日数 */
+	private static final int DEADLINE_SPREAD = 400;
+
+	/** 確認する週の数 */
+	private static final int WEEKS = 60;
+
+	/** この操作数ごとに集計を数え直して比べる */
+	private static final int CHECK_INTERVAL = 50;
+
+	/**
+	 * インスタンス化せずに使うクラスです。
+	 */
+	private TodoStatsCheck() {
+	}
+
+	/**
+	 * 1つのTodoListManagerに無作為な変更を加えながら、集計を確認します。
+	 * @return 見つかった不整合の一覧
+	 */
+	private static List<String> run(String name, TodoListManager manager, int operations, long seed) {
+		Random random = new Random(seed);
+		List<String> problems = new ArrayList<>();
+		List<TodoItem> initial = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			initial.add(randomItem(random, "initial" + i));
+		}
+		if (manager.getStorageMode() == TodoListManager.StorageMode.LAZY) {
+			// LAZYでは最初の問い合わせまで集計を作らないので、その前にも変更を加えておく
+			manager.setTodoItems(new ArrayList<>(initial));
+			manager.addItem(randomItem(random, "before-stats"));
+		} else {
+			manager.setTodoItems(initial);
+		}
+		manager.enableHistory(TodoHistory.DEFAULT_MAX_DEPTH, TodoHistory.DEFAULT_MAX_BYTES);
+
+		LocalDate today = BASE_DATE.plusDays(DEADLINE_SPREAD / 2);
+		for (int i = 1; i <= operations && problems.size() < 20; i++) {
+			int size = manager.getTodoItems().size();
+			int index = 1 + random.nextInt(size);
+			int choice = random.nextInt(20);
+			if (choice < 6) {
+				manager.addItem(randomItem(random, "add" + i));
+			} else if (choice < 10) {
+				manager.completeItem(index);
+			} else if (choice < 15) {
+				manager.editDeadline(index, randomDeadline(random));
+			} else if (choice < 16) {
+				manager.editContent(index, "edit" + i);
+			} else if (choice < 17) {
+				int from = 1 + random.nextInt(size);
+				int to = Math.min(size, from + random.nextInt(50));
+				int[] indexes = new int[to - from + 1];
+				for (int k = 0; k < indexes.length; k++) {
+					indexes[k] = from + k;
+				}
+				if (random.nextBoolean()) {
+					manager.shiftDeadlines(indexes, random.nextInt(61) - 30);
+				} else {
+					manager.completeItems(indexes);
+				}
+			} else if (choice < 18) {
+				List<TodoItem> batch = new ArrayList<>();
+				for (int k = random.nextInt(20); k > 0; k--) {
+					batch.add(randomItem(random, "batch" + i + "-" + k));
+				}
+				manager.addItems(batch);
+			} else if (choice < 19) {
+				// 基準日は普段は1日ずつ進め、時々大きく動かす
+				today = random.nextInt(10) == 0
+						? BASE_DATE.plusDays(random.nextInt(DEADLINE_SPREAD))
+						: today.plusDays(random.nextInt(3) - 1);
+			} else if (random.nextInt(20) != 0) {
+				if (random.nextBoolean()) {
+					manager.undo();
+				} else {
+					manager.redo();
+				}
+			} else {
+				List<TodoItem> copy = new ArrayList<>();
+				for (TodoItem item : manager.getTodoItems()) {
+					TodoItem copied = new TodoItem(item.getContent(), item.getDeadline());
+					copied.setCompleted(item.isCompleted());
+					copy.add(copied);
+				}
+				manager.setTodoItems(copy);
+			}
+
+			if (i % CHECK_INTERVAL == 0) {
+				compare(name + " 操作 " + i, manager, today, problems);
+			}
+		}
+		compare(name + " 最後", manager, today, problems);
+		return problems;
+	}
+
+	/**
+	 * 保持している集計と、リスト全体を数え直した結果を比べます。
+	 */
+	private static void compare(String label, TodoListManager manager, LocalDate today, List<String> problems) {
+		TodoStats.Summary summary = manager.getStats(today);
+		LocalDate firstWeek = TodoStats.weekOf(today).minusWeeks(WEEKS / 2);
+		int[] weeklyLoad = manager.weeklyLoad(firstWeek, WEEKS);
+
+		int open = 0;
+		int completed = 0;
+		int overdue = 0;
+		int noDeadline = 0;
+		int[] expectedWeekly = new int[WEEKS];
+		for (TodoItem item : manager.getTodoItems()) {
+			if (item.isCompleted()) {
+				completed++;
+				continue;
+			}
+			open++;
+			LocalDate deadline = item.getDeadline();
+			if (deadline == null) {
+				noDeadline++;
+				continue;
+			}
+			if (deadline.isBefore(today)) {
+				overdue++;
+			}
+			long week = (TodoStats.weekOf(deadline).toEpochDay() - firstWeek.toEpochDay()) / 7;
+			if (week >= 0 && week < WEEKS) {
+				expectedWeekly[(int) week]++;
+			}
+		}
+
+		check(problems, label, "全体", open + completed, summary.getTotal());
+		check(problems, label, "未完了", open, summary.getOpen());
+		check(problems, label, "完了済み", completed, summary.getCompleted());
+		check(problems, label, "期限切れ（" + today + "）", overdue, summary.getOverdue());
+		check(problems, label, "期限なし", noDeadline, summary.getNoDeadline());
+		for (int w = 0; w < WEEKS; w++) {
+			check(problems, label, firstWeek.plusWeeks(w) + " の週", expectedWeekly[w], weeklyLoad[w]);
+		}
+	}
+
+	private static void check(List<String> problems, String label, String what, int expected, int actual) {
+		if (expected != actual) {
+			problems.add(label + ": " + what + " の件数が " + actual + " 件（正しくは " + expected + " 件）");
+		}
+	}
+
+	private static TodoItem randomItem(Random random, String content) {
+		TodoItem item = new TodoItem(content, random.nextInt(25) == 0 ? null : randomDeadline(random));
+		item.setCompleted(random.nextInt(5) == 0);
+		return item;
+	}
+
+	private static LocalDate randomDeadline(Random random) {
+		return BASE_DATE.plusDays(random.nextInt(DEADLINE_SPREAD));
+	}
+
+	public static void main(String[] args) {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("操作数: " + operations + "　シード: " + seed);
+
+		List<String> problems = new ArrayList<>();
+		for (TodoListManager.StorageMode mode : TodoListManager.StorageMode.values()) {
+			problems.addAll(run(mode.name(), new TodoListManager(mode), operations, seed));
+		}
+		problems.addAll(run("CONCURRENT", new ConcurrentTodoListManager(), operations, seed));
+
+		if (problems.isEmpty()) {
+			System.out.println("検証OK: 集計はリスト全体を数え直した結果と一致しました。");
+		} else {
+			for (String problem : problems.subList(0, Math.min(20, problems.size()))) {
+				System.out.println("検証NG: " + problem);
+			}
+			System.exit(1);
+		}
+	}
+}